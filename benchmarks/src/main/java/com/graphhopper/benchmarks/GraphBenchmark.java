@@ -0,0 +1,77 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.benchmarks;
+
+import com.graphhopper.routing.util.AllEdgesIterator;
+import com.graphhopper.routing.weighting.Weighting;
+import com.graphhopper.storage.BaseGraph;
+import com.graphhopper.util.EdgeExplorer;
+import com.graphhopper.util.EdgeIterator;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the raw cost of walking the {@link BaseGraph} storage and of evaluating the custom weighting for every
+ * edge. Each invocation visits the full graph, so the results are per full scan.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class GraphBenchmark {
+
+    @Benchmark
+    public void exploreAllNodes(RoutingGraphState state, Blackhole bh) {
+        BaseGraph graph = state.baseGraph;
+        EdgeExplorer explorer = graph.createEdgeExplorer();
+        for (int node = 0; node < graph.getNodes(); node++) {
+            EdgeIterator iter = explorer.setBaseNode(node);
+            while (iter.next()) {
+                bh.consume(iter.getAdjNode());
+            }
+        }
+    }
+
+    @Benchmark
+    public void iterateAllEdges(RoutingGraphState state, Blackhole bh) {
+        AllEdgesIterator iter = state.baseGraph.getAllEdges();
+        while (iter.next()) {
+            bh.consume(iter.getDistance());
+        }
+    }
+
+    @Benchmark
+    public double calcEdgeWeight(RoutingGraphState state) {
+        Weighting weighting = state.weighting;
+        AllEdgesIterator iter = state.baseGraph.getAllEdges();
+        double sum = 0;
+        while (iter.next()) {
+            double fwd = weighting.calcEdgeWeight(iter, false);
+            double bwd = weighting.calcEdgeWeight(iter, true);
+            // skip inaccessible edges, otherwise the sum is always infinite
+            if (Double.isFinite(fwd))
+                sum += fwd;
+            if (Double.isFinite(bwd))
+                sum += bwd;
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.benchmarks;
+
+import com.graphhopper.ResponsePath;
+import com.graphhopper.routing.AStarBidirection;
+import com.graphhopper.routing.DijkstraBidirectionCH;
+import com.graphhopper.routing.Path;
+import com.graphhopper.routing.lm.LMApproximator;
+import com.graphhopper.routing.querygraph.QueryGraph;
+import com.graphhopper.routing.util.TraversalMode;
+import com.graphhopper.storage.index.Snap;
+import com.graphhopper.util.PathMerger;
+import com.graphhopper.util.PointList;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the query time hot paths: the point-to-point searches with LM and CH, the creation of the
+ * {@link QueryGraph} and the conversion of a {@link Path} into a {@link ResponsePath} including instructions.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RoutingBenchmark {
+    private static final int ACTIVE_LANDMARKS = 8;
+
+    @Benchmark
+    public Path astarBidirectionLM(RoutingGraphState state, RoutingGraphState.Cursor cursor) {
+        int i = cursor.next();
+        AStarBidirection algo = new AStarBidirection(state.baseGraph, state.weighting, TraversalMode.NODE_BASED);
+        algo.setApproximation(LMApproximator.forLandmarks(state.baseGraph, state.weighting, state.landmarks, ACTIVE_LANDMARKS));
+        return algo.calcPath(state.fromNodes[i], state.toNodes[i]);
+    }
+
+    @Benchmark
+    public Path dijkstraBidirectionCH(RoutingGraphState state, RoutingGraphState.Cursor cursor) {
+        int i = cursor.next();
+        return new DijkstraBidirectionCH(state.chGraph).calcPath(state.fromNodes[i], state.toNodes[i]);
+    }
+
+    @Benchmark
+    public QueryGraph createQueryGraph(RoutingGraphState state, RoutingGraphState.Cursor cursor) {
+        int i = cursor.next();
+        // QueryGraph.create modifies the snaps, so we have to pass fresh copies
+        return QueryGraph.create(state.baseGraph, Arrays.asList(copy(state.fromSnaps[i]), copy(state.toSnaps[i])));
+    }
+
+    @Benchmark
+    public ResponsePath mergePathWithInstructions(RoutingGraphState state, RoutingGraphState.Cursor cursor) {
+        Path path = state.paths.get(cursor.next());
+        PointList waypoints = new PointList(2, false);
+        waypoints.add(state.baseGraph.getNodeAccess(), path.getFromNode());
+        waypoints.add(state.baseGraph.getNodeAccess(), path.getEndNode());
+        PathMerger pathMerger = new PathMerger(state.baseGraph, state.weighting);
+        return pathMerger.doWork(waypoints, Collections.singletonList(path), state.hopper.getEncodingManager(), state.translation);
+    }
+
+    private static Snap copy(Snap snap) {
+        Snap copy = new Snap(snap.getQueryPoint().lat, snap.getQueryPoint().lon);
+        copy.setClosestNode(snap.getClosestNode());
+        copy.setClosestEdge(snap.getClosestEdge());
+        copy.setQueryDistance(snap.getQueryDistance());
+        copy.setWayIndex(snap.getWayIndex());
+        copy.setSnappedPosition(snap.getSnappedPosition());
+        copy.setSnappedPoint(snap.getSnappedPoint());
+        return copy;
+    }
+}
@@ -0,0 +1,156 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.benchmarks;
+
+import com.graphhopper.GraphHopper;
+import com.graphhopper.config.CHProfile;
+import com.graphhopper.config.LMProfile;
+import com.graphhopper.config.Profile;
+import com.graphhopper.routing.DijkstraBidirectionCH;
+import com.graphhopper.routing.Path;
+import com.graphhopper.routing.TestProfiles;
+import com.graphhopper.routing.ev.Subnetwork;
+import com.graphhopper.routing.lm.LandmarkStorage;
+import com.graphhopper.routing.util.DefaultSnapFilter;
+import com.graphhopper.routing.util.EdgeFilter;
+import com.graphhopper.routing.weighting.Weighting;
+import com.graphhopper.storage.BaseGraph;
+import com.graphhopper.storage.RoutingCHGraph;
+import com.graphhopper.storage.index.LocationIndexTree;
+import com.graphhopper.storage.index.Snap;
+import com.graphhopper.util.Helper;
+import com.graphhopper.util.PMap;
+import com.graphhopper.util.Translation;
+import com.graphhopper.util.shapes.BBox;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Imports a small OSM extract once per benchmark run and prepares CH and LM for a single car profile. All
+ * query inputs (coordinates, node pairs and paths) are created upfront with a fixed seed so that every benchmark
+ * iteration measures the same work.
+ */
+@State(Scope.Benchmark)
+public class RoutingGraphState {
+    public static final String PROFILE = "car";
+    public static final int QUERIES = 256;
+
+    /**
+     * Relative to the directory the benchmarks are started from, which is usually the repository root.
+     */
+    @Param("core/files/andorra.osm.pbf")
+    public String osmFile;
+
+    public GraphHopper hopper;
+    public BaseGraph baseGraph;
+    public LocationIndexTree locationIndex;
+    public Weighting weighting;
+    public RoutingCHGraph chGraph;
+    public LandmarkStorage landmarks;
+    public EdgeFilter snapFilter;
+    public Translation translation;
+
+    public double[] queryLats;
+    public double[] queryLons;
+    public int[] fromNodes;
+    public int[] toNodes;
+    public Snap[] fromSnaps;
+    public Snap[] toSnaps;
+    public List<Path> paths;
+    private String graphFolder;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        graphFolder = Files.createTempDirectory("gh-benchmarks").toString();
+        Profile profile = TestProfiles.accessAndSpeed(PROFILE, "car");
+        hopper = new GraphHopper();
+        hopper.setOSMFile(osmFile);
+        hopper.setGraphHopperLocation(graphFolder);
+        hopper.setEncodedValuesString("car_access, car_average_speed");
+        hopper.setProfiles(profile);
+        hopper.getCHPreparationHandler().setCHProfiles(new CHProfile(PROFILE));
+        hopper.getLMPreparationHandler().setLMProfiles(new LMProfile(PROFILE));
+        hopper.importOrLoad();
+
+        baseGraph = hopper.getBaseGraph();
+        locationIndex = (LocationIndexTree) hopper.getLocationIndex();
+        weighting = hopper.createWeighting(profile, new PMap());
+        chGraph = hopper.getCHGraphs().get(PROFILE);
+        landmarks = hopper.getLandmarks().get(PROFILE);
+        snapFilter = new DefaultSnapFilter(weighting, hopper.getEncodingManager().getBooleanEncodedValue(Subnetwork.key(PROFILE)));
+        translation = hopper.getTranslationMap().getWithFallBack(Locale.US);
+
+        Random rnd = new Random(123);
+        BBox bounds = baseGraph.getBounds();
+        queryLats = new double[QUERIES];
+        queryLons = new double[QUERIES];
+        for (int i = 0; i < QUERIES; i++) {
+            queryLats[i] = bounds.minLat + rnd.nextDouble() * (bounds.maxLat - bounds.minLat);
+            queryLons[i] = bounds.minLon + rnd.nextDouble() * (bounds.maxLon - bounds.minLon);
+        }
+
+        // only keep node pairs that are connected, otherwise we would mostly measure failing searches
+        fromNodes = new int[QUERIES];
+        toNodes = new int[QUERIES];
+        fromSnaps = new Snap[QUERIES];
+        toSnaps = new Snap[QUERIES];
+        paths = new ArrayList<>(QUERIES);
+        int found = 0;
+        while (found < QUERIES) {
+            Snap from = locationIndex.findClosest(queryLats[rnd.nextInt(QUERIES)], queryLons[rnd.nextInt(QUERIES)], snapFilter);
+            Snap to = locationIndex.findClosest(queryLats[rnd.nextInt(QUERIES)], queryLons[rnd.nextInt(QUERIES)], snapFilter);
+            if (!from.isValid() || !to.isValid())
+                continue;
+            Path path = new DijkstraBidirectionCH(chGraph).calcPath(from.getClosestNode(), to.getClosestNode());
+            if (!path.isFound() || path.getEdgeCount() == 0)
+                continue;
+            fromSnaps[found] = from;
+            toSnaps[found] = to;
+            fromNodes[found] = from.getClosestNode();
+            toNodes[found] = to.getClosestNode();
+            paths.add(path);
+            found++;
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        hopper.close();
+        Helper.removeDir(new File(graphFolder));
+    }
+
+    /**
+     * Cycles through the prepared queries, one cursor per benchmark thread.
+     */
+    @State(Scope.Thread)
+    public static class Cursor {
+        private int index;
+
+        public int next() {
+            index = (index + 1) % QUERIES;
+            return index;
+        }
+    }
+}
@@ -30,6 +30,7 @@ import com.graphhopper.jackson.ResponsePathDeserializerHelper;
 import com.graphhopper.util.CustomModel;
 import com.graphhopper.util.Helper;
 import com.graphhopper.util.Parameters;
+import com.graphhopper.util.RouteBinaryFormat;
 import com.graphhopper.util.shapes.GHPoint;
 import okhttp3.*;
 
@@ -63,6 +64,7 @@ public class GraphHopperWeb {
     private boolean elevation = false;
     private String optimize = "false";
     private boolean postRequest = true;
+    private boolean binaryResponse = false;
     private int maxUnzippedLength = 1000;
     private final Set<String> ignoreSetForGet;
     private final Set<String> ignoreSetForPost;
@@ -145,6 +147,16 @@ public class GraphHopperWeb {
         return this;
     }
 
+    /**
+     * If true the POST /route response is requested in the compact binary format of {@link RouteBinaryFormat} instead
+     * of JSON, which is faster to encode and decode for long routes. Errors are still returned as JSON. The server
+     * needs to support this format. The default is false.
+     */
+    public GraphHopperWeb setBinaryResponse(boolean binaryResponse) {
+        this.binaryResponse = binaryResponse;
+        return this;
+    }
+
     /**
      * Enable or disable calculating points for the way. The default is true.
      */
@@ -192,6 +204,14 @@ public class GraphHopperWeb {
             Request okRequest = postRequest ? createPostRequest(ghRequest) : createGetRequest(ghRequest);
             Response rsp = getClientForRequest(ghRequest).newCall(okRequest).execute();
             rspBody = rsp.body();
+            MediaType contentType = rspBody.contentType();
+            if (contentType != null && RouteBinaryFormat.MEDIA_TYPE.equals(contentType.type() + "/" + contentType.subtype())) {
+                GHResponse res = RouteBinaryFormat.read(rspBody.byteStream(), tmpTurnDescription);
+                for (Map.Entry<String, List<String>> entry : rsp.headers().toMultimap().entrySet()) {
+                    res.getHints().putObject(entry.getKey(), entry.getValue());
+                }
+                return res;
+            }
             JsonNode json = objectMapper.reader().readTree(rspBody.byteStream());
 
             GHResponse res = new GHResponse();
@@ -248,6 +268,8 @@ public class GraphHopperWeb {
         }
         Request.Builder builder = new Request.Builder().url(url).post(RequestBody.create(MT_JSON, body));
         builder.header(X_GH_CLIENT_VERSION, GH_VERSION_FROM_MAVEN);
+        if (binaryResponse)
+            builder.header("Accept", RouteBinaryFormat.MEDIA_TYPE + ", application/json;q=0.5");
         // force avoiding our GzipRequestInterceptor for smaller requests ~30 locations
         if (body.length() < maxUnzippedLength)
             builder.header("Content-Encoding", "identity");
@@ -20,9 +20,9 @@ package com.graphhopper;
 import com.bedatadriven.jackson.datatype.jts.JtsModule;
 import com.carrotsearch.hppc.BitSet;
 import com.carrotsearch.hppc.IntArrayList;
-import com.carrotsearch.hppc.LongArrayList;
-import com.carrotsearch.hppc.sorting.IndirectSort;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
 import com.graphhopper.config.CHProfile;
 import com.graphhopper.config.LMProfile;
 import com.graphhopper.config.Profile;
@@ -32,6 +32,7 @@ import com.graphhopper.reader.osm.OSMReader;
 import com.graphhopper.reader.osm.RestrictionTagParser;
 import com.graphhopper.routing.*;
 import com.graphhopper.routing.ch.CHPreparationHandler;
+import com.graphhopper.routing.ch.CustomizableCH;
 import com.graphhopper.routing.ch.PrepareContractionHierarchies;
 import com.graphhopper.routing.ev.*;
 import com.graphhopper.routing.lm.LMConfig;
@@ -46,6 +47,10 @@ import com.graphhopper.routing.util.parsers.OSMBikeNetworkTagParser;
 import com.graphhopper.routing.util.parsers.OSMFootNetworkTagParser;
 import com.graphhopper.routing.util.parsers.OSMMtbNetworkTagParser;
 import com.graphhopper.routing.util.parsers.TagParser;
+import com.graphhopper.routing.weighting.LiveSpeedOverlay;
+import com.graphhopper.routing.weighting.LiveTrafficWeighting;
+import com.graphhopper.routing.weighting.PrecomputedWeighting;
+import com.graphhopper.routing.weighting.PrecomputedWeights;
 import com.graphhopper.routing.weighting.Weighting;
 import com.graphhopper.routing.weighting.custom.CustomModelParser;
 import com.graphhopper.routing.weighting.custom.CustomWeighting;
@@ -68,9 +73,15 @@ import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.text.DateFormat;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.BiFunction;
 import java.util.function.Function;
+import java.util.function.ObjIntConsumer;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 import java.util.stream.StreamSupport;
 
 import static com.graphhopper.util.GHUtility.readCountries;
@@ -105,6 +116,8 @@ public class GraphHopper {
     private DAType dataAccessDefaultType = DAType.RAM_STORE;
     private final LinkedHashMap<String, String> dataAccessConfig = new LinkedHashMap<>();
     private boolean sortGraph = true;
+    private boolean adjacencyArray = false;
+    private boolean compactGeometry = false;
     private boolean elevation = false;
     private LockFactory lockFactory = new NativeFSLockFactory();
     private boolean allowWrites = true;
@@ -130,7 +143,15 @@ public class GraphHopper {
     private final LMPreparationHandler lmPreparationHandler = new LMPreparationHandler();
     private final CHPreparationHandler chPreparationHandler = new CHPreparationHandler();
     private Map<String, RoutingCHGraph> chGraphs = Collections.emptyMap();
+    private final Map<String, PHAST> phastPreparations = new ConcurrentHashMap<>();
+    private ExecutorService batchExecutor;
+    private CustomizableCH customizableCH;
     private Map<String, LandmarkStorage> landmarks = Collections.emptyMap();
+    private Set<String> liveTrafficProfiles = Collections.emptySet();
+    private String customModelPrewarmFile = "";
+    private LiveSpeedOverlay liveSpeedOverlay;
+    private Set<String> precomputedWeightsProfiles = Collections.emptySet();
+    private final Map<String, PrecomputedWeights> precomputedWeights = new LinkedHashMap<>();
 
     // for data reader
     private String osmFile;
@@ -361,11 +382,66 @@ public class GraphHopper {
         return this;
     }
 
+    /**
+     * The custom models in this JSON file are compiled after the graph was loaded so that the first requests using
+     * them are not slowed down. The file contains an array of objects with a "profile" and a "custom_model" that is
+     * merged into the custom model of the profile like for a request. Combine this with
+     * {@link CustomModelParser#setClassCacheDirectory} to store the compiled classes for the next start.
+     */
+    public GraphHopper setCustomModelPrewarmFile(String customModelPrewarmFile) {
+        this.customModelPrewarmFile = customModelPrewarmFile;
+        return this;
+    }
+
+    /**
+     * Requests for these profiles use the live speeds of {@link #getLiveSpeedOverlay()}, unless they use CH
+     */
+    public GraphHopper setLiveTrafficProfiles(Collection<String> liveTrafficProfiles) {
+        this.liveTrafficProfiles = new LinkedHashSet<>(liveTrafficProfiles);
+        return this;
+    }
+
+    /**
+     * The edge weights and travel times of these profiles are calculated once and stored with the graph, see
+     * {@link PrecomputedWeights}. Requests without a custom model for these profiles read them instead of evaluating
+     * the custom model of the profile, unless they use CH.
+     */
+    public GraphHopper setPrecomputedWeightsProfiles(Collection<String> precomputedWeightsProfiles) {
+        this.precomputedWeightsProfiles = new LinkedHashSet<>(precomputedWeightsProfiles);
+        return this;
+    }
+
+    /**
+     * @return the live speeds used for the profiles given in {@link #setLiveTrafficProfiles}, or null if there are no
+     * such profiles
+     */
+    public LiveSpeedOverlay getLiveSpeedOverlay() {
+        return liveSpeedOverlay;
+    }
+
     public GraphHopper setSortGraph(boolean sortGraph) {
         this.sortGraph = sortGraph;
         return this;
     }
 
+    /**
+     * If enabled the graph is frozen after the import and the adjacency of every node is stored in a contiguous array,
+     * which makes the edge explorers faster at the cost of 4 bytes per node and 8 bytes per edge.
+     */
+    public GraphHopper setAdjacencyArray(boolean adjacencyArray) {
+        this.adjacencyArray = adjacencyArray;
+        return this;
+    }
+
+    /**
+     * If enabled the pillar nodes of a new graph are stored delta and varint encoded, geometries with many pillar nodes
+     * then need about half of the space. An existing graph is always loaded in the format it was created with.
+     */
+    public GraphHopper setCompactGeometry(boolean compactGeometry) {
+        this.compactGeometry = compactGeometry;
+        return this;
+    }
+
     /**
      * The underlying graph used in algorithms.
      *
@@ -395,6 +471,19 @@ public class GraphHopper {
         return chGraphs;
     }
 
+    /**
+     * @return the preparation to calculate one-to-all shortest paths with {@link PHAST} for the given profile, or
+     * null if there is no node-based CH preparation for it. The preparation is created on the first call.
+     */
+    public PHAST getPHAST(String profileName, boolean reverseFlow) {
+        RoutingCHGraph chGraph = chGraphs.get(profileName);
+        if (chGraph == null || chGraph.isEdgeBased())
+            return null;
+        // the CH graphs are replaced when the graph is updated, see importOSMChanges
+        return phastPreparations.compute(profileName + (reverseFlow ? "|reverse" : ""),
+                (key, phast) -> phast != null && phast.getGraph() == chGraph ? phast : new PHAST(chGraph, reverseFlow));
+    }
+
     /**
      * @return a mapping between profile names and according landmark preparations. The map will be empty before loading
      * or import.
@@ -507,6 +596,9 @@ public class GraphHopper {
 
         String daTypeString = ghConfig.getString("graph.dataaccess.default_type", ghConfig.getString("graph.dataaccess", "RAM_STORE"));
         dataAccessDefaultType = DAType.fromString(daTypeString);
+        if (!dataAccessDefaultType.isAllowWrites())
+            // a read-only graph can be shared by several processes, so we must neither change it nor create a lock
+            allowWrites = false;
         for (Map.Entry<String, Object> entry : ghConfig.asPMap().toMap().entrySet()) {
             if (entry.getKey().startsWith("graph.dataaccess.type."))
                 dataAccessConfig.put(entry.getKey().substring("graph.dataaccess.type.".length()), entry.getValue().toString());
@@ -515,6 +607,8 @@ public class GraphHopper {
         }
 
         sortGraph = ghConfig.getBool("graph.sort", sortGraph);
+        adjacencyArray = ghConfig.getBool("graph.adjacency_array", adjacencyArray);
+        compactGeometry = ghConfig.getBool("graph.compact_geometry", compactGeometry);
         if (ghConfig.getBool("max_speed_calculator.enabled", false))
             maxSpeedCalculator = new MaxSpeedCalculator(MaxSpeedCalculator.createLegalDefaultSpeeds());
 
@@ -532,6 +626,10 @@ public class GraphHopper {
         JsonFeatureCollection globalAreas = GraphHopper.resolveCustomAreas(customAreasDirectory);
         String customModelFolder = ghConfig.getString("custom_models.directory", ghConfig.getString("custom_model_folder", ""));
         setProfiles(GraphHopper.resolveCustomModelFiles(customModelFolder, ghConfig.getProfiles(), globalAreas));
+        String customModelClassCacheDirectory = ghConfig.getString("custom_models.class_cache.directory", "");
+        if (!customModelClassCacheDirectory.isEmpty())
+            CustomModelParser.setClassCacheDirectory(Paths.get(customModelClassCacheDirectory));
+        customModelPrewarmFile = ghConfig.getString("custom_models.class_cache.prewarm_file", customModelPrewarmFile);
 
         if (ghConfig.has("graph.vehicles"))
             throw new IllegalArgumentException("The option graph.vehicles is no longer supported. Use the appropriate turn_costs and custom_model instead, see docs/migration/config-migration-08-09.md");
@@ -586,6 +684,7 @@ public class GraphHopper {
         osmReaderConfig.setPreferredLanguage(ghConfig.getString("datareader.preferred_language", osmReaderConfig.getPreferredLanguage()));
         osmReaderConfig.setMaxWayPointDistance(ghConfig.getDouble(Routing.INIT_WAY_POINT_MAX_DISTANCE, osmReaderConfig.getMaxWayPointDistance()));
         osmReaderConfig.setWorkerThreads(ghConfig.getInt("datareader.worker_threads", osmReaderConfig.getWorkerThreads()));
+        osmReaderConfig.setWayThreads(ghConfig.getInt("datareader.way_threads", osmReaderConfig.getWayThreads()));
 
         // index
         preciseIndexResolution = ghConfig.getInt("index.high_resolution", preciseIndexResolution);
@@ -604,6 +703,12 @@ public class GraphHopper {
         routerConfig.setMaxRoundTripRetries(ghConfig.getInt(RoundTrip.INIT_MAX_RETRIES, routerConfig.getMaxRoundTripRetries()));
         routerConfig.setNonChMaxWaypointDistance(ghConfig.getInt(Parameters.NON_CH.MAX_NON_CH_POINT_DISTANCE, routerConfig.getNonChMaxWaypointDistance()));
         routerConfig.setInstructionsEnabled(ghConfig.getBool(Routing.INIT_INSTRUCTIONS, routerConfig.isInstructionsEnabled()));
+        routerConfig.setBatchThreads(ghConfig.getInt("routing.batch.threads", routerConfig.getBatchThreads()));
+        routerConfig.setMaxBatchSize(ghConfig.getInt("routing.batch.max_size", routerConfig.getMaxBatchSize()));
+        setLiveTrafficProfiles(Arrays.stream(ghConfig.getString("routing.live_traffic.profiles", String.join(",", liveTrafficProfiles)).split(","))
+                .map(String::trim).filter(p -> !p.isEmpty()).toList());
+        setPrecomputedWeightsProfiles(Arrays.stream(ghConfig.getString("graph.precomputed_weights.profiles", String.join(",", precomputedWeightsProfiles)).split(","))
+                .map(String::trim).filter(p -> !p.isEmpty()).toList());
         int activeLandmarkCount = ghConfig.getInt(Landmark.ACTIVE_COUNT_DEFAULT, Math.min(8, lmPreparationHandler.getLandmarks()));
         if (activeLandmarkCount > lmPreparationHandler.getLandmarks())
             throw new IllegalArgumentException("Default value for active landmarks " + activeLandmarkCount
@@ -797,9 +902,39 @@ public class GraphHopper {
         } else {
             printInfo();
         }
+        if (!customModelPrewarmFile.isEmpty())
+            prewarmCustomModels(customModelPrewarmFile);
         return this;
     }
 
+    private void prewarmCustomModels(String file) {
+        StopWatch sw = new StopWatch().start();
+        ObjectMapper mapper = Jackson.newObjectMapper();
+        JsonNode entries;
+        try {
+            entries = mapper.readTree(readJSONFileWithoutComments(file));
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Cannot read custom models to prewarm from " + file, ex);
+        }
+        if (!entries.isArray())
+            throw new IllegalArgumentException("The custom models to prewarm must be a JSON array, file: " + file);
+        for (JsonNode entry : entries) {
+            Profile profile = profilesByName.get(entry.path("profile").asText());
+            if (profile == null)
+                throw new IllegalArgumentException("Unknown profile '" + entry.path("profile").asText() + "' in " + file);
+            PMap hints = new PMap();
+            if (entry.has(CustomModel.KEY)) {
+                try {
+                    hints.putObject(CustomModel.KEY, mapper.treeToValue(entry.get(CustomModel.KEY), CustomModel.class));
+                } catch (IOException ex) {
+                    throw new IllegalArgumentException("Invalid custom model for profile '" + profile.getName() + "' in " + file, ex);
+                }
+            }
+            createWeighting(profile, hints);
+        }
+        logger.info("Prewarmed " + entries.size() + " custom models from " + file + ", took: " + sw.stop().getSeconds() + "s");
+    }
+
     /**
      * Imports and processes data, storing it to disk when complete.
      */
@@ -814,6 +949,93 @@ public class GraphHopper {
         close();
     }
 
+    /**
+     * Applies the given OSM change file (.osc) to the graph that was imported into the graph folder before, instead of
+     * importing the full OSM file again. The tag parsers only run for the edges of the modified ways and the edges of
+     * deleted ways are blocked, see {@link OSMReader#applyChanges}. Since the weights change, the CH and LM preparations
+     * are calculated again. This requires the osm_way_id encoded value and the same configuration as the import. Use it
+     * instead of importOrLoad.
+     */
+    public GraphHopper importOSMChanges(File changeFile) {
+        ensureNotLoaded();
+        ensureWriteAccess();
+        if (maxSpeedCalculator != null)
+            throw new IllegalArgumentException("OSM change files cannot be applied when the max_speed_calculator is used");
+        GHDirectory directory = new GHDirectory(ghLocation, dataAccessDefaultType);
+        directory.configure(dataAccessConfig);
+        GHLock lock = null;
+        try {
+            if (directory.getDefaultType().isStoring()) {
+                lockFactory.setLockDir(new File(ghLocation));
+                lock = lockFactory.create(fileLockName, true);
+                if (!lock.tryLock())
+                    throw new RuntimeException("To avoid multiple writers we need to obtain a write lock but it failed. In " + ghLocation, lock.getObtainFailedReason());
+            }
+            properties = new StorableProperties(directory);
+            if (!properties.loadExisting())
+                throw new IllegalStateException("There is no graph in " + ghLocation + " to apply the OSM changes to, run an import first");
+            if (!properties.get("profiles").equals(getProfilesString()))
+                throw new IllegalStateException("Profiles do not match the graph in " + ghLocation + ". Use the configuration of the import.");
+            // the tag parsers must write into the encoded values of the graph, so that their maximum values are updated
+            prepareImport(EncodingManager.fromProperties(properties));
+            if (!encodingManager.hasEncodedValue(OSMWayID.KEY))
+                throw new IllegalArgumentException("OSM change files can only be applied if " + OSMWayID.KEY + " is included in graph.encoded_values");
+            baseGraph = new BaseGraph.Builder(encodingManager)
+                    .setDir(directory)
+                    .set3D(hasElevation())
+                    .withTurnCosts(encodingManager.needsTurnCostsSupport())
+                    .withAdjacencyArray(adjacencyArray)
+                    .withCompactGeometry(compactGeometry)
+                    .setSegmentSize(defaultSegmentSize)
+                    .build();
+            checkProfilesConsistency();
+            baseGraph.loadExisting();
+
+            List<IntEncodedValue> keptEncodedValues = new ArrayList<>();
+            if (encodingManager.hasEncodedValue(UrbanDensity.KEY))
+                keptEncodedValues.add(encodingManager.getIntEncodedValue(UrbanDensity.KEY));
+            // the tags of the nodes are not stored, so the crossings cannot be parsed again
+            if (encodingManager.hasEncodedValue(Crossing.KEY))
+                keptEncodedValues.add(encodingManager.getIntEncodedValue(Crossing.KEY));
+            OSMReader reader = new OSMReader(baseGraph, osmParsers, osmReaderConfig).
+                    setAreaIndex(createAreaIndex()).
+                    setCountryRuleFactory(countryRuleFactory);
+            try {
+                reader.applyChanges(changeFile, encodingManager.getIntEncodedValue(OSMWayID.KEY), keptEncodedValues);
+            } catch (IOException ex) {
+                throw new RuntimeException("Cannot read file " + changeFile, ex);
+            }
+            // blocked edges can split the graph, so we have to look for small subnetworks again
+            cleanUp();
+            properties.put("datareader.update.date", createFormatter().format(new Date()));
+            writeEncodingManagerToProperties();
+
+            // all preparations depend on the edge weights and are removed, so that they are calculated again
+            for (CHProfile profile : chPreparationHandler.getCHProfiles()) {
+                removeStorage(directory, "nodes_ch_" + profile.getProfile());
+                removeStorage(directory, "shortcuts_" + profile.getProfile());
+            }
+            for (LMProfile profile : lmPreparationHandler.getLMProfiles()) {
+                removeStorage(directory, "landmarks_" + profile.getProfile());
+                removeStorage(directory, "landmarks_subnetwork_" + profile.getProfile());
+            }
+            for (String profile : precomputedWeightsProfiles)
+                removeStorage(directory, PrecomputedWeights.getStorageName(profile));
+            postProcessing(false);
+            flush();
+        } finally {
+            if (lock != null)
+                lock.release();
+        }
+        return this;
+    }
+
+    private static void removeStorage(Directory directory, String name) {
+        // only DataAccess objects that were created can be removed together with their files
+        directory.create(name);
+        directory.remove(name);
+    }
+
     /**
      * Creates the graph from OSM data.
      */
@@ -827,6 +1049,8 @@ public class GraphHopper {
                 .setDir(directory)
                 .set3D(hasElevation())
                 .withTurnCosts(encodingManager.needsTurnCostsSupport())
+                .withAdjacencyArray(adjacencyArray)
+                .withCompactGeometry(compactGeometry)
                 .setSegmentSize(defaultSegmentSize)
                 .build();
         properties = new StorableProperties(directory);
@@ -858,6 +1082,14 @@ public class GraphHopper {
     }
 
     protected void prepareImport() {
+        prepareImport(null);
+    }
+
+    /**
+     * @param importedEncodingManager if not null, this EncodingManager of an existing graph is used instead of a new
+     *                                one. Its encoded values must match the configured ones.
+     */
+    private void prepareImport(EncodingManager importedEncodingManager) {
         Map<String, PMap> encodedValuesWithProps = parseEncodedValueString(encodedValuesString);
         NameValidator nameValidator = s -> importRegistry.createImportUnit(s) != null;
         Set<String> missing = new LinkedHashSet<>();
@@ -906,9 +1138,35 @@ public class GraphHopper {
                 deque.addAll(importUnit.getRequiredImportUnits());
         }
         encodingManager = buildEncodingManager(encodedValuesWithProps, activeImportUnits, restrictionVehicleTypesByProfile);
+        if (importedEncodingManager != null) {
+            // the maximum values that were seen during the import differ, but the bit layout must be the same
+            if (!hasSameEncodedValues(importedEncodingManager, encodingManager))
+                throw new IllegalStateException("The encoded values do not match the graph in " + ghLocation + ". Use the configuration of the import.");
+            encodingManager = importedEncodingManager;
+        }
         osmParsers = buildOSMParsers(encodedValuesWithProps, activeImportUnits, restrictionVehicleTypesByProfile, osmReaderConfig.getIgnoredHighways());
     }
 
+    /**
+     * @return true if both encoding managers contain the same encoded values with the same configuration. The maximum
+     * values that were seen while importing are ignored.
+     */
+    static boolean hasSameEncodedValues(EncodingManager em1, EncodingManager em2) {
+        List<EncodedValue> encodedValues1 = em1.getEncodedValues();
+        List<EncodedValue> encodedValues2 = em2.getEncodedValues();
+        if (encodedValues1.size() != encodedValues2.size())
+            return false;
+        for (int i = 0; i < encodedValues1.size(); i++) {
+            ObjectNode ev1 = EncodedValueSerializer.serializeEncodedValueToTree(encodedValues1.get(i));
+            ObjectNode ev2 = EncodedValueSerializer.serializeEncodedValueToTree(encodedValues2.get(i));
+            ev1.remove("max_value");
+            ev2.remove("max_value");
+            if (!ev1.equals(ev2))
+                return false;
+        }
+        return true;
+    }
+
     protected void postImportOSM() {
         // Important note: To deal with via-way turn restrictions we introduce artificial edges in OSMReader (#2689).
         // These are simply copies of real edges. Any further modifications of the graph edges must take care of keeping
@@ -933,21 +1191,7 @@ public class GraphHopper {
             throw new IllegalStateException("Couldn't load from existing folder: " + ghLocation
                     + " but also cannot use file for DataReader as it wasn't specified!");
 
-        List<CustomArea> customAreas = readCountries();
-        if (isEmpty(customAreasDirectory)) {
-            logger.info("No custom areas are used, custom_areas.directory not given");
-        } else {
-            logger.info("Creating custom area index, reading custom areas from: '" + customAreasDirectory + "'");
-            customAreas.addAll(readCustomAreas());
-        }
-
-        AreaIndex<CustomArea> areaIndex = new AreaIndex<>(customAreas);
-        if (countryRuleFactory == null || countryRuleFactory.getCountryToRuleMap().isEmpty()) {
-            logger.info("No country rules available");
-        } else {
-            logger.info("Applying rules for the following countries: {}", countryRuleFactory.getCountryToRuleMap().keySet());
-        }
-
+        AreaIndex<CustomArea> areaIndex = createAreaIndex();
         logger.info("start creating graph from " + osmFile);
         OSMReader reader = new OSMReader(baseGraph.getBaseGraph(), osmParsers, osmReaderConfig).setFile(_getOSMFile()).
                 setAreaIndex(areaIndex).
@@ -968,6 +1212,24 @@ public class GraphHopper {
             properties.put("datareader.data.date", f.format(reader.getDataDate()));
     }
 
+    private AreaIndex<CustomArea> createAreaIndex() {
+        List<CustomArea> customAreas = readCountries();
+        if (isEmpty(customAreasDirectory)) {
+            logger.info("No custom areas are used, custom_areas.directory not given");
+        } else {
+            logger.info("Creating custom area index, reading custom areas from: '" + customAreasDirectory + "'");
+            customAreas.addAll(readCustomAreas());
+        }
+
+        AreaIndex<CustomArea> areaIndex = new AreaIndex<>(customAreas);
+        if (countryRuleFactory == null || countryRuleFactory.getCountryToRuleMap().isEmpty()) {
+            logger.info("No country rules available");
+        } else {
+            logger.info("Applying rules for the following countries: {}", countryRuleFactory.getCountryToRuleMap().keySet());
+        }
+        return areaIndex;
+    }
+
     protected void createBaseGraphAndProperties() {
         baseGraph.getDirectory().create();
         baseGraph.create(100);
@@ -981,10 +1243,10 @@ public class GraphHopper {
         StopWatch sw = StopWatch.started();
         NodeAccess na = graph.getNodeAccess();
         final int order = 31; // using 15 would allow us to use ints for sortIndices, but this would result in (marginally) slower routing
-        LongArrayList sortIndices = new LongArrayList();
-        for (int node = 0; node < graph.getNodes(); node++)
-            sortIndices.add(latLonToHilbertIndex(na.getLat(node), na.getLon(node), order));
-        int[] nodeOrder = IndirectSort.mergesort(0, graph.getNodes(), (nodeA, nodeB) -> Long.compare(sortIndices.get(nodeA), sortIndices.get(nodeB)));
+        long[] sortIndices = new long[graph.getNodes()];
+        IntStream.range(0, graph.getNodes()).parallel().forEach(node ->
+                sortIndices[node] = latLonToHilbertIndex(na.getLat(node), na.getLon(node), order));
+        int[] nodeOrder = ArrayUtil.calcSortOrderParallel(sortIndices);
         EdgeExplorer explorer = graph.createEdgeExplorer();
         int edges = graph.getEdges();
         IntArrayList edgeOrder = new IntArrayList();
@@ -1013,6 +1275,12 @@ public class GraphHopper {
         StopWatch sw = new StopWatch().start();
         baseGraph.sortEdges(newEdgesByOldEdges::get);
         logger.info("sorting {} edges took: {}", Helper.nf(newEdgesByOldEdges.size()), sw.stop().getTimeString());
+        // the geometries and key-values are still stored in the original edge order, so accessing them for nearby
+        // edges would jump around in memory unless we rewrite them in the new edge order as well
+        sw = new StopWatch().start();
+        baseGraph.relayoutWayGeometry();
+        baseGraph.relayoutKeyValues();
+        logger.info("relayout of geometries and key-values took: {}", sw.stop().getTimeString());
         sw = new StopWatch().start();
         baseGraph.relabelNodes(newNodesByOldNodes::get);
         logger.info("sorting {} nodes took: {}", Helper.nf(newNodesByOldNodes.size()), sw.stop().getTimeString());
@@ -1149,6 +1417,8 @@ public class GraphHopper {
                     .setDir(directory)
                     .set3D(hasElevation())
                     .withTurnCosts(encodingManager.needsTurnCostsSupport())
+                    .withAdjacencyArray(adjacencyArray)
+                    .withCompactGeometry(compactGeometry)
                     .setSegmentSize(defaultSegmentSize)
                     .build();
             checkProfilesConsistency();
@@ -1278,6 +1548,8 @@ public class GraphHopper {
         calcChecksums();
         initLocationIndex();
         importPublicTransit();
+        initLiveSpeedOverlay();
+        loadOrPrecomputeWeights();
 
         if (closeEarly) {
             boolean includesCustomProfiles = profilesByName.values().stream().anyMatch(p -> CustomWeighting.NAME.equals(p.getWeighting()));
@@ -1296,11 +1568,48 @@ public class GraphHopper {
 
         if (chPreparationHandler.isEnabled())
             loadOrPrepareCH(closeEarly);
+
+        if (chPreparationHandler.isCustomizable())
+            loadOrPrepareCustomizableCH();
+
+        // the adjacency array is built when the graph is frozen, which did not happen yet if there are no preparations
+        if (adjacencyArray && !baseGraph.isFrozen() && allowWrites)
+            baseGraph.freeze();
     }
 
     protected void importPublicTransit() {
     }
 
+    private void initLiveSpeedOverlay() {
+        if (liveTrafficProfiles.isEmpty())
+            return;
+        for (String profile : liveTrafficProfiles)
+            if (!profilesByName.containsKey(profile))
+                throw new IllegalArgumentException("Live traffic profile '" + profile + "' does not exist. Available profiles: " + profilesByName.keySet());
+        liveSpeedOverlay = new LiveSpeedOverlay(2 * baseGraph.getEdges());
+    }
+
+    private void loadOrPrecomputeWeights() {
+        for (String profileName : precomputedWeightsProfiles) {
+            Profile profile = profilesByName.get(profileName);
+            if (profile == null)
+                throw new IllegalArgumentException("Precomputed weights profile '" + profileName + "' does not exist. Available profiles: " + profilesByName.keySet());
+            PrecomputedWeights weights = new PrecomputedWeights(baseGraph.getDirectory(), profileName);
+            if (weights.loadExisting()) {
+                if (weights.getEdges() != baseGraph.getEdges())
+                    throw new IllegalStateException("Precomputed weights of profile '" + profileName + "' were calculated for "
+                            + weights.getEdges() + " edges, but the graph has " + baseGraph.getEdges() + " edges");
+            } else {
+                ensureWriteAccess();
+                StopWatch sw = StopWatch.started();
+                weights.calc(baseGraph.getBaseGraph(), createWeighting(profile, new PMap()));
+                weights.flush();
+                logger.info("Precomputed weights for profile '" + profileName + "', took: " + sw.stop().getSeconds() + "s, " + getMemInfo());
+            }
+            precomputedWeights.put(profileName, weights);
+        }
+    }
+
     void interpolateBridgesTunnelsAndFerries() {
         if (encodingManager.hasEncodedValue(RoadEnvironment.KEY)) {
             EnumEncodedValue<RoadEnvironment> roadEnvEnc = encodingManager.getEnumEncodedValue(RoadEnvironment.KEY, RoadEnvironment.class);
@@ -1334,6 +1643,28 @@ public class GraphHopper {
         return createRouter().route(request);
     }
 
+    /**
+     * Routes many independent requests in parallel, see {@link Router#routeBatch(List)}
+     */
+    public List<GHResponse> routeBatch(List<GHRequest> requests) {
+        return createRouter().routeBatch(requests);
+    }
+
+    /**
+     * Routes many independent requests in parallel and passes the responses to the consumer in completion order, see
+     * {@link Router#routeBatch(List, ObjIntConsumer)}
+     */
+    public void routeBatch(List<GHRequest> requests, ObjIntConsumer<GHResponse> consumer) {
+        createRouter().routeBatch(requests, consumer);
+    }
+
+    /**
+     * Calculates a many-to-many matrix, see {@link Router#matrix(GHMatrixRequest)}
+     */
+    public GHMatrixResponse matrix(GHMatrixRequest request) {
+        return createRouter().matrix(request);
+    }
+
     private Router createRouter() {
         if (baseGraph == null || !fullyLoaded)
             throw new IllegalStateException("Do a successful call to load or importOrLoad before routing");
@@ -1343,14 +1674,57 @@ public class GraphHopper {
             throw new IllegalStateException("Location index not initialized");
 
         return doCreateRouter(baseGraph, encodingManager, locationIndex, profilesByName, pathBuilderFactory,
-                trMap, routerConfig, createWeightingFactory(), chGraphs, landmarks);
+                trMap, routerConfig, createRouterWeightingFactory(), chGraphs, landmarks).setBatchExecutor(getBatchExecutor());
+    }
+
+    /**
+     * @return the executor that is shared by all batch requests, e.g. {@link #routeBatch(List)}. It is created on the
+     * first call with {@link RouterConfig#getBatchThreads()} threads, so concurrent batches do not use more threads
+     * than that, and it is shut down in {@link #close()}.
+     */
+    public synchronized ExecutorService getBatchExecutor() {
+        if (batchExecutor == null) {
+            AtomicInteger threadCount = new AtomicInteger();
+            batchExecutor = Executors.newFixedThreadPool(routerConfig.getBatchThreads(), runnable -> {
+                Thread thread = new Thread(runnable, "gh-batch-" + threadCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return batchExecutor;
+    }
+
+    private WeightingFactory createRouterWeightingFactory() {
+        WeightingFactory weightingFactory = createPrecomputedWeightingFactory(createWeightingFactory());
+        if (liveSpeedOverlay == null)
+            return weightingFactory;
+        return (profile, hints, disableTurnCosts) -> {
+            Weighting weighting = weightingFactory.createWeighting(profile, hints, disableTurnCosts);
+            // every request uses the snapshot that is current when its weighting is created
+            return liveTrafficProfiles.contains(profile.getName()) && hints.getBool(Routing.LIVE_TRAFFIC, true)
+                    ? new LiveTrafficWeighting(weighting, liveSpeedOverlay.getSnapshot()) : weighting;
+        };
+    }
+
+    private WeightingFactory createPrecomputedWeightingFactory(WeightingFactory weightingFactory) {
+        if (precomputedWeights.isEmpty())
+            return weightingFactory;
+        return (profile, hints, disableTurnCosts) -> {
+            Weighting weighting = weightingFactory.createWeighting(profile, hints, disableTurnCosts);
+            PrecomputedWeights weights = precomputedWeights.get(profile.getName());
+            // the weights were calculated for the custom model of the profile, so they cannot be used if a request
+            // changes it
+            if (weights == null || hints.getObject(CustomModel.KEY, null) != null || hints.has("cm_version"))
+                return weighting;
+            return new PrecomputedWeighting(weighting, weights);
+        };
     }
 
     protected Router doCreateRouter(BaseGraph baseGraph, EncodingManager encodingManager, LocationIndex locationIndex, Map<String, Profile> profilesByName,
                                     PathDetailsBuilderFactory pathBuilderFactory, TranslationMap trMap, RouterConfig routerConfig,
                                     WeightingFactory weightingFactory, Map<String, RoutingCHGraph> chGraphs, Map<String, LandmarkStorage> landmarks) {
         return new Router(baseGraph, encodingManager, locationIndex, profilesByName, pathBuilderFactory,
-                trMap, routerConfig, weightingFactory, chGraphs, landmarks
+                trMap, routerConfig, weightingFactory, chGraphs, landmarks, customizableCH
         );
     }
 
@@ -1459,6 +1833,14 @@ public class GraphHopper {
         return chPreparationHandler.prepare(baseGraph, properties, configsToPrepare, closeEarly);
     }
 
+    protected void loadOrPrepareCustomizableCH() {
+        if (!baseGraph.isFrozen()) {
+            ensureWriteAccess();
+            baseGraph.freeze();
+        }
+        customizableCH = chPreparationHandler.loadOrPrepareCustomizable(baseGraph.getBaseGraph(), properties);
+    }
+
     /**
      * For landmarks it is required to always call this method: either it creates the landmark data or it loads it.
      */
@@ -1535,12 +1917,19 @@ public class GraphHopper {
      * remove the files created in graphhopperLocation you have to call clean().
      */
     public void close() {
+        synchronized (this) {
+            if (batchExecutor != null)
+                batchExecutor.shutdown();
+        }
         if (baseGraph != null)
             baseGraph.close();
         if (properties != null)
             properties.close();
 
         chGraphs.values().forEach(RoutingCHGraph::close);
+        precomputedWeights.values().forEach(PrecomputedWeights::close);
+        if (customizableCH != null)
+            customizableCH.clearCache();
         landmarks.values().forEach(LandmarkStorage::close);
 
         if (locationIndex != null)
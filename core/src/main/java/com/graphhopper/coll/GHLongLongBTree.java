@@ -17,6 +17,7 @@
  */
 package com.graphhopper.coll;
 
+import com.carrotsearch.hppc.procedures.LongLongProcedure;
 import com.graphhopper.util.Helper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -137,7 +138,14 @@ public class GHLongLongBTree implements LongLongMap {
      */
     @Override
     public int getMemoryUsage() {
-        return Math.round(root.getCapacity() / Helper.MB);
+        return Math.round(getCapacity() / Helper.MB);
+    }
+
+    /**
+     * @return memory usage in bytes
+     */
+    long getCapacity() {
+        return root.getCapacity();
     }
 
     @Override
@@ -166,6 +174,16 @@ public class GHLongLongBTree implements LongLongMap {
         }
     }
 
+    /**
+     * Calls the given procedure for all entries in increasing order of their keys and removes them. Every subtree is
+     * released as soon as it was visited, so the entries can be moved into another map without keeping both maps
+     * completely in memory at the same time. Afterwards this tree is empty.
+     */
+    public void drain(LongLongProcedure procedure) {
+        root.drain(procedure);
+        clear();
+    }
+
     @Override
     public String toString() {
         return "Height:" + height() + ", entries:" + getEntries();
@@ -372,6 +390,21 @@ public class GHLongLongBTree implements LongLongMap {
             }
         }
 
+        void drain(LongLongProcedure procedure) {
+            for (int i = 0; i < entrySize; i++) {
+                drainChild(i, procedure);
+                procedure.apply(keys[i], toLong(values, i * bytesPerValue));
+            }
+            drainChild(entrySize, procedure);
+        }
+
+        private void drainChild(int index, LongLongProcedure procedure) {
+            if (isLeaf || children[index] == null)
+                return;
+            children[index].drain(procedure);
+            children[index] = null;
+        }
+
         long get(long key) {
             int index = binarySearch(keys, 0, entrySize, key);
             if (index >= 0) {
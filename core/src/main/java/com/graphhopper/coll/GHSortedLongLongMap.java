@@ -0,0 +1,261 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.coll;
+
+import com.graphhopper.storage.DataAccess;
+import com.graphhopper.storage.Directory;
+import com.graphhopper.util.Helper;
+
+/**
+ * A compact LongLongMap for keys that are mostly added in increasing order, like the OSM node IDs of a sorted OSM
+ * file. The keys are stored as append-only blocks of varint encoded deltas and a sparse index holds the first key of
+ * every block. A lookup does a binary search over the block index and then decodes at most one block. The values have
+ * a fixed size of 4 to 8 bytes, so they can be updated in place. All data is stored in DataAccess objects created from
+ * the given Directory, i.e. the map can live outside of the heap or in memory mapped files.
+ * <p>
+ * A new key that is smaller than the biggest key added so far is stored in a small GHLongLongBTree instead. This keeps
+ * the map correct for unsorted input, but it is only compact if this happens rarely.
+ */
+public class GHSortedLongLongMap implements LongLongMap {
+    static final int BLOCK_SIZE = 64;
+    // per block we store the first key and the pointer into the key deltas, both as two ints
+    private static final int INDEX_ENTRY_BYTES = 16;
+    private final Directory dir;
+    private final String name;
+    private final int bytesPerValue;
+    private final long maxValue;
+    private final long emptyValue;
+    private DataAccess index;
+    private DataAccess keyDeltas;
+    private DataAccess values;
+    private DataAccess highValues;
+    private GHLongLongBTree unsortedEntries;
+    private long size;
+    private long lastKey;
+    private long keyPointer;
+
+    /**
+     * @param name the prefix for the names of the DataAccess objects that are created in the given directory
+     */
+    public GHSortedLongLongMap(Directory dir, String name, int bytesPerValue, long emptyValue) {
+        if (bytesPerValue < 4 || bytesPerValue > 8)
+            throw new IllegalArgumentException("Values must have 4 to 8 bytes but requested was " + bytesPerValue);
+        this.dir = dir;
+        this.name = name;
+        this.bytesPerValue = bytesPerValue;
+        this.emptyValue = emptyValue;
+        // reserve one bit for negative values
+        this.maxValue = (1L << (bytesPerValue * 8 - 1)) - 1;
+        clear();
+    }
+
+    @Override
+    public long put(long key, long value) {
+        if (value > maxValue)
+            throw new IllegalArgumentException("Value " + value + " exceeded max value: " + maxValue
+                    + ". Increase bytesPerValue (" + bytesPerValue + ")");
+        if (value == emptyValue)
+            throw new IllegalArgumentException("Value cannot be the 'empty value' " + emptyValue);
+
+        if (size == 0 || key > lastKey) {
+            append(key, value);
+            return emptyValue;
+        }
+
+        long entry = findEntry(key);
+        if (entry >= 0) {
+            long oldValue = getValue(entry);
+            setValue(entry, value);
+            return oldValue;
+        }
+
+        if (unsortedEntries == null)
+            unsortedEntries = new GHLongLongBTree(200, bytesPerValue, emptyValue);
+        return unsortedEntries.put(key, value);
+    }
+
+    private void append(long key, long value) {
+        if (index == null) {
+            // the storage is created lazily, so that nothing is left in the directory after clear was called
+            index = dir.create(name + "_index").create(100);
+            keyDeltas = dir.create(name + "_keys").create(100);
+            values = dir.create(name + "_values").create(100);
+            if (bytesPerValue > 4)
+                highValues = dir.create(name + "_high_values").create(100);
+        }
+        if (size % BLOCK_SIZE == 0) {
+            long pointer = size / BLOCK_SIZE * INDEX_ENTRY_BYTES;
+            index.ensureCapacity(pointer + INDEX_ENTRY_BYTES);
+            setLong(index, pointer, key);
+            setLong(index, pointer + 8, keyPointer);
+        } else {
+            // the delta is positive, but it can exceed Long.MAX_VALUE. it is then written as unsigned value and the
+            // overflow is reverted when adding it to the previous key again
+            long delta = key - lastKey;
+            keyDeltas.ensureCapacity(keyPointer + 10);
+            while ((delta & ~0x7FL) != 0) {
+                keyDeltas.setByte(keyPointer++, (byte) ((delta & 0x7F) | 0x80));
+                delta >>>= 7;
+            }
+            keyDeltas.setByte(keyPointer++, (byte) delta);
+        }
+        values.ensureCapacity((size + 1) * 4);
+        if (highValues != null)
+            highValues.ensureCapacity((size + 1) * (bytesPerValue - 4));
+        setValue(size, value);
+        lastKey = key;
+        size++;
+    }
+
+    /**
+     * @return the position of the given key in the sorted blocks or -1 if it is not stored there
+     */
+    private long findEntry(long key) {
+        if (size == 0 || key > lastKey || key < getLong(index, 0))
+            return -1;
+
+        // find the last block with a first key smaller than or equal to the given key
+        long low = 0, high = (size + BLOCK_SIZE - 1) / BLOCK_SIZE;
+        while (high - low > 1) {
+            long mid = (low + high) >>> 1;
+            if (getLong(index, mid * INDEX_ENTRY_BYTES) <= key)
+                low = mid;
+            else
+                high = mid;
+        }
+
+        long entry = low * BLOCK_SIZE;
+        long end = Math.min(size, entry + BLOCK_SIZE);
+        long currKey = getLong(index, low * INDEX_ENTRY_BYTES);
+        long pointer = getLong(index, low * INDEX_ENTRY_BYTES + 8);
+        while (currKey < key && ++entry < end) {
+            long delta = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = keyDeltas.getByte(pointer++);
+                delta |= (long) (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            currKey += delta;
+        }
+        return currKey == key ? entry : -1;
+    }
+
+    @Override
+    public long get(long key) {
+        long entry = findEntry(key);
+        if (entry >= 0)
+            return getValue(entry);
+        return unsortedEntries == null ? emptyValue : unsortedEntries.get(key);
+    }
+
+    private long getValue(long entry) {
+        long value = values.getInt(entry * 4) & 0xFFFFFFFFL;
+        if (highValues == null)
+            return (int) value;
+        int highBytes = bytesPerValue - 4;
+        long pointer = entry * highBytes;
+        for (int i = 0; i < highBytes; i++) {
+            value |= (highValues.getByte(pointer + i) & 0xFFL) << (32 + 8 * i);
+        }
+        // restore the sign of negative values
+        int unusedBits = 64 - bytesPerValue * 8;
+        return value << unusedBits >> unusedBits;
+    }
+
+    private void setValue(long entry, long value) {
+        values.setInt(entry * 4, (int) value);
+        if (highValues == null)
+            return;
+        int highBytes = bytesPerValue - 4;
+        long pointer = entry * highBytes;
+        for (int i = 0; i < highBytes; i++) {
+            highValues.setByte(pointer + i, (byte) (value >> (32 + 8 * i)));
+        }
+    }
+
+    private static void setLong(DataAccess da, long pointer, long value) {
+        da.setInt(pointer, (int) value);
+        da.setInt(pointer + 4, (int) (value >>> 32));
+    }
+
+    private static long getLong(DataAccess da, long pointer) {
+        return (da.getInt(pointer) & 0xFFFFFFFFL) | ((long) da.getInt(pointer + 4) << 32);
+    }
+
+    @Override
+    public long getSize() {
+        return size + (unsortedEntries == null ? 0 : unsortedEntries.getSize());
+    }
+
+    @Override
+    public long getMaxValue() {
+        return maxValue;
+    }
+
+    @Override
+    public void optimize() {
+        if (unsortedEntries != null)
+            unsortedEntries.optimize();
+    }
+
+    /**
+     * @return memory usage in MB
+     */
+    @Override
+    public int getMemoryUsage() {
+        return Math.round(getCapacity() / Helper.MB);
+    }
+
+    /**
+     * @return memory usage in bytes
+     */
+    long getCapacity() {
+        long bytes = 0;
+        if (index != null)
+            bytes = index.getCapacity() + keyDeltas.getCapacity() + values.getCapacity()
+                    + (highValues == null ? 0 : highValues.getCapacity());
+        return bytes + (unsortedEntries == null ? 0 : unsortedEntries.getCapacity());
+    }
+
+    /**
+     * Removes all entries and releases the underlying storage.
+     */
+    @Override
+    public void clear() {
+        if (index != null) {
+            dir.remove(index.getName());
+            dir.remove(keyDeltas.getName());
+            dir.remove(values.getName());
+            if (highValues != null)
+                dir.remove(highValues.getName());
+        }
+        index = keyDeltas = values = highValues = null;
+        unsortedEntries = null;
+        size = 0;
+        lastKey = Long.MIN_VALUE;
+        keyPointer = 0;
+    }
+
+    @Override
+    public String toString() {
+        return "entries:" + size + ", blocks:" + (size + BLOCK_SIZE - 1) / BLOCK_SIZE + ", key bytes:" + keyPointer
+                + ", unsorted entries:" + (unsortedEntries == null ? 0 : unsortedEntries.getSize());
+    }
+}
@@ -0,0 +1,146 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.isochrone.algorithm;
+
+import com.carrotsearch.hppc.IntIntHashMap;
+import com.graphhopper.coll.MinHeapWithUpdate;
+
+import java.util.Arrays;
+
+/**
+ * Stores the labels of a {@link ShortestPathTree} in primitive arrays (one array per label property) instead of one
+ * object per label. A label is identified by its index, the index of the start label is always 0. The arrays, the
+ * traversal id map and the heaps are kept between searches, so a store that is reused for many searches, e.g. via
+ * {@link #forCurrentThread()}, does not allocate anything once it has grown to the size of the typical search. The
+ * labels stay valid until the store is used for the next search.
+ * <p>
+ * This class is not thread-safe.
+ */
+public class SPTLabelStore {
+    private static final ThreadLocal<SPTLabelStore> THREAD_LOCAL = ThreadLocal.withInitial(SPTLabelStore::new);
+    private static final int DEFAULT_CAPACITY = 1000;
+
+    private final int maxRetainedCapacity;
+    int[] nodes;
+    int[] edges;
+    int[] parents;
+    double[] weights;
+    double[] distances;
+    long[] times;
+    int size;
+    IntIntHashMap labelsByTraversalId;
+    // both heaps use the label index as id, labels that are not contained in the weight heap are settled. settled
+    // labels are not removed from the z heap immediately
+    MinHeapWithUpdate weightHeap;
+    MinHeapWithUpdate zHeap;
+    ShortestPathTree owner;
+
+    public SPTLabelStore() {
+        // 1M labels take roughly 80MB
+        this(DEFAULT_CAPACITY, 1 << 20);
+    }
+
+    /**
+     * @param maxRetainedCapacity the store grows to any size that is needed during a search, but when it is cleared
+     *                            for the next search it only keeps its arrays if they are not larger than this
+     */
+    public SPTLabelStore(int initialCapacity, int maxRetainedCapacity) {
+        if (initialCapacity < 1)
+            throw new IllegalArgumentException("initialCapacity must be positive: " + initialCapacity);
+        this.maxRetainedCapacity = Math.max(initialCapacity, maxRetainedCapacity);
+        allocate(initialCapacity);
+    }
+
+    /**
+     * @return the label store of the current thread. Do not use it for more than one {@link ShortestPathTree} at the
+     * same time.
+     */
+    public static SPTLabelStore forCurrentThread() {
+        return THREAD_LOCAL.get();
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int getCapacity() {
+        return nodes.length;
+    }
+
+    void clear(ShortestPathTree newOwner) {
+        if (getCapacity() > maxRetainedCapacity) {
+            allocate(DEFAULT_CAPACITY);
+        } else {
+            size = 0;
+            labelsByTraversalId.clear();
+            weightHeap.clear();
+            zHeap.clear();
+        }
+        owner = newOwner;
+    }
+
+    int add(int node, int edge, double weight, long time, double distance, int parent) {
+        if (size == nodes.length)
+            grow();
+        int label = size++;
+        nodes[label] = node;
+        edges[label] = edge;
+        weights[label] = weight;
+        times[label] = time;
+        distances[label] = distance;
+        parents[label] = parent;
+        return label;
+    }
+
+    private void allocate(int capacity) {
+        nodes = new int[capacity];
+        edges = new int[capacity];
+        parents = new int[capacity];
+        weights = new double[capacity];
+        distances = new double[capacity];
+        times = new long[capacity];
+        size = 0;
+        labelsByTraversalId = new IntIntHashMap(capacity);
+        weightHeap = new MinHeapWithUpdate(capacity);
+        zHeap = new MinHeapWithUpdate(capacity);
+    }
+
+    private void grow() {
+        int capacity = (int) Math.min(Integer.MAX_VALUE - 8, nodes.length * 2L);
+        if (capacity == nodes.length)
+            throw new IllegalStateException("Too many labels: " + size);
+        nodes = Arrays.copyOf(nodes, capacity);
+        edges = Arrays.copyOf(edges, capacity);
+        parents = Arrays.copyOf(parents, capacity);
+        weights = Arrays.copyOf(weights, capacity);
+        distances = Arrays.copyOf(distances, capacity);
+        times = Arrays.copyOf(times, capacity);
+        // the heaps cannot be resized, so we copy their elements into bigger ones
+        weightHeap = copy(weightHeap, capacity);
+        zHeap = copy(zHeap, capacity);
+    }
+
+    private MinHeapWithUpdate copy(MinHeapWithUpdate heap, int capacity) {
+        MinHeapWithUpdate result = new MinHeapWithUpdate(capacity);
+        while (!heap.isEmpty()) {
+            float value = heap.peekValue();
+            result.push(heap.poll(), value);
+        }
+        return result;
+    }
+}
@@ -17,9 +17,9 @@
  */
 package com.graphhopper.isochrone.algorithm;
 
+import com.carrotsearch.hppc.IntArrayList;
 import com.carrotsearch.hppc.IntObjectHashMap;
-import com.carrotsearch.hppc.cursors.ObjectCursor;
-import com.graphhopper.coll.GHIntObjectHashMap;
+import com.graphhopper.coll.MinHeapWithUpdate;
 import com.graphhopper.routing.AbstractRoutingAlgorithm;
 import com.graphhopper.routing.Path;
 import com.graphhopper.routing.util.TraversalMode;
@@ -30,22 +30,21 @@ import com.graphhopper.util.GHUtility;
 
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.PriorityQueue;
 import java.util.function.Consumer;
+import java.util.function.IntConsumer;
 
 import static com.graphhopper.isochrone.algorithm.ShortestPathTree.ExploreType.*;
-import static java.util.Comparator.comparingDouble;
-import static java.util.Comparator.comparingLong;
 
 /**
  * Computes a shortest path tree by a given weighting. Terminates when all shortest paths up to
  * a given travel time, distance, or weight have been explored.
  * <p>
  * IMPLEMENTATION NOTE:
- * util.PriorityQueue doesn't support efficient removes. We work around this by giving the labels
- * a deleted flag, not remove()ing them, and popping deleted elements off both queues.
- * Note to self/others: If you think this optimization is not needed, please test it with a scenario
- * where updates actually occur a lot, such as using finite, non-zero u-turn costs.
+ * The labels are not objects but indices into the primitive arrays of a {@link SPTLabelStore}, and there is only
+ * one label per traversal id. When a shorter path to a label is found its values are updated in place, which is
+ * possible because the queues are {@link MinHeapWithUpdate}s. Use {@link #searchLabels} and the label getters
+ * to avoid allocating any objects during the search, the {@link IsoLabel}s of {@link #search} and
+ * {@link #getIsochroneEdges} are only created for compatibility.
  *
  * @author Peter Karich
  * @author Michael Zilske
@@ -65,7 +64,6 @@ public class ShortestPathTree extends AbstractRoutingAlgorithm {
             this.parent = parent;
         }
 
-        public boolean deleted = false;
         public int node;
         public int edge;
         public double weight;
@@ -85,19 +83,23 @@ public class ShortestPathTree extends AbstractRoutingAlgorithm {
         }
     }
 
-    private final IntObjectHashMap<IsoLabel> fromMap;
-    private final PriorityQueue<IsoLabel> queueByWeighting; // a.k.a. the Dijkstra queue
-    private PriorityQueue<IsoLabel> queueByZ; // so we know when we are finished
+    private final SPTLabelStore labels;
     private int visitedNodes;
     private double limit = -1;
     private ExploreType exploreType = TIME;
     private final boolean reverseFlow;
 
     public ShortestPathTree(Graph g, Weighting weighting, boolean reverseFlow, TraversalMode traversalMode) {
+        this(g, weighting, reverseFlow, traversalMode, new SPTLabelStore());
+    }
+
+    /**
+     * @param labels the store for the labels of this tree, e.g. {@link SPTLabelStore#forCurrentThread()}. The labels
+     *               of this tree are only accessible until the store is used by another tree.
+     */
+    public ShortestPathTree(Graph g, Weighting weighting, boolean reverseFlow, TraversalMode traversalMode, SPTLabelStore labels) {
         super(g, weighting, traversalMode);
-        queueByWeighting = new PriorityQueue<>(1000, comparingDouble(l -> l.weight));
-        queueByZ = new PriorityQueue<>(1000);
-        fromMap = new GHIntObjectHashMap<>(1000);
+        this.labels = labels;
         this.reverseFlow = reverseFlow;
     }
 
@@ -112,7 +114,6 @@ public class ShortestPathTree extends AbstractRoutingAlgorithm {
     public void setTimeLimit(double limit) {
         exploreType = TIME;
         this.limit = limit;
-        this.queueByZ = new PriorityQueue<>(1000, comparingLong(l -> l.time));
     }
 
     /**
@@ -121,93 +122,195 @@ public class ShortestPathTree extends AbstractRoutingAlgorithm {
     public void setDistanceLimit(double limit) {
         exploreType = DISTANCE;
         this.limit = limit;
-        this.queueByZ = new PriorityQueue<>(1000, comparingDouble(l -> l.distance));
     }
 
     public void setWeightLimit(double limit) {
         exploreType = WEIGHT;
         this.limit = limit;
-        this.queueByZ = new PriorityQueue<>(1000, comparingDouble(l -> l.weight));
     }
 
+    /**
+     * Like {@link #searchLabels}, but passes each label as {@link IsoLabel} object.
+     */
     public void search(int from, final Consumer<IsoLabel> consumer) {
+        IntObjectHashMap<IsoLabel> isoLabels = new IntObjectHashMap<>();
+        searchLabels(from, label -> consumer.accept(toIsoLabel(label, isoLabels)));
+    }
+
+    /**
+     * Runs the search and passes the index of every settled label that is within the limit to the given consumer,
+     * ordered by weight. Use the label getters like {@link #getNode} to access the values of the label.
+     */
+    public void searchLabels(int from, final IntConsumer consumer) {
         checkAlreadyRun();
-        IsoLabel currentLabel = new IsoLabel(from, -1, 0, 0, 0, null);
-        queueByWeighting.add(currentLabel);
-        queueByZ.add(currentLabel);
+        labels.clear(this);
+        MinHeapWithUpdate weightHeap = labels.weightHeap;
+        int currentLabel = labels.add(from, EdgeIterator.NO_EDGE, 0, 0, 0, -1);
+        push(currentLabel);
         if (traversalMode == TraversalMode.NODE_BASED) {
-            fromMap.put(from, currentLabel);
+            labels.labelsByTraversalId.put(from, currentLabel);
         }
         while (!finished()) {
-            currentLabel = queueByWeighting.poll();
-            if (currentLabel.deleted)
-                continue;
+            currentLabel = weightHeap.poll();
             if (getExploreValue(currentLabel) <= limit) {
                 consumer.accept(currentLabel);
             }
-            currentLabel.deleted = true;
             visitedNodes++;
 
-            EdgeIterator iter = edgeExplorer.setBaseNode(currentLabel.node);
+            int currentEdge = labels.edges[currentLabel];
+            double currentWeight = labels.weights[currentLabel];
+            long currentTime = labels.times[currentLabel];
+            double currentDistance = labels.distances[currentLabel];
+            EdgeIterator iter = edgeExplorer.setBaseNode(labels.nodes[currentLabel]);
             while (iter.next()) {
-                if (!accept(iter, currentLabel.edge)) {
+                if (!accept(iter, currentEdge)) {
                     continue;
                 }
 
-                double nextWeight = GHUtility.calcWeightWithTurnWeight(weighting, iter, reverseFlow, currentLabel.edge) + currentLabel.weight;
+                double nextWeight = GHUtility.calcWeightWithTurnWeight(weighting, iter, reverseFlow, currentEdge) + currentWeight;
                 if (Double.isInfinite(nextWeight))
                     continue;
 
-                double nextDistance = iter.getDistance() + currentLabel.distance;
-                long nextTime = GHUtility.calcMillisWithTurnMillis(weighting, iter, reverseFlow, currentLabel.edge) + currentLabel.time;
                 int nextTraversalId = traversalMode.createTraversalId(iter, reverseFlow);
-                IsoLabel nextLabel = fromMap.get(nextTraversalId);
-                if (nextLabel == null) {
-                    nextLabel = new IsoLabel(iter.getAdjNode(), iter.getEdge(), nextWeight, nextTime, nextDistance, currentLabel);
-                    fromMap.put(nextTraversalId, nextLabel);
-                    queueByWeighting.add(nextLabel);
-                    queueByZ.add(nextLabel);
-                } else if (nextLabel.weight > nextWeight) {
-                    nextLabel.deleted = true;
-                    nextLabel = new IsoLabel(iter.getAdjNode(), iter.getEdge(), nextWeight, nextTime, nextDistance, currentLabel);
-                    fromMap.put(nextTraversalId, nextLabel);
-                    queueByWeighting.add(nextLabel);
-                    queueByZ.add(nextLabel);
+                int index = labels.labelsByTraversalId.indexOf(nextTraversalId);
+                if (labels.labelsByTraversalId.indexExists(index)) {
+                    int nextLabel = labels.labelsByTraversalId.indexGet(index);
+                    // settled labels cannot be improved anymore
+                    if (!weightHeap.contains(nextLabel) || labels.weights[nextLabel] <= nextWeight)
+                        continue;
+                    labels.edges[nextLabel] = iter.getEdge();
+                    labels.weights[nextLabel] = nextWeight;
+                    labels.times[nextLabel] = GHUtility.calcMillisWithTurnMillis(weighting, iter, reverseFlow, currentEdge) + currentTime;
+                    labels.distances[nextLabel] = iter.getDistance() + currentDistance;
+                    labels.parents[nextLabel] = currentLabel;
+                    weightHeap.update(nextLabel, (float) nextWeight);
+                    if (exploreType != WEIGHT)
+                        labels.zHeap.update(nextLabel, (float) getExploreValue(nextLabel));
+                } else {
+                    long nextTime = GHUtility.calcMillisWithTurnMillis(weighting, iter, reverseFlow, currentEdge) + currentTime;
+                    int nextLabel = labels.add(iter.getAdjNode(), iter.getEdge(), nextWeight, nextTime, iter.getDistance() + currentDistance, currentLabel);
+                    // the heaps might have been replaced when the store grew
+                    weightHeap = labels.weightHeap;
+                    labels.labelsByTraversalId.indexInsert(index, nextTraversalId, nextLabel);
+                    push(nextLabel);
                 }
             }
         }
     }
 
+    private void push(int label) {
+        labels.weightHeap.push(label, (float) labels.weights[label]);
+        if (exploreType != WEIGHT)
+            labels.zHeap.push(label, (float) getExploreValue(label));
+    }
+
+    /**
+     * @return the number of labels of the last search, including the labels that were found but not settled
+     */
+    public int getLabelCount() {
+        checkOwner();
+        return labels.size;
+    }
+
+    public int getNode(int label) {
+        checkOwner();
+        return labels.nodes[label];
+    }
+
+    /**
+     * @return the edge that leads to the node of the given label, or {@link EdgeIterator#NO_EDGE} for the start label
+     */
+    public int getEdge(int label) {
+        checkOwner();
+        return labels.edges[label];
+    }
+
+    public double getWeight(int label) {
+        checkOwner();
+        return labels.weights[label];
+    }
+
+    public long getTime(int label) {
+        checkOwner();
+        return labels.times[label];
+    }
+
+    public double getDistance(int label) {
+        checkOwner();
+        return labels.distances[label];
+    }
+
+    /**
+     * @return the label of the previous node on the shortest path, or -1 for the start label
+     */
+    public int getParent(int label) {
+        checkOwner();
+        return labels.parents[label];
+    }
+
+    /**
+     * @return the time, distance or weight of the given label, depending on the kind of limit that was set
+     */
+    public double getExploreValue(int label) {
+        if (exploreType == TIME)
+            return labels.times[label];
+        if (exploreType == WEIGHT)
+            return labels.weights[label];
+        return labels.distances[label];
+    }
+
     public Collection<IsoLabel> getIsochroneEdges() {
         // assert alreadyRun
         return getIsochroneEdges(limit);
     }
 
     public ArrayList<IsoLabel> getIsochroneEdges(double z) {
+        checkOwner();
         ArrayList<IsoLabel> result = new ArrayList<>();
-        for (ObjectCursor<IsoLabel> cursor : fromMap.values()) {
-            if (cursor.value.parent != null &&
-                    (getExploreValue(cursor.value) > z ^ getExploreValue(cursor.value.parent) > z)) {
-                result.add(cursor.value);
+        IntObjectHashMap<IsoLabel> isoLabels = new IntObjectHashMap<>();
+        for (int label = 0; label < labels.size; label++) {
+            int parent = labels.parents[label];
+            if (parent >= 0 && (getExploreValue(label) > z ^ getExploreValue(parent) > z)) {
+                result.add(toIsoLabel(label, isoLabels));
             }
         }
         return result;
     }
 
-    private double getExploreValue(IsoLabel label) {
-        if (exploreType == TIME)
-            return label.time;
-        if (exploreType == WEIGHT)
-            return label.weight;
-        return label.distance;
+    /**
+     * Creates the {@link IsoLabel} for the given label including the chain of its parents. Already created labels are
+     * taken from and new ones are added to the given map.
+     */
+    private IsoLabel toIsoLabel(int label, IntObjectHashMap<IsoLabel> isoLabels) {
+        IntArrayList missing = new IntArrayList();
+        IsoLabel parent = null;
+        for (int l = label; l >= 0; l = labels.parents[l]) {
+            parent = isoLabels.get(l);
+            if (parent != null)
+                break;
+            missing.add(l);
+        }
+        for (int i = missing.size() - 1; i >= 0; i--) {
+            int l = missing.get(i);
+            parent = new IsoLabel(labels.nodes[l], labels.edges[l], labels.weights[l], labels.times[l], labels.distances[l], parent);
+            isoLabels.put(l, parent);
+        }
+        return parent;
     }
 
     protected boolean finished() {
-        while (queueByZ.peek() != null && queueByZ.peek().deleted)
+        MinHeapWithUpdate queueByZ = exploreType == WEIGHT ? labels.weightHeap : labels.zHeap;
+        // settled labels are removed from the z-queue only here
+        while (!queueByZ.isEmpty() && !labels.weightHeap.contains(queueByZ.peekId()))
             queueByZ.poll();
-        if (queueByZ.peek() == null)
+        if (queueByZ.isEmpty())
             return true;
-        return getExploreValue(queueByZ.peek()) >= limit;
+        return getExploreValue(queueByZ.peekId()) >= limit;
+    }
+
+    private void checkOwner() {
+        if (labels.owner != this)
+            throw new IllegalStateException("The labels of this tree are not available, either the search did not run yet or the label store was used by another search");
     }
 
     @Override
@@ -18,10 +18,12 @@
 
 package com.graphhopper.isochrone.algorithm;
 
+import com.graphhopper.routing.PHAST;
 import com.graphhopper.routing.querygraph.QueryGraph;
 import com.graphhopper.storage.index.Snap;
 
 import java.util.Collection;
+import java.util.function.IntToDoubleFunction;
 import java.util.function.ToDoubleFunction;
 
 public interface Triangulator {
@@ -40,4 +42,16 @@ public interface Triangulator {
 
     Result triangulate(Snap snap, QueryGraph queryGraph, ShortestPathTree shortestPathTree, ToDoubleFunction<ShortestPathTree.IsoLabel> fz, double tolerance);
 
+    /**
+     * Like the method above, but uses the time, distance or weight that limits the given tree as z-value, which does
+     * not require creating a {@link ShortestPathTree.IsoLabel} for every label.
+     */
+    Result triangulate(Snap snap, QueryGraph queryGraph, ShortestPathTree shortestPathTree, double tolerance);
+
+    /**
+     * Triangulates the nodes of the given {@link PHAST} result for which fz (called with the index of the result
+     * arrays) is not larger than the given limit.
+     */
+    Result triangulate(QueryGraph queryGraph, PHAST.Result tree, IntToDoubleFunction fz, double limit, double tolerance);
+
 }
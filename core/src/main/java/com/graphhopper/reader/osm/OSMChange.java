@@ -0,0 +1,124 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.reader.osm;
+
+import com.carrotsearch.hppc.LongHashSet;
+import com.graphhopper.reader.ReaderWay;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.*;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * The content of an OSM change file (.osc or .osc.gz) as published by the OSM replication service, see
+ * https://wiki.openstreetmap.org/wiki/OsmChange. Only the latest version of every changed way is kept. Nodes and
+ * relations are only counted.
+ */
+public class OSMChange {
+    private final Map<Long, ReaderWay> ways = new LinkedHashMap<>();
+    private final LongHashSet deletedWays = new LongHashSet();
+    private int changedNodes;
+    private int changedRelations;
+
+    public static OSMChange read(File file) throws IOException {
+        try (InputStream is = decode(file)) {
+            XMLStreamReader parser = XMLInputFactory.newInstance().createXMLStreamReader(is, "UTF-8");
+            try {
+                return read(parser);
+            } finally {
+                parser.close();
+            }
+        } catch (XMLStreamException ex) {
+            throw new IllegalArgumentException("Cannot read OSM change file " + file, ex);
+        }
+    }
+
+    private static InputStream decode(File file) throws IOException {
+        InputStream is = new BufferedInputStream(new FileInputStream(file), 50_000);
+        if (file.getName().endsWith(".gz"))
+            return new GZIPInputStream(is, 50_000);
+        return is;
+    }
+
+    private static OSMChange read(XMLStreamReader parser) throws XMLStreamException {
+        if (parser.nextTag() != XMLStreamConstants.START_ELEMENT || !parser.getLocalName().equals("osmChange"))
+            throw new IllegalArgumentException("File is not a valid OSM change stream");
+
+        OSMChange change = new OSMChange();
+        boolean delete = false;
+        while (parser.hasNext()) {
+            if (parser.next() != XMLStreamConstants.START_ELEMENT)
+                continue;
+            switch (parser.getLocalName()) {
+                case "create":
+                case "modify":
+                    delete = false;
+                    break;
+                case "delete":
+                    delete = true;
+                    break;
+                case "node":
+                    change.changedNodes++;
+                    break;
+                case "way":
+                    ReaderWay way = OSMXMLHelper.createWay(Long.parseLong(parser.getAttributeValue(null, "id")), parser);
+                    if (delete) {
+                        change.ways.remove(way.getId());
+                        change.deletedWays.add(way.getId());
+                    } else {
+                        change.deletedWays.remove(way.getId());
+                        change.ways.put(way.getId(), way);
+                    }
+                    break;
+                case "relation":
+                    change.changedRelations++;
+                    break;
+            }
+        }
+        return change;
+    }
+
+    /**
+     * @return the created and modified ways
+     */
+    public Collection<ReaderWay> getWays() {
+        return ways.values();
+    }
+
+    public boolean containsWay(long osmWayId) {
+        return ways.containsKey(osmWayId) || deletedWays.contains(osmWayId);
+    }
+
+    public LongHashSet getDeletedWays() {
+        return deletedWays;
+    }
+
+    public int getChangedNodes() {
+        return changedNodes;
+    }
+
+    public int getChangedRelations() {
+        return changedRelations;
+    }
+}
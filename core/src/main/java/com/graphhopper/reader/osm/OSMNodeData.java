@@ -21,6 +21,7 @@ package com.graphhopper.reader.osm;
 import com.carrotsearch.hppc.LongScatterSet;
 import com.carrotsearch.hppc.LongSet;
 import com.graphhopper.coll.GHLongLongBTree;
+import com.graphhopper.coll.GHSortedLongLongMap;
 import com.graphhopper.coll.LongLongMap;
 import com.graphhopper.reader.ReaderNode;
 import com.graphhopper.search.KVStorage;
@@ -60,7 +61,7 @@ class OSMNodeData {
     static final long CONNECTION_NODE = 2;
 
     // this map stores our internal node id for each OSM node
-    private final LongLongMap idsByOsmNodeIds;
+    private LongLongMap idsByOsmNodeIds;
 
     // here we store node coordinates, separated for pillar and tower nodes
     private final PillarInfo pillarNodes;
@@ -79,7 +80,10 @@ class OSMNodeData {
     // we use negative ids to create artificial OSM node ids
     private long nextArtificialOSMNodeId = -Long.MAX_VALUE;
 
+    private final Directory directory;
+
     public OSMNodeData(PointAccess nodeAccess, Directory directory) {
+        this.directory = directory;
         // We use a b-tree that can store as many entries as there are longs. A tree is also more
         // memory efficient, because there is no waste for empty entries, and it also avoids
         // allocating big arrays when growing the size.
@@ -87,11 +91,33 @@ class OSMNodeData {
         towerNodes = nodeAccess;
         pillarNodes = new PillarInfo(towerNodes.is3D(), directory);
 
-        nodeTagIndicesByOsmNodeIds = new GHLongLongBTree(200, 4, -1);
+        // the node tags are added while reading the OSM nodes, i.e. usually in increasing order of the OSM node IDs
+        nodeTagIndicesByOsmNodeIds = new GHSortedLongLongMap(directory, "tmp_osm_node_tags", 4, -1);
         nodesToBeSplit = new LongScatterSet();
         nodeKVStorage = new KVStorage(directory, false).create(100);
     }
 
+    /**
+     * Moves the node types collected so far into a more compact map. The ways reference the OSM node IDs in random
+     * order, so we collect them in a b-tree first. Afterwards we only read this map, update existing entries or add a
+     * few artificial nodes, which the sorted map can do with much less memory. The b-tree is released while the entries
+     * are moved, so this step does not need more memory than the b-tree alone.
+     */
+    public void compactNodeIds() {
+        if (!(idsByOsmNodeIds instanceof GHLongLongBTree))
+            throw new IllegalStateException("Node ids were already compacted");
+        GHSortedLongLongMap sortedIds = new GHSortedLongLongMap(directory, "tmp_osm_node_ids", 5, EMPTY_NODE);
+        ((GHLongLongBTree) idsByOsmNodeIds).drain(sortedIds::put);
+        idsByOsmNodeIds = sortedIds;
+    }
+
+    /**
+     * @return the memory used to map the OSM node IDs in MB
+     */
+    public int getNodeIdMemoryUsage() {
+        return idsByOsmNodeIds.getMemoryUsage();
+    }
+
     public boolean is3D() {
         return towerNodes.is3D();
     }
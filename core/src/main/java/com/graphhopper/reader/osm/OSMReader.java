@@ -18,7 +18,9 @@
 package com.graphhopper.reader.osm;
 
 import com.carrotsearch.hppc.BitSet;
+import com.carrotsearch.hppc.IntArrayList;
 import com.carrotsearch.hppc.LongArrayList;
+import com.carrotsearch.hppc.cursors.LongCursor;
 import com.graphhopper.coll.GHLongLongHashMap;
 import com.graphhopper.reader.ReaderElement;
 import com.graphhopper.reader.ReaderNode;
@@ -31,7 +33,9 @@ import com.graphhopper.reader.dem.ElevationProvider;
 import com.graphhopper.routing.OSMReaderConfig;
 import com.graphhopper.routing.ev.Country;
 import com.graphhopper.routing.ev.EdgeIntAccess;
+import com.graphhopper.routing.ev.IntEncodedValue;
 import com.graphhopper.routing.ev.State;
+import com.graphhopper.routing.util.AllEdgesIterator;
 import com.graphhopper.routing.util.AreaIndex;
 import com.graphhopper.routing.util.CustomArea;
 import com.graphhopper.routing.util.FerrySpeedCalculator;
@@ -53,6 +57,8 @@ import org.slf4j.LoggerFactory;
 import java.io.File;
 import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
 import java.util.function.LongToIntFunction;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
@@ -94,6 +100,8 @@ public class OSMReader {
     private final IntsRef tempRelFlags;
     private Date osmDataDate;
     private long zeroCounter = 0;
+    private ForkJoinPool wayTagsPool;
+    private final List<PendingWayTags> pendingWayTags = new ArrayList<>();
 
     private GHLongLongHashMap osmWayIdToRelationFlagsMap = new GHLongLongHashMap(200, .5f);
     private WayToEdgesMap restrictedWaysToEdgesMap = new WayToEdgesMap();
@@ -171,8 +179,18 @@ public class OSMReader {
                 .setRelationProcessor(this::processRelation)
                 .setEdgeHandler(this::addEdge)
                 .setWorkerThreads(config.getWorkerThreads())
+                .setWayThreads(config.getWayThreads())
                 .build();
-        waySegmentParser.readOSM(osmFile);
+        if (config.getWayThreads() > 1)
+            wayTagsPool = new ForkJoinPool(config.getWayThreads());
+        try {
+            waySegmentParser.readOSM(osmFile);
+            handlePendingWayTags();
+        } finally {
+            if (wayTagsPool != null)
+                wayTagsPool.shutdown();
+            wayTagsPool = null;
+        }
         osmDataDate = waySegmentParser.getTimestamp();
         if (baseGraph.getNodes() == 0)
             throw new RuntimeException("Graph after reading OSM must not be empty");
@@ -190,6 +208,131 @@ public class OSMReader {
         return osmDataDate;
     }
 
+    /**
+     * Applies the ways of the given OSM change file (.osc) to the graph that was imported before, instead of reading
+     * the full OSM file again. The tag parsers run again for all edges of the modified ways and the key values of these
+     * edges are updated. The edges of deleted ways, or ways that are no longer accepted, are blocked. The graph does not
+     * store the OSM node IDs, so the geometry of the ways must not change and new ways or changes of nodes and relations
+     * are not applied. They are only counted and require a full import.
+     *
+     * @param osmWayIdEnc       used to find the edges of the changed ways
+     * @param keptEncodedValues encoded values that are not set by the tag parsers, like the urban density, or that
+     *                          are only derived from the node tags, like the crossing, and must be kept for the
+     *                          updated edges. The access of barrier nodes is kept as their artificial edges are
+     *                          not updated.
+     */
+    public void applyChanges(File changeFile, IntEncodedValue osmWayIdEnc, List<IntEncodedValue> keptEncodedValues) throws IOException {
+        StopWatch sw = StopWatch.started();
+        // blocked edges keep their OSM way ID, so that they can be found again
+        keptEncodedValues = new ArrayList<>(keptEncodedValues);
+        keptEncodedValues.add(osmWayIdEnc);
+        OSMChange change = OSMChange.read(changeFile);
+        Map<Long, IntArrayList> edgesByOSMWayId = new HashMap<>();
+        AllEdgesIterator iter = baseGraph.getAllEdges();
+        while (iter.next()) {
+            long osmWayId = iter.get(osmWayIdEnc);
+            if (change.containsWay(osmWayId))
+                edgesByOSMWayId.computeIfAbsent(osmWayId, id -> new IntArrayList()).add(iter.getEdge());
+        }
+
+        int updatedEdges = 0, blockedEdges = 0, missingWays = 0;
+        for (ReaderWay way : change.getWays()) {
+            IntArrayList edges = edgesByOSMWayId.get(way.getId());
+            if (edges == null) {
+                if (acceptWay(way))
+                    missingWays++;
+            } else if (acceptWay(way)) {
+                updateEdges(way, edges, keptEncodedValues);
+                updatedEdges += edges.size();
+            } else {
+                blockEdges(edges, keptEncodedValues);
+                blockedEdges += edges.size();
+            }
+        }
+        for (LongCursor deletedWay : change.getDeletedWays()) {
+            IntArrayList edges = edgesByOSMWayId.get(deletedWay.value);
+            if (edges != null) {
+                blockEdges(edges, keptEncodedValues);
+                blockedEdges += edges.size();
+            }
+        }
+        LOGGER.info("Finished applying OSM change file: {}, updated edges: {}, blocked edges: {}, took: {}",
+                changeFile.getAbsolutePath(), nf(updatedEdges), nf(blockedEdges), sw.stop().getTimeString());
+        if (missingWays > 0 || change.getChangedNodes() > 0 || change.getChangedRelations() > 0)
+            LOGGER.warn("Changes that require a full import were ignored. new ways: {}, changed nodes: {}, changed relations: {}",
+                    nf(missingWays), nf(change.getChangedNodes()), nf(change.getChangedRelations()));
+    }
+
+    private void updateEdges(ReaderWay way, IntArrayList edges, List<IntEncodedValue> keptEncodedValues) {
+        // the coordinates and tags of the nodes are unknown, so the way distance is calculated from its edges
+        setKeyValues(way, osmNodeId -> Collections.emptyMap());
+        if (isCalculateWayDistance(way)) {
+            double distance = 0;
+            for (int i = 0; i < edges.size(); i++)
+                distance += baseGraph.getEdgeIteratorState(edges.get(i), Integer.MIN_VALUE).getDistance();
+            setWayDistance(way, distance);
+        }
+        Map<String, KValue> keyValues = way.getTag("key_values", Collections.emptyMap());
+        for (int i = 0; i < edges.size(); i++) {
+            // we need the edge in the direction of the way
+            EdgeIteratorState edge = baseGraph.getEdgeIteratorState(edges.get(i), Integer.MIN_VALUE);
+            PointList pointList = edge.fetchWayGeometry(FetchMode.ALL);
+            // the artificial edges of barrier nodes keep their flags, because the tags of the barrier node are unknown
+            if (pointList.size() == 2 && pointList.getLat(0) == pointList.getLat(1) && pointList.getLon(0) == pointList.getLon(1))
+                continue;
+
+            // without node tags the values derived from them, like the crossing, are reset and have to be kept by the caller
+            setArtificialWayTags(pointList, way, edge.getDistance(), new ArrayList<>(Collections.nCopies(pointList.size(), Collections.emptyMap())));
+            IntsRef relationFlags = osmParsers.restoreRelationFlags(edge.getEdge(), edgeIntAccess, osmParsers.createRelationFlags());
+            int[] keptValues = resetFlags(edge, keptEncodedValues);
+            osmParsers.handleWayTags(edge.getEdge(), edgeIntAccess, way, relationFlags);
+            restoreKeptValues(edge.getEdge(), keptEncodedValues, keptValues);
+
+            Map<String, KValue> edgeKeyValues = keyValues;
+            Map<String, KValue> oldKeyValues = edge.getKeyValues();
+            if (oldKeyValues.containsKey(MOTORWAY_JUNCTION) && !keyValues.containsKey(MOTORWAY_JUNCTION)) {
+                // the junction name is taken from the node tags
+                edgeKeyValues = new LinkedHashMap<>(keyValues);
+                edgeKeyValues.put(MOTORWAY_JUNCTION, oldKeyValues.get(MOTORWAY_JUNCTION));
+            }
+            if (!edgeKeyValues.equals(oldKeyValues))
+                edge.setKeyValues(edgeKeyValues);
+        }
+    }
+
+    private void blockEdges(IntArrayList edges, List<IntEncodedValue> keptEncodedValues) {
+        for (int i = 0; i < edges.size(); i++) {
+            EdgeIteratorState edge = baseGraph.getEdgeIteratorState(edges.get(i), Integer.MIN_VALUE);
+            restoreKeptValues(edge.getEdge(), keptEncodedValues, resetFlags(edge, keptEncodedValues));
+        }
+    }
+
+    /**
+     * Sets all flags of the given edge to zero, i.e. it is no longer accessible.
+     *
+     * @return the previous values of the given encoded values, for both directions
+     */
+    private int[] resetFlags(EdgeIteratorState edge, List<IntEncodedValue> keptEncodedValues) {
+        int[] keptValues = new int[2 * keptEncodedValues.size()];
+        for (int i = 0; i < keptEncodedValues.size(); i++) {
+            IntEncodedValue ev = keptEncodedValues.get(i);
+            keptValues[2 * i] = ev.getInt(false, edge.getEdge(), edgeIntAccess);
+            if (ev.isStoreTwoDirections())
+                keptValues[2 * i + 1] = ev.getInt(true, edge.getEdge(), edgeIntAccess);
+        }
+        edge.setFlags(new IntsRef(edge.getFlags().length));
+        return keptValues;
+    }
+
+    private void restoreKeptValues(int edge, List<IntEncodedValue> keptEncodedValues, int[] keptValues) {
+        for (int i = 0; i < keptEncodedValues.size(); i++) {
+            IntEncodedValue ev = keptEncodedValues.get(i);
+            ev.setInt(false, edge, edgeIntAccess, keptValues[2 * i]);
+            if (ev.isStoreTwoDirections())
+                ev.setInt(true, edge, edgeIntAccess, keptValues[2 * i + 1]);
+        }
+    }
+
     protected double getElevation(ReaderNode node) {
         double ele = eleProvider.getEle(node);
         return Double.isNaN(ele) ? config.getDefaultElevation() : ele;
@@ -372,10 +515,20 @@ public class OSMReader {
         if (bugCounter > 30)
             throw new IllegalStateException("Too many bugs in OSM or GraphHopper encountered " + bugCounter);
 
+        if (wayTagsPool != null) {
+            // the tag parsers run later, so they need their own copy of the way that keeps the artificial tags of this edge
+            ReaderWay edgeWay = new ReaderWay(way.getId());
+            edgeWay.setTags(way.getTags());
+            edgeWay.getNodes().addAll(way.getNodes());
+            way = edgeWay;
+        }
         setArtificialWayTags(pointList, way, distance, nodeTags);
         IntsRef relationFlags = getRelFlagsMap(way.getId());
         EdgeIteratorState edge = baseGraph.edge(fromIndex, toIndex).setDistance(distance);
-        osmParsers.handleWayTags(edge.getEdge(), edgeIntAccess, way, relationFlags);
+        if (wayTagsPool == null)
+            osmParsers.handleWayTags(edge.getEdge(), edgeIntAccess, way, relationFlags);
+        else
+            addPendingWayTags(edge.getEdge(), way, relationFlags);
         Map<String, KValue> map = way.getTag("key_values", Collections.emptyMap());
         if (!map.isEmpty())
             edge.setKeyValues(map);
@@ -393,6 +546,40 @@ public class OSMReader {
         restrictedWaysToEdgesMap.putIfReserved(way.getId(), edge.getEdge());
     }
 
+    private void addPendingWayTags(int edge, ReaderWay way, IntsRef relationFlags) {
+        pendingWayTags.add(new PendingWayTags(edge, way, IntsRef.deepCopyOf(relationFlags)));
+        if (pendingWayTags.size() >= 10_000)
+            handlePendingWayTags();
+    }
+
+    /**
+     * Runs the tag parsers for all edges that were created since the last call. Every edge only writes its own flags,
+     * so this can be done in parallel. The edges are not modified meanwhile, because this method blocks the import.
+     */
+    private void handlePendingWayTags() {
+        if (pendingWayTags.isEmpty())
+            return;
+        try {
+            wayTagsPool.submit(() -> pendingWayTags.parallelStream().forEach(p ->
+                    osmParsers.handleWayTags(p.edge, edgeIntAccess, p.way, p.relationFlags))).get();
+        } catch (InterruptedException | ExecutionException e) {
+            throw new RuntimeException(e);
+        }
+        pendingWayTags.clear();
+    }
+
+    private static class PendingWayTags {
+        final int edge;
+        final ReaderWay way;
+        final IntsRef relationFlags;
+
+        PendingWayTags(int edge, ReaderWay way, IntsRef relationFlags) {
+            this.edge = edge;
+            this.way = way;
+            this.relationFlags = relationFlags;
+        }
+    }
+
     private void checkCoordinates(int nodeIndex, GHPoint point) {
         final double tolerance = 1.e-6;
         if (Math.abs(nodeAccess.getLat(nodeIndex) - point.getLat()) > tolerance || Math.abs(nodeAccess.getLon(nodeIndex) - point.getLon()) > tolerance)
@@ -420,6 +607,22 @@ public class OSMReader {
      */
     protected void preprocessWay(ReaderWay way, WaySegmentParser.CoordinateSupplier coordinateSupplier,
                                  WaySegmentParser.NodeTagSupplier nodeTagSupplier) {
+        setKeyValues(way, nodeTagSupplier);
+
+        if (!isCalculateWayDistance(way))
+            return;
+
+        double distance = calcDistance(way, coordinateSupplier);
+        if (Double.isNaN(distance)) {
+            // Some nodes were missing, and we cannot determine the distance. This can happen when ways are only
+            // included partially in an OSM extract. In this case we cannot calculate the speed either, so we return.
+            LOGGER.warn("Could not determine distance for OSM way: " + way.getId());
+            return;
+        }
+        setWayDistance(way, distance);
+    }
+
+    private void setKeyValues(ReaderWay way, WaySegmentParser.NodeTagSupplier nodeTagSupplier) {
         Map<String, KValue> map = new LinkedHashMap<>();
         if (config.isParseWayNames()) {
             // http://wiki.openstreetmap.org/wiki/Key:name
@@ -485,17 +688,9 @@ public class OSMReader {
             }
 
         way.setTag("key_values", map);
+    }
 
-        if (!isCalculateWayDistance(way))
-            return;
-
-        double distance = calcDistance(way, coordinateSupplier);
-        if (Double.isNaN(distance)) {
-            // Some nodes were missing, and we cannot determine the distance. This can happen when ways are only
-            // included partially in an OSM extract. In this case we cannot calculate the speed either, so we return.
-            LOGGER.warn("Could not determine distance for OSM way: " + way.getId());
-            return;
-        }
+    private void setWayDistance(ReaderWay way, double distance) {
         way.setTag("way_distance", distance);
 
         // For ways with a duration tag we determine the average speed. This is needed for e.g. ferry routes, because
@@ -37,7 +37,10 @@ import java.io.File;
 import java.io.IOException;
 import java.text.ParseException;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
 import java.util.function.*;
+import java.util.stream.IntStream;
 
 import static com.graphhopper.reader.osm.OSMNodeData.*;
 import static com.graphhopper.util.Helper.nf;
@@ -60,6 +63,7 @@ import static com.graphhopper.util.Helper.nf;
  */
 public class WaySegmentParser {
     private static final Logger LOGGER = LoggerFactory.getLogger(WaySegmentParser.class);
+    private static final int WAY_BATCH_SIZE = 10_000;
     private static final Set<String> INCLUDE_IF_NODE_TAGS = new HashSet<>(Arrays.asList("barrier", "highway", "railway", "crossing", "ford"));
 
     private ToDoubleFunction<ReaderNode> elevationProvider = node -> 0d;
@@ -74,6 +78,7 @@ public class WaySegmentParser {
     private EdgeHandler edgeHandler = (from, to, pointList, way, nodeTags) ->
             System.out.println("edge " + from + "->" + to + " (" + pointList.size() + " points)");
     private int workerThreads = 2;
+    private int wayThreads = 1;
 
     private final OSMNodeData nodeData;
     private Date timestamp;
@@ -95,13 +100,24 @@ public class WaySegmentParser {
         readOSM(osmFile, new Pass1Handler(), new SkipOptions(true, false, false));
         LOGGER.info("pass1 - finished, took: {}", sw1.stop().getTimeString());
 
+        StopWatch sw = StopWatch.started();
+        int nodeIdMemoryUsage = nodeData.getNodeIdMemoryUsage();
+        nodeData.compactNodeIds();
+        LOGGER.info("compacted node ids from {}MB to {}MB, took: {}, {}", nodeIdMemoryUsage, nodeData.getNodeIdMemoryUsage(),
+                sw.stop().getTimeString(), Helper.getMemInfo());
+
         long nodes = nodeData.getNodeCount();
 
         LOGGER.info("Creating graph. Node count (pillar+tower): " + nodes + ", " + Helper.getMemInfo());
 
         LOGGER.info("pass2 - start");
         StopWatch sw2 = new StopWatch().start();
-        readOSM(osmFile, new Pass2Handler(), SkipOptions.none());
+        Pass2Handler pass2Handler = new Pass2Handler();
+        try {
+            readOSM(osmFile, pass2Handler, SkipOptions.none());
+        } finally {
+            pass2Handler.close();
+        }
         LOGGER.info("pass2 - finished, took: {}", sw2.stop().getTimeString());
 
         nodeData.release();
@@ -187,6 +203,8 @@ public class WaySegmentParser {
         private long acceptedNodes = 0;
         private long ignoredSplitNodes = 0;
         private long wayCounter = 0;
+        private final ForkJoinPool wayPool = wayThreads > 1 ? new ForkJoinPool(wayThreads) : null;
+        private final List<ReaderWay> wayBatch = new ArrayList<>();
 
         @Override
         public void handleNode(ReaderNode node) {
@@ -244,12 +262,52 @@ public class WaySegmentParser {
             if (++wayCounter % 10_000_000 == 0)
                 LOGGER.info("pass2 - processed ways: " + nf(wayCounter) + ", " + Helper.getMemInfo());
 
+            if (wayPool != null) {
+                wayBatch.add(way);
+                if (wayBatch.size() >= WAY_BATCH_SIZE)
+                    handleWayBatch();
+                return;
+            }
+
             if (!wayFilter.test(way))
                 return;
+            preprocessWay(way);
+            splitWay(way);
+        }
+
+        /**
+         * Filters and preprocesses the collected ways in parallel. This is safe, because both only read the node data
+         * that is complete at this point. Splitting the ways modifies the node data and creates the edges, so it is
+         * done afterwards on the calling thread and in the original order of the ways.
+         */
+        private void handleWayBatch() {
+            if (wayBatch.isEmpty())
+                return;
+            boolean[] accepted = new boolean[wayBatch.size()];
+            try {
+                wayPool.submit(() -> IntStream.range(0, wayBatch.size()).parallel().forEach(i -> {
+                    ReaderWay way = wayBatch.get(i);
+                    accepted[i] = wayFilter.test(way);
+                    if (accepted[i])
+                        preprocessWay(way);
+                })).get();
+            } catch (InterruptedException | ExecutionException e) {
+                throw new RuntimeException(e);
+            }
+            for (int i = 0; i < wayBatch.size(); i++)
+                if (accepted[i])
+                    splitWay(wayBatch.get(i));
+            wayBatch.clear();
+        }
+
+        private void preprocessWay(ReaderWay way) {
+            wayPreprocessor.preprocessWay(way, osmNodeId -> nodeData.getCoordinates(nodeData.getId(osmNodeId)), osmNodeId -> nodeData.getTags(osmNodeId));
+        }
+
+        private void splitWay(ReaderWay way) {
             List<SegmentNode> segment = new ArrayList<>(way.getNodes().size());
             for (LongCursor node : way.getNodes())
                 segment.add(new SegmentNode(node.value, nodeData.getId(node.value), nodeData.getTags(node.value)));
-            wayPreprocessor.preprocessWay(way, osmNodeId -> nodeData.getCoordinates(nodeData.getId(osmNodeId)), osmNodeId -> nodeData.getTags(osmNodeId));
             splitWayAtJunctionsAndEmptySections(segment, way);
         }
 
@@ -370,6 +428,8 @@ public class WaySegmentParser {
         @Override
         public void handleRelation(ReaderRelation relation) {
             if (!handledRelations) {
+                if (wayPool != null)
+                    handleWayBatch();
                 LOGGER.info("pass2 - start reading OSM relations");
                 handledRelations = true;
             }
@@ -379,10 +439,17 @@ public class WaySegmentParser {
 
         @Override
         public void onFinish() {
+            if (wayPool != null)
+                handleWayBatch();
             LOGGER.info("pass2 - finished, processed ways: {}, way nodes: {}, nodes with tags: {}, node tag capacity: {}, ignored barriers at junctions: {}",
                     nf(wayCounter), nf(acceptedNodes), nf(nodeData.getTaggedNodeCount()), nf(nodeData.getNodeTagCapacity()), nf(ignoredSplitNodes));
         }
 
+        void close() {
+            if (wayPool != null)
+                wayPool.shutdown();
+        }
+
         public int getInternalNodeIdOfOSMNode(long nodeOsmId) {
             long id = nodeData.getId(nodeOsmId);
             if (isTowerNode(id))
@@ -483,6 +550,18 @@ public class WaySegmentParser {
             return this;
         }
 
+        /**
+         * @param wayThreads the number of threads used to filter and preprocess the OSM ways during the second pass.
+         *                   The way filter and the way preprocessor must be thread-safe if this is larger than 1. The
+         *                   edge handler is always called from a single thread and in the order of the OSM ways.
+         */
+        public Builder setWayThreads(int wayThreads) {
+            if (wayThreads < 1)
+                throw new IllegalArgumentException("way threads must be at least 1 but was " + wayThreads);
+            waySegmentParser.wayThreads = wayThreads;
+            return this;
+        }
+
         public WaySegmentParser build() {
             return waySegmentParser;
         }
@@ -0,0 +1,213 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing;
+
+import com.carrotsearch.hppc.IntArrayList;
+import com.carrotsearch.hppc.IntObjectHashMap;
+import com.graphhopper.coll.GHIntObjectHashMap;
+import com.graphhopper.routing.AStar.AStarEntry;
+import com.graphhopper.routing.util.TraversalMode;
+import com.graphhopper.routing.weighting.WeightApproximator;
+import com.graphhopper.routing.weighting.Weighting;
+import com.graphhopper.storage.Graph;
+import com.graphhopper.util.EdgeIterator;
+import com.graphhopper.util.GHUtility;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.function.Supplier;
+
+import static com.graphhopper.util.EdgeIterator.ANY_EDGE;
+import static com.graphhopper.util.EdgeIterator.NO_EDGE;
+
+/**
+ * Calculates the paths from one source to several targets with a single search, which is a lot cheaper than running
+ * a point to point search for every target if the targets are close to each other, e.g. the candidates of the next
+ * observation for map matching. Without an approximation this is a Dijkstra that stops as soon as all targets are
+ * found. With an approximation the search is directed towards the closest target, see
+ * {@link #setApproximation(Supplier)}.
+ * <p>
+ * Like {@link AStar} the start and target edges can be restricted for edge-based traversal.
+ */
+public class AStarOneToMany extends AbstractRoutingAlgorithm {
+    private final GHIntObjectHashMap<AStarEntry> fromMap;
+    private final PriorityQueue<AStarEntry> fromHeap;
+    private Supplier<WeightApproximator> approximationSupplier;
+    private WeightApproximator[] approximators;
+    private double maxWeightFactor = Double.POSITIVE_INFINITY;
+    private int visitedNodes;
+    private boolean stoppedEarly;
+
+    public AStarOneToMany(Graph graph, Weighting weighting, TraversalMode tMode) {
+        super(graph, weighting, tMode);
+        int size = Math.min(Math.max(200, graph.getNodes() / 10), 2000);
+        fromMap = new GHIntObjectHashMap<>(size);
+        fromHeap = new PriorityQueue<>(size);
+    }
+
+    /**
+     * @param approximationSupplier creates the approximation for one of the targets. The search uses the minimum of
+     *                              the approximations of all targets, so it stays admissible.
+     */
+    public AStarOneToMany setApproximation(Supplier<WeightApproximator> approximationSupplier) {
+        this.approximationSupplier = approximationSupplier;
+        return this;
+    }
+
+    /**
+     * Stops the search once the weight of the current entry exceeds the given factor times the weight of the farthest
+     * target found so far, which is useful if some targets might be very far away or unreachable. The remaining
+     * targets are returned as paths that were not found and {@link #isStoppedEarly()} returns true.
+     */
+    public AStarOneToMany setMaxWeightFactor(double maxWeightFactor) {
+        this.maxWeightFactor = maxWeightFactor;
+        return this;
+    }
+
+    @Override
+    public Path calcPath(int from, int to) {
+        return calcPaths(from, ANY_EDGE, new int[]{to}, new int[]{ANY_EDGE}).get(0);
+    }
+
+    /**
+     * @return one path per target in the order of the given targets. The path for a target that cannot be reached is
+     * not found.
+     */
+    public List<Path> calcPaths(int from, int fromOutEdge, int[] toNodes, int[] toInEdges) {
+        if (toNodes.length != toInEdges.length)
+            throw new IllegalArgumentException("toNodes and toInEdges must have the same length, " + toNodes.length + " vs. " + toInEdges.length);
+        if (!traversalMode.isEdgeBased() && (fromOutEdge != ANY_EDGE || Arrays.stream(toInEdges).anyMatch(e -> e != ANY_EDGE)))
+            throw new IllegalArgumentException("Restricting the start/target edges is only possible for edge-based graph traversal");
+        checkAlreadyRun();
+        setupFinishTime();
+
+        AStarEntry[] found = new AStarEntry[toNodes.length];
+        // maps the target nodes to the indices of the targets at this node
+        IntObjectHashMap<IntArrayList> targetsByNode = new IntObjectHashMap<>(toNodes.length);
+        int remaining = 0;
+        for (int i = 0; i < toNodes.length; i++) {
+            if (toInEdges[i] == NO_EDGE)
+                continue;
+            IntArrayList targets = targetsByNode.get(toNodes[i]);
+            if (targets == null) {
+                targets = new IntArrayList(2);
+                targetsByNode.put(toNodes[i], targets);
+            }
+            targets.add(i);
+            remaining++;
+        }
+        if (fromOutEdge != NO_EDGE && remaining > 0) {
+            if (approximationSupplier != null) {
+                approximators = new WeightApproximator[targetsByNode.size()];
+                int i = 0;
+                for (int node : targetsByNode.keys().toArray()) {
+                    approximators[i] = approximationSupplier.get();
+                    approximators[i].setTo(node);
+                    i++;
+                }
+            }
+            double weightToGoal = approximate(from);
+            if (!Double.isInfinite(weightToGoal)) {
+                fromHeap.add(new AStarEntry(NO_EDGE, from, weightToGoal, 0));
+                runAlgo(fromOutEdge, toInEdges, targetsByNode, found, remaining);
+            }
+        }
+
+        List<Path> paths = new ArrayList<>(toNodes.length);
+        for (AStarEntry entry : found)
+            paths.add(entry == null ? createEmptyPath() : PathExtractor.extractPath(graph, weighting, entry).setWeight(entry.getWeightOfVisitedPath()));
+        return paths;
+    }
+
+    private void runAlgo(int fromOutEdge, int[] toInEdges, IntObjectHashMap<IntArrayList> targetsByNode, AStarEntry[] found, int remaining) {
+        double maxFoundWeight = 0;
+        while (!fromHeap.isEmpty()) {
+            AStarEntry currEdge = fromHeap.poll();
+            if (currEdge.isDeleted())
+                continue;
+            visitedNodes++;
+            // a target found with zero weight, e.g. the start node itself, says nothing about the distance to the others
+            if (maxFoundWeight > 0 && currEdge.weight > maxWeightFactor * maxFoundWeight
+                    || isMaxVisitedNodesExceeded() || isTimeoutExceeded()) {
+                stoppedEarly = true;
+                break;
+            }
+
+            IntArrayList targets = targetsByNode.get(currEdge.adjNode);
+            if (targets != null) {
+                for (int j = 0; j < targets.size(); j++) {
+                    int target = targets.get(j);
+                    if (found[target] == null && (toInEdges[target] == ANY_EDGE || currEdge.edge == toInEdges[target])
+                            && (fromOutEdge == ANY_EDGE || currEdge.edge != NO_EDGE)) {
+                        found[target] = currEdge;
+                        maxFoundWeight = Math.max(maxFoundWeight, currEdge.getWeightOfVisitedPath());
+                        remaining--;
+                    }
+                }
+                if (remaining == 0)
+                    break;
+            }
+
+            EdgeIterator iter = edgeExplorer.setBaseNode(currEdge.adjNode);
+            while (iter.next()) {
+                if (!accept(iter, currEdge.edge) || (currEdge.edge == NO_EDGE && fromOutEdge != ANY_EDGE && iter.getEdge() != fromOutEdge))
+                    continue;
+
+                double tmpWeight = GHUtility.calcWeightWithTurnWeight(weighting, iter, false, currEdge.edge) + currEdge.weightOfVisitedPath;
+                if (Double.isInfinite(tmpWeight))
+                    continue;
+                int traversalId = traversalMode.createTraversalId(iter, false);
+                AStarEntry ase = fromMap.get(traversalId);
+                if (ase == null || ase.weightOfVisitedPath > tmpWeight) {
+                    double weightToGoal = approximate(iter.getAdjNode());
+                    if (Double.isInfinite(weightToGoal))
+                        continue;
+                    if (ase != null)
+                        ase.setDeleted();
+                    ase = new AStarEntry(iter.getEdge(), iter.getAdjNode(), tmpWeight + weightToGoal, tmpWeight, currEdge);
+                    fromMap.put(traversalId, ase);
+                    fromHeap.add(ase);
+                }
+            }
+        }
+    }
+
+    private double approximate(int node) {
+        if (approximators == null)
+            return 0;
+        double min = Double.POSITIVE_INFINITY;
+        for (WeightApproximator approximator : approximators)
+            min = Math.min(min, approximator.approximate(node));
+        return min;
+    }
+
+    /**
+     * @return true if the last search was stopped before all targets were found or known to be unreachable, because
+     * of the maximum weight factor, the maximum number of visited nodes or the timeout.
+     */
+    public boolean isStoppedEarly() {
+        return stoppedEarly;
+    }
+
+    @Override
+    public int getVisitedNodes() {
+        return visitedNodes;
+    }
+}
@@ -17,14 +17,11 @@
  */
 package com.graphhopper.routing;
 
-import com.carrotsearch.hppc.IntObjectMap;
-import com.graphhopper.coll.GHIntObjectHashMap;
 import com.graphhopper.routing.util.TraversalMode;
 import com.graphhopper.util.EdgeIterator;
 
 import java.util.Collections;
 import java.util.List;
-import java.util.PriorityQueue;
 
 import static com.graphhopper.util.EdgeIterator.ANY_EDGE;
 
@@ -34,9 +31,9 @@ public abstract class AbstractBidirAlgo implements EdgeToEdgeRoutingAlgorithm {
     protected int to;
     protected int fromOutEdge;
     protected int toInEdge;
-    protected IntObjectMap<SPTEntry> bestWeightMapFrom;
-    protected IntObjectMap<SPTEntry> bestWeightMapTo;
-    protected IntObjectMap<SPTEntry> bestWeightMapOther;
+    protected SearchSpace searchSpaceFrom;
+    protected SearchSpace searchSpaceTo;
+    protected SearchSpace searchSpaceOther;
     protected SPTEntry currFrom;
     protected SPTEntry currTo;
     protected SPTEntry bestFwdEntry;
@@ -45,14 +42,13 @@ public abstract class AbstractBidirAlgo implements EdgeToEdgeRoutingAlgorithm {
     protected int maxVisitedNodes = Integer.MAX_VALUE;
     protected long timeoutMillis = Long.MAX_VALUE;
     private long finishTimeMillis = Long.MAX_VALUE;
-    PriorityQueue<SPTEntry> pqOpenSetFrom;
-    PriorityQueue<SPTEntry> pqOpenSetTo;
     protected boolean updateBestPath = true;
     protected boolean finishedFrom;
     protected boolean finishedTo;
     int visitedCountFrom;
     int visitedCountTo;
     private boolean alreadyRun;
+    private SearchWorkspace workspace;
 
     public AbstractBidirAlgo(TraversalMode traversalMode) {
         this.traversalMode = traversalMode;
@@ -61,11 +57,24 @@ public abstract class AbstractBidirAlgo implements EdgeToEdgeRoutingAlgorithm {
     }
 
     protected void initCollections(int size) {
-        pqOpenSetFrom = new PriorityQueue<>(size);
-        bestWeightMapFrom = new GHIntObjectHashMap<>(size);
+        workspace = SearchWorkspace.borrow(size);
+        searchSpaceFrom = workspace.from;
+        searchSpaceTo = workspace.to;
+    }
 
-        pqOpenSetTo = new PriorityQueue<>(size);
-        bestWeightMapTo = new GHIntObjectHashMap<>(size);
+    /**
+     * Clears the search spaces of this algorithm and returns them to a pool, so the next algorithm can re-use them
+     * instead of allocating new ones. Call this when the paths are extracted, the shortest path tree entries stay valid
+     * but the algorithm cannot be used anymore. Calling it more than once is fine and not calling it is fine as well,
+     * the search spaces are then garbage collected together with the algorithm.
+     */
+    public void releaseWorkspace() {
+        alreadyRun = true;
+        if (workspace == null)
+            return;
+        searchSpaceFrom = searchSpaceTo = searchSpaceOther = null;
+        workspace.release();
+        workspace = null;
     }
 
     /**
@@ -106,25 +115,27 @@ public abstract class AbstractBidirAlgo implements EdgeToEdgeRoutingAlgorithm {
     protected void initFrom(int from, double weight) {
         this.from = from;
         currFrom = createStartEntry(from, weight, false);
-        pqOpenSetFrom.add(currFrom);
-        if (!traversalMode.isEdgeBased()) {
-            bestWeightMapFrom.put(from, currFrom);
+        if (traversalMode.isEdgeBased()) {
+            searchSpaceFrom.add(currFrom);
+        } else {
+            searchSpaceFrom.put(from, currFrom);
         }
     }
 
     protected void initTo(int to, double weight) {
         this.to = to;
         currTo = createStartEntry(to, weight, true);
-        pqOpenSetTo.add(currTo);
-        if (!traversalMode.isEdgeBased()) {
-            bestWeightMapTo.put(to, currTo);
+        if (traversalMode.isEdgeBased()) {
+            searchSpaceTo.add(currTo);
+        } else {
+            searchSpaceTo.put(to, currTo);
         }
     }
 
     protected void postInit(int from, int to) {
         if (!traversalMode.isEdgeBased()) {
             if (updateBestPath) {
-                bestWeightMapOther = bestWeightMapFrom;
+                searchSpaceOther = searchSpaceFrom;
                 updateBestPath(Double.POSITIVE_INFINITY, currFrom, EdgeIterator.NO_EDGE, to, true);
             }
         } else if (from == to && fromOutEdge == ANY_EDGE && toInEdge == ANY_EDGE) {
@@ -175,7 +186,7 @@ public abstract class AbstractBidirAlgo implements EdgeToEdgeRoutingAlgorithm {
 
     protected void updateBestPath(double edgeWeight, SPTEntry entry, int origEdgeIdForCH, int traversalId, boolean reverse) {
         assert traversalMode.isEdgeBased() != Double.isInfinite(edgeWeight);
-        SPTEntry entryOther = bestWeightMapOther.get(traversalId);
+        SPTEntry entryOther = searchSpaceOther.get(traversalId);
         if (entryOther == null)
             return;
 
@@ -229,16 +240,16 @@ public abstract class AbstractBidirAlgo implements EdgeToEdgeRoutingAlgorithm {
         return currTo.weight;
     }
 
-    IntObjectMap<SPTEntry> getBestFromMap() {
-        return bestWeightMapFrom;
+    SearchSpace getSearchSpaceFrom() {
+        return searchSpaceFrom;
     }
 
-    IntObjectMap<SPTEntry> getBestToMap() {
-        return bestWeightMapTo;
+    SearchSpace getSearchSpaceTo() {
+        return searchSpaceTo;
     }
 
-    void setBestOtherMap(IntObjectMap<SPTEntry> other) {
-        bestWeightMapOther = other;
+    void setSearchSpaceOther(SearchSpace other) {
+        searchSpaceOther = other;
     }
 
     protected void setUpdateBestPath(boolean b) {
@@ -253,8 +264,7 @@ public abstract class AbstractBidirAlgo implements EdgeToEdgeRoutingAlgorithm {
     void setToDataStructures(AbstractBidirAlgo other) {
         to = other.to;
         toInEdge = other.toInEdge;
-        pqOpenSetTo = other.pqOpenSetTo;
-        bestWeightMapTo = other.bestWeightMapTo;
+        searchSpaceTo = other.searchSpaceTo;
         finishedTo = other.finishedTo;
         currTo = other.currTo;
         visitedCountTo = other.visitedCountTo;
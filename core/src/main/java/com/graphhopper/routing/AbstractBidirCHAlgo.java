@@ -17,13 +17,11 @@
  */
 package com.graphhopper.routing;
 
-import com.carrotsearch.hppc.IntObjectMap;
 import com.graphhopper.routing.ch.NodeBasedCHBidirPathExtractor;
 import com.graphhopper.routing.util.TraversalMode;
 import com.graphhopper.storage.*;
 import com.graphhopper.util.GHUtility;
 
-import java.util.PriorityQueue;
 import java.util.function.Supplier;
 
 import static com.graphhopper.util.EdgeIterator.ANY_EDGE;
@@ -134,13 +132,9 @@ public abstract class AbstractBidirCHAlgo extends AbstractBidirAlgo implements E
 
     @Override
     boolean fillEdgesFrom() {
-        while (true) {
-            if (pqOpenSetFrom.isEmpty())
-                return false;
-            currFrom = pqOpenSetFrom.poll();
-            if (!currFrom.isDeleted())
-                break;
-        }
+        if (searchSpaceFrom.isQueueEmpty())
+            return false;
+        currFrom = searchSpaceFrom.poll();
         visitedCountFrom++;
         if (fromEntryCanBeSkipped()) {
             return true;
@@ -148,20 +142,16 @@ public abstract class AbstractBidirCHAlgo extends AbstractBidirAlgo implements E
         if (fwdSearchCanBeStopped()) {
             return false;
         }
-        bestWeightMapOther = bestWeightMapTo;
-        fillEdges(currFrom, pqOpenSetFrom, bestWeightMapFrom, outEdgeExplorer, false);
+        searchSpaceOther = searchSpaceTo;
+        fillEdges(currFrom, searchSpaceFrom, outEdgeExplorer, false);
         return true;
     }
 
     @Override
     boolean fillEdgesTo() {
-        while (true) {
-            if (pqOpenSetTo.isEmpty())
-                return false;
-            currTo = pqOpenSetTo.poll();
-            if (!currTo.isDeleted())
-                break;
-        }
+        if (searchSpaceTo.isQueueEmpty())
+            return false;
+        currTo = searchSpaceTo.poll();
         visitedCountTo++;
         if (toEntryCanBeSkipped()) {
             return true;
@@ -169,13 +159,12 @@ public abstract class AbstractBidirCHAlgo extends AbstractBidirAlgo implements E
         if (bwdSearchCanBeStopped()) {
             return false;
         }
-        bestWeightMapOther = bestWeightMapFrom;
-        fillEdges(currTo, pqOpenSetTo, bestWeightMapTo, inEdgeExplorer, true);
+        searchSpaceOther = searchSpaceFrom;
+        fillEdges(currTo, searchSpaceTo, inEdgeExplorer, true);
         return true;
     }
 
-    private void fillEdges(SPTEntry currEdge, PriorityQueue<SPTEntry> prioQueue,
-                           IntObjectMap<SPTEntry> bestWeightMap, RoutingCHEdgeExplorer explorer, boolean reverse) {
+    private void fillEdges(SPTEntry currEdge, SearchSpace searchSpace, RoutingCHEdgeExplorer explorer, boolean reverse) {
         RoutingCHEdgeIterator iter = explorer.setBaseNode(currEdge.adjNode);
         while (iter.next()) {
             if (!accept(iter, currEdge, reverse))
@@ -187,20 +176,16 @@ public abstract class AbstractBidirCHAlgo extends AbstractBidirAlgo implements E
             }
             final int origEdgeId = GHUtility.getEdgeFromEdgeKey(reverse ? iter.getOrigEdgeKeyFirst() : iter.getOrigEdgeKeyLast());
             final int traversalId = traversalMode.createTraversalId(iter, reverse);
-            SPTEntry entry = bestWeightMap.get(traversalId);
+            SPTEntry entry = searchSpace.get(traversalId);
             if (entry == null) {
                 entry = createEntry(iter.getEdge(), iter.getAdjNode(), origEdgeId, weight, currEdge, reverse);
-                bestWeightMap.put(traversalId, entry);
-                prioQueue.add(entry);
+                searchSpace.put(traversalId, entry);
             } else if (entry.getWeightOfVisitedPath() > weight) {
-                // flagging this entry, so it will be ignored when it is polled the next time
-                // this is faster than removing the entry from the queue and adding again, but for CH it does not really
-                // make a difference overall.
+                // the search space replaces the old entry, also in the queue, but it might still be referenced elsewhere
                 entry.setDeleted();
                 boolean isBestEntry = reverse ? (entry == bestBwdEntry) : (entry == bestFwdEntry);
                 entry = createEntry(iter.getEdge(), iter.getAdjNode(), origEdgeId, weight, currEdge, reverse);
-                bestWeightMap.put(traversalId, entry);
-                prioQueue.add(entry);
+                searchSpace.put(traversalId, entry);
                 // if this is the best entry we need to update the best reference as well
                 if (isBestEntry)
                     if (reverse)
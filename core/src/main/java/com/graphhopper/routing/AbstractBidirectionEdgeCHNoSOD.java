@@ -43,7 +43,7 @@ public abstract class AbstractBidirectionEdgeCHNoSOD extends AbstractBidirCHAlgo
         // the inner explorer will run on the base-(or base-query-)graph edges only.
         // we need an extra edge explorer, because it is called inside a loop that already iterates over edges
         // note that we do not need to filter edges with the inner explorer, because inaccessible edges won't be added
-        // to bestWeightMapOther in the first place
+        // to searchSpaceOther in the first place
         innerExplorer = graph.getBaseGraph().createEdgeExplorer();
         setPathExtractorSupplier(() -> new EdgeBasedCHBidirPathExtractor(graph));
     }
@@ -92,7 +92,7 @@ public abstract class AbstractBidirectionEdgeCHNoSOD extends AbstractBidirCHAlgo
         while (iter.next()) {
             final int edgeId = iter.getEdge();
             int key = traversalMode.createTraversalId(iter, reverse);
-            SPTEntry entryOther = bestWeightMapOther.get(key);
+            SPTEntry entryOther = searchSpaceOther.get(key);
             if (entryOther == null) {
                 continue;
             }
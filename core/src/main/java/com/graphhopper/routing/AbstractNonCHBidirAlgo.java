@@ -17,7 +17,6 @@
  */
 package com.graphhopper.routing;
 
-import com.carrotsearch.hppc.IntObjectMap;
 import com.graphhopper.routing.util.EdgeFilter;
 import com.graphhopper.routing.util.TraversalMode;
 import com.graphhopper.routing.weighting.Weighting;
@@ -28,7 +27,6 @@ import com.graphhopper.util.EdgeIterator;
 import com.graphhopper.util.EdgeIteratorState;
 import com.graphhopper.util.GHUtility;
 
-import java.util.PriorityQueue;
 
 import static com.graphhopper.util.EdgeIterator.ANY_EDGE;
 
@@ -109,13 +107,9 @@ public abstract class AbstractNonCHBidirAlgo extends AbstractBidirAlgo implement
 
     @Override
     boolean fillEdgesFrom() {
-        while (true) {
-            if (pqOpenSetFrom.isEmpty())
-                return false;
-            currFrom = pqOpenSetFrom.poll();
-            if (!currFrom.isDeleted())
-                break;
-        }
+        if (searchSpaceFrom.isQueueEmpty())
+            return false;
+        currFrom = searchSpaceFrom.poll();
         visitedCountFrom++;
         if (fromEntryCanBeSkipped()) {
             return true;
@@ -123,20 +117,16 @@ public abstract class AbstractNonCHBidirAlgo extends AbstractBidirAlgo implement
         if (fwdSearchCanBeStopped()) {
             return false;
         }
-        bestWeightMapOther = bestWeightMapTo;
-        fillEdges(currFrom, pqOpenSetFrom, bestWeightMapFrom, false);
+        searchSpaceOther = searchSpaceTo;
+        fillEdges(currFrom, searchSpaceFrom, false);
         return true;
     }
 
     @Override
     boolean fillEdgesTo() {
-        while (true) {
-            if (pqOpenSetTo.isEmpty())
-                return false;
-            currTo = pqOpenSetTo.poll();
-            if (!currTo.isDeleted())
-                break;
-        }
+        if (searchSpaceTo.isQueueEmpty())
+            return false;
+        currTo = searchSpaceTo.poll();
         visitedCountTo++;
         if (toEntryCanBeSkipped()) {
             return true;
@@ -144,12 +134,12 @@ public abstract class AbstractNonCHBidirAlgo extends AbstractBidirAlgo implement
         if (bwdSearchCanBeStopped()) {
             return false;
         }
-        bestWeightMapOther = bestWeightMapFrom;
-        fillEdges(currTo, pqOpenSetTo, bestWeightMapTo, true);
+        searchSpaceOther = searchSpaceFrom;
+        fillEdges(currTo, searchSpaceTo, true);
         return true;
     }
 
-    private void fillEdges(SPTEntry currEdge, PriorityQueue<SPTEntry> prioQueue, IntObjectMap<SPTEntry> bestWeightMap, boolean reverse) {
+    private void fillEdges(SPTEntry currEdge, SearchSpace searchSpace, boolean reverse) {
         EdgeIterator iter = edgeExplorer.setBaseNode(currEdge.adjNode);
         while (iter.next()) {
             if (!accept(iter, currEdge.edge))
@@ -160,18 +150,16 @@ public abstract class AbstractNonCHBidirAlgo extends AbstractBidirAlgo implement
                 continue;
             }
             final int traversalId = traversalMode.createTraversalId(iter, reverse);
-            SPTEntry entry = bestWeightMap.get(traversalId);
+            SPTEntry entry = searchSpace.get(traversalId);
             if (entry == null) {
                 entry = createEntry(iter, weight, currEdge, reverse);
-                bestWeightMap.put(traversalId, entry);
-                prioQueue.add(entry);
+                searchSpace.put(traversalId, entry);
             } else if (entry.getWeightOfVisitedPath() > weight) {
-                // flagging this entry, so it will be ignored when it is polled the next time
+                // the search space replaces the old entry, also in the queue, but it might still be referenced elsewhere
                 entry.setDeleted();
                 boolean isBestEntry = reverse ? (entry == bestBwdEntry) : (entry == bestFwdEntry);
                 entry = createEntry(iter, weight, currEdge, reverse);
-                bestWeightMap.put(traversalId, entry);
-                prioQueue.add(entry);
+                searchSpace.put(traversalId, entry);
                 // if this is the best entry we need to update the best reference as well
                 if (isBestEntry)
                     if (reverse)
@@ -184,7 +172,7 @@ public abstract class AbstractNonCHBidirAlgo extends AbstractBidirAlgo implement
             if (updateBestPath) {
                 // only needed for edge-based -> skip the calculation and use dummy value otherwise
                 double edgeWeight = traversalMode.isEdgeBased() ? weighting.calcEdgeWeight(iter, reverse) : Double.POSITIVE_INFINITY;
-                // todo: performance - if bestWeightMapOther.get(traversalId) == null, updateBestPath will exit early and we might
+                // todo: performance - if searchSpaceOther.get(traversalId) == null, updateBestPath will exit early and we might
                 // have calculated the edgeWeight unnecessarily
                 updateBestPath(edgeWeight, entry, EdgeIterator.NO_EDGE, traversalId, reverse);
             }
@@ -247,10 +247,10 @@ public class AlternativeRoute extends AStarBidirection implements RoutingAlgorit
         alternatives.add(bestAlt);
         AtomicReference<SPTEntry> bestEntry = new AtomicReference<>();
 
-        bestWeightMapFrom.forEach(new IntObjectPredicate<SPTEntry>() {
+        searchSpaceFrom.forEach(new IntObjectPredicate<SPTEntry>() {
             @Override
             public boolean apply(final int traversalId, final SPTEntry fromSPTEntry) {
-                SPTEntry toSPTEntry = bestWeightMapTo.get(traversalId);
+                SPTEntry toSPTEntry = searchSpaceTo.get(traversalId);
                 if (toSPTEntry == null)
                     return true;
 
@@ -280,7 +280,7 @@ public class AlternativeRoute extends AStarBidirection implements RoutingAlgorit
                     assert traversalMode.isEdgeBased();
                 } else {
                     int nextToTraversalId = traversalMode.createTraversalId(graph.getEdgeIteratorState(tmpFromEntry.edge, tmpFromEntry.parent.adjNode), true);
-                    SPTEntry correspondingToEntry = bestWeightMapTo.get(nextToTraversalId);
+                    SPTEntry correspondingToEntry = searchSpaceTo.get(nextToTraversalId);
                     if (correspondingToEntry != null) {
                         if (traversalMode.isEdgeBased())
                             correspondingToEntry = correspondingToEntry.parent;
@@ -304,7 +304,7 @@ public class AlternativeRoute extends AStarBidirection implements RoutingAlgorit
                 SPTEntry prevToSPTEntry = toSPTEntry, prevFrom = fromSPTEntry;
                 while (prevToSPTEntry.parent != null) {
                     int nextFromTraversalId = traversalMode.createTraversalId(graph.getEdgeIteratorState(prevToSPTEntry.edge, prevToSPTEntry.parent.adjNode), false);
-                    SPTEntry otherFromEntry = bestWeightMapFrom.get(nextFromTraversalId);
+                    SPTEntry otherFromEntry = searchSpaceFrom.get(nextFromTraversalId);
                     // end of a plateau
                     if (otherFromEntry == null ||
                             otherFromEntry.parent != prevFrom ||
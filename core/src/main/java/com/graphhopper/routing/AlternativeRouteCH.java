@@ -19,15 +19,11 @@
 package com.graphhopper.routing;
 
 import com.carrotsearch.hppc.IntIndexedContainer;
-import com.carrotsearch.hppc.predicates.IntObjectPredicate;
-import com.graphhopper.storage.Graph;
 import com.graphhopper.storage.RoutingCHGraph;
-import com.graphhopper.util.EdgeIteratorState;
 import com.graphhopper.util.PMap;
 
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.Comparator;
 import java.util.List;
 
 /**
@@ -43,7 +39,6 @@ public class AlternativeRouteCH extends DijkstraBidirectionCHNoSOD {
     private final double maxShareFactor;
     private final double localOptimalityFactor;
     private final int maxPaths;
-    private final List<AlternativeInfo> alternatives = new ArrayList<>();
     private int extraVisitedNodes = 0;
 
     public AlternativeRouteCH(RoutingCHGraph graph, PMap hints) {
@@ -78,169 +73,18 @@ public class AlternativeRouteCH extends DijkstraBidirectionCHNoSOD {
             return Collections.emptyList();
         }
 
-        alternatives.add(new AlternativeInfo(bestPath, 0));
-
-        final ArrayList<PotentialAlternativeInfo> potentialAlternativeInfos = new ArrayList<>();
-
-        bestWeightMapFrom.forEach((IntObjectPredicate<SPTEntry>) (v, fromSPTEntry) -> {
-            SPTEntry toSPTEntry = bestWeightMapTo.get(v);
-            if (toSPTEntry == null)
-                return true;
-
-            if (fromSPTEntry.getWeightOfVisitedPath() + toSPTEntry.getWeightOfVisitedPath() > bestPath.getWeight() * maxWeightFactor)
-                return true;
-
-            // This gives us a path s -> v -> t, but since we are using contraction hierarchies,
-            // s -> v and v -> t need not be shortest paths. In fact, they can sometimes be pretty strange.
-            // We still use this preliminary path to filter for shared path length with other alternatives,
-            // so we don't have to work so much.
-            Path preliminaryRoute = createPathExtractor().extract(fromSPTEntry, toSPTEntry, fromSPTEntry.getWeightOfVisitedPath() + toSPTEntry.getWeightOfVisitedPath());
-            double preliminaryShare = calculateShare(preliminaryRoute);
-            if (preliminaryShare > maxShareFactor) {
-                return true;
-            }
-            PotentialAlternativeInfo potentialAlternativeInfo = new PotentialAlternativeInfo();
-            potentialAlternativeInfo.v = v;
-            potentialAlternativeInfo.weight = 2 * (fromSPTEntry.getWeightOfVisitedPath() + toSPTEntry.getWeightOfVisitedPath()) + preliminaryShare;
-            potentialAlternativeInfos.add(potentialAlternativeInfo);
-            return true;
-        });
-
-        potentialAlternativeInfos.sort(Comparator.comparingDouble(o -> o.weight));
-
-        for (PotentialAlternativeInfo potentialAlternativeInfo : potentialAlternativeInfos) {
-            int v = potentialAlternativeInfo.v;
-
-            // Okay, now we want the s -> v -> t shortest via-path, so we route s -> v and v -> t
-            // and glue them together.
-            DijkstraBidirectionCH svRouter = new DijkstraBidirectionCH(graph);
-            svRouter.setPathExtractorSupplier(this::createPathExtractor);
-            final Path svPath = svRouter.calcPath(s, v);
-            extraVisitedNodes += svRouter.getVisitedNodes();
-
-            DijkstraBidirectionCH vtRouter = new DijkstraBidirectionCH(graph);
-            vtRouter.setPathExtractorSupplier(this::createPathExtractor);
-            final Path vtPath = vtRouter.calcPath(v, t);
-            Path path = concat(graph.getBaseGraph(), svPath, vtPath);
-            extraVisitedNodes += vtRouter.getVisitedNodes();
-
-            double sharedDistanceWithShortest = sharedDistanceWithShortest(path);
-            double detourLength = path.getDistance() - sharedDistanceWithShortest;
-            double directLength = bestPath.getDistance() - sharedDistanceWithShortest;
-            if (detourLength > directLength * maxWeightFactor) {
-                continue;
-            }
-
-            double share = calculateShare(path);
-            if (share > maxShareFactor) {
-                continue;
-            }
-
-            // This is the final test we need: Discard paths that are not "locally shortest" around v.
-            // So move a couple of nodes to the left and right from v on our path,
-            // route, and check if v is on the shortest path.
-            final IntIndexedContainer svNodes = svPath.calcNodes();
-            int vIndex = svNodes.size() - 1;
-            if (!tTest(path, vIndex))
-                continue;
-
-            alternatives.add(new AlternativeInfo(path, share));
-            if (alternatives.size() >= maxPaths)
-                break;
-        }
+        // The search spaces of both directions now contain all via node candidates, the finder picks the alternatives
+        // and only unpacks the shortcuts of the most promising ones.
+        ViaNodeAlternativeFinder finder = new ViaNodeAlternativeFinder(graph, this::createPathExtractor,
+                maxWeightFactor, maxShareFactor, localOptimalityFactor, maxPaths);
+        List<ViaNodeAlternativeFinder.Alternative> found = finder.find(bestPath, bestFwdEntry, bestBwdEntry, searchSpaceFrom, searchSpaceTo);
+        extraVisitedNodes += finder.getVisitedNodes();
+        List<AlternativeInfo> alternatives = new ArrayList<>(found.size());
+        for (ViaNodeAlternativeFinder.Alternative alternative : found)
+            alternatives.add(new AlternativeInfo(alternative.path, alternative.share));
         return alternatives;
     }
 
-    private double calculateShare(final Path path) {
-        double sharedDistance = sharedDistance(path);
-        return sharedDistance / path.getDistance();
-    }
-
-    private double sharedDistance(Path path) {
-        double sharedDistance = 0.0;
-        List<EdgeIteratorState> edges = path.calcEdges();
-        for (EdgeIteratorState edge : edges) {
-            if (nodesInCurrentAlternativeSetContains(edge.getBaseNode()) && nodesInCurrentAlternativeSetContains(edge.getAdjNode())) {
-                sharedDistance += edge.getDistance();
-            }
-        }
-        return sharedDistance;
-    }
-
-    private double sharedDistanceWithShortest(Path path) {
-        double sharedDistance = 0.0;
-        List<EdgeIteratorState> edges = path.calcEdges();
-        for (EdgeIteratorState edge : edges) {
-            if (alternatives.get(0).nodes.contains(edge.getBaseNode()) && alternatives.get(0).nodes.contains(edge.getAdjNode())) {
-                sharedDistance += edge.getDistance();
-            }
-        }
-        return sharedDistance;
-    }
-
-    private boolean nodesInCurrentAlternativeSetContains(int v) {
-        for (AlternativeInfo alternative : alternatives) {
-            if (alternative.nodes.contains(v)) {
-                return true;
-            }
-        }
-        return false;
-    }
-
-    private boolean tTest(Path path, int vIndex) {
-        if (path.getEdgeCount() == 0) return true;
-        double detourDistance = detourDistance(path);
-        double T = 0.5 * localOptimalityFactor * detourDistance;
-        int fromNode = getPreviousNodeTMetersAway(path, vIndex, T);
-        int toNode = getNextNodeTMetersAway(path, vIndex, T);
-        DijkstraBidirectionCH tRouter = new DijkstraBidirectionCH(graph);
-        tRouter.setPathExtractorSupplier(this::createPathExtractor);
-        Path tPath = tRouter.calcPath(fromNode, toNode);
-        extraVisitedNodes += tRouter.getVisitedNodes();
-        IntIndexedContainer tNodes = tPath.calcNodes();
-        int v = path.calcNodes().get(vIndex);
-        return tNodes.contains(v);
-    }
-
-    private double detourDistance(Path path) {
-        return path.getDistance() - sharedDistanceWithShortest(path);
-    }
-
-    private int getPreviousNodeTMetersAway(Path path, int vIndex, double T) {
-        List<EdgeIteratorState> edges = path.calcEdges();
-        double distance = 0.0;
-        int i = vIndex;
-        while (i > 0 && distance < T) {
-            distance += edges.get(i - 1).getDistance();
-            i--;
-        }
-        return edges.get(i).getBaseNode();
-    }
-
-    private int getNextNodeTMetersAway(Path path, int vIndex, double T) {
-        List<EdgeIteratorState> edges = path.calcEdges();
-        double distance = 0.0;
-        int i = vIndex;
-        while (i < edges.size() - 1 && distance < T) {
-            distance += edges.get(i).getDistance();
-            i++;
-        }
-        return edges.get(i - 1).getAdjNode();
-    }
-
-    private static Path concat(Graph graph, Path svPath, Path vtPath) {
-        Path path = new Path(graph);
-        path.getEdges().addAll(svPath.getEdges());
-        path.getEdges().addAll(vtPath.getEdges());
-        path.setFromNode(svPath.calcNodes().get(0));
-        path.setEndNode(vtPath.getEndNode());
-        path.setWeight(svPath.getWeight() + vtPath.getWeight());
-        path.setDistance(svPath.getDistance() + vtPath.getDistance());
-        path.addTime(svPath.getTime() + vtPath.getTime());
-        path.setFound(true);
-        return path;
-    }
-
     @Override
     public List<Path> calcPaths(int from, int to) {
         List<AlternativeInfo> alts = calcAlternatives(from, to);
@@ -254,11 +98,6 @@ public class AlternativeRouteCH extends DijkstraBidirectionCHNoSOD {
         return paths;
     }
 
-    public static class PotentialAlternativeInfo {
-        int v;
-        double weight;
-    }
-
     public static class AlternativeInfo {
         final double shareWeight;
         final Path path;
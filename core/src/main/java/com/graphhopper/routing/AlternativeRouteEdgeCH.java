@@ -19,17 +19,12 @@
 package com.graphhopper.routing;
 
 import com.carrotsearch.hppc.IntIndexedContainer;
-import com.carrotsearch.hppc.cursors.IntCursor;
-import com.carrotsearch.hppc.predicates.IntObjectPredicate;
-import com.graphhopper.routing.weighting.Weighting;
-import com.graphhopper.storage.Graph;
 import com.graphhopper.storage.RoutingCHGraph;
-import com.graphhopper.util.EdgeIteratorState;
 import com.graphhopper.util.PMap;
 
-import java.util.*;
-
-import static com.graphhopper.util.EdgeIterator.ANY_EDGE;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 
 /**
  * Minimum number-of-moving-parts implementation of alternative route search with
@@ -45,7 +40,6 @@ public class AlternativeRouteEdgeCH extends DijkstraBidirectionEdgeCHNoSOD {
     private final double maxShareFactor;
     private final double localOptimalityFactor;
     private final int maxPaths;
-    private final List<AlternativeInfo> alternatives = new ArrayList<>();
     private int extraVisitedNodes = 0;
 
     public AlternativeRouteEdgeCH(RoutingCHGraph graph, PMap hints) {
@@ -80,189 +74,18 @@ public class AlternativeRouteEdgeCH extends DijkstraBidirectionEdgeCHNoSOD {
             return Collections.emptyList();
         }
 
-        alternatives.add(new AlternativeInfo(bestPath, 0));
-
-        final ArrayList<PotentialAlternativeInfo> potentialAlternativeInfos = new ArrayList<>();
-
-        final Map<Integer, SPTEntry> bestWeightMapByNode = new HashMap<>();
-        bestWeightMapTo.forEach((IntObjectPredicate<SPTEntry>) (key, value) -> {
-            bestWeightMapByNode.put(value.adjNode, value);
-            return true;
-        });
-
-        bestWeightMapFrom.forEach((IntObjectPredicate<SPTEntry>) (wurst, fromSPTEntry) -> {
-            SPTEntry toSPTEntry = bestWeightMapByNode.get(fromSPTEntry.adjNode);
-            if (toSPTEntry == null)
-                return true;
-
-            if (fromSPTEntry.getWeightOfVisitedPath() + toSPTEntry.getWeightOfVisitedPath() > bestPath.getWeight() * maxWeightFactor)
-                return true;
-
-            // This gives us a path s -> v -> t, but since we are using contraction hierarchies,
-            // s -> v and v -> t need not be shortest paths. In fact, they can sometimes be pretty strange.
-            // We still use this preliminary path to filter for shared path length with other alternatives,
-            // so we don't have to work so much.
-            Path preliminaryRoute = createPathExtractor().extract(fromSPTEntry, toSPTEntry, fromSPTEntry.getWeightOfVisitedPath() + toSPTEntry.getWeightOfVisitedPath());
-            double preliminaryShare = calculateShare(preliminaryRoute);
-            if (preliminaryShare > maxShareFactor) {
-                return true;
-            }
-            assert fromSPTEntry.adjNode == toSPTEntry.adjNode;
-            PotentialAlternativeInfo potentialAlternativeInfo = new PotentialAlternativeInfo();
-            potentialAlternativeInfo.v = fromSPTEntry.adjNode;
-            potentialAlternativeInfo.edgeIn = getIncomingEdge(fromSPTEntry);
-            potentialAlternativeInfo.weight = 2 * (fromSPTEntry.getWeightOfVisitedPath() + toSPTEntry.getWeightOfVisitedPath()) + preliminaryShare;
-            potentialAlternativeInfos.add(potentialAlternativeInfo);
-            return true;
-        });
-
-        potentialAlternativeInfos.sort(Comparator.comparingDouble(o -> o.weight));
-
-        for (PotentialAlternativeInfo potentialAlternativeInfo : potentialAlternativeInfos) {
-            int v = potentialAlternativeInfo.v;
-            int tailSv = potentialAlternativeInfo.edgeIn;
-
-            // Okay, now we want the s -> v -> t shortest via-path, so we route s -> v and v -> t
-            // and glue them together.
-            DijkstraBidirectionEdgeCHNoSOD svRouter = new DijkstraBidirectionEdgeCHNoSOD(graph);
-            final Path suvPath = svRouter.calcPath(s, v, ANY_EDGE, tailSv);
-            extraVisitedNodes += svRouter.getVisitedNodes();
-
-            int u = graph.getBaseGraph().getEdgeIteratorState(tailSv, v).getBaseNode();
-
-            DijkstraBidirectionEdgeCHNoSOD vtRouter = new DijkstraBidirectionEdgeCHNoSOD(graph);
-            final Path uvtPath = vtRouter.calcPath(u, t, tailSv, ANY_EDGE);
-            if (!uvtPath.isFound())
-                // we were looking for the s->u->v->(x->)t path, but there might be a turn restriction
-                // at u->v->x in which case uvtPath is not found. If we do not stop here we might return
-                // an alternative that does not even reach t, and has a lower weight than the best path.
-                continue;
-            Path path = concat(graph.getBaseGraph(), graph.getBaseGraph().wrapWeighting(graph.getWeighting()), suvPath, uvtPath);
-            extraVisitedNodes += vtRouter.getVisitedNodes();
-
-            double sharedDistanceWithShortest = sharedDistanceWithShortest(path);
-            double detourLength = path.getDistance() - sharedDistanceWithShortest;
-            double directLength = bestPath.getDistance() - sharedDistanceWithShortest;
-            if (detourLength > directLength * maxWeightFactor) {
-                continue;
-            }
-
-            double share = calculateShare(path);
-            if (share > maxShareFactor) {
-                continue;
-            }
-
-            // This is the final test we need: Discard paths that are not "locally shortest" around v.
-            // So move a couple of nodes to the left and right from v on our path,
-            // route, and check if v is on the shortest path.
-            final IntIndexedContainer svNodes = suvPath.calcNodes();
-            int vIndex = svNodes.size() - 1;
-            if (!tTest(path, vIndex))
-                continue;
-
-            alternatives.add(new AlternativeInfo(path, share));
-            if (alternatives.size() >= maxPaths)
-                break;
-        }
+        // The search spaces of both directions now contain all via node candidates, the finder picks the alternatives
+        // and only unpacks the shortcuts of the most promising ones.
+        ViaNodeAlternativeFinder finder = new ViaNodeAlternativeFinder(graph, this::createPathExtractor,
+                maxWeightFactor, maxShareFactor, localOptimalityFactor, maxPaths);
+        List<ViaNodeAlternativeFinder.Alternative> found = finder.find(bestPath, bestFwdEntry, bestBwdEntry, searchSpaceFrom, searchSpaceTo);
+        extraVisitedNodes += finder.getVisitedNodes();
+        List<AlternativeInfo> alternatives = new ArrayList<>(found.size());
+        for (ViaNodeAlternativeFinder.Alternative alternative : found)
+            alternatives.add(new AlternativeInfo(alternative.path, alternative.share));
         return alternatives;
     }
 
-    private double calculateShare(final Path path) {
-        double sharedDistance = sharedDistance(path);
-        return sharedDistance / path.getDistance();
-    }
-
-    private double sharedDistance(Path path) {
-        double sharedDistance = 0.0;
-        List<EdgeIteratorState> edges = path.calcEdges();
-        for (EdgeIteratorState edge : edges) {
-            if (nodesInCurrentAlternativeSetContains(edge.getBaseNode()) && nodesInCurrentAlternativeSetContains(edge.getAdjNode())) {
-                sharedDistance += edge.getDistance();
-            }
-        }
-        return sharedDistance;
-    }
-
-    private double sharedDistanceWithShortest(Path path) {
-        double sharedDistance = 0.0;
-        List<EdgeIteratorState> edges = path.calcEdges();
-        for (EdgeIteratorState edge : edges) {
-            if (alternatives.get(0).nodes.contains(edge.getBaseNode()) && alternatives.get(0).nodes.contains(edge.getAdjNode())) {
-                sharedDistance += edge.getDistance();
-            }
-        }
-        return sharedDistance;
-    }
-
-    private boolean nodesInCurrentAlternativeSetContains(int v) {
-        for (AlternativeInfo alternative : alternatives) {
-            if (alternative.nodes.contains(v)) {
-                return true;
-            }
-        }
-        return false;
-    }
-
-    private boolean tTest(Path path, int vIndex) {
-        if (path.getEdgeCount() == 0) return true;
-        double detourDistance = detourDistance(path);
-        double T = 0.5 * localOptimalityFactor * detourDistance;
-        EdgeIteratorState fromNode = getPreviousNodeTMetersAway(path, vIndex, T);
-        EdgeIteratorState toNode = getNextNodeTMetersAway(path, vIndex, T);
-        DijkstraBidirectionEdgeCHNoSOD tRouter = new DijkstraBidirectionEdgeCHNoSOD(graph);
-        Path tPath = tRouter.calcPath(fromNode.getBaseNode(), toNode.getAdjNode(), fromNode.getEdge(), toNode.getEdge());
-        extraVisitedNodes += tRouter.getVisitedNodes();
-        IntIndexedContainer tNodes = tPath.calcNodes();
-        int v = path.calcNodes().get(vIndex);
-        return tNodes.contains(v);
-    }
-
-    private double detourDistance(Path path) {
-        return path.getDistance() - sharedDistanceWithShortest(path);
-    }
-
-    private EdgeIteratorState getPreviousNodeTMetersAway(Path path, int vIndex, double T) {
-        List<EdgeIteratorState> edges = path.calcEdges();
-        double distance = 0.0;
-        int i = vIndex;
-        while (i > 0 && distance < T) {
-            distance += edges.get(i - 1).getDistance();
-            i--;
-        }
-        return edges.get(i);
-    }
-
-    private EdgeIteratorState getNextNodeTMetersAway(Path path, int vIndex, double T) {
-        List<EdgeIteratorState> edges = path.calcEdges();
-        double distance = 0.0;
-        int i = vIndex;
-        while (i < edges.size() - 1 && distance < T) {
-            distance += edges.get(i).getDistance();
-            i++;
-        }
-        return edges.get(i - 1);
-    }
-
-    private static Path concat(Graph graph, Weighting weighting, Path suvPath, Path uvtPath) {
-        assert suvPath.isFound();
-        assert uvtPath.isFound();
-        Path path = new Path(graph);
-        path.setFromNode(suvPath.getFromNode());
-        path.getEdges().addAll(suvPath.getEdges());
-        if (uvtPath.getEdges().isEmpty())
-            throw new IllegalStateException("uvtPath.getEdges() should not be empty");
-        Iterator<IntCursor> uvtPathI = uvtPath.getEdges().iterator();
-        int uvEdge = uvtPathI.next().value;// skip u-v edge
-        uvtPathI.forEachRemaining(edge -> path.addEdge(edge.value));
-        EdgeIteratorState vuEdgeState = graph.getEdgeIteratorState(uvEdge, uvtPath.getFromNode());
-        path.setEndNode(uvtPath.getEndNode());
-        path.setWeight(suvPath.getWeight() + uvtPath.getWeight() - weighting.calcEdgeWeight(vuEdgeState, true));
-        path.setDistance(suvPath.getDistance() + uvtPath.getDistance() - vuEdgeState.getDistance());
-        path.addTime(suvPath.getTime() + uvtPath.getTime() - weighting.calcEdgeMillis(vuEdgeState, true));
-        path.setFound(true);
-        return path;
-    }
-
     @Override
     public List<Path> calcPaths(int from, int to) {
         List<AlternativeInfo> alts = calcAlternatives(from, to);
@@ -276,17 +99,6 @@ public class AlternativeRouteEdgeCH extends DijkstraBidirectionEdgeCHNoSOD {
         return paths;
     }
 
-    public static class PotentialAlternativeInfo {
-        public int v;
-        public int edgeIn;
-        double weight;
-
-        @Override
-        public String toString() {
-            return "node=" + v + ", edgeIn=" + edgeIn + ", weight=" + weight;
-        }
-    }
-
     public static class AlternativeInfo {
         final double shareWeight;
         final Path path;
@@ -45,7 +45,12 @@ public class CHPathCalculator implements PathCalculator {
         if (!edgeRestrictions.getUnfavoredEdges().isEmpty())
             throw new IllegalArgumentException("Using unfavored edges is currently not supported for CH");
         EdgeToEdgeRoutingAlgorithm algo = createAlgo();
-        return calcPaths(from, to, edgeRestrictions, algo);
+        try {
+            return calcPaths(from, to, edgeRestrictions, algo);
+        } finally {
+            if (algo instanceof AbstractBidirAlgo)
+                ((AbstractBidirAlgo) algo).releaseWorkspace();
+        }
     }
 
     private EdgeToEdgeRoutingAlgorithm createAlgo() {
@@ -17,7 +17,6 @@
  */
 package com.graphhopper.routing;
 
-import com.carrotsearch.hppc.IntObjectMap;
 import com.graphhopper.storage.RoutingCHEdgeExplorer;
 import com.graphhopper.storage.RoutingCHEdgeIterator;
 import com.graphhopper.storage.RoutingCHGraph;
@@ -38,15 +37,15 @@ public class DijkstraBidirectionCH extends DijkstraBidirectionCHNoSOD {
 
     @Override
     protected boolean fromEntryCanBeSkipped() {
-        return entryIsStallable(currFrom, bestWeightMapFrom, inEdgeExplorer, false);
+        return entryIsStallable(currFrom, searchSpaceFrom, inEdgeExplorer, false);
     }
 
     @Override
     protected boolean toEntryCanBeSkipped() {
-        return entryIsStallable(currTo, bestWeightMapTo, outEdgeExplorer, true);
+        return entryIsStallable(currTo, searchSpaceTo, outEdgeExplorer, true);
     }
 
-    private boolean entryIsStallable(SPTEntry entry, IntObjectMap<SPTEntry> bestWeightMap, RoutingCHEdgeExplorer edgeExplorer,
+    private boolean entryIsStallable(SPTEntry entry, SearchSpace searchSpace, RoutingCHEdgeExplorer edgeExplorer,
                                      boolean reverse) {
         // We check for all 'incoming' edges if we can prove that the current node (that is about to be settled) is 
         // reached via a suboptimal path. We do this regardless of the CH level of the adjacent nodes.
@@ -56,7 +55,7 @@ public class DijkstraBidirectionCH extends DijkstraBidirectionCHNoSOD {
             if (iter.getEdge() == entry.edge) {
                 continue;
             }
-            SPTEntry adjNode = bestWeightMap.get(iter.getAdjNode());
+            SPTEntry adjNode = searchSpace.get(iter.getAdjNode());
             // we have to be careful because of rounded shortcut weights in combination with virtual via nodes, see #1574
             final double precision = 0.001;
             if (adjNode != null &&
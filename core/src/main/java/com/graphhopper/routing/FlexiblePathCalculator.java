@@ -48,7 +48,12 @@ public class FlexiblePathCalculator implements PathCalculator {
     @Override
     public List<Path> calcPaths(int from, int to, EdgeRestrictions edgeRestrictions) {
         RoutingAlgorithm algo = createAlgo();
-        return calcPaths(from, to, edgeRestrictions, algo);
+        try {
+            return calcPaths(from, to, edgeRestrictions, algo);
+        } finally {
+            if (algo instanceof AbstractBidirAlgo)
+                ((AbstractBidirAlgo) algo).releaseWorkspace();
+        }
     }
 
     private RoutingAlgorithm createAlgo() {
@@ -0,0 +1,341 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing;
+
+import com.carrotsearch.hppc.*;
+import com.graphhopper.apache.commons.collections.IntFloatBinaryHeap;
+import com.graphhopper.routing.ch.ShortcutUnpacker;
+import com.graphhopper.routing.weighting.Weighting;
+import com.graphhopper.storage.RoutingCHEdgeExplorer;
+import com.graphhopper.storage.RoutingCHEdgeIterator;
+import com.graphhopper.storage.RoutingCHEdgeIteratorState;
+import com.graphhopper.storage.RoutingCHGraph;
+import com.graphhopper.util.EdgeIterator;
+
+import java.util.Arrays;
+
+/**
+ * Calculates many-to-many weight, time and distance matrices using the bucket based approach for contraction
+ * hierarchies: For every target we run one backward search in the upward graph and store the settled nodes together
+ * with their weights in 'buckets'. Then we run one forward search in the upward graph for every source and for every
+ * settled node we scan its bucket to find the best meeting node for each target. This means we only need
+ * |sources| + |targets| searches instead of |sources| * |targets| point-to-point queries.
+ * <p>
+ * The searches do not use a stopping criterion, but simply explore the (usually small) upward search space
+ * completely. The time and distance of the best paths are derived from the search trees, i.e. only the CH edges
+ * that are part of the search trees need to be unpacked and we cache their values.
+ * <p>
+ * Currently only node-based CH is supported. Use the same {@link RoutingCHGraph} (or a
+ * {@link com.graphhopper.routing.querygraph.QueryRoutingCHGraph} that contains all sources and targets) for all
+ * calculations.
+ *
+ * @see <a href="https://doi.org/10.1137/1.9781611972870.4">Knopp et al., Computing Many-to-Many Shortest Paths
+ * Using Highway Hierarchies</a>
+ */
+public class ManyToManyCH {
+    private static final int NO_ENTRY = -1;
+    private final RoutingCHGraph graph;
+    private final Weighting weighting;
+    private final int maxNodes;
+    private final RoutingCHEdgeExplorer outExplorer;
+    private final RoutingCHEdgeExplorer inExplorer;
+    private final ShortcutUnpacker shortcutUnpacker;
+    private final LongLongHashMap edgeMillisCache = new LongLongHashMap();
+    private final LongDoubleHashMap edgeDistanceCache = new LongDoubleHashMap();
+    private final SearchSpace searchSpace = new SearchSpace();
+    private boolean calcTimeAndDistance = true;
+    private int visitedNodes;
+    // used to sum up the values of the original edges while unpacking a shortcut
+    private long unpackedMillis;
+    private double unpackedDistance;
+
+    // buckets: for every node we store a linked list of (target, weight, time, distance) entries, the head of the list
+    // is stored in bucketHeads and the next entry in bucketNext
+    private final IntIntHashMap bucketHeads = new IntIntHashMap();
+    private final IntArrayList bucketNext = new IntArrayList();
+    private final IntArrayList bucketTargets = new IntArrayList();
+    private final DoubleArrayList bucketWeights = new DoubleArrayList();
+    private final LongArrayList bucketMillis = new LongArrayList();
+    private final DoubleArrayList bucketDistances = new DoubleArrayList();
+
+    public ManyToManyCH(RoutingCHGraph graph) {
+        if (graph.isEdgeBased())
+            throw new IllegalArgumentException("Many-to-many calculation is not supported for edge-based CH");
+        this.graph = graph;
+        this.weighting = graph.getWeighting();
+        this.maxNodes = graph.getBaseGraph().getBaseGraph().getNodes();
+        this.outExplorer = graph.createOutEdgeExplorer();
+        this.inExplorer = graph.createInEdgeExplorer();
+        this.shortcutUnpacker = new ShortcutUnpacker(graph, (edge, reverse, prevOrNextEdgeId) -> {
+            unpackedMillis += weighting.calcEdgeMillis(edge, reverse);
+            unpackedDistance += edge.getDistance();
+        }, false);
+    }
+
+    /**
+     * @param calcTimeAndDistance if false only the weights are calculated, which is considerably faster
+     */
+    public ManyToManyCH setCalcTimeAndDistance(boolean calcTimeAndDistance) {
+        this.calcTimeAndDistance = calcTimeAndDistance;
+        return this;
+    }
+
+    /**
+     * @return the number of nodes that were settled by all searches of the last calculation
+     */
+    public int getVisitedNodes() {
+        return visitedNodes;
+    }
+
+    /**
+     * Calculates the matrix between the given nodes. The results are stored row by row, i.e. the entry for the i-th
+     * source and the j-th target is found at index i * targets.length + j. Unreachable targets get an infinite weight
+     * and distance and a time of {@link Long#MAX_VALUE}.
+     */
+    public Result calcMatrix(int[] sources, int[] targets) {
+        visitedNodes = 0;
+        clearBuckets();
+        for (int j = 0; j < targets.length; j++) {
+            searchSpace.explore(targets[j], inExplorer, true);
+            for (int i = 0; i < searchSpace.size(); i++)
+                addToBucket(searchSpace.nodes.get(i), j, searchSpace.weights.get(i), searchSpace.millis.get(i), searchSpace.distances.get(i));
+        }
+
+        Result result = new Result(sources.length, targets.length, calcTimeAndDistance);
+        for (int i = 0; i < sources.length; i++) {
+            int offset = i * targets.length;
+            searchSpace.explore(sources[i], outExplorer, false);
+            for (int k = 0; k < searchSpace.size(); k++) {
+                int entry = bucketHeads.getOrDefault(searchSpace.nodes.get(k), NO_ENTRY);
+                double fwdWeight = searchSpace.weights.get(k);
+                while (entry != NO_ENTRY) {
+                    int index = offset + bucketTargets.get(entry);
+                    double weight = fwdWeight + bucketWeights.get(entry);
+                    if (weight < result.weights[index]) {
+                        result.weights[index] = weight;
+                        if (calcTimeAndDistance) {
+                            result.times[index] = searchSpace.millis.get(k) + bucketMillis.get(entry);
+                            result.distances[index] = searchSpace.distances.get(k) + bucketDistances.get(entry);
+                        }
+                    }
+                    entry = bucketNext.get(entry);
+                }
+            }
+        }
+        clearBuckets();
+        return result;
+    }
+
+    private void addToBucket(int node, int target, double weight, long millis, double distance) {
+        int entry = bucketTargets.size();
+        bucketTargets.add(target);
+        bucketWeights.add(weight);
+        bucketMillis.add(millis);
+        bucketDistances.add(distance);
+        bucketNext.add(bucketHeads.getOrDefault(node, NO_ENTRY));
+        bucketHeads.put(node, entry);
+    }
+
+    private void clearBuckets() {
+        bucketHeads.clear();
+        bucketNext.clear();
+        bucketTargets.clear();
+        bucketWeights.clear();
+        bucketMillis.clear();
+        bucketDistances.clear();
+    }
+
+    private boolean accept(RoutingCHEdgeIteratorState edge, int incomingEdge) {
+        if (edge.getEdge() == incomingEdge)
+            return false;
+        int base = edge.getBaseNode();
+        int adj = edge.getAdjNode();
+        // always accept virtual edges, see #288
+        if (base >= maxNodes || adj >= maxNodes)
+            return true;
+        return graph.getLevel(base) <= graph.getLevel(adj);
+    }
+
+    /**
+     * Calculates the time and distance to travel along the given CH edge in the direction of the search. The values
+     * are cached, because the same edges are part of many search trees.
+     */
+    private void unpack(RoutingCHEdgeIteratorState edge, boolean reverse) {
+        // the travel direction is determined by the node we arrive at (node-based CH does not create loop shortcuts)
+        int arrivalNode = reverse ? edge.getBaseNode() : edge.getAdjNode();
+        int departureNode = reverse ? edge.getAdjNode() : edge.getBaseNode();
+        long key = ((long) edge.getEdge() << 1) | (arrivalNode > departureNode ? 1 : 0);
+        int slot = edgeMillisCache.indexOf(key);
+        if (edgeMillisCache.indexExists(slot)) {
+            unpackedMillis = edgeMillisCache.indexGet(slot);
+            unpackedDistance = edgeDistanceCache.get(key);
+            return;
+        }
+        unpackedMillis = 0;
+        unpackedDistance = 0;
+        if (reverse)
+            shortcutUnpacker.visitOriginalEdgesBwd(edge.getEdge(), edge.getAdjNode(), false, EdgeIterator.NO_EDGE);
+        else
+            shortcutUnpacker.visitOriginalEdgesFwd(edge.getEdge(), edge.getAdjNode(), false, EdgeIterator.NO_EDGE);
+        edgeMillisCache.put(key, unpackedMillis);
+        edgeDistanceCache.put(key, unpackedDistance);
+    }
+
+    /**
+     * A dijkstra search in the upward graph that keeps the full search space in primitive lists. The instance is
+     * re-used for all searches of a matrix calculation to avoid allocations.
+     */
+    private class SearchSpace {
+        private final IntIntHashMap entriesByNode = new IntIntHashMap();
+        private final IntFloatBinaryHeap heap = new IntFloatBinaryHeap(1000);
+        final IntArrayList nodes = new IntArrayList();
+        final DoubleArrayList weights = new DoubleArrayList();
+        final LongArrayList millis = new LongArrayList();
+        final DoubleArrayList distances = new DoubleArrayList();
+        private final IntArrayList parentEdges = new IntArrayList();
+        private final IntArrayList parentEntries = new IntArrayList();
+        private final BitSet settled = new BitSet();
+        private int settledCount;
+
+        int size() {
+            return nodes.size();
+        }
+
+        void explore(int start, RoutingCHEdgeExplorer explorer, boolean reverse) {
+            entriesByNode.clear();
+            heap.clear();
+            nodes.clear();
+            weights.clear();
+            millis.clear();
+            distances.clear();
+            parentEdges.clear();
+            parentEntries.clear();
+            settled.clear();
+            settledCount = 0;
+            addEntry(start, 0, EdgeIterator.NO_EDGE, NO_ENTRY);
+            heap.insert(0, 0);
+            while (!heap.isEmpty()) {
+                int entry = heap.poll();
+                // the heap does not support an efficient update, so an entry might be contained multiple times
+                if (settled.get(entry))
+                    continue;
+                settled.set(entry);
+                settledCount++;
+                if (calcTimeAndDistance && parentEntries.get(entry) != NO_ENTRY) {
+                    int parent = parentEntries.get(entry);
+                    unpack(graph.getEdgeIteratorState(parentEdges.get(entry), nodes.get(entry)), reverse);
+                    millis.set(entry, millis.get(parent) + unpackedMillis);
+                    distances.set(entry, distances.get(parent) + unpackedDistance);
+                }
+                RoutingCHEdgeIterator iter = explorer.setBaseNode(nodes.get(entry));
+                while (iter.next()) {
+                    if (!accept(iter, parentEdges.get(entry)))
+                        continue;
+                    double weight = weights.get(entry) + iter.getWeight(reverse);
+                    if (Double.isInfinite(weight))
+                        continue;
+                    int adjNode = iter.getAdjNode();
+                    int adjEntry = entriesByNode.getOrDefault(adjNode, NO_ENTRY);
+                    if (adjEntry == NO_ENTRY) {
+                        adjEntry = addEntry(adjNode, weight, iter.getEdge(), entry);
+                        heap.insert(weight, adjEntry);
+                    } else if (!settled.get(adjEntry) && weight < weights.get(adjEntry)) {
+                        weights.set(adjEntry, weight);
+                        parentEdges.set(adjEntry, iter.getEdge());
+                        parentEntries.set(adjEntry, entry);
+                        heap.insert(weight, adjEntry);
+                    }
+                }
+            }
+            visitedNodes += settledCount;
+        }
+
+        private int addEntry(int node, double weight, int parentEdge, int parentEntry) {
+            int entry = nodes.size();
+            nodes.add(node);
+            weights.add(weight);
+            millis.add(0);
+            distances.add(0);
+            parentEdges.add(parentEdge);
+            parentEntries.add(parentEntry);
+            entriesByNode.put(node, entry);
+            return entry;
+        }
+    }
+
+    public static class Result {
+        private final int sources;
+        private final int targets;
+        private final double[] weights;
+        private final long[] times;
+        private final double[] distances;
+
+        Result(int sources, int targets, boolean withTimeAndDistance) {
+            this.sources = sources;
+            this.targets = targets;
+            int size = sources * targets;
+            weights = new double[size];
+            Arrays.fill(weights, Double.POSITIVE_INFINITY);
+            times = withTimeAndDistance ? new long[size] : new long[0];
+            Arrays.fill(times, Long.MAX_VALUE);
+            distances = withTimeAndDistance ? new double[size] : new double[0];
+            Arrays.fill(distances, Double.POSITIVE_INFINITY);
+        }
+
+        public int getSources() {
+            return sources;
+        }
+
+        public int getTargets() {
+            return targets;
+        }
+
+        /**
+         * @return the weights of all source/target pairs in row-major order
+         */
+        public double[] getWeights() {
+            return weights;
+        }
+
+        /**
+         * @return the times in milliseconds in row-major order or an empty array if times were not calculated
+         */
+        public long[] getTimes() {
+            return times;
+        }
+
+        /**
+         * @return the distances in meters in row-major order or an empty array if distances were not calculated
+         */
+        public double[] getDistances() {
+            return distances;
+        }
+
+        public double getWeight(int source, int target) {
+            return weights[source * targets + target];
+        }
+
+        public long getTime(int source, int target) {
+            return times[source * targets + target];
+        }
+
+        public double getDistance(int source, int target) {
+            return distances[source * targets + target];
+        }
+    }
+}
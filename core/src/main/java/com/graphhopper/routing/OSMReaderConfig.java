@@ -33,6 +33,7 @@ public class OSMReaderConfig {
     private int ramerElevationSmoothingMax = 5;
     private double longEdgeSamplingDistance = Double.MAX_VALUE;
     private int workerThreads = 2;
+    private int wayThreads = 1;
     private double defaultElevation = 0;
 
     public List<String> getIgnoredHighways() {
@@ -157,6 +158,20 @@ public class OSMReaderConfig {
         return this;
     }
 
+    public int getWayThreads() {
+        return wayThreads;
+    }
+
+    /**
+     * Sets the number of threads used to preprocess the OSM ways and to evaluate the tag parsers during the second
+     * pass of the OSM import. The edges are still created by a single thread and in the order of the OSM file. Default
+     * is 1.
+     */
+    public OSMReaderConfig setWayThreads(int wayThreads) {
+        this.wayThreads = wayThreads;
+        return this;
+    }
+
     public double getDefaultElevation() {
         return defaultElevation;
     }
@@ -0,0 +1,686 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing;
+
+import com.carrotsearch.hppc.*;
+import com.graphhopper.apache.commons.collections.IntFloatBinaryHeap;
+import com.graphhopper.routing.ch.ShortcutUnpacker;
+import com.graphhopper.storage.RoutingCHEdgeExplorer;
+import com.graphhopper.storage.RoutingCHEdgeIterator;
+import com.graphhopper.storage.RoutingCHEdgeIteratorState;
+import com.graphhopper.storage.RoutingCHGraph;
+import com.graphhopper.util.EdgeIterator;
+
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Calculates the shortest paths from one node to all nodes (or to a selected subset of nodes) of a contraction
+ * hierarchy: First we run a dijkstra search in the upward graph from the source node. Then we sweep over all nodes in
+ * the order of decreasing level and relax the downward edges that enter them. Since all the downward edges of a node
+ * come from nodes with a higher level their weights are final when we visit the node. The sweep only needs a few
+ * linear scans over flat arrays and is much faster than a dijkstra search over the whole graph.
+ * <p>
+ * The node order and the downward edges are prepared once when creating this class and can be shared by all threads.
+ * For the calculations use a {@link Calculator} per thread, e.g. via {@link #borrowCalculator()}. Its working arrays
+ * have the size of the graph, so only a bounded number of them is kept for re-use. If only
+ * the shortest paths to a (small) subset of the nodes are needed use {@link #createCalculator(int[])} which restricts
+ * the sweep to the nodes that can reach the selected nodes in the downward graph (RPHAST). If only the nodes within a
+ * weight, time or distance limit are needed set the limit on the calculator, then the (comparably expensive) times and
+ * distances are only calculated for these nodes.
+ * <p>
+ * Currently only node-based CH is supported.
+ *
+ * @see <a href="https://doi.org/10.1109/IPDPS.2011.89">Delling et al., PHAST: Hardware-Accelerated Shortest Path
+ * Trees</a>
+ * @see <a href="https://doi.org/10.1007/978-3-642-20662-7_21">Delling et al., Faster Batched Shortest Paths in Road
+ * Networks</a>
+ */
+public class PHAST {
+    private static final int NO_ENTRY = -1;
+    private final RoutingCHGraph graph;
+    private final boolean reverseFlow;
+    private final Sweep sweep;
+    private final BlockingQueue<Calculator> pooledCalculators;
+
+    /**
+     * @param reverseFlow if true the shortest paths from all nodes to the source node are calculated
+     */
+    public PHAST(RoutingCHGraph graph, boolean reverseFlow) {
+        this(graph, reverseFlow, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @param maxPooledCalculators the maximum number of calculators for all nodes that are kept for re-use, see
+     *                             {@link #borrowCalculator()}
+     */
+    public PHAST(RoutingCHGraph graph, boolean reverseFlow, int maxPooledCalculators) {
+        if (graph.isEdgeBased())
+            throw new IllegalArgumentException("PHAST is not supported for edge-based CH");
+        if (maxPooledCalculators < 1)
+            throw new IllegalArgumentException("maxPooledCalculators must be positive: " + maxPooledCalculators);
+        this.graph = graph;
+        this.reverseFlow = reverseFlow;
+        this.sweep = createSweep();
+        this.pooledCalculators = new ArrayBlockingQueue<>(maxPooledCalculators);
+    }
+
+    public RoutingCHGraph getGraph() {
+        return graph;
+    }
+
+    public boolean isReverseFlow() {
+        return reverseFlow;
+    }
+
+    /**
+     * Creates a calculator for the shortest paths to all nodes of the graph.
+     */
+    public Calculator createCalculator() {
+        return new Calculator(sweep, null);
+    }
+
+    /**
+     * @return a calculator for the shortest paths to all nodes of the graph, which is taken from the pool if possible,
+     * so its working arrays are not allocated for every calculation. Pass it to {@link #returnCalculator(Calculator)}
+     * when the calculation is done, e.g. in a finally block, and do not use it afterwards.
+     */
+    public Calculator borrowCalculator() {
+        Calculator calculator = pooledCalculators.poll();
+        return calculator == null ? createCalculator() : calculator;
+    }
+
+    /**
+     * Resets the given calculator and keeps it for the next {@link #borrowCalculator()} call, unless the pool is full
+     * already. Calculators for selected nodes are not kept, so they can be passed here as well.
+     */
+    public void returnCalculator(Calculator calculator) {
+        if (calculator.sweep != sweep)
+            return;
+        calculator.reset();
+        // if the pool is full the calculator is left to the garbage collector
+        pooledCalculators.offer(calculator);
+    }
+
+    /**
+     * Creates a calculator for the shortest paths to the given nodes only (RPHAST). The selection is prepared once and
+     * the calculator can be used for many source nodes.
+     */
+    public Calculator createCalculator(int[] targets) {
+        return new Calculator(createRestrictedSweep(targets), targets.clone());
+    }
+
+    private Sweep createSweep() {
+        int nodes = graph.getNodes();
+        long[] keys = new long[nodes];
+        for (int node = 0; node < nodes; node++)
+            keys[node] = ((long) -graph.getLevel(node) << 32) | node;
+        Arrays.sort(keys);
+        int[] order = new int[nodes];
+        int[] indexByNode = new int[nodes];
+        for (int i = 0; i < nodes; i++) {
+            order[i] = (int) keys[i];
+            indexByNode[order[i]] = i;
+        }
+
+        // for every node we store the edges that come from nodes with a higher level, in the direction of the search
+        RoutingCHEdgeExplorer explorer = reverseFlow ? graph.createOutEdgeExplorer() : graph.createInEdgeExplorer();
+        int[] firstEdge = new int[nodes + 1];
+        IntArrayList edgeFrom = new IntArrayList(nodes * 2);
+        DoubleArrayList edgeWeights = new DoubleArrayList(nodes * 2);
+        IntArrayList edgeIds = new IntArrayList(nodes * 2);
+        for (int i = 0; i < nodes; i++) {
+            firstEdge[i] = edgeFrom.size();
+            int node = order[i];
+            int level = graph.getLevel(node);
+            RoutingCHEdgeIterator iter = explorer.setBaseNode(node);
+            while (iter.next()) {
+                if (graph.getLevel(iter.getAdjNode()) <= level)
+                    continue;
+                // for the forward search we need the weight from the adjacent node to this node
+                double weight = iter.getWeight(!reverseFlow);
+                if (Double.isInfinite(weight))
+                    continue;
+                edgeFrom.add(indexByNode[iter.getAdjNode()]);
+                edgeWeights.add(weight);
+                edgeIds.add(iter.getEdge());
+            }
+        }
+        firstEdge[nodes] = edgeFrom.size();
+        return new Sweep(order, indexByNode, null, firstEdge, edgeFrom.toArray(), edgeWeights.toArray(), edgeIds.toArray());
+    }
+
+    /**
+     * Selects the given nodes and all nodes from which they can be reached via downward edges. Since the sweep visits
+     * all these nodes before the selected ones we can simply skip all other nodes.
+     */
+    private Sweep createRestrictedSweep(int[] targets) {
+        BitSet selected = new BitSet(sweep.size());
+        IntArrayList stack = new IntArrayList();
+        for (int target : targets) {
+            if (target < 0 || target >= sweep.size())
+                throw new IllegalArgumentException("Invalid target node: " + target);
+            int index = sweep.indexOf(target);
+            if (!selected.getAndSet(index))
+                stack.add(index);
+        }
+        while (!stack.isEmpty()) {
+            int index = stack.remove(stack.size() - 1);
+            for (int e = sweep.firstEdge[index]; e < sweep.firstEdge[index + 1]; e++) {
+                if (!selected.getAndSet(sweep.edgeFrom[e]))
+                    stack.add(sweep.edgeFrom[e]);
+            }
+        }
+
+        int size = (int) selected.cardinality();
+        int[] order = new int[size];
+        IntIntHashMap indexByNode = new IntIntHashMap(size);
+        IntIntHashMap indexByFullIndex = new IntIntHashMap(size);
+        int[] firstEdge = new int[size + 1];
+        IntArrayList edgeFrom = new IntArrayList();
+        DoubleArrayList edgeWeights = new DoubleArrayList();
+        IntArrayList edgeIds = new IntArrayList();
+        int i = 0;
+        // BitSet iterates in ascending order, which is the order of the full sweep
+        for (int fullIndex = selected.nextSetBit(0); fullIndex >= 0; fullIndex = selected.nextSetBit(fullIndex + 1), i++) {
+            order[i] = sweep.order[fullIndex];
+            indexByNode.put(order[i], i);
+            indexByFullIndex.put(fullIndex, i);
+            firstEdge[i] = edgeFrom.size();
+            for (int e = sweep.firstEdge[fullIndex]; e < sweep.firstEdge[fullIndex + 1]; e++) {
+                edgeFrom.add(indexByFullIndex.get(sweep.edgeFrom[e]));
+                edgeWeights.add(sweep.edgeWeights[e]);
+                edgeIds.add(sweep.edgeIds[e]);
+            }
+        }
+        firstEdge[size] = edgeFrom.size();
+        return new Sweep(order, null, indexByNode, firstEdge, edgeFrom.toArray(), edgeWeights.toArray(), edgeIds.toArray());
+    }
+
+    /**
+     * The nodes in the order of the sweep and for each of them the edges coming from nodes that are visited earlier,
+     * in compressed sparse row format.
+     */
+    private static class Sweep {
+        final int[] order;
+        final int[] indexByNode;
+        final IntIntHashMap indexByNodeMap;
+        final int[] firstEdge;
+        final int[] edgeFrom;
+        final double[] edgeWeights;
+        final int[] edgeIds;
+
+        Sweep(int[] order, int[] indexByNode, IntIntHashMap indexByNodeMap, int[] firstEdge, int[] edgeFrom, double[] edgeWeights, int[] edgeIds) {
+            this.order = order;
+            this.indexByNode = indexByNode;
+            this.indexByNodeMap = indexByNodeMap;
+            this.firstEdge = firstEdge;
+            this.edgeFrom = edgeFrom;
+            this.edgeWeights = edgeWeights;
+            this.edgeIds = edgeIds;
+        }
+
+        int size() {
+            return order.length;
+        }
+
+        /**
+         * @return the position of the given node in the sweep or -1 if it is not part of the sweep
+         */
+        int indexOf(int node) {
+            if (indexByNode != null)
+                return node < indexByNode.length ? indexByNode[node] : NO_ENTRY;
+            return indexByNodeMap.getOrDefault(node, NO_ENTRY);
+        }
+    }
+
+    /**
+     * Runs the actual calculations. The instance keeps its working arrays between calculations, so it should be
+     * re-used, but it must not be shared between threads.
+     */
+    public class Calculator {
+        private final Sweep sweep;
+        private final int[] targets;
+        private final double[] weights;
+        private final long[] times;
+        private final double[] distances;
+        private final int[] lastEdges;
+        private final UpwardSearch upwardSearch = new UpwardSearch();
+        private final LongLongHashMap edgeMillisCache = new LongLongHashMap();
+        private final LongDoubleHashMap edgeDistanceCache = new LongDoubleHashMap();
+        private RoutingCHGraph queryGraph;
+        private ShortcutUnpacker shortcutUnpacker;
+        private boolean calcTimeAndDistance = true;
+        private double weightLimit = Double.POSITIVE_INFINITY;
+        private double timeLimit = Double.POSITIVE_INFINITY;
+        private double distanceLimit = Double.POSITIVE_INFINITY;
+        private int visitedNodes;
+        // used to sum up the values of the original edges while unpacking a shortcut
+        private long unpackedMillis;
+        private double unpackedDistance;
+
+        private Calculator(Sweep sweep, int[] targets) {
+            this.sweep = sweep;
+            this.targets = targets;
+            weights = new double[sweep.size()];
+            times = new long[sweep.size()];
+            distances = new double[sweep.size()];
+            lastEdges = new int[sweep.size()];
+        }
+
+        /**
+         * @param calcTimeAndDistance if false only the weights are calculated, which is considerably faster
+         */
+        public Calculator setCalcTimeAndDistance(boolean calcTimeAndDistance) {
+            this.calcTimeAndDistance = calcTimeAndDistance;
+            return this;
+        }
+
+        /**
+         * Only the nodes whose shortest path does not exceed the given weight are included in the result.
+         */
+        public Calculator setWeightLimit(double weightLimit) {
+            this.weightLimit = weightLimit;
+            return this;
+        }
+
+        /**
+         * Only the nodes whose shortest path does not take longer than the given time (in milliseconds) are included
+         * in the result. Requires the calculation of times and distances.
+         */
+        public Calculator setTimeLimit(double timeLimit) {
+            this.timeLimit = timeLimit;
+            return this;
+        }
+
+        /**
+         * Only the nodes whose shortest path is not longer than the given distance (in meters) are included in the
+         * result. Requires the calculation of times and distances.
+         */
+        public Calculator setDistanceLimit(double distanceLimit) {
+            this.distanceLimit = distanceLimit;
+            return this;
+        }
+
+        private void reset() {
+            calcTimeAndDistance = true;
+            weightLimit = Double.POSITIVE_INFINITY;
+            timeLimit = Double.POSITIVE_INFINITY;
+            distanceLimit = Double.POSITIVE_INFINITY;
+            // do not keep the query graph of the last request alive
+            queryGraph = null;
+            shortcutUnpacker = null;
+            edgeMillisCache.release();
+            edgeDistanceCache.release();
+        }
+
+        private boolean isLimited() {
+            return weightLimit < Double.POSITIVE_INFINITY || timeLimit < Double.POSITIVE_INFINITY || distanceLimit < Double.POSITIVE_INFINITY;
+        }
+
+        /**
+         * @return the number of nodes that were visited by the last calculation
+         */
+        public int getVisitedNodes() {
+            return visitedNodes;
+        }
+
+        /**
+         * @param queryGraph the graph this PHAST instance was created for or a
+         *                   {@link com.graphhopper.routing.querygraph.QueryRoutingCHGraph} on top of it that contains
+         *                   the (virtual) source node. Virtual nodes are not included in the result.
+         */
+        public Result calc(RoutingCHGraph queryGraph, int source) {
+            if (!calcTimeAndDistance && (timeLimit < Double.POSITIVE_INFINITY || distanceLimit < Double.POSITIVE_INFINITY))
+                throw new IllegalStateException("A time or distance limit requires the calculation of times and distances");
+            if (queryGraph != this.queryGraph) {
+                this.queryGraph = queryGraph;
+                shortcutUnpacker = new ShortcutUnpacker(queryGraph, (edge, reverse, prevOrNextEdgeId) -> {
+                    unpackedMillis += queryGraph.getWeighting().calcEdgeMillis(edge, reverse);
+                    unpackedDistance += edge.getDistance();
+                }, false);
+            }
+            edgeMillisCache.clear();
+            edgeDistanceCache.clear();
+            Arrays.fill(weights, Double.POSITIVE_INFINITY);
+            if (calcTimeAndDistance) {
+                Arrays.fill(times, Long.MAX_VALUE);
+                Arrays.fill(distances, Double.POSITIVE_INFINITY);
+                Arrays.fill(lastEdges, EdgeIterator.NO_EDGE);
+            }
+
+            upwardSearch.explore(source);
+            for (int i = 0; i < upwardSearch.nodes.size(); i++) {
+                int index = sweep.indexOf(upwardSearch.nodes.get(i));
+                if (index == NO_ENTRY)
+                    continue;
+                weights[index] = upwardSearch.weights.get(i);
+                if (calcTimeAndDistance) {
+                    times[index] = upwardSearch.millis.get(i);
+                    distances[index] = upwardSearch.distances.get(i);
+                    lastEdges[index] = upwardSearch.lastEdges.get(i);
+                }
+            }
+            visitedNodes = upwardSearch.nodes.size();
+
+            for (int index = 0; index < sweep.size(); index++) {
+                double weight = weights[index];
+                int bestEdge = NO_ENTRY;
+                for (int e = sweep.firstEdge[index]; e < sweep.firstEdge[index + 1]; e++) {
+                    double tmpWeight = weights[sweep.edgeFrom[e]] + sweep.edgeWeights[e];
+                    if (tmpWeight < weight) {
+                        weight = tmpWeight;
+                        bestEdge = e;
+                    }
+                }
+                if (bestEdge == NO_ENTRY)
+                    continue;
+                weights[index] = weight;
+                visitedNodes++;
+                if (calcTimeAndDistance) {
+                    int parent = sweep.edgeFrom[bestEdge];
+                    // times and distances do not decrease along a path, so if the parent is not within the limits
+                    // (or was not reached) this node is not either and there is no need to unpack the edge
+                    if (times[parent] == Long.MAX_VALUE || weight > weightLimit) {
+                        times[index] = Long.MAX_VALUE;
+                        distances[index] = Double.POSITIVE_INFINITY;
+                        lastEdges[index] = EdgeIterator.NO_EDGE;
+                        continue;
+                    }
+                    int node = sweep.order[index];
+                    RoutingCHEdgeIteratorState edge = queryGraph.getEdgeIteratorState(sweep.edgeIds[bestEdge], node);
+                    unpack(edge);
+                    setTimeAndDistance(index, times[parent] + unpackedMillis, distances[parent] + unpackedDistance, findLastEdge(edge, node));
+                }
+            }
+            return createResult();
+        }
+
+        /**
+         * Stores the given values, or marks the node as not within the limits if they are exceeded.
+         */
+        private void setTimeAndDistance(int index, long time, double distance, int lastEdge) {
+            if (time > timeLimit || distance > distanceLimit) {
+                times[index] = Long.MAX_VALUE;
+                distances[index] = Double.POSITIVE_INFINITY;
+                lastEdges[index] = EdgeIterator.NO_EDGE;
+            } else {
+                times[index] = time;
+                distances[index] = distance;
+                lastEdges[index] = lastEdge;
+            }
+        }
+
+        private boolean isWithinLimits(int index) {
+            return weights[index] <= weightLimit && (!calcTimeAndDistance || times[index] != Long.MAX_VALUE);
+        }
+
+        private Result createResult() {
+            int size = targets == null ? sweep.size() : targets.length;
+            // the positions of the result entries in the sweep
+            int[] indexes = new int[size];
+            for (int i = 0; i < size; i++)
+                indexes[i] = sweep.indexOf(targets == null ? i : targets[i]);
+            int[] nodes = targets;
+            if (isLimited()) {
+                // the nodes outside the limits are not included, for all nodes we keep the order of the sweep
+                IntArrayList selectedIndexes = new IntArrayList();
+                IntArrayList selectedNodes = new IntArrayList();
+                for (int i = 0; i < size; i++) {
+                    int index = targets == null ? i : indexes[i];
+                    if (isWithinLimits(index)) {
+                        selectedIndexes.add(index);
+                        selectedNodes.add(targets == null ? sweep.order[index] : targets[i]);
+                    }
+                }
+                indexes = selectedIndexes.toArray();
+                nodes = selectedNodes.toArray();
+                size = indexes.length;
+            }
+            Result result = new Result(nodes, size, calcTimeAndDistance);
+            for (int i = 0; i < size; i++) {
+                int index = indexes[i];
+                result.weights[i] = weights[index];
+                if (calcTimeAndDistance) {
+                    result.times[i] = times[index];
+                    result.distances[i] = distances[index];
+                    result.lastEdges[i] = lastEdges[index];
+                }
+            }
+            return result;
+        }
+
+        /**
+         * Calculates the time and distance to travel along the given CH edge in the direction of the search. The
+         * values are cached, because in most cases the same shortcuts are used for many nodes.
+         */
+        private void unpack(RoutingCHEdgeIteratorState edge) {
+            // the travel direction is determined by the node we arrive at (node-based CH does not create loop shortcuts)
+            int arrivalNode = reverseFlow ? edge.getBaseNode() : edge.getAdjNode();
+            int departureNode = reverseFlow ? edge.getAdjNode() : edge.getBaseNode();
+            long key = ((long) edge.getEdge() << 1) | (arrivalNode > departureNode ? 1 : 0);
+            int slot = edgeMillisCache.indexOf(key);
+            if (edgeMillisCache.indexExists(slot)) {
+                unpackedMillis = edgeMillisCache.indexGet(slot);
+                unpackedDistance = edgeDistanceCache.get(key);
+                return;
+            }
+            unpackedMillis = 0;
+            unpackedDistance = 0;
+            if (reverseFlow)
+                shortcutUnpacker.visitOriginalEdgesBwd(edge.getEdge(), edge.getAdjNode(), false, EdgeIterator.NO_EDGE);
+            else
+                shortcutUnpacker.visitOriginalEdgesFwd(edge.getEdge(), edge.getAdjNode(), false, EdgeIterator.NO_EDGE);
+            edgeMillisCache.put(key, unpackedMillis);
+            edgeDistanceCache.put(key, unpackedDistance);
+        }
+
+        /**
+         * @return the original edge of the given CH edge that is adjacent to the given node
+         */
+        private int findLastEdge(RoutingCHEdgeIteratorState edge, int node) {
+            while (edge.isShortcut()) {
+                RoutingCHEdgeIteratorState skipped = queryGraph.getEdgeIteratorState(edge.getSkippedEdge2(), node);
+                edge = skipped == null ? queryGraph.getEdgeIteratorState(edge.getSkippedEdge1(), node) : skipped;
+            }
+            return edge.getOrigEdge();
+        }
+
+        private boolean accept(RoutingCHEdgeIteratorState edge, int incomingEdge) {
+            if (edge.getEdge() == incomingEdge)
+                return false;
+            int base = edge.getBaseNode();
+            int adj = edge.getAdjNode();
+            // always accept virtual edges, see #288
+            if (base >= graph.getNodes() || adj >= graph.getNodes())
+                return true;
+            return queryGraph.getLevel(base) <= queryGraph.getLevel(adj);
+        }
+
+        /**
+         * A dijkstra search in the upward graph that keeps the search space in primitive lists, similar to the one
+         * in {@link ManyToManyCH}.
+         */
+        private class UpwardSearch {
+            private final IntIntHashMap entriesByNode = new IntIntHashMap();
+            private final IntFloatBinaryHeap heap = new IntFloatBinaryHeap(1000);
+            final IntArrayList nodes = new IntArrayList();
+            final DoubleArrayList weights = new DoubleArrayList();
+            final LongArrayList millis = new LongArrayList();
+            final DoubleArrayList distances = new DoubleArrayList();
+            final IntArrayList lastEdges = new IntArrayList();
+            private final IntArrayList parentEdges = new IntArrayList();
+            private final IntArrayList parentEntries = new IntArrayList();
+            private final BitSet settled = new BitSet();
+
+            void explore(int start) {
+                entriesByNode.clear();
+                heap.clear();
+                nodes.clear();
+                weights.clear();
+                millis.clear();
+                distances.clear();
+                lastEdges.clear();
+                parentEdges.clear();
+                parentEntries.clear();
+                settled.clear();
+                RoutingCHEdgeExplorer explorer = reverseFlow ? queryGraph.createInEdgeExplorer() : queryGraph.createOutEdgeExplorer();
+                addEntry(start, 0, EdgeIterator.NO_EDGE, NO_ENTRY);
+                millis.set(0, 0);
+                distances.set(0, 0);
+                heap.insert(0, 0);
+                while (!heap.isEmpty()) {
+                    int entry = heap.poll();
+                    // the heap does not support an efficient update, so an entry might be contained multiple times
+                    if (settled.get(entry))
+                        continue;
+                    settled.set(entry);
+                    // all nodes that are not settled yet exceed the weight limit as well. we keep their (upper bound)
+                    // weights, but they are not within the limits as their time is not set.
+                    if (weights.get(entry) > weightLimit)
+                        break;
+                    int parent = parentEntries.get(entry);
+                    // the times of the nodes not within the limits stay at Long.MAX_VALUE, like in the sweep
+                    if (calcTimeAndDistance && parent != NO_ENTRY && millis.get(parent) != Long.MAX_VALUE) {
+                        RoutingCHEdgeIteratorState edge = queryGraph.getEdgeIteratorState(parentEdges.get(entry), nodes.get(entry));
+                        unpack(edge);
+                        long time = millis.get(parent) + unpackedMillis;
+                        double distance = distances.get(parent) + unpackedDistance;
+                        if (time <= timeLimit && distance <= distanceLimit) {
+                            millis.set(entry, time);
+                            distances.set(entry, distance);
+                            lastEdges.set(entry, findLastEdge(edge, nodes.get(entry)));
+                        }
+                    }
+                    RoutingCHEdgeIterator iter = explorer.setBaseNode(nodes.get(entry));
+                    while (iter.next()) {
+                        if (!accept(iter, parentEdges.get(entry)))
+                            continue;
+                        double weight = weights.get(entry) + iter.getWeight(reverseFlow);
+                        if (Double.isInfinite(weight))
+                            continue;
+                        int adjNode = iter.getAdjNode();
+                        int adjEntry = entriesByNode.getOrDefault(adjNode, NO_ENTRY);
+                        if (adjEntry == NO_ENTRY) {
+                            adjEntry = addEntry(adjNode, weight, iter.getEdge(), entry);
+                            heap.insert(weight, adjEntry);
+                        } else if (!settled.get(adjEntry) && weight < weights.get(adjEntry)) {
+                            weights.set(adjEntry, weight);
+                            parentEdges.set(adjEntry, iter.getEdge());
+                            parentEntries.set(adjEntry, entry);
+                            heap.insert(weight, adjEntry);
+                        }
+                    }
+                }
+            }
+
+            private int addEntry(int node, double weight, int parentEdge, int parentEntry) {
+                int entry = nodes.size();
+                nodes.add(node);
+                weights.add(weight);
+                millis.add(Long.MAX_VALUE);
+                distances.add(Double.POSITIVE_INFINITY);
+                lastEdges.add(EdgeIterator.NO_EDGE);
+                parentEdges.add(parentEdge);
+                parentEntries.add(parentEntry);
+                entriesByNode.put(node, entry);
+                return entry;
+            }
+        }
+    }
+
+    /**
+     * The weights, times and distances of the shortest paths. When calculated for all nodes the arrays are indexed by
+     * node, otherwise the entries have the same order as the selected nodes. Unreachable nodes get an infinite weight
+     * and distance and a time of {@link Long#MAX_VALUE}. When calculated with a limit the result only contains the
+     * (selected) nodes within the limit, use {@link #getNode(int)} and {@link #indexOf(int)}.
+     */
+    public static class Result {
+        private final int[] nodes;
+        private IntIntHashMap indexByNode;
+        private final double[] weights;
+        private final long[] times;
+        private final double[] distances;
+        private final int[] lastEdges;
+
+        Result(int[] nodes, int size, boolean withTimeAndDistance) {
+            this.nodes = nodes;
+            weights = new double[size];
+            times = withTimeAndDistance ? new long[size] : new long[0];
+            distances = withTimeAndDistance ? new double[size] : new double[0];
+            lastEdges = withTimeAndDistance ? new int[size] : new int[0];
+        }
+
+        public int size() {
+            return weights.length;
+        }
+
+        /**
+         * @return the node for the given index of the arrays
+         */
+        public int getNode(int index) {
+            return nodes == null ? index : nodes[index];
+        }
+
+        /**
+         * @return the index of the given node in the arrays or -1 if it is not contained in the result
+         */
+        public int indexOf(int node) {
+            if (nodes == null)
+                return node >= 0 && node < size() ? node : NO_ENTRY;
+            if (indexByNode == null) {
+                indexByNode = new IntIntHashMap(nodes.length);
+                for (int i = 0; i < nodes.length; i++)
+                    indexByNode.put(nodes[i], i);
+            }
+            return indexByNode.getOrDefault(node, NO_ENTRY);
+        }
+
+        public boolean isReached(int index) {
+            return !Double.isInfinite(weights[index]);
+        }
+
+        public double[] getWeights() {
+            return weights;
+        }
+
+        /**
+         * @return the times in milliseconds or an empty array if times were not calculated
+         */
+        public long[] getTimes() {
+            return times;
+        }
+
+        /**
+         * @return the distances in meters or an empty array if distances were not calculated
+         */
+        public double[] getDistances() {
+            return distances;
+        }
+
+        /**
+         * @return the original edges by which the nodes are reached (or left when calculating the reverse flow), i.e.
+         * the last edges of the shortest paths, or an empty array if times and distances were not calculated. The
+         * edge is {@link EdgeIterator#NO_EDGE} for the source node and for unreachable nodes.
+         */
+        public int[] getLastEdges() {
+            return lastEdges;
+        }
+    }
+}
@@ -19,17 +19,21 @@
 package com.graphhopper.routing;
 
 import com.carrotsearch.hppc.cursors.IntCursor;
+import com.graphhopper.GHMatrixRequest;
+import com.graphhopper.GHMatrixResponse;
 import com.graphhopper.GHRequest;
 import com.graphhopper.GHResponse;
 import com.graphhopper.ResponsePath;
 import com.graphhopper.config.Profile;
 import com.graphhopper.routing.ch.CHRoutingAlgorithmFactory;
+import com.graphhopper.routing.ch.CustomizableCH;
 import com.graphhopper.routing.ev.BooleanEncodedValue;
 import com.graphhopper.routing.ev.EncodedValueLookup;
 import com.graphhopper.routing.ev.Subnetwork;
 import com.graphhopper.routing.lm.LMRoutingAlgorithmFactory;
 import com.graphhopper.routing.lm.LandmarkStorage;
 import com.graphhopper.routing.querygraph.QueryGraph;
+import com.graphhopper.routing.querygraph.QueryRoutingCHGraph;
 import com.graphhopper.routing.util.*;
 import com.graphhopper.routing.weighting.Weighting;
 import com.graphhopper.routing.weighting.custom.CustomWeighting;
@@ -48,6 +52,8 @@ import com.graphhopper.util.shapes.BBox;
 import com.graphhopper.util.shapes.GHPoint;
 
 import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.function.ObjIntConsumer;
 
 import static com.graphhopper.util.DistanceCalcEarth.DIST_EARTH;
 import static com.graphhopper.util.Parameters.Algorithms.ALT_ROUTE;
@@ -66,13 +72,27 @@ public class Router {
     protected final WeightingFactory weightingFactory;
     protected final Map<String, RoutingCHGraph> chGraphs;
     protected final Map<String, LandmarkStorage> landmarks;
+    protected final CustomizableCH customizableCH;
     protected final boolean chEnabled;
     protected final boolean lmEnabled;
+    private ExecutorService batchExecutor;
 
     public Router(BaseGraph graph, EncodingManager encodingManager, LocationIndex locationIndex,
                   Map<String, Profile> profilesByName, PathDetailsBuilderFactory pathDetailsBuilderFactory,
                   TranslationMap translationMap, RouterConfig routerConfig, WeightingFactory weightingFactory,
                   Map<String, RoutingCHGraph> chGraphs, Map<String, LandmarkStorage> landmarks) {
+        this(graph, encodingManager, locationIndex, profilesByName, pathDetailsBuilderFactory, translationMap, routerConfig,
+                weightingFactory, chGraphs, landmarks, null);
+    }
+
+    /**
+     * @param customizableCH if not null requests with a custom model (or for profiles without CH preparation) are
+     *                       answered with a customized CH, unless CH is disabled for the request
+     */
+    public Router(BaseGraph graph, EncodingManager encodingManager, LocationIndex locationIndex,
+                  Map<String, Profile> profilesByName, PathDetailsBuilderFactory pathDetailsBuilderFactory,
+                  TranslationMap translationMap, RouterConfig routerConfig, WeightingFactory weightingFactory,
+                  Map<String, RoutingCHGraph> chGraphs, Map<String, LandmarkStorage> landmarks, CustomizableCH customizableCH) {
         this.graph = graph;
         this.encodingManager = encodingManager;
         this.locationIndex = locationIndex;
@@ -83,6 +103,7 @@ public class Router {
         this.weightingFactory = weightingFactory;
         this.chGraphs = chGraphs;
         this.landmarks = landmarks;
+        this.customizableCH = customizableCH;
         // note that his is not the same as !ghStorage.getCHConfigs().isEmpty(), because the GHStorage might have some
         // CHGraphs that were not built yet (and possibly no CH profiles were configured).
         this.chEnabled = !chGraphs.isEmpty();
@@ -131,6 +152,130 @@ public class Router {
         }
     }
 
+    /**
+     * @param batchExecutor the (shared) executor that is used for {@link #routeBatch}. If it is not set the requests
+     *                      of a batch are routed one after the other in the calling thread.
+     */
+    public Router setBatchExecutor(ExecutorService batchExecutor) {
+        this.batchExecutor = batchExecutor;
+        return this;
+    }
+
+    /**
+     * Routes all the given requests and returns the responses in the same order, see
+     * {@link #routeBatch(List, ObjIntConsumer)}.
+     */
+    public List<GHResponse> routeBatch(List<GHRequest> requests) {
+        GHResponse[] responses = new GHResponse[requests.size()];
+        routeBatch(requests, (rsp, index) -> responses[index] = rsp);
+        return Arrays.asList(responses);
+    }
+
+    /**
+     * Routes the given independent requests on (at most) {@link RouterConfig#getBatchThreads()} threads of the batch
+     * executor. Every request is answered exactly like {@link #route(GHRequest)} would do it. The requests are grouped
+     * by their profile and started in this order, so all threads work on the requests of the same profile and the
+     * graph data of this profile stays warm in the caches.
+     *
+     * @param consumer is called with the response and the index of the request as soon as a request is done, i.e. in
+     *                 completion order and from multiple threads concurrently. Errors of a single request are
+     *                 reported in its response and do not stop the other requests.
+     */
+    public void routeBatch(List<GHRequest> requests, ObjIntConsumer<GHResponse> consumer) {
+        if (requests.size() > routerConfig.getMaxBatchSize())
+            throw new IllegalArgumentException("Too many requests in batch: " + requests.size() + ", max: " + routerConfig.getMaxBatchSize());
+        Integer[] order = new Integer[requests.size()];
+        for (int i = 0; i < order.length; i++)
+            order[i] = i;
+        // the sort is stable, so the requests of a profile are still solved in the given order
+        Arrays.sort(order, Comparator.comparing(i -> requests.get(i).getProfile(), Comparator.nullsFirst(Comparator.naturalOrder())));
+        List<Runnable> tasks = new ArrayList<>(order.length);
+        for (int index : order)
+            tasks.add(() -> {
+                GHResponse rsp;
+                try {
+                    rsp = route(requests.get(index));
+                } catch (RuntimeException e) {
+                    rsp = new GHResponse();
+                    rsp.addError(e);
+                }
+                consumer.accept(rsp, index);
+            });
+        if (batchExecutor == null)
+            tasks.forEach(Runnable::run);
+        else
+            GHUtility.runConcurrently(batchExecutor, tasks, routerConfig.getBatchThreads());
+    }
+
+    /**
+     * Calculates the weights, times and/or distances between all from and all to points of the given request. All
+     * points are snapped at once and put into a single {@link QueryGraph}, and the matrix is calculated with
+     * {@link ManyToManyCH}, so this requires a (node-based) CH preparation for the requested profile.
+     */
+    public GHMatrixResponse matrix(GHMatrixRequest request) {
+        try {
+            if (request.getHints().has("vehicle") || request.getHints().has("weighting"))
+                throw new IllegalArgumentException("GHMatrixRequest may no longer contain a vehicle or weighting, use the profile parameter instead, see docs/core/profiles.md");
+            if (request.getFromPoints().isEmpty() || request.getToPoints().isEmpty())
+                throw new IllegalArgumentException("You have to pass at least one from and one to point");
+            if (Helper.isEmpty(request.getProfile()))
+                throw new IllegalArgumentException("You need to specify a profile to perform a matrix request, see docs/core/profiles.md");
+            List<GHPoint> points = new ArrayList<>(request.getFromPoints().size() + request.getToPoints().size());
+            points.addAll(request.getFromPoints());
+            points.addAll(request.getToPoints());
+            checkIfPointsAreInBoundsAndNotNull(points);
+            for (String outArray : request.getOutArrays())
+                if (!GHMatrixRequest.WEIGHTS.equals(outArray) && !GHMatrixRequest.TIMES.equals(outArray) && !GHMatrixRequest.DISTANCES.equals(outArray))
+                    throw new IllegalArgumentException("Unknown out_array: '" + outArray + "', supported are: " + GHMatrixRequest.WEIGHTS + ", " + GHMatrixRequest.TIMES + ", " + GHMatrixRequest.DISTANCES);
+
+            Profile profile = profilesByName.get(request.getProfile());
+            if (profile == null)
+                throw new IllegalArgumentException("The requested profile '" + request.getProfile() + "' does not exist.\nAvailable profiles: " + profilesByName.keySet());
+            RoutingCHGraph chGraph = chGraphs.get(profile.getName());
+            if (chGraph == null)
+                throw new IllegalArgumentException("Matrix requests require a CH preparation for the requested profile: '" + profile.getName() + "'"
+                        + "\navailable CH profiles: " + chGraphs.keySet());
+            if (chGraph.isEdgeBased())
+                throw new IllegalArgumentException("Matrix requests are not supported for profiles with turn costs yet: '" + profile.getName() + "'");
+
+            StopWatch sw = new StopWatch().start();
+            Weighting weighting = chGraph.getWeighting();
+            EdgeFilter snapFilter = new DefaultSnapFilter(weighting, encodingManager.getBooleanEncodedValue(Subnetwork.key(profile.getName())));
+            List<Snap> snaps = ViaRouting.lookup(encodingManager, points, snapFilter, locationIndex, request.getSnapPreventions(),
+                    Collections.emptyList(), null, Collections.emptyList());
+            QueryGraph queryGraph = QueryGraph.create(graph, snaps);
+            int[] fromNodes = new int[request.getFromPoints().size()];
+            int[] toNodes = new int[request.getToPoints().size()];
+            for (int i = 0; i < fromNodes.length; i++)
+                fromNodes[i] = snaps.get(i).getClosestNode();
+            for (int i = 0; i < toNodes.length; i++)
+                toNodes[i] = snaps.get(fromNodes.length + i).getClosestNode();
+            double lookupSeconds = sw.stop().getSeconds();
+
+            sw = new StopWatch().start();
+            boolean calcTimeAndDistance = request.getOutArrays().contains(GHMatrixRequest.TIMES) || request.getOutArrays().contains(GHMatrixRequest.DISTANCES);
+            ManyToManyCH manyToMany = new ManyToManyCH(new QueryRoutingCHGraph(chGraph, queryGraph)).setCalcTimeAndDistance(calcTimeAndDistance);
+            ManyToManyCH.Result result = manyToMany.calcMatrix(fromNodes, toNodes);
+            GHMatrixResponse response = new GHMatrixResponse(fromNodes.length, toNodes.length, result.getWeights(), result.getTimes(), result.getDistances());
+            response.getHints().putObject("visited_nodes.sum", manyToMany.getVisitedNodes());
+            response.getHints().putObject("took.lookup", lookupSeconds);
+            response.getHints().putObject("took.matrix", sw.stop().getSeconds());
+            return response;
+        } catch (MultiplePointsNotFoundException ex) {
+            GHMatrixResponse response = new GHMatrixResponse();
+            int fromSize = request.getFromPoints().size();
+            for (IntCursor p : ex.getPointsNotFound()) {
+                String message = p.value < fromSize
+                        ? "Cannot find from_point " + p.value + ": " + request.getFromPoints().get(p.value)
+                        : "Cannot find to_point " + (p.value - fromSize) + ": " + request.getToPoints().get(p.value - fromSize);
+                response.addError(new PointNotFoundException(message, p.value));
+            }
+            return response;
+        } catch (IllegalArgumentException ex) {
+            return new GHMatrixResponse().addError(ex);
+        }
+    }
+
     private void checkNoLegacyParameters(GHRequest request) {
         if (request.getHints().has("vehicle"))
             throw new IllegalArgumentException("GHRequest may no longer contain a vehicle, use the profile parameter instead, see docs/core/profiles.md");
@@ -190,7 +335,9 @@ public class Router {
     protected Solver createSolver(GHRequest request) {
         final boolean disableCH = getDisableCH(request.getHints());
         final boolean disableLM = getDisableLM(request.getHints());
-        if (chEnabled && !disableCH) {
+        if (!disableCH && useCustomizableCH(request)) {
+            return createCCHSolver(request, profilesByName, routerConfig, encodingManager, weightingFactory, customizableCH);
+        } else if (chEnabled && !disableCH) {
             return createCHSolver(request, profilesByName, routerConfig, encodingManager, chGraphs);
         } else if (lmEnabled && !disableLM) {
             return createLMSolver(request, profilesByName, routerConfig, encodingManager, weightingFactory, graph, locationIndex, landmarks);
@@ -204,6 +351,21 @@ public class Router {
         return new CHSolver(request, profilesByName, routerConfig, encodingManager, chGraphs);
     }
 
+    protected Solver createCCHSolver(GHRequest request, Map<String, Profile> profilesByName, RouterConfig routerConfig,
+                                     EncodingManager encodingManager, WeightingFactory weightingFactory, CustomizableCH customizableCH) {
+        return new CCHSolver(request, profilesByName, routerConfig, encodingManager, weightingFactory, customizableCH);
+    }
+
+    private boolean useCustomizableCH(GHRequest request) {
+        if (customizableCH == null)
+            return false;
+        Profile profile = profilesByName.get(request.getProfile());
+        // unknown profiles are rejected by the solver
+        if (profile == null || profile.hasTurnCosts() || !CustomWeighting.NAME.equals(profile.getWeighting()))
+            return false;
+        return request.getCustomModel() != null || !chGraphs.containsKey(profile.getName());
+    }
+
     protected Solver createLMSolver(GHRequest request, Map<String, Profile> profilesByName, RouterConfig routerConfig,
                                     EncodingManager encodingManager, WeightingFactory weightingFactory, BaseGraph baseGraph,
                                     LocationIndex locationIndex, Map<String, LandmarkStorage> landmarks) {
@@ -462,7 +624,7 @@ public class Router {
             if (getPassThrough(request.getHints()))
                 throw new IllegalArgumentException("The '" + Parameters.Routing.PASS_THROUGH + "' parameter is currently not supported for speed mode, you need to disable speed mode with `ch.disable=true`. See issue #1765");
 
-            if (request.getCustomModel() != null)
+            if (request.getCustomModel() != null && !supportsCustomModel())
                 throw new IllegalArgumentException("The 'custom_model' parameter is currently not supported for speed mode, you need to disable speed mode with `ch.disable=true`.");
 
             if (ROUND_TRIP.equalsIgnoreCase(request.getAlgorithm()))
@@ -489,7 +651,11 @@ public class Router {
             return new CHPathCalculator(new CHRoutingAlgorithmFactory(getRoutingCHGraph(profile.getName()), queryGraph), opts);
         }
 
-        private RoutingCHGraph getRoutingCHGraph(String profileName) {
+        protected boolean supportsCustomModel() {
+            return false;
+        }
+
+        protected RoutingCHGraph getRoutingCHGraph(String profileName) {
             RoutingCHGraph chGraph = chGraphs.get(profileName);
             if (chGraph == null)
                 throw new IllegalArgumentException("Cannot find CH preparation for the requested profile: '" + profileName + "'" +
@@ -499,6 +665,41 @@ public class Router {
         }
     }
 
+    private static class CCHSolver extends CHSolver {
+        private final WeightingFactory weightingFactory;
+        private final CustomizableCH customizableCH;
+        private RoutingCHGraph chGraph;
+
+        CCHSolver(GHRequest request, Map<String, Profile> profilesByName, RouterConfig routerConfig, EncodedValueLookup lookup,
+                  WeightingFactory weightingFactory, CustomizableCH customizableCH) {
+            super(request, profilesByName, routerConfig, lookup, Collections.emptyMap());
+            this.weightingFactory = weightingFactory;
+            this.customizableCH = customizableCH;
+        }
+
+        @Override
+        protected boolean supportsCustomModel() {
+            return true;
+        }
+
+        @Override
+        protected RoutingCHGraph getRoutingCHGraph(String profileName) {
+            if (chGraph == null) {
+                // the customization includes the weighting, so we do not even need to parse the custom model again
+                // if it was used before
+                String key = profileName + "|" + request.getCustomModel();
+                chGraph = customizableCH.getOrCustomize(key, () -> {
+                    PMap requestHints = new PMap(request.getHints());
+                    requestHints.putObject(CustomModel.KEY, request.getCustomModel());
+                    // the customizations are cached, so they must not depend on the current live speeds
+                    requestHints.putObject(LIVE_TRAFFIC, false);
+                    return weightingFactory.createWeighting(profile, requestHints, false);
+                });
+            }
+            return chGraph;
+        }
+    }
+
     public static class FlexSolver extends Solver {
         protected final RouterConfig routerConfig;
         private final WeightingFactory weightingFactory;
@@ -31,6 +31,8 @@ public class RouterConfig {
     private boolean simplifyResponse = true;
     private double elevationWayPointMaxDistance = Double.MAX_VALUE;
     private int activeLandmarkCount = 8;
+    private int batchThreads = Runtime.getRuntime().availableProcessors();
+    private int maxBatchSize = 1000;
 
     public int getMaxVisitedNodes() {
         return maxVisitedNodes;
@@ -112,6 +114,31 @@ public class RouterConfig {
         this.activeLandmarkCount = activeLandmarkCount;
     }
 
+    public int getBatchThreads() {
+        return batchThreads;
+    }
+
+    /**
+     * The number of threads that are used to solve the requests of batches, see {@link Router#routeBatch}. All
+     * batches share one executor with this number of threads.
+     */
+    public void setBatchThreads(int batchThreads) {
+        if (batchThreads < 1)
+            throw new IllegalArgumentException("batch threads must be at least 1, but was " + batchThreads);
+        this.batchThreads = batchThreads;
+    }
+
+    public int getMaxBatchSize() {
+        return maxBatchSize;
+    }
+
+    /**
+     * The maximum number of requests that can be routed in one batch
+     */
+    public void setMaxBatchSize(int maxBatchSize) {
+        this.maxBatchSize = maxBatchSize;
+    }
+
     public double getElevationWayPointMaxDistance() {
         return elevationWayPointMaxDistance;
     }
@@ -0,0 +1,207 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing;
+
+import com.carrotsearch.hppc.BitMixer;
+import com.carrotsearch.hppc.predicates.IntObjectPredicate;
+import com.carrotsearch.hppc.procedures.IntObjectProcedure;
+import com.graphhopper.coll.DoubleMinHeapWithUpdate;
+
+import java.util.Arrays;
+
+/**
+ * The search space of one direction of a bidirectional search: the best shortest path tree entry per traversal id and
+ * the queue of the entries that still need to be expanded. The entries are numbered in insertion order and the map and
+ * the queue only store these numbers in primitive arrays. The map uses open addressing with a version per slot, so
+ * {@link #clear()} does not need to touch the slots and a search space can be re-used for the next search, see
+ * {@link SearchWorkspace}.
+ * <p>
+ * Every traversal id has a single queue element, a better entry for the same traversal id replaces the old one and
+ * decreases its key instead of adding another element to the queue.
+ */
+public class SearchSpace {
+    private static final int NO_KEY = -1;
+    private static final double LOAD_FACTOR = 0.75;
+    private int[] slotKeys;
+    private int[] slotEntries;
+    private int[] slotVersions;
+    private int mask;
+    private int version = 1;
+    private int size;
+    private SPTEntry[] entries;
+    private int[] entryKeys;
+    private int entryCount;
+    private final DoubleMinHeapWithUpdate heap;
+
+    /**
+     * @param expectedSize the number of entries this search space can store before it has to grow
+     */
+    public SearchSpace(int expectedSize) {
+        expectedSize = Math.max(expectedSize, 2);
+        allocateSlots((int) Math.ceil(expectedSize / LOAD_FACTOR));
+        entries = new SPTEntry[expectedSize];
+        entryKeys = new int[expectedSize];
+        heap = new DoubleMinHeapWithUpdate(expectedSize);
+    }
+
+    /**
+     * @return the entry that was stored for the given traversal id or null if there is none
+     */
+    public SPTEntry get(int traversalId) {
+        int slot = BitMixer.mixPhi(traversalId) & mask;
+        while (slotVersions[slot] == version) {
+            if (slotKeys[slot] == traversalId)
+                return entries[slotEntries[slot]];
+            slot = (slot + 1) & mask;
+        }
+        return null;
+    }
+
+    /**
+     * Stores the entry for the given traversal id and adds it to the queue. If there already is an entry for this
+     * traversal id it is replaced, also in the queue.
+     */
+    public void put(int traversalId, SPTEntry entry) {
+        if (traversalId < 0)
+            throw new IllegalArgumentException("Illegal traversal id: " + traversalId);
+        int slot = BitMixer.mixPhi(traversalId) & mask;
+        while (slotVersions[slot] == version) {
+            if (slotKeys[slot] == traversalId) {
+                int entryId = slotEntries[slot];
+                entries[entryId] = entry;
+                if (heap.contains(entryId))
+                    heap.update(entryId, entry.weight);
+                else
+                    heap.push(entryId, entry.weight);
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+        int entryId = addEntry(traversalId, entry);
+        slotKeys[slot] = traversalId;
+        slotEntries[slot] = entryId;
+        slotVersions[slot] = version;
+        size++;
+        if (size > LOAD_FACTOR * slotKeys.length)
+            allocateSlots(2 * slotKeys.length);
+        heap.push(entryId, entry.weight);
+    }
+
+    /**
+     * Adds the entry to the queue without storing it for a traversal id, like the start entries of an edge-based search.
+     */
+    public void add(SPTEntry entry) {
+        heap.push(addEntry(NO_KEY, entry), entry.weight);
+    }
+
+    /**
+     * @return true if there are no more entries in the queue
+     */
+    public boolean isQueueEmpty() {
+        return heap.isEmpty();
+    }
+
+    /**
+     * Removes the entry with the smallest weight from the queue and returns it. The entry is still stored for its
+     * traversal id.
+     */
+    public SPTEntry poll() {
+        return entries[heap.poll()];
+    }
+
+    /**
+     * @return the number of traversal ids an entry is stored for
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Calls the procedure for every stored traversal id and its entry, in the order the traversal ids were added.
+     */
+    public void forEach(IntObjectProcedure<SPTEntry> procedure) {
+        for (int i = 0; i < entryCount; i++) {
+            if (entryKeys[i] != NO_KEY)
+                procedure.apply(entryKeys[i], entries[i]);
+        }
+    }
+
+    /**
+     * Like {@link #forEach(IntObjectProcedure)}, but stops as soon as the predicate returns false.
+     */
+    public void forEach(IntObjectPredicate<SPTEntry> predicate) {
+        for (int i = 0; i < entryCount; i++) {
+            if (entryKeys[i] != NO_KEY && !predicate.apply(entryKeys[i], entries[i]))
+                return;
+        }
+    }
+
+    /**
+     * Removes all entries. This takes time proportional to the number of entries that were added, the slots of the map
+     * are invalidated by increasing the version.
+     */
+    public void clear() {
+        Arrays.fill(entries, 0, entryCount, null);
+        entryCount = 0;
+        size = 0;
+        heap.clear();
+        version++;
+        if (version == Integer.MAX_VALUE) {
+            Arrays.fill(slotVersions, 0);
+            version = 1;
+        }
+    }
+
+    /**
+     * @return the number of entries this search space can store without growing
+     */
+    public int getCapacity() {
+        return Math.min(entries.length, (int) (LOAD_FACTOR * slotKeys.length));
+    }
+
+    private int addEntry(int traversalId, SPTEntry entry) {
+        if (entryCount == entries.length) {
+            entries = Arrays.copyOf(entries, 2 * entries.length);
+            entryKeys = Arrays.copyOf(entryKeys, 2 * entryKeys.length);
+        }
+        entries[entryCount] = entry;
+        entryKeys[entryCount] = traversalId;
+        return entryCount++;
+    }
+
+    private void allocateSlots(int minSlots) {
+        int slots = Integer.highestOneBit(Math.max(minSlots - 1, 1)) << 1;
+        slotKeys = new int[slots];
+        slotEntries = new int[slots];
+        slotVersions = new int[slots];
+        mask = slots - 1;
+        version = 1;
+        // re-insert the stored traversal ids, the entry ids do not change
+        for (int i = 0; i < entryCount; i++) {
+            int traversalId = entryKeys[i];
+            if (traversalId == NO_KEY)
+                continue;
+            int slot = BitMixer.mixPhi(traversalId) & mask;
+            while (slotVersions[slot] == version)
+                slot = (slot + 1) & mask;
+            slotKeys[slot] = traversalId;
+            slotEntries[slot] = i;
+            slotVersions[slot] = version;
+        }
+    }
+}
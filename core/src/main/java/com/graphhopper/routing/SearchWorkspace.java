@@ -0,0 +1,69 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * The forward and backward {@link SearchSpace} of a bidirectional search. Instead of allocating them for every request
+ * the algorithms borrow them from a pool that is shared by all threads and bounded by the number of CPUs, and
+ * {@link AbstractBidirAlgo#releaseWorkspace()} clears them and returns them. Clearing only takes time proportional to
+ * the size of the last search, so a small CH search can use a workspace that was grown by a large one before. A
+ * workspace that is never released is simply garbage collected.
+ */
+class SearchWorkspace {
+    // we do not keep search spaces that grew larger than this, e.g. for a long search without CH
+    static final int MAX_RETAINED_CAPACITY = 1 << 18;
+    private static final BlockingQueue<SearchWorkspace> POOL = new ArrayBlockingQueue<>(Runtime.getRuntime().availableProcessors());
+
+    final SearchSpace from;
+    final SearchSpace to;
+    private boolean borrowed;
+
+    SearchWorkspace(int expectedSize) {
+        from = new SearchSpace(expectedSize);
+        to = new SearchSpace(expectedSize);
+    }
+
+    /**
+     * @return an empty workspace from the pool or a new one for the expected number of entries per direction
+     */
+    static SearchWorkspace borrow(int expectedSize) {
+        SearchWorkspace workspace = POOL.poll();
+        if (workspace == null)
+            workspace = new SearchWorkspace(expectedSize);
+        workspace.borrowed = true;
+        return workspace;
+    }
+
+    /**
+     * Clears this workspace and returns it to the pool, unless the pool is full or the workspace grew too large. The
+     * workspace must not be used afterwards.
+     */
+    void release() {
+        if (!borrowed)
+            throw new IllegalStateException("The workspace was released already");
+        borrowed = false;
+        if (Math.max(from.getCapacity(), to.getCapacity()) > MAX_RETAINED_CAPACITY)
+            return;
+        from.clear();
+        to.clear();
+        POOL.offer(this);
+    }
+}
@@ -0,0 +1,302 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing;
+
+import com.carrotsearch.hppc.IntHashSet;
+import com.carrotsearch.hppc.IntIndexedContainer;
+import com.graphhopper.routing.ch.CHEntry;
+import com.graphhopper.routing.weighting.Weighting;
+import com.graphhopper.storage.RoutingCHGraph;
+import com.graphhopper.util.EdgeExplorer;
+import com.graphhopper.util.EdgeIterator;
+import com.graphhopper.util.EdgeIteratorState;
+
+import java.util.*;
+import java.util.function.Supplier;
+
+/**
+ * Finds alternative routes for node- and edge-based CH once the forward and backward search spaces of an
+ * alternative route search are known, see {@link AlternativeRouteCH} and {@link AlternativeRouteEdgeCH}.
+ * <p>
+ * Every node v that was reached by both searches is a via node candidate. The via path s -> v -> t follows the forward
+ * and backward shortest path trees, so its weight is known without unpacking any shortcuts. Its shared weight with the
+ * other routes is bounded from below by the tree prefix and suffix it has in common with them, because shortcuts used
+ * by both paths unpack to the same original edges. Therefore the share of a route is the weight it has in common with
+ * the other routes divided by its weight, like in {@link AlternativeRoute}, and not the shared distance. All candidates
+ * are collected in a single pass over the search spaces and only those that pass these cheap stretch and sharing checks
+ * are unpacked and checked for local optimality.
+ * <p>
+ * "Alternative Routes in Road Networks" (Abraham et al.)
+ */
+class ViaNodeAlternativeFinder {
+    private final RoutingCHGraph graph;
+    private final Supplier<BidirPathExtractor> pathExtractorSupplier;
+    private final double maxWeightFactor;
+    private final double maxShareFactor;
+    private final double localOptimalityFactor;
+    private final int maxPaths;
+    private final List<Alternative> alternatives = new ArrayList<>();
+    private int visitedNodes;
+
+    ViaNodeAlternativeFinder(RoutingCHGraph graph, Supplier<BidirPathExtractor> pathExtractorSupplier,
+                             double maxWeightFactor, double maxShareFactor, double localOptimalityFactor, int maxPaths) {
+        this.graph = graph;
+        this.pathExtractorSupplier = pathExtractorSupplier;
+        this.maxWeightFactor = maxWeightFactor;
+        this.maxShareFactor = maxShareFactor;
+        this.localOptimalityFactor = localOptimalityFactor;
+        this.maxPaths = maxPaths;
+    }
+
+    /**
+     * @param bestPath  the already extracted shortest path
+     * @param bestFwd   the forward entry of the meeting point of the shortest path
+     * @param bestBwd   the backward entry of the meeting point of the shortest path
+     * @param fwdSearch the forward search space, keyed by traversal id
+     * @param bwdSearch the backward search space, keyed by traversal id
+     * @return the shortest path followed by the alternatives that were found
+     */
+    List<Alternative> find(Path bestPath, SPTEntry bestFwd, SPTEntry bestBwd,
+                           SearchSpace fwdSearch, SearchSpace bwdSearch) {
+        alternatives.add(new Alternative(bestPath, bestFwd, bestBwd, 0));
+        if (maxPaths <= 1)
+            return alternatives;
+
+        List<Candidate> candidates = collectCandidates(bestPath.getWeight(), fwdSearch, bwdSearch);
+        candidates.sort(Comparator.comparingDouble(c -> c.sortWeight));
+        for (Candidate candidate : candidates) {
+            // the shortest path was already checked when the candidate was collected
+            if (alternatives.size() > 1 && sharedWeightLowerBound(candidate.fwd, candidate.bwd) > maxShareFactor * candidate.weight)
+                continue;
+
+            Path path = pathExtractorSupplier.get().extract(candidate.fwd, candidate.bwd, candidate.weight);
+            List<EdgeIteratorState> edges = path.calcEdges();
+            double sharedDistanceWithShortest = 0;
+            for (EdgeIteratorState edge : edges) {
+                if (alternatives.get(0).containsEdge(edge))
+                    sharedDistanceWithShortest += edge.getDistance();
+            }
+            double detourDistance = path.getDistance() - sharedDistanceWithShortest;
+            if (detourDistance > (bestPath.getDistance() - sharedDistanceWithShortest) * maxWeightFactor)
+                continue;
+
+            double share = sharedWeight(edges) / path.getWeight();
+            if (share > maxShareFactor)
+                continue;
+
+            // This is the final test we need: Discard paths that are not "locally shortest" around v.
+            // So move a couple of nodes to the left and right from v on our path,
+            // route, and check if v is on the shortest path.
+            if (!tTest(path, edges, candidate.fwd.adjNode, 0.5 * localOptimalityFactor * detourDistance))
+                continue;
+
+            alternatives.add(new Alternative(path, candidate.fwd, candidate.bwd, share));
+            if (alternatives.size() >= maxPaths)
+                break;
+        }
+        return alternatives;
+    }
+
+    /**
+     * @return the number of nodes visited by the local optimality checks
+     */
+    int getVisitedNodes() {
+        return visitedNodes;
+    }
+
+    private List<Candidate> collectCandidates(double bestWeight, SearchSpace fwdSearch, SearchSpace bwdSearch) {
+        final double maxWeight = bestWeight * maxWeightFactor;
+        final boolean edgeBased = graph.isEdgeBased();
+        final EdgeExplorer explorer = edgeBased ? graph.getBaseGraph().createEdgeExplorer() : null;
+        final Alternative shortest = alternatives.get(0);
+        List<Candidate> candidates = new ArrayList<>();
+        fwdSearch.forEach((int traversalId, SPTEntry fwd) -> {
+            SPTEntry bwd = null;
+            double weight = Double.POSITIVE_INFINITY;
+            if (edgeBased) {
+                // the backward search space is keyed by the edge leaving the via node, so we need to look at all
+                // edges and pick the one with the smallest weight including the turn costs at the via node
+                EdgeIterator iter = explorer.setBaseNode(fwd.adjNode);
+                while (iter.next()) {
+                    SPTEntry entry = bwdSearch.get(iter.getEdgeKey());
+                    if (entry == null)
+                        continue;
+                    int inEdge = ((CHEntry) fwd).incEdge;
+                    double turnWeight = EdgeIterator.Edge.isValid(inEdge) ? graph.getTurnWeight(inEdge, fwd.adjNode, iter.getEdge()) : 0;
+                    double entryWeight = fwd.getWeightOfVisitedPath() + entry.getWeightOfVisitedPath() + turnWeight;
+                    if (entryWeight < weight) {
+                        weight = entryWeight;
+                        bwd = entry;
+                    }
+                }
+            } else {
+                bwd = bwdSearch.get(fwd.adjNode);
+                if (bwd != null)
+                    weight = fwd.getWeightOfVisitedPath() + bwd.getWeightOfVisitedPath();
+            }
+            if (bwd == null || weight > maxWeight || (fwd == shortest.fwd && bwd == shortest.bwd))
+                return;
+
+            double shareLowerBound = shortest.sharedWeightLowerBound(fwd, bwd) / weight;
+            if (shareLowerBound > maxShareFactor)
+                return;
+            candidates.add(new Candidate(fwd, bwd, weight, 2 * weight + shareLowerBound));
+        });
+        return candidates;
+    }
+
+    private double sharedWeightLowerBound(SPTEntry fwd, SPTEntry bwd) {
+        double max = 0;
+        for (Alternative alternative : alternatives)
+            max = Math.max(max, alternative.sharedWeightLowerBound(fwd, bwd));
+        return max;
+    }
+
+    /**
+     * The weight of the edges the given path shares with the alternatives, including the turn costs between two shared
+     * edges. A common tree prefix or suffix consists of such edges, so the result is never smaller than
+     * {@link #sharedWeightLowerBound}, up to the rounding of the shortcut weights.
+     */
+    private double sharedWeight(List<EdgeIteratorState> edges) {
+        Weighting weighting = graph.getWeighting();
+        double sharedWeight = 0;
+        boolean prevShared = false;
+        for (int i = 0; i < edges.size(); i++) {
+            EdgeIteratorState edge = edges.get(i);
+            boolean shared = alternativesContainEdge(edge);
+            if (shared) {
+                sharedWeight += weighting.calcEdgeWeight(edge, false);
+                if (prevShared && graph.isEdgeBased())
+                    sharedWeight += graph.getTurnWeight(edges.get(i - 1).getEdge(), edge.getBaseNode(), edge.getEdge());
+            }
+            prevShared = shared;
+        }
+        return sharedWeight;
+    }
+
+    private boolean alternativesContainEdge(EdgeIteratorState edge) {
+        for (Alternative alternative : alternatives) {
+            if (alternative.containsEdge(edge))
+                return true;
+        }
+        return false;
+    }
+
+    private boolean tTest(Path path, List<EdgeIteratorState> edges, int v, double T) {
+        if (edges.isEmpty())
+            return true;
+        int vIndex = path.calcNodes().indexOf(v);
+        double distance = 0.0;
+        int first = vIndex;
+        while (first > 0 && distance < T) {
+            distance += edges.get(first - 1).getDistance();
+            first--;
+        }
+        distance = 0.0;
+        int last = vIndex;
+        while (last < edges.size() - 1 && distance < T) {
+            distance += edges.get(last).getDistance();
+            last++;
+        }
+        // v is the last node of the path and the loop above did not move
+        if (last == 0)
+            last = 1;
+        EdgeIteratorState firstEdge = edges.get(Math.min(first, edges.size() - 1));
+        EdgeIteratorState lastEdge = edges.get(last - 1);
+        Path tPath;
+        AbstractBidirCHAlgo tRouter = graph.isEdgeBased() ? new DijkstraBidirectionEdgeCHNoSOD(graph) : new DijkstraBidirectionCH(graph);
+        try {
+            tRouter.setPathExtractorSupplier(pathExtractorSupplier);
+            tPath = graph.isEdgeBased()
+                    ? tRouter.calcPath(firstEdge.getBaseNode(), lastEdge.getAdjNode(), firstEdge.getEdge(), lastEdge.getEdge())
+                    : tRouter.calcPath(firstEdge.getBaseNode(), lastEdge.getAdjNode());
+            visitedNodes += tRouter.getVisitedNodes();
+        } finally {
+            tRouter.releaseWorkspace();
+        }
+        return tPath.calcNodes().contains(v);
+    }
+
+    private static Set<SPTEntry> collectTreePath(SPTEntry entry) {
+        Set<SPTEntry> result = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (SPTEntry e = entry; e != null; e = e.parent)
+            result.add(e);
+        return result;
+    }
+
+    /**
+     * Follows the tree path of the given entry towards the root and returns the weight of the first entry that is also
+     * on the given tree path, i.e. the weight of the common prefix. Both searches start at the same root, so for a
+     * non-empty set there is always such an entry, unless the tree path of the set does not start at the root.
+     */
+    private static double commonPrefixWeight(SPTEntry entry, Set<SPTEntry> treePath) {
+        for (SPTEntry e = entry; e != null; e = e.parent) {
+            if (treePath.contains(e))
+                return e.getWeightOfVisitedPath();
+        }
+        return 0;
+    }
+
+    static class Alternative {
+        final Path path;
+        final double share;
+        private final SPTEntry fwd;
+        private final SPTEntry bwd;
+        private final Set<SPTEntry> fwdTreePath;
+        private final Set<SPTEntry> bwdTreePath;
+        private final IntHashSet nodes;
+
+        Alternative(Path path, SPTEntry fwd, SPTEntry bwd, double share) {
+            this.path = path;
+            this.share = share;
+            this.fwd = fwd;
+            this.bwd = bwd;
+            fwdTreePath = collectTreePath(fwd);
+            bwdTreePath = collectTreePath(bwd);
+            IntIndexedContainer pathNodes = path.calcNodes();
+            nodes = new IntHashSet(pathNodes.size());
+            nodes.addAll(pathNodes);
+        }
+
+        /**
+         * The via path of the given entries and this alternative share at least the common prefix in the forward tree
+         * and the common suffix in the backward tree.
+         */
+        double sharedWeightLowerBound(SPTEntry fwd, SPTEntry bwd) {
+            return commonPrefixWeight(fwd, fwdTreePath) + commonPrefixWeight(bwd, bwdTreePath);
+        }
+
+        boolean containsEdge(EdgeIteratorState edge) {
+            return nodes.contains(edge.getBaseNode()) && nodes.contains(edge.getAdjNode());
+        }
+    }
+
+    private static class Candidate {
+        final SPTEntry fwd;
+        final SPTEntry bwd;
+        final double weight;
+        final double sortWeight;
+
+        Candidate(SPTEntry fwd, SPTEntry bwd, double weight, double sortWeight) {
+            this.fwd = fwd;
+            this.bwd = bwd;
+            this.weight = weight;
+            this.sortWeight = sortWeight;
+        }
+    }
+}
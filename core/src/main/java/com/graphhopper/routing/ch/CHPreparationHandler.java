@@ -44,6 +44,9 @@ public class CHPreparationHandler {
     // the actual Weightings)
     private final List<CHProfile> chProfiles = new ArrayList<>();
     private int preparationThreads;
+    private boolean customizable;
+    private int customizationThreads = 1;
+    private int customizationCacheSize = 10;
     private PMap pMap = new PMap();
 
     public CHPreparationHandler() {
@@ -61,6 +64,9 @@ public class CHPreparationHandler {
 
         setPreparationThreads(ghConfig.getInt(CH.PREPARE + "threads", getPreparationThreads()));
         setCHProfiles(ghConfig.getCHProfiles());
+        setCustomizable(ghConfig.getBool(CHParameters.CUSTOMIZABLE, customizable));
+        customizationThreads = ghConfig.getInt(CHParameters.CUSTOMIZATION_THREADS, customizationThreads);
+        customizationCacheSize = ghConfig.getInt(CHParameters.CUSTOMIZATION_CACHE_SIZE, customizationCacheSize);
         pMap = ghConfig.asPMap();
     }
 
@@ -83,6 +89,19 @@ public class CHPreparationHandler {
         return chProfiles;
     }
 
+    /**
+     * Enables the preparation of a customizable contraction hierarchy that is used to speed up requests with a custom
+     * model, see {@link CustomizableCH}. It does not depend on any profile.
+     */
+    public CHPreparationHandler setCustomizable(boolean customizable) {
+        this.customizable = customizable;
+        return this;
+    }
+
+    public boolean isCustomizable() {
+        return customizable;
+    }
+
     public int getPreparationThreads() {
         return preparationThreads;
     }
@@ -112,6 +131,24 @@ public class CHPreparationHandler {
         return loaded;
     }
 
+    /**
+     * Loads the topology of the customizable contraction hierarchy or prepares it if it does not exist yet.
+     */
+    public CustomizableCH loadOrPrepareCustomizable(BaseGraph graph, StorableProperties properties) {
+        CHStorage topology = new CHStorage(graph.getDirectory(), "cch", graph.getSegmentSize(), false);
+        if (!topology.loadExisting()) {
+            LOGGER.info("Creating CCH preparation, {}", getMemInfo());
+            new PrepareCustomizableCH(graph, topology).doWork();
+            topology.flush();
+            properties.put(CH.PREPARE + "date.cch", createFormatter().format(new Date()));
+        }
+        CustomizableCH cch = CustomizableCH.fromStorage(graph, topology, customizationCacheSize)
+                .setCustomizationThreads(customizationThreads);
+        // the topology is kept in arrays, so we no longer need the storage
+        topology.close();
+        return cch;
+    }
+
     public Map<String, PrepareContractionHierarchies.Result> prepare(BaseGraph baseGraph, StorableProperties properties, List<CHConfig> chConfigs, final boolean closeEarly) {
         if (chConfigs.isEmpty()) {
             LOGGER.info("There are no CHs to prepare");
@@ -0,0 +1,329 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing.ch;
+
+import com.graphhopper.routing.weighting.Weighting;
+import com.graphhopper.storage.*;
+import com.graphhopper.util.EdgeExplorer;
+import com.graphhopper.util.EdgeIterator;
+import com.graphhopper.util.StopWatch;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.IntConsumer;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
+
+import static com.graphhopper.util.Helper.nf;
+
+/**
+ * The metric-independent topology of a customizable contraction hierarchy (see {@link PrepareCustomizableCH}) that
+ * can be customized for arbitrary node-based weightings. The customization calculates the weights of all arcs by
+ * processing the nodes bottom-up and relaxing the lower triangles of every arc. Nodes whose lower neighbors are all
+ * done are independent of each other, so they are processed in parallel. The result is a regular {@link CHStorage}
+ * that is kept in memory and contains only the arcs for which a shortcut is actually shorter than the original edges,
+ * so it can be queried with the usual CH algorithms.
+ * <p>
+ * The customized graphs are cached by a key provided by the caller, e.g. the custom model of a request.
+ */
+public class CustomizableCH {
+    private static final Logger LOGGER = LoggerFactory.getLogger(CustomizableCH.class);
+    // below this size the nodes of one elimination level are processed by the calling thread
+    private static final int MIN_PARALLEL_LEVEL_SIZE = 100;
+    private final BaseGraph graph;
+    private final int nodes;
+    private final int arcs;
+    private final int[] rankToNode;
+    private final int[] nodeToRank;
+    // the upward arcs of every rank r are stored in [firstArc[r], firstArc[r+1]), sorted by the rank of their head
+    private final int[] firstArc;
+    private final int[] arcHead;
+    // the downward arcs of every rank r are stored in downArcs[firstDownArc[r], firstDownArc[r+1])
+    private final int[] firstDownArc;
+    private final int[] downArcs;
+    private final int[] arcTail;
+    // the ranks that can be customized once all previous elimination levels are done
+    private final int[] firstOfLevel;
+    private final int[] levelRanks;
+    private final Map<String, CompletableFuture<RoutingCHGraph>> cache;
+    private int customizationThreads = 1;
+
+    public static CustomizableCH fromStorage(BaseGraph graph, CHStorage topology, int cacheSize) {
+        return new CustomizableCH(graph, topology, cacheSize);
+    }
+
+    private CustomizableCH(BaseGraph graph, CHStorage topology, int cacheSize) {
+        if (topology.isEdgeBased())
+            throw new IllegalArgumentException("CCH only supports node-based CHStorage");
+        if (topology.getNodes() != graph.getNodes())
+            throw new IllegalArgumentException("CCH topology has " + topology.getNodes() + " nodes, but the graph has " + graph.getNodes());
+        this.graph = graph;
+        nodes = graph.getNodes();
+        arcs = topology.getShortcuts();
+        rankToNode = new int[nodes];
+        nodeToRank = new int[nodes];
+        for (int node = 0; node < nodes; node++) {
+            int rank = topology.getLevel(topology.toNodePointer(node));
+            nodeToRank[node] = rank;
+            rankToNode[rank] = node;
+        }
+
+        firstArc = new int[nodes + 1];
+        arcHead = new int[arcs];
+        arcTail = new int[arcs];
+        int[] downArcCounts = new int[nodes + 1];
+        for (int arc = 0; arc < arcs; arc++) {
+            long pointer = topology.toShortcutPointer(arc);
+            arcTail[arc] = nodeToRank[topology.getNodeA(pointer)];
+            arcHead[arc] = nodeToRank[topology.getNodeB(pointer)];
+            firstArc[arcTail[arc] + 1]++;
+            downArcCounts[arcHead[arc] + 1]++;
+        }
+        for (int rank = 0; rank < nodes; rank++) {
+            firstArc[rank + 1] += firstArc[rank];
+            downArcCounts[rank + 1] += downArcCounts[rank];
+        }
+        firstDownArc = downArcCounts.clone();
+        downArcs = new int[arcs];
+        for (int arc = 0; arc < arcs; arc++)
+            downArcs[downArcCounts[arcHead[arc]]++] = arc;
+
+        // the elimination level of a rank is one more than the maximum level of its lower neighbors
+        int[] elimLevel = new int[nodes];
+        int maxLevel = 0;
+        for (int rank = 0; rank < nodes; rank++) {
+            for (int i = firstDownArc[rank]; i < firstDownArc[rank + 1]; i++)
+                elimLevel[rank] = Math.max(elimLevel[rank], elimLevel[arcTail[downArcs[i]]] + 1);
+            maxLevel = Math.max(maxLevel, elimLevel[rank]);
+        }
+        firstOfLevel = new int[maxLevel + 2];
+        for (int rank = 0; rank < nodes; rank++)
+            firstOfLevel[elimLevel[rank] + 1]++;
+        for (int level = 0; level <= maxLevel; level++)
+            firstOfLevel[level + 1] += firstOfLevel[level];
+        int[] next = Arrays.copyOf(firstOfLevel, maxLevel + 1);
+        levelRanks = new int[nodes];
+        for (int rank = 0; rank < nodes; rank++)
+            levelRanks[next[elimLevel[rank]]++] = rank;
+
+        this.cache = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CompletableFuture<RoutingCHGraph>> eldest) {
+                return size() > cacheSize;
+            }
+        };
+        LOGGER.info("loaded CCH topology, nodes: {}, arcs: {}, elimination levels: {}", nf(nodes), nf(arcs), maxLevel + 1);
+    }
+
+    public CustomizableCH setCustomizationThreads(int customizationThreads) {
+        this.customizationThreads = customizationThreads;
+        return this;
+    }
+
+    public int getArcs() {
+        return arcs;
+    }
+
+    /**
+     * Returns the cached customization for the given key or customizes the topology for the weighting returned by
+     * the given supplier. Concurrent calls with the same key wait for the same customization.
+     */
+    public RoutingCHGraph getOrCustomize(String key, Supplier<Weighting> weightingSupplier) {
+        CompletableFuture<RoutingCHGraph> future;
+        boolean created = false;
+        synchronized (cache) {
+            future = cache.get(key);
+            if (future == null) {
+                future = new CompletableFuture<>();
+                cache.put(key, future);
+                created = true;
+            }
+        }
+        if (created) {
+            try {
+                future.complete(customize(weightingSupplier.get()));
+            } catch (RuntimeException e) {
+                synchronized (cache) {
+                    cache.remove(key);
+                }
+                future.completeExceptionally(e);
+                throw e;
+            }
+        }
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException)
+                throw (RuntimeException) e.getCause();
+            throw e;
+        }
+    }
+
+    /**
+     * Calculates the shortcuts of this CCH for the given weighting and returns a CH graph that is stored in memory.
+     */
+    public RoutingCHGraph customize(Weighting weighting) {
+        if (weighting.hasTurnCosts())
+            throw new IllegalArgumentException("CCH does not support weightings with turn costs");
+        StopWatch sw = new StopWatch().start();
+        // slot 2*arc is the direction tail->head and slot 2*arc+1 is the direction head->tail
+        double[] weights = new double[2 * arcs];
+        Arrays.fill(weights, Double.POSITIVE_INFINITY);
+        // the CH edge that represents a slot when it is skipped by a shortcut: an original edge or the shortcut itself
+        int[] edges = new int[2 * arcs];
+        Arrays.fill(edges, EdgeIterator.NO_EDGE);
+        int[] skippedEdges1 = new int[2 * arcs];
+        int[] skippedEdges2 = new int[2 * arcs];
+        Arrays.fill(skippedEdges1, EdgeIterator.NO_EDGE);
+        ThreadLocal<EdgeExplorer> explorer = ThreadLocal.withInitial(graph::createEdgeExplorer);
+        IntConsumer customizeRank = rank -> customizeRank(rank, weighting, explorer.get(), weights, edges, skippedEdges1, skippedEdges2);
+
+        ForkJoinPool pool = customizationThreads > 1 ? new ForkJoinPool(customizationThreads) : null;
+        try {
+            for (int level = 0; level < firstOfLevel.length - 1; level++) {
+                int from = firstOfLevel[level], to = firstOfLevel[level + 1];
+                if (pool == null || to - from < MIN_PARALLEL_LEVEL_SIZE)
+                    for (int i = from; i < to; i++)
+                        customizeRank.accept(levelRanks[i]);
+                else
+                    runInParallel(pool, from, to, i -> customizeRank.accept(levelRanks[i]));
+            }
+        } finally {
+            if (pool != null)
+                pool.shutdown();
+        }
+
+        CHStorage chStore = new CHStorage(new RAMDirectory(), "cch", graph.getSegmentSize(), false);
+        int shortcuts = writeShortcuts(chStore, weights, skippedEdges1, skippedEdges2);
+        LOGGER.info("customized CCH, took: {}ms, shortcuts: {}", sw.stop().getMillis(), nf(shortcuts));
+        return new RoutingCHGraphImpl(graph, chStore, weighting);
+    }
+
+    private void customizeRank(int rank, Weighting weighting, EdgeExplorer explorer, double[] weights, int[] edges,
+                               int[] skippedEdges1, int[] skippedEdges2) {
+        int from = firstArc[rank], to = firstArc[rank + 1];
+        if (from == to)
+            return;
+        // initialize the upward arcs with the weights of the original edges
+        EdgeIterator iter = explorer.setBaseNode(rankToNode[rank]);
+        while (iter.next()) {
+            int headRank = nodeToRank[iter.getAdjNode()];
+            if (headRank <= rank)
+                continue;
+            int arc = Arrays.binarySearch(arcHead, from, to, headRank);
+            double fwdWeight = weighting.calcEdgeWeight(iter, false);
+            if (fwdWeight < weights[2 * arc]) {
+                weights[2 * arc] = fwdWeight;
+                edges[2 * arc] = iter.getEdge();
+            }
+            double bwdWeight = weighting.calcEdgeWeight(iter, true);
+            if (bwdWeight < weights[2 * arc + 1]) {
+                weights[2 * arc + 1] = bwdWeight;
+                edges[2 * arc + 1] = iter.getEdge();
+            }
+        }
+
+        // relax the lower triangles: for every lower neighbor v and every upper neighbor w of v above this rank the
+        // arcs v-rank and v-w are final and rank-w is an arc as well
+        int baseEdges = graph.getEdges();
+        for (int i = firstDownArc[rank]; i < firstDownArc[rank + 1]; i++) {
+            int down = downArcs[i];
+            int v = arcTail[down];
+            int arc = from;
+            for (int other = down + 1; other < firstArc[v + 1]; other++) {
+                while (arcHead[arc] != arcHead[other])
+                    arc++;
+                // rank->v->w
+                double fwdWeight = weights[2 * down + 1] + weights[2 * other];
+                if (fwdWeight < weights[2 * arc]) {
+                    weights[2 * arc] = fwdWeight;
+                    edges[2 * arc] = baseEdges + 2 * arc;
+                    skippedEdges1[2 * arc] = edges[2 * down + 1];
+                    skippedEdges2[2 * arc] = edges[2 * other];
+                }
+                // w->v->rank
+                double bwdWeight = weights[2 * other + 1] + weights[2 * down];
+                if (bwdWeight < weights[2 * arc + 1]) {
+                    weights[2 * arc + 1] = bwdWeight;
+                    edges[2 * arc + 1] = baseEdges + 2 * arc + 1;
+                    skippedEdges1[2 * arc + 1] = edges[2 * other + 1];
+                    skippedEdges2[2 * arc + 1] = edges[2 * down];
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes the slots for which a shortcut is shorter than the original edges. The remaining slots are left out and
+     * the shortcut ids used as skipped edges are mapped accordingly.
+     */
+    private int writeShortcuts(CHStorage chStore, double[] weights, int[] skippedEdges1, int[] skippedEdges2) {
+        int shortcuts = 0;
+        for (int slot = 0; slot < 2 * arcs; slot++)
+            if (skippedEdges1[slot] != EdgeIterator.NO_EDGE)
+                shortcuts++;
+        chStore.create(nodes, shortcuts);
+        CHStorageBuilder builder = new CHStorageBuilder(chStore);
+        for (int rank = 0; rank < nodes; rank++)
+            builder.setLevel(rankToNode[rank], rank);
+        int baseEdges = graph.getEdges();
+        // maps the slots to the ids of the written shortcuts
+        int[] shortcutIds = new int[2 * arcs];
+        for (int arc = 0; arc < arcs; arc++) {
+            for (int dir = 0; dir < 2; dir++) {
+                int slot = 2 * arc + dir;
+                if (skippedEdges1[slot] == EdgeIterator.NO_EDGE)
+                    continue;
+                int accessFlags = dir == 0 ? PrepareEncoder.getScFwdDir() : PrepareEncoder.getScBwdDir();
+                int shortcut = builder.addShortcutNodeBased(rankToNode[arcTail[arc]], rankToNode[arcHead[arc]], accessFlags, weights[slot],
+                        mapSkippedEdge(skippedEdges1[slot], baseEdges, shortcutIds),
+                        mapSkippedEdge(skippedEdges2[slot], baseEdges, shortcutIds));
+                shortcutIds[slot] = shortcut;
+            }
+        }
+        return shortcuts;
+    }
+
+    private static int mapSkippedEdge(int edge, int baseEdges, int[] shortcutIds) {
+        return edge < baseEdges ? edge : baseEdges + shortcutIds[edge - baseEdges];
+    }
+
+    private static void runInParallel(ForkJoinPool pool, int from, int to, IntConsumer task) {
+        try {
+            pool.submit(() -> IntStream.range(from, to).parallel().forEach(task)).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Thread was interrupted", e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException(e.getCause());
+        }
+    }
+
+    public void clearCache() {
+        synchronized (cache) {
+            cache.clear();
+        }
+    }
+}
@@ -28,6 +28,8 @@ import com.graphhopper.util.StopWatch;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Locale;
 
 import static com.graphhopper.routing.ch.CHParameters.*;
@@ -49,12 +51,14 @@ import static com.graphhopper.util.Helper.nf;
 class EdgeBasedNodeContractor implements NodeContractor {
     private static final Logger LOGGER = LoggerFactory.getLogger(EdgeBasedNodeContractor.class);
     private final CHPreparationGraph prepareGraph;
+    // the contractor that owns the contraction state, this is only different from this for workers
+    private final EdgeBasedNodeContractor main;
     private PrepareGraphEdgeExplorer inEdgeExplorer;
     private PrepareGraphEdgeExplorer outEdgeExplorer;
     private PrepareGraphEdgeExplorer existingShortcutExplorer;
     private PrepareGraphOrigEdgeExplorer sourceNodeOrigInEdgeExplorer;
     private CHStorageBuilder chBuilder;
-    private final Params params = new Params();
+    private final Params params;
     private final StopWatch dijkstraSW = new StopWatch();
     // temporary data used during node contraction
     private final IntSet sourceNodes = new IntHashSet(10);
@@ -85,9 +89,18 @@ class EdgeBasedNodeContractor implements NodeContractor {
     public EdgeBasedNodeContractor(CHPreparationGraph prepareGraph, CHStorageBuilder chBuilder, PMap pMap) {
         this.prepareGraph = prepareGraph;
         this.chBuilder = chBuilder;
+        this.params = new Params();
+        this.main = this;
         extractParams(pMap);
     }
 
+    private EdgeBasedNodeContractor(EdgeBasedNodeContractor main) {
+        this.prepareGraph = main.prepareGraph;
+        this.chBuilder = main.chBuilder;
+        this.params = main.params;
+        this.main = main;
+    }
+
     private void extractParams(PMap pMap) {
         params.edgeQuotientWeight = pMap.getFloat(EDGE_QUOTIENT_WEIGHT, params.edgeQuotientWeight);
         params.originalEdgeQuotientWeight = pMap.getFloat(ORIGINAL_EDGE_QUOTIENT_WEIGHT, params.originalEdgeQuotientWeight);
@@ -102,7 +115,8 @@ class EdgeBasedNodeContractor implements NodeContractor {
         outEdgeExplorer = prepareGraph.createOutEdgeExplorer();
         existingShortcutExplorer = prepareGraph.createOutEdgeExplorer();
         sourceNodeOrigInEdgeExplorer = prepareGraph.createInOrigEdgeExplorer();
-        hierarchyDepths = new int[prepareGraph.getNodes()];
+        // workers only read the hierarchy depths, they are updated by the main contractor
+        hierarchyDepths = main == this ? new int[prepareGraph.getNodes()] : main.hierarchyDepths;
         witnessPathSearcher = new EdgeBasedWitnessPathSearcher(prepareGraph);
         bridgePathFinder = new BridgePathFinder(prepareGraph);
         meanDegree = prepareGraph.getOriginalEdges() * 1.0 / prepareGraph.getNodes();
@@ -118,7 +132,7 @@ class EdgeBasedNodeContractor implements NodeContractor {
             // no shortcuts will be introduced
             return Float.NEGATIVE_INFINITY;
         stats().stopWatch.start();
-        findAndHandlePrepareShortcuts(node, this::countShortcuts, (int) (meanDegree * params.maxPollFactorHeuristic), wpsStatsHeur);
+        findAndHandlePrepareShortcuts(node, this::countShortcuts, (int) (main.meanDegree * params.maxPollFactorHeuristic), wpsStatsHeur);
         stats().stopWatch.stop();
         // the higher the priority the later (!) this node will be contracted
         float edgeQuotient = numShortcuts / (float) (prepareGraph.getDegree(node));
@@ -151,6 +165,42 @@ class EdgeBasedNodeContractor implements NodeContractor {
         return neighbors;
     }
 
+    @Override
+    public NodeContractor createWorker() {
+        EdgeBasedNodeContractor worker = new EdgeBasedNodeContractor(this);
+        worker.initFromGraph();
+        return worker;
+    }
+
+    @Override
+    public PendingShortcuts findShortcuts(int node, BitSet ignoredNodes) {
+        activeStats = addingStats;
+        stats().stopWatch.start();
+        PendingEdgeBasedShortcuts result = new PendingEdgeBasedShortcuts();
+        witnessPathSearcher.setIgnoredNodes(ignoredNodes);
+        findAndHandlePrepareShortcuts(node, result::add, (int) (main.meanDegree * params.maxPollFactorContraction), wpsStatsContr);
+        witnessPathSearcher.setIgnoredNodes(null);
+        stats().stopWatch.stop();
+        return result;
+    }
+
+    @Override
+    public IntContainer contractNode(int node, PendingShortcuts pendingShortcuts) {
+        PendingEdgeBasedShortcuts shortcuts = (PendingEdgeBasedShortcuts) pendingShortcuts;
+        activeStats = addingStats;
+        stats().stopWatch.start();
+        // the bridge path entries still refer to the edges adjacent to this node, which were not changed since
+        // the shortcuts were found, because nodes that are contracted at the same time are never adjacent
+        for (int i = 0; i < shortcuts.edgesFrom.size(); i++)
+            addShortcutsToPrepareGraph(shortcuts.edgesFrom.get(i), shortcuts.edgesTo.get(i), shortcuts.origEdgeCounts.get(i));
+        insertShortcuts(node);
+        IntContainer neighbors = prepareGraph.disconnect(node);
+        meanDegree = (meanDegree * 2 + neighbors.size()) / 3;
+        updateHierarchyDepthsOfNeighbors(node, neighbors);
+        stats().stopWatch.stop();
+        return neighbors;
+    }
+
     @Override
     public void finishContraction() {
         chBuilder.replaceSkippedEdges(prepareGraph::getShortcutForPrepareEdge);
@@ -427,6 +477,18 @@ class EdgeBasedNodeContractor implements NodeContractor {
         private double maxPollFactorContraction = 200;
     }
 
+    private static class PendingEdgeBasedShortcuts implements PendingShortcuts {
+        final List<PrepareCHEntry> edgesFrom = new ArrayList<>();
+        final List<PrepareCHEntry> edgesTo = new ArrayList<>();
+        final IntArrayList origEdgeCounts = new IntArrayList();
+
+        void add(PrepareCHEntry edgeFrom, PrepareCHEntry edgeTo, int origEdgeCount) {
+            edgesFrom.add(edgeFrom);
+            edgesTo.add(edgeTo);
+            origEdgeCounts.add(origEdgeCount);
+        }
+    }
+
     private static class Stats {
         int nodes;
         StopWatch stopWatch = new StopWatch();
@@ -17,6 +17,7 @@
  */
 package com.graphhopper.routing.ch;
 
+import com.carrotsearch.hppc.BitSet;
 import com.carrotsearch.hppc.IntArrayList;
 import com.graphhopper.apache.commons.collections.IntFloatBinaryHeap;
 import com.graphhopper.util.GHUtility;
@@ -59,6 +60,7 @@ public class EdgeBasedWitnessPathSearcher {
 
     private int sourceNode;
     private int centerNode;
+    private BitSet ignoredNodes;
 
     // various counters
     private int numPolls;
@@ -107,6 +109,14 @@ public class EdgeBasedWitnessPathSearcher {
         dijkstraHeap.insert(0, sourceEdgeKey);
     }
 
+    /**
+     * Sets nodes (other than the center node) that shall never be visited by the search, or null to visit all nodes.
+     * This is used when multiple nodes are contracted at the same time.
+     */
+    public void setIgnoredNodes(BitSet ignoredNodes) {
+        this.ignoredNodes = ignoredNodes;
+    }
+
     /**
      * Runs a witness path search for a given target edge key. Results of previous searches (the shortest path tree) are
      * reused and the previous search is extended if necessary. Note that you need to call
@@ -151,6 +161,8 @@ public class EdgeBasedWitnessPathSearcher {
                 // being recognized as witnesses when there are double zero weight loops at the source node
                 if (currNode == sourceNode && iter.getAdjNode() == sourceNode && iter.getWeight() < MAX_ZERO_WEIGHT_LOOP)
                     continue;
+                if (ignoredNodes != null && iter.getAdjNode() != centerNode && ignoredNodes.get(iter.getAdjNode()))
+                    continue;
                 final double weight = weights[currKey] + calcTurnWeight(currKey, currNode, iter.getOrigEdgeKeyFirst()) + iter.getWeight();
                 if (Double.isInfinite(weight))
                     continue;
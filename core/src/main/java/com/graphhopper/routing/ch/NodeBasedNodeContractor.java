@@ -17,6 +17,9 @@
  */
 package com.graphhopper.routing.ch;
 
+import com.carrotsearch.hppc.BitSet;
+import com.carrotsearch.hppc.DoubleArrayList;
+import com.carrotsearch.hppc.IntArrayList;
 import com.carrotsearch.hppc.IntContainer;
 import com.graphhopper.storage.CHStorageBuilder;
 import com.graphhopper.util.PMap;
@@ -31,7 +34,9 @@ import static com.graphhopper.util.Helper.nf;
 
 class NodeBasedNodeContractor implements NodeContractor {
     private final CHPreparationGraph prepareGraph;
-    private final Params params = new Params();
+    private final Params params;
+    // the contractor that owns the contraction state, this is only different from this for workers
+    private final NodeBasedNodeContractor main;
     // todo: maybe use a set to prevent duplicates instead?
     private List<Shortcut> shortcuts = new ArrayList<>();
     private CHStorageBuilder chBuilder;
@@ -51,10 +56,19 @@ class NodeBasedNodeContractor implements NodeContractor {
 
     NodeBasedNodeContractor(CHPreparationGraph prepareGraph, CHStorageBuilder chBuilder, PMap pMap) {
         this.prepareGraph = prepareGraph;
+        this.params = new Params();
+        this.main = this;
         extractParams(pMap);
         this.chBuilder = chBuilder;
     }
 
+    private NodeBasedNodeContractor(NodeBasedNodeContractor main) {
+        this.prepareGraph = main.prepareGraph;
+        this.params = main.params;
+        this.main = main;
+        this.chBuilder = main.chBuilder;
+    }
+
     private void extractParams(PMap pMap) {
         params.edgeDifferenceWeight = pMap.getFloat(EDGE_DIFFERENCE_WEIGHT, params.edgeDifferenceWeight);
         params.originalEdgesCountWeight = pMap.getFloat(ORIGINAL_EDGE_COUNT_WEIGHT, params.originalEdgesCountWeight);
@@ -97,7 +111,7 @@ class NodeBasedNodeContractor implements NodeContractor {
         // originalEdgesCount = σ(v) := sum_{ (u,w) ∈ shortcuts(v) } of r(u, w)
         shortcutsCount = 0;
         originalEdgesCount = 0;
-        findAndHandleShortcuts(node, this::countShortcuts, (int) (meanDegree * params.maxPollFactorHeuristic));
+        findAndHandleShortcuts(node, this::countShortcuts, (int) (main.meanDegree * params.maxPollFactorHeuristic));
 
         // from shortcuts we can compute the edgeDifference
         // # low influence: with it the shortcut creation is slightly faster
@@ -123,6 +137,36 @@ class NodeBasedNodeContractor implements NodeContractor {
         return prepareGraph.disconnect(node);
     }
 
+    @Override
+    public NodeContractor createWorker() {
+        NodeBasedNodeContractor worker = new NodeBasedNodeContractor(this);
+        worker.initFromGraph();
+        return worker;
+    }
+
+    @Override
+    public PendingShortcuts findShortcuts(int node, BitSet ignoredNodes) {
+        PendingNodeBasedShortcuts result = new PendingNodeBasedShortcuts();
+        witnessPathSearcher.setIgnoredNodes(ignoredNodes);
+        result.degree = findAndHandleShortcuts(node, result::add, (int) (main.meanDegree * params.maxPollFactorContraction));
+        witnessPathSearcher.setIgnoredNodes(null);
+        return result;
+    }
+
+    @Override
+    public IntContainer contractNode(int node, PendingShortcuts pendingShortcuts) {
+        PendingNodeBasedShortcuts shortcuts = (PendingNodeBasedShortcuts) pendingShortcuts;
+        for (int i = 0; i < shortcuts.weights.size(); i++) {
+            int s = 6 * i;
+            IntArrayList ints = shortcuts.ints;
+            addOrUpdateShortcut(ints.get(s), ints.get(s + 1), shortcuts.weights.get(i),
+                    ints.get(s + 2), ints.get(s + 3), ints.get(s + 4), ints.get(s + 5));
+        }
+        insertShortcuts(node);
+        meanDegree = (meanDegree * 2 + shortcuts.degree) / 3;
+        return prepareGraph.disconnect(node);
+    }
+
     /**
      * Calls the shortcut handler for all edges and shortcuts adjacent to the given node. After this method is called
      * these edges and shortcuts will be removed from the prepare graph, so this method offers the last chance to deal
@@ -310,6 +354,21 @@ class NodeBasedNodeContractor implements NodeContractor {
         private double maxPollFactorContraction = 200;
     }
 
+    private static class PendingNodeBasedShortcuts implements PendingShortcuts {
+        // fromNode, toNode, outgoingEdge, outOrigEdgeCount, incomingEdge, inOrigEdgeCount for every shortcut
+        final IntArrayList ints = new IntArrayList();
+        final DoubleArrayList weights = new DoubleArrayList();
+        long degree;
+
+        void add(int fromNode, int toNode, double weight,
+                 int outgoingEdge, int outOrigEdgeCount,
+                 int incomingEdge, int inOrigEdgeCount) {
+            ints.add(fromNode, toNode, outgoingEdge, outOrigEdgeCount);
+            ints.add(incomingEdge, inOrigEdgeCount);
+            weights.add(weight);
+        }
+    }
+
     private static class Shortcut {
         int prepareEdgeFwd;
         int prepareEdgeBwd;
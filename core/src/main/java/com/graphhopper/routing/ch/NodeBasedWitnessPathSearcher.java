@@ -17,6 +17,7 @@
  */
 package com.graphhopper.routing.ch;
 
+import com.carrotsearch.hppc.BitSet;
 import com.carrotsearch.hppc.IntArrayList;
 import com.carrotsearch.hppc.cursors.IntCursor;
 import com.graphhopper.apache.commons.collections.IntFloatBinaryHeap;
@@ -34,6 +35,7 @@ public class NodeBasedWitnessPathSearcher {
     private final IntArrayList changedNodes;
     private final IntFloatBinaryHeap heap;
     private int ignoreNode = -1;
+    private BitSet ignoredNodes;
     private int settledNodes = 0;
 
     public NodeBasedWitnessPathSearcher(CHPreparationGraph graph) {
@@ -56,6 +58,14 @@ public class NodeBasedWitnessPathSearcher {
         heap.insert(0, startNode);
     }
 
+    /**
+     * Sets additional nodes that shall never be visited by the search, or null to visit all nodes but the ignore node
+     * given in init(). This is used when multiple nodes are contracted at the same time.
+     */
+    public void setIgnoredNodes(BitSet ignoredNodes) {
+        this.ignoredNodes = ignoredNodes;
+    }
+
     /**
      * Runs or continues a Dijkstra search starting at the startNode and ignoring the ignoreNode given in init().
      * If the shortest path is found we return its weight. However, this method also returns early if any path was
@@ -85,7 +95,7 @@ public class NodeBasedWitnessPathSearcher {
             PrepareGraphEdgeIterator iter = outEdgeExplorer.setBaseNode(node);
             while (iter.next()) {
                 int adjNode = iter.getAdjNode();
-                if (adjNode == ignoreNode)
+                if (adjNode == ignoreNode || (ignoredNodes != null && ignoredNodes.get(adjNode)))
                     continue;
                 double weight = weights[node] + iter.getWeight();
                 if (Double.isInfinite(weight))
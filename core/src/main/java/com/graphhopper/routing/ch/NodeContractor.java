@@ -18,6 +18,7 @@
 
 package com.graphhopper.routing.ch;
 
+import com.carrotsearch.hppc.BitSet;
 import com.carrotsearch.hppc.IntContainer;
 
 public interface NodeContractor {
@@ -37,6 +38,30 @@ public interface NodeContractor {
      */
     IntContainer contractNode(int node);
 
+    /**
+     * Creates a contractor that shares the graph and the contraction state with this one, but uses its own data
+     * structures for the local searches. This way different workers can calculate priorities or find shortcuts
+     * concurrently, as long as the graph is not modified at the same time.
+     */
+    NodeContractor createWorker();
+
+    /**
+     * Finds the shortcuts that are required to contract the given node without changing the graph. Witness paths
+     * never visit the given ignored nodes, which allows finding the shortcuts for a set of independent nodes
+     * concurrently and contracting all of them afterwards.
+     *
+     * @see #contractNode(int, PendingShortcuts)
+     */
+    PendingShortcuts findShortcuts(int node, BitSet ignoredNodes);
+
+    /**
+     * Adds the shortcuts found by {@link #findShortcuts(int, BitSet)} (possibly using a worker of this contractor)
+     * and removes the given node from the graph.
+     *
+     * @return the set of nodes adjacent to this node (before contraction)
+     */
+    IntContainer contractNode(int node, PendingShortcuts shortcuts);
+
     void finishContraction();
 
     long getAddedShortcutsCount();
@@ -45,4 +70,10 @@ public interface NodeContractor {
 
     float getDijkstraSeconds();
 
+    /**
+     * The shortcuts found for a single node, see {@link #findShortcuts(int, BitSet)}
+     */
+    interface PendingShortcuts {
+    }
+
 }
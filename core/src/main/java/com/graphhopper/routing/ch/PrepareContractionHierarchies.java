@@ -17,6 +17,8 @@
  */
 package com.graphhopper.routing.ch;
 
+import com.carrotsearch.hppc.BitSet;
+import com.carrotsearch.hppc.IntArrayList;
 import com.carrotsearch.hppc.IntContainer;
 import com.carrotsearch.hppc.cursors.IntCursor;
 import com.graphhopper.coll.MinHeapWithUpdate;
@@ -30,6 +32,10 @@ import org.slf4j.LoggerFactory;
 
 import java.util.Locale;
 import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
 
 import static com.graphhopper.routing.ch.CHParameters.*;
 import static com.graphhopper.util.Helper.getMemInfo;
@@ -62,6 +68,7 @@ public class PrepareContractionHierarchies {
     private final Params params;
     private final BaseGraph graph;
     private NodeContractor nodeContractor;
+    private CHPreparationGraph prepareGraph;
     private final int nodes;
     private NodeOrderingProvider nodeOrderingProvider;
     private int maxLevel;
@@ -100,6 +107,7 @@ public class PrepareContractionHierarchies {
         params.setMaxNeighborUpdates(pMap.getInt(NEIGHBOR_UPDATES_MAX, params.getMaxNeighborUpdates()));
         params.setNodesContractedPercentage(pMap.getInt(CONTRACTED_NODES, params.getNodesContractedPercentage()));
         params.setLogMessagesPercentage(pMap.getInt(LOG_MESSAGES, params.getLogMessagesPercentage()));
+        params.setContractionThreads(pMap.getInt(CONTRACTION_THREADS, params.getContractionThreads()));
         return this;
     }
 
@@ -159,6 +167,8 @@ public class PrepareContractionHierarchies {
         setMaxLevelOnAllNodes();
         if (nodeOrderingProvider != null) {
             contractNodesUsingFixedNodeOrdering();
+        } else if (params.getContractionThreads() > 1) {
+            contractNodesInParallel();
         } else {
             contractNodesUsingHeuristicNodeOrdering();
         }
@@ -170,7 +180,6 @@ public class PrepareContractionHierarchies {
 
     private void initFromGraph() {
         logger.info("Creating CH prepare graph, {}", getMemInfo());
-        CHPreparationGraph prepareGraph;
         if (chConfig.getTraversalMode().isEdgeBased()) {
             TurnCostStorage turnCostStorage = graph.getTurnCostStorage();
             if (turnCostStorage == null)
@@ -316,6 +325,156 @@ public class PrepareContractionHierarchies {
         _close();
     }
 
+    /**
+     * Contracts the nodes in rounds using multiple threads. In every round we select all nodes whose priority is
+     * smaller than the priorities of all their neighbors. No two of these nodes are adjacent, so we can find their
+     * shortcuts concurrently as long as the witness searches do not visit any of the other selected nodes. Afterwards
+     * the shortcuts are added and the selected nodes are removed from the graph one after the other, and finally the
+     * priorities of their neighbors are updated concurrently again.
+     * <p>
+     * Compared to the sequential contraction there are no lazy updates and the priorities of all neighbors are
+     * updated, so the node ordering and the number of shortcuts will differ slightly.
+     */
+    private void contractNodesInParallel() {
+        final int threads = params.getContractionThreads();
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        // every thread uses its own worker for the local searches, the graph is only modified by the calling thread
+        ThreadLocal<ParallelWorker> worker = ThreadLocal.withInitial(() -> new ParallelWorker(nodeContractor.createWorker(), prepareGraph));
+        try {
+            StopWatch sw = new StopWatch().start();
+            logger.info("Calculating initial node priorities: {} nodes, {} threads, {}", nodes, threads, getMemInfo());
+            final float[] priorities = new float[nodes];
+            final IntArrayList remaining = new IntArrayList(nodes);
+            for (int node = 0; node < nodes; node++)
+                remaining.add(node);
+            periodicUpdateSW.start();
+            updatePriorities(pool, worker, remaining, priorities);
+            periodicUpdateSW.stop();
+            logger.info("Finished calculating priorities, took: {}s, {}", sw.stop().getSeconds(), getMemInfo());
+
+            final int initSize = remaining.size();
+            final long logSize = params.getLogMessagesPercentage() == 0
+                    ? Long.MAX_VALUE
+                    : Math.round(Math.max(10, initSize * (params.getLogMessagesPercentage() / 100d)));
+            final long periodicUpdatesCount = params.getPeriodicUpdatesPercentage() == 0
+                    ? Long.MAX_VALUE
+                    : Math.round(Math.max(10, initSize * (params.getPeriodicUpdatesPercentage() / 100d)));
+            final long nodesToAvoidContract = Math.round(initSize * ((100 - params.getNodesContractedPercentage()) / 100d));
+
+            final boolean[] selected = new boolean[nodes];
+            final boolean[] needsUpdate = new boolean[nodes];
+            final BitSet batchNodes = new BitSet(nodes);
+            int level = 0;
+            int rounds = 0;
+            int updateCounter = 0;
+            long nextLog = 0;
+            long nextPeriodicUpdate = periodicUpdatesCount;
+            checkCounter = 0;
+            while (!remaining.isEmpty()) {
+                stopIfInterrupted();
+                rounds++;
+                // select the nodes with locally minimal priority
+                contractionSW.start();
+                runInParallel(pool, remaining.size(), i -> {
+                    int node = remaining.get(i);
+                    selected[node] = worker.get().isLocalMinimum(node, priorities);
+                });
+                long maxBatchSize = Math.max(1, remaining.size() - nodesToAvoidContract);
+                IntArrayList batch = new IntArrayList();
+                for (IntCursor c : remaining) {
+                    if (selected[c.value] && batch.size() < maxBatchSize) {
+                        batch.add(c.value);
+                        batchNodes.set(c.value);
+                    }
+                    selected[c.value] = false;
+                }
+
+                // find the shortcuts concurrently and then contract the nodes one after the other
+                NodeContractor.PendingShortcuts[] pendingShortcuts = new NodeContractor.PendingShortcuts[batch.size()];
+                runInParallel(pool, batch.size(), i -> pendingShortcuts[i] = worker.get().contractor.findShortcuts(batch.get(i), batchNodes));
+                IntArrayList neighborsToUpdate = new IntArrayList();
+                for (int i = 0; i < batch.size(); i++) {
+                    int node = batch.get(i);
+                    chBuilder.setLevel(node, level++);
+                    IntContainer neighbors = nodeContractor.contractNode(node, pendingShortcuts[i]);
+                    pendingShortcuts[i] = null;
+                    for (IntCursor neighbor : neighbors) {
+                        if (!needsUpdate[neighbor.value]) {
+                            needsUpdate[neighbor.value] = true;
+                            neighborsToUpdate.add(neighbor.value);
+                        }
+                    }
+                }
+                int size = 0;
+                for (int i = 0; i < remaining.size(); i++) {
+                    int node = remaining.get(i);
+                    if (!batchNodes.get(node))
+                        remaining.set(size++, node);
+                }
+                remaining.elementsCount = size;
+                for (IntCursor c : batch)
+                    batchNodes.clear(c.value);
+                for (IntCursor c : neighborsToUpdate)
+                    needsUpdate[c.value] = false;
+                checkCounter += batch.size();
+                contractionSW.stop();
+
+                if (remaining.size() < nodesToAvoidContract)
+                    // skipped nodes are already set to maxLevel
+                    break;
+
+                if (checkCounter >= nextPeriodicUpdate) {
+                    // periodically update priorities of ALL nodes
+                    periodicUpdateSW.start();
+                    updatePriorities(pool, worker, remaining, priorities);
+                    periodicUpdateSW.stop();
+                    updateCounter++;
+                    nextPeriodicUpdate += periodicUpdatesCount;
+                } else {
+                    neighborUpdateSW.start();
+                    updatePriorities(pool, worker, neighborsToUpdate, priorities);
+                    neighborUpdateSW.stop();
+                }
+
+                if (checkCounter >= nextLog) {
+                    logParallelStats(remaining.size(), rounds, batch.size(), updateCounter);
+                    nextLog += logSize;
+                }
+            }
+            nodeContractor.finishContraction();
+            logParallelStats(remaining.size(), rounds, 0, updateCounter);
+            logger.info("new shortcuts: " + nf(nodeContractor.getAddedShortcutsCount())
+                    + ", initSize:" + nf(initSize)
+                    + ", " + chConfig.getWeighting()
+                    + ", threads:" + threads
+                    + ", rounds:" + rounds
+                    + ", periodic:" + params.getPeriodicUpdatesPercentage()
+                    + ", " + getTimesAsString()
+                    + ", " + Helper.getMemInfo());
+        } finally {
+            pool.shutdown();
+        }
+        _close();
+    }
+
+    private void updatePriorities(ForkJoinPool pool, ThreadLocal<ParallelWorker> worker, IntArrayList nodes, float[] priorities) {
+        runInParallel(pool, nodes.size(), i -> {
+            int node = nodes.get(i);
+            priorities[node] = worker.get().contractor.calculatePriority(node);
+        });
+    }
+
+    private static void runInParallel(ForkJoinPool pool, int size, IntConsumer task) {
+        try {
+            pool.submit(() -> IntStream.range(0, size).parallel().forEach(task)).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Thread was interrupted", e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException(e.getCause());
+        }
+    }
+
     private void contractNodesUsingFixedNodeOrdering() {
         final int nodesToContract = nodeOrderingProvider.getNumNodes();
         final int logSize = Math.max(10, (int) (params.getLogMessagesPercentage() / 100.0 * nodesToContract));
@@ -367,6 +526,20 @@ public class PrepareContractionHierarchies {
                 Helper.getMemInfo()));
     }
 
+    private void logParallelStats(int remainingNodes, int rounds, int batchSize, int updateCounter) {
+        logger.info(String.format(Locale.ROOT,
+                "%s, nodes: %10s, shortcuts: %10s, rounds: %6d, batch: %10s, updates: %2d, %s, %s, %s",
+                (isEdgeBased() ? "edge" : "node"),
+                nf(remainingNodes),
+                nf(nodeContractor.getAddedShortcutsCount()),
+                rounds,
+                nf(batchSize),
+                updateCounter,
+                getTimesAsString(),
+                nodeContractor.getStatisticsString(),
+                Helper.getMemInfo()));
+    }
+
     private void logFixedNodeOrderingStats(int nodesContracted, int logSize, StopWatch stopWatch) {
         logger.info(String.format(Locale.ROOT,
                 "nodes: %10s / %10s (%6.2f%%), shortcuts: %10s, speed = %6.2f nodes/ms, %s, %s",
@@ -474,6 +647,39 @@ public class PrepareContractionHierarchies {
         }
     }
 
+    private static class ParallelWorker {
+        final NodeContractor contractor;
+        final PrepareGraphEdgeExplorer inEdgeExplorer;
+        final PrepareGraphEdgeExplorer outEdgeExplorer;
+
+        ParallelWorker(NodeContractor contractor, CHPreparationGraph prepareGraph) {
+            this.contractor = contractor;
+            inEdgeExplorer = prepareGraph.createInEdgeExplorer();
+            outEdgeExplorer = prepareGraph.createOutEdgeExplorer();
+        }
+
+        /**
+         * @return true if the priority of the given node is smaller than the priorities of all its neighbors. We use
+         * the node ids to break ties, so two adjacent nodes can never both be local minima.
+         */
+        boolean isLocalMinimum(int node, float[] priorities) {
+            return isLocalMinimum(node, priorities, outEdgeExplorer.setBaseNode(node))
+                    && isLocalMinimum(node, priorities, inEdgeExplorer.setBaseNode(node));
+        }
+
+        private static boolean isLocalMinimum(int node, float[] priorities, PrepareGraphEdgeIterator iter) {
+            while (iter.next()) {
+                int adjNode = iter.getAdjNode();
+                if (adjNode == node)
+                    continue;
+                int cmp = Float.compare(priorities[adjNode], priorities[node]);
+                if (cmp < 0 || (cmp == 0 && adjNode < node))
+                    return false;
+            }
+            return true;
+        }
+    }
+
     private static class Params {
         /**
          * Specifies after how many contracted nodes a full refresh of the queue of remaining/not contracted nodes
@@ -514,6 +720,11 @@ public class PrepareContractionHierarchies {
          * @see #periodicUpdatesPercentage
          */
         private int logMessagesPercentage;
+        /**
+         * Specifies how many threads are used to contract the nodes of this CH preparation. With more than one thread
+         * the nodes are contracted in rounds of independent nodes, see contractNodesInParallel.
+         */
+        private int contractionThreads = 1;
 
         static Params forTraversalMode(TraversalMode traversalMode) {
             // Lower values for the neighbor update percentage (and/or max neighbor updates) yield a slower
@@ -588,6 +799,16 @@ public class PrepareContractionHierarchies {
             this.logMessagesPercentage = logMessagesPercentage;
         }
 
+        int getContractionThreads() {
+            return contractionThreads;
+        }
+
+        void setContractionThreads(int contractionThreads) {
+            if (contractionThreads < 1)
+                throw new IllegalArgumentException(CONTRACTION_THREADS + " has to be at least 1");
+            this.contractionThreads = contractionThreads;
+        }
+
         private void checkPercentage(String name, int value) {
             if (value < 0 || value > 100) {
                 throw new IllegalArgumentException(name + " has to be in [0, 100], to disable it use 0");
@@ -0,0 +1,267 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing.ch;
+
+import com.carrotsearch.hppc.IntArrayList;
+import com.graphhopper.routing.util.AllEdgesIterator;
+import com.graphhopper.storage.*;
+import com.graphhopper.util.EdgeExplorer;
+import com.graphhopper.util.EdgeIterator;
+import com.graphhopper.util.StopWatch;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Arrays;
+
+import static com.graphhopper.util.Helper.getMemInfo;
+import static com.graphhopper.util.Helper.nf;
+
+/**
+ * Prepares the metric-independent part of customizable contraction hierarchies (CCH), see Dibbelt, Strasser and
+ * Wagner: "Customizable Contraction Hierarchies". The nodes are ordered using a nested dissection that recursively
+ * splits the graph geometrically at the median coordinate and puts the nodes of the (smaller) cut on top of both
+ * halves. The graph is then contracted in this order without witness searches, i.e. the result is the chordal
+ * supergraph of the road network and it does not depend on any weighting. Every arc of this supergraph is written as
+ * a shortcut into the given {@link CHStorage}, with infinite weight and without skipped edges. The weights are only
+ * calculated later for a concrete weighting, see {@link CustomizableCH}.
+ */
+public class PrepareCustomizableCH {
+    private static final Logger LOGGER = LoggerFactory.getLogger(PrepareCustomizableCH.class);
+    // cells with at most this many nodes are not split any further
+    private static final int MAX_CELL_SIZE = 32;
+    private final BaseGraph graph;
+    private final CHStorage chStore;
+    private final int nodes;
+    private int[] stamps;
+    private int stamp;
+    private EdgeExplorer explorer;
+
+    public PrepareCustomizableCH(BaseGraph graph, CHStorage chStore) {
+        if (!graph.isFrozen())
+            throw new IllegalStateException("BaseGraph must be frozen before creating CCHs");
+        if (chStore.isEdgeBased())
+            throw new IllegalArgumentException("CCH only supports node-based CHStorage");
+        this.graph = graph;
+        this.chStore = chStore;
+        this.nodes = graph.getNodes();
+    }
+
+    public void doWork() {
+        if (chStore.getShortcuts() > 0)
+            throw new IllegalStateException("Given CHStore already contains shortcuts");
+        StopWatch sw = new StopWatch().start();
+        int[] rankToNode = calcNodeOrdering();
+        LOGGER.info("calculated nested dissection ordering, took: {}s, {}", sw.stop().getSeconds(), getMemInfo());
+        sw = new StopWatch().start();
+        int[] nodeToRank = new int[nodes];
+        for (int rank = 0; rank < nodes; rank++)
+            nodeToRank[rankToNode[rank]] = rank;
+        IntArrayList[] upwardRanks = contract(nodeToRank);
+        writeArcs(rankToNode, upwardRanks);
+        LOGGER.info("contracted graph, took: {}s, nodes: {}, edges: {}, arcs: {}, {}", sw.stop().getSeconds(),
+                nf(nodes), nf(graph.getEdges()), nf(chStore.getShortcuts()), getMemInfo());
+    }
+
+    /**
+     * @return the nodes sorted by their rank (level), i.e. the node at index i is contracted as the i-th node
+     */
+    int[] calcNodeOrdering() {
+        int[] cellNodes = new int[nodes];
+        for (int node = 0; node < nodes; node++)
+            cellNodes[node] = node;
+        int[] rankToNode = new int[nodes];
+        stamps = new int[nodes];
+        stamp = 0;
+        explorer = graph.createEdgeExplorer();
+        dissect(cellNodes, 0, nodes, 0, rankToNode);
+        stamps = null;
+        return rankToNode;
+    }
+
+    private void dissect(int[] cellNodes, int from, int to, int firstRank, int[] rankToNode) {
+        int size = to - from;
+        if (size <= MAX_CELL_SIZE) {
+            for (int i = from; i < to; i++)
+                rankToNode[firstRank + i - from] = cellNodes[i];
+            return;
+        }
+        sortByCoordinate(cellNodes, from, to);
+        int mid = from + size / 2;
+        int stampA = ++stamp;
+        for (int i = from; i < mid; i++)
+            stamps[cellNodes[i]] = stampA;
+        int stampB = ++stamp;
+        for (int i = mid; i < to; i++)
+            stamps[cellNodes[i]] = stampB;
+
+        // the separator consists of the nodes of one half that are adjacent to the other half. we pick the smaller
+        // one and move its nodes to the end of this half.
+        int separatorA = countBoundaryNodes(cellNodes, from, mid, stampB);
+        int separatorB = countBoundaryNodes(cellNodes, mid, to, stampA);
+        int endA = mid, endB = to;
+        if (separatorA < separatorB)
+            endA = moveBoundaryNodesToEnd(cellNodes, from, mid, stampB);
+        else
+            endB = moveBoundaryNodesToEnd(cellNodes, mid, to, stampA);
+
+        // the separator nodes get the highest ranks of this cell
+        int rank = firstRank + (endA - from) + (endB - mid);
+        for (int i = endA; i < mid; i++)
+            rankToNode[rank++] = cellNodes[i];
+        for (int i = endB; i < to; i++)
+            rankToNode[rank++] = cellNodes[i];
+        dissect(cellNodes, from, endA, firstRank, rankToNode);
+        dissect(cellNodes, mid, endB, firstRank + (endA - from), rankToNode);
+    }
+
+    private void sortByCoordinate(int[] cellNodes, int from, int to) {
+        NodeAccess na = graph.getNodeAccess();
+        double minLat = Double.MAX_VALUE, maxLat = -Double.MAX_VALUE, minLon = Double.MAX_VALUE, maxLon = -Double.MAX_VALUE;
+        for (int i = from; i < to; i++) {
+            double lat = na.getLat(cellNodes[i]), lon = na.getLon(cellNodes[i]);
+            minLat = Math.min(minLat, lat);
+            maxLat = Math.max(maxLat, lat);
+            minLon = Math.min(minLon, lon);
+            maxLon = Math.max(maxLon, lon);
+        }
+        boolean byLat = maxLat - minLat > (maxLon - minLon) * Math.cos(Math.toRadians((minLat + maxLat) / 2));
+        // the keys contain the coordinate in the upper and the node in the lower 32 bits
+        long[] keys = new long[to - from];
+        for (int i = from; i < to; i++) {
+            int node = cellNodes[i];
+            int coordinate = (int) Math.round((byLat ? na.getLat(node) : na.getLon(node)) * 1e6);
+            keys[i - from] = ((long) coordinate << 32) | node;
+        }
+        Arrays.sort(keys);
+        for (int i = from; i < to; i++)
+            cellNodes[i] = (int) keys[i - from];
+    }
+
+    private int countBoundaryNodes(int[] cellNodes, int from, int to, int otherStamp) {
+        int count = 0;
+        for (int i = from; i < to; i++)
+            if (isAdjacentTo(cellNodes[i], otherStamp))
+                count++;
+        return count;
+    }
+
+    /**
+     * Moves the nodes in [from, to) that are adjacent to the nodes marked with otherStamp to the end of this range
+     *
+     * @return the index of the first moved node
+     */
+    private int moveBoundaryNodesToEnd(int[] cellNodes, int from, int to, int otherStamp) {
+        int end = to;
+        int i = from;
+        while (i < end) {
+            if (isAdjacentTo(cellNodes[i], otherStamp)) {
+                end--;
+                int tmp = cellNodes[i];
+                cellNodes[i] = cellNodes[end];
+                cellNodes[end] = tmp;
+            } else {
+                i++;
+            }
+        }
+        return end;
+    }
+
+    private boolean isAdjacentTo(int node, int otherStamp) {
+        EdgeIterator iter = explorer.setBaseNode(node);
+        while (iter.next())
+            if (stamps[iter.getAdjNode()] == otherStamp)
+                return true;
+        return false;
+    }
+
+    /**
+     * Contracts the nodes in the order of their ranks and returns the sorted ranks of the upward neighbors for every
+     * rank. Contracting a node connects all its upward neighbors, but it is sufficient to add them to the neighbor with
+     * the lowest rank, because this neighbor is contracted next among them.
+     */
+    IntArrayList[] contract(int[] nodeToRank) {
+        IntArrayList[] upwardRanks = new IntArrayList[nodes];
+        for (int rank = 0; rank < nodes; rank++)
+            upwardRanks[rank] = new IntArrayList(4);
+        AllEdgesIterator iter = graph.getAllEdges();
+        while (iter.next()) {
+            int rankA = nodeToRank[iter.getBaseNode()];
+            int rankB = nodeToRank[iter.getAdjNode()];
+            if (rankA != rankB)
+                upwardRanks[Math.min(rankA, rankB)].add(Math.max(rankA, rankB));
+        }
+        for (int rank = 0; rank < nodes; rank++)
+            sortAndRemoveDuplicates(upwardRanks[rank]);
+
+        for (int rank = 0; rank < nodes; rank++) {
+            IntArrayList up = upwardRanks[rank];
+            if (up.size() < 2)
+                continue;
+            int parent = up.get(0);
+            upwardRanks[parent] = merge(upwardRanks[parent], up, 1);
+        }
+        return upwardRanks;
+    }
+
+    private static void sortAndRemoveDuplicates(IntArrayList list) {
+        if (list.size() < 2)
+            return;
+        Arrays.sort(list.buffer, 0, list.size());
+        int size = 1;
+        for (int i = 1; i < list.size(); i++)
+            if (list.get(i) != list.get(size - 1))
+                list.buffer[size++] = list.get(i);
+        list.elementsCount = size;
+    }
+
+    private static IntArrayList merge(IntArrayList a, IntArrayList b, int fromB) {
+        IntArrayList result = new IntArrayList(a.size() + b.size() - fromB);
+        int i = 0, j = fromB;
+        while (i < a.size() || j < b.size()) {
+            if (j == b.size() || (i < a.size() && a.get(i) < b.get(j))) {
+                result.add(a.get(i++));
+            } else if (i == a.size() || b.get(j) < a.get(i)) {
+                result.add(b.get(j++));
+            } else {
+                result.add(a.get(i++));
+                j++;
+            }
+        }
+        return result;
+    }
+
+    private void writeArcs(int[] rankToNode, IntArrayList[] upwardRanks) {
+        long arcs = 0;
+        for (IntArrayList up : upwardRanks)
+            arcs += up.size();
+        // every arc becomes a forward and a backward shortcut when the CCH is customized
+        if (2 * arcs >= Integer.MAX_VALUE)
+            throw new IllegalStateException("Too many arcs for CCH: " + arcs);
+        chStore.create(nodes, (int) arcs);
+        CHStorageBuilder builder = new CHStorageBuilder(chStore);
+        for (int rank = 0; rank < nodes; rank++)
+            builder.setLevel(rankToNode[rank], rank);
+        for (int rank = 0; rank < nodes; rank++) {
+            IntArrayList up = upwardRanks[rank];
+            for (int i = 0; i < up.size(); i++)
+                builder.addShortcutNodeBased(rankToNode[rank], rankToNode[up.get(i)], PrepareEncoder.getScDirMask(),
+                        Double.POSITIVE_INFINITY, -1, -1);
+            upwardRanks[rank] = null;
+        }
+    }
+}
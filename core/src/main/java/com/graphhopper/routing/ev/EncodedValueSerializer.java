@@ -24,6 +24,7 @@ import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.PropertyNamingStrategies;
+import com.fasterxml.jackson.databind.node.ObjectNode;
 
 public class EncodedValueSerializer {
     private final static ObjectMapper MAPPER = new ObjectMapper();
@@ -43,6 +44,13 @@ public class EncodedValueSerializer {
         }
     }
 
+    /**
+     * @return the fields of the given encoded value as JSON object, i.e. the same content as serializeEncodedValue
+     */
+    public static ObjectNode serializeEncodedValueToTree(EncodedValue encodedValue) {
+        return MAPPER.valueToTree(encodedValue);
+    }
+
     public static EncodedValue deserializeEncodedValue(String serializedEncodedValue) {
         try {
             JsonNode jsonNode = MAPPER.readTree(serializedEncodedValue);
@@ -19,12 +19,12 @@ package com.graphhopper.routing.lm;
 
 import com.carrotsearch.hppc.IntArrayList;
 import com.carrotsearch.hppc.IntHashSet;
-import com.carrotsearch.hppc.IntObjectMap;
 import com.carrotsearch.hppc.predicates.IntObjectPredicate;
 import com.carrotsearch.hppc.procedures.IntObjectProcedure;
 import com.graphhopper.coll.MapEntry;
 import com.graphhopper.routing.DijkstraBidirectionRef;
 import com.graphhopper.routing.SPTEntry;
+import com.graphhopper.routing.SearchSpace;
 import com.graphhopper.routing.ev.BooleanEncodedValue;
 import com.graphhopper.routing.ev.EncodedValueLookup;
 import com.graphhopper.routing.ev.Subnetwork;
@@ -50,6 +50,8 @@ import org.slf4j.LoggerFactory;
 import java.util.*;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
 
 /**
  * This class stores the landmark nodes and the weights from and to all other nodes in every
@@ -94,6 +96,7 @@ public class LandmarkStorage {
     private List<LandmarkSuggestion> landmarkSuggestions = Collections.emptyList();
     private AreaIndex<SplitArea> areaIndex;
     private boolean logDetails = false;
+    private int landmarkThreads = 1;
     /**
      * 'to' and 'from' fit into 32 bit => 16 bit for each of them => 65536
      */
@@ -169,6 +172,17 @@ public class LandmarkStorage {
         this.logDetails = logDetails;
     }
 
+    /**
+     * This method sets the number of threads used to calculate the weights from and to the landmarks of one
+     * subnetwork. Every thread holds its own forward or backward exploration, so make sure that you have enough memory
+     * when increasing this number. Default is 1.
+     */
+    public void setLandmarkThreads(int landmarkThreads) {
+        if (landmarkThreads < 1)
+            throw new IllegalArgumentException("landmark threads must be at least 1 but was " + landmarkThreads);
+        this.landmarkThreads = landmarkThreads;
+    }
+
     /**
      * This method forces the landmark preparation to skip the landmark search and uses the specified landmark list instead.
      * Useful for manual tuning of larger areas to safe import time or improve quality.
@@ -445,42 +459,46 @@ public class LandmarkStorage {
         }
 
         // 2) calculate weights for all landmarks -> 'from' and 'to' weight
-        for (int lmIdx = 0; lmIdx < tmpLandmarkNodeIds.length; lmIdx++) {
-            if (Thread.currentThread().isInterrupted()) {
-                throw new RuntimeException("Thread was interrupted for landmark " + lmIdx);
-            }
-            int lmNodeId = tmpLandmarkNodeIds[lmIdx];
-            LandmarkExplorer explorer = new LandmarkExplorer(graph, this, weighting, traversalMode, accessFilter, false);
-            explorer.setStartNode(lmNodeId);
-            explorer.runAlgo();
-            explorer.initLandmarkWeights(lmIdx, lmNodeId, LM_ROW_LENGTH, FROM_OFFSET);
-
-            // set subnetwork id to all explored nodes, but do this only for the first landmark
-            if (lmIdx == 0) {
-                if (explorer.setSubnetworks(subnetworks, subnetworkId))
-                    return false;
-            }
-
-            explorer = new LandmarkExplorer(graph, this, weighting, traversalMode, accessFilter, true);
-            explorer.setStartNode(lmNodeId);
-            explorer.runAlgo();
-            explorer.initLandmarkWeights(lmIdx, lmNodeId, LM_ROW_LENGTH, TO_OFFSET);
-
-            if (lmIdx == 0) {
-                if (explorer.setSubnetworks(subnetworks, subnetworkId))
-                    return false;
-            }
+        // the first landmark also determines the subnetwork of all explored nodes, so it is always calculated first
+        if (Thread.currentThread().isInterrupted())
+            throw new RuntimeException("Thread was interrupted for landmark 0");
+        LandmarkExplorer explorer = calcLandmarkWeights(0, tmpLandmarkNodeIds[0], accessFilter, false);
+        if (explorer.setSubnetworks(subnetworks, subnetworkId))
+            return false;
+        explorer = calcLandmarkWeights(0, tmpLandmarkNodeIds[0], accessFilter, true);
+        if (explorer.setSubnetworks(subnetworks, subnetworkId))
+            return false;
 
-            if (logDetails && lmIdx % logOffset == 0)
+        // every landmark writes only into its own slots of the landmark rows, so the remaining landmarks are independent
+        final AtomicInteger finishedLandmarks = new AtomicInteger(1);
+        Stream<Runnable> runnables = IntStream.range(1, tmpLandmarkNodeIds.length).mapToObj(lmIdx -> () -> {
+            if (Thread.currentThread().isInterrupted())
+                throw new RuntimeException("Thread was interrupted for landmark " + lmIdx);
+            calcLandmarkWeights(lmIdx, tmpLandmarkNodeIds[lmIdx], accessFilter, false);
+            calcLandmarkWeights(lmIdx, tmpLandmarkNodeIds[lmIdx], accessFilter, true);
+            int finished = finishedLandmarks.incrementAndGet();
+            if (logDetails && finished % logOffset == 0)
                 LOGGER.info("Set landmarks weights [" + weighting + "]. "
-                        + "Progress " + (int) (100.0 * lmIdx / tmpLandmarkNodeIds.length) + "%");
-        }
+                        + "Progress " + (int) (100.0 * finished / tmpLandmarkNodeIds.length) + "%");
+        });
+        if (landmarkThreads > 1)
+            GHUtility.runConcurrently(runnables, landmarkThreads);
+        else
+            runnables.forEach(Runnable::run);
 
         // TODO set weight to SHORT_MAX if entry has either no 'from' or no 'to' entry
         landmarkIDs.add(tmpLandmarkNodeIds);
         return true;
     }
 
+    private LandmarkExplorer calcLandmarkWeights(int lmIdx, int lmNodeId, EdgeFilter accessFilter, boolean reverse) {
+        LandmarkExplorer explorer = new LandmarkExplorer(graph, this, weighting, traversalMode, accessFilter, reverse);
+        explorer.setStartNode(lmNodeId);
+        explorer.runAlgo();
+        explorer.initLandmarkWeights(lmIdx, lmNodeId, LM_ROW_LENGTH, reverse ? TO_OFFSET : FROM_OFFSET);
+        return explorer;
+    }
+
     /**
      * This method specifies the polygons which should be used to split the world wide area to improve performance and
      * quality in this scenario.
@@ -806,7 +824,7 @@ public class LandmarkStorage {
         }
 
         int getFromCount() {
-            return bestWeightMapFrom.size();
+            return searchSpaceFrom.size();
         }
 
         public void runAlgo() {
@@ -835,8 +853,8 @@ public class LandmarkStorage {
                 throw new IllegalStateException("Too many subnetworks " + subnetworkId);
 
             final AtomicBoolean failed = new AtomicBoolean(false);
-            IntObjectMap<SPTEntry> map = reverse ? bestWeightMapTo : bestWeightMapFrom;
-            map.forEach(new IntObjectPredicate<SPTEntry>() {
+            SearchSpace searchSpace = reverse ? searchSpaceTo : searchSpaceFrom;
+            searchSpace.forEach(new IntObjectPredicate<SPTEntry>() {
                 @Override
                 public boolean apply(int nodeId, SPTEntry value) {
                     int sn = subnetworks[nodeId];
@@ -859,11 +877,11 @@ public class LandmarkStorage {
         }
 
         public void initLandmarkWeights(final int lmIdx, int lmNodeId, final long rowSize, final int offset) {
-            IntObjectMap<SPTEntry> map = reverse ? bestWeightMapTo : bestWeightMapFrom;
+            SearchSpace searchSpace = reverse ? searchSpaceTo : searchSpaceFrom;
             final AtomicInteger maxedout = new AtomicInteger(0);
             final Map.Entry<Double, Double> finalMaxWeight = new MapEntry<>(0d, 0d);
 
-            map.forEach(new IntObjectProcedure<SPTEntry>() {
+            searchSpace.forEach(new IntObjectProcedure<SPTEntry>() {
                 @Override
                 public void apply(int nodeId, SPTEntry b) {
                     if (!lms.setWeight(nodeId * rowSize + lmIdx * 4 + offset, b.weight)) {
@@ -873,9 +891,9 @@ public class LandmarkStorage {
                 }
             });
 
-            if ((double) maxedout.get() / map.size() > 0.1) {
+            if ((double) maxedout.get() / searchSpace.size() > 0.1) {
                 LOGGER.warn("landmark " + lmIdx + " (" + nodeAccess.getLat(lmNodeId) + "," + nodeAccess.getLon(lmNodeId) + "): " +
-                        "too many weights were maxed out (" + maxedout.get() + "/" + map.size() + "). Use a bigger factor than " + lms.factor
+                        "too many weights were maxed out (" + maxedout.get() + "/" + searchSpace.size() + "). Use a bigger factor than " + lms.factor
                         + ". For example use maximum_lm_weight: " + finalMaxWeight.getValue() * 1.2 + " in your LM profile definition");
             }
         }
@@ -100,10 +100,13 @@ public class MaxSpeedCalculator {
             }
 
             public void setInt(int edgeId, int index, int value) {
-                dataAccess.ensureCapacity(edgeId * 2L + 2L);
                 if (value > Short.MAX_VALUE)
                     throw new IllegalStateException("value too large for short: " + value);
-                dataAccess.setShort(edgeId * 2L, (short) value);
+                // the parser can be called from multiple threads during the import and ensureCapacity is not thread-safe
+                synchronized (this) {
+                    dataAccess.ensureCapacity(edgeId * 2L + 2L);
+                    dataAccess.setShort(edgeId * 2L, (short) value);
+                }
             }
         };
     }
@@ -101,6 +101,12 @@ public class OSMParsers {
             parser.handleWayTags(edgeId, edgeIntAccess, way, relationFlags);
     }
 
+    public IntsRef restoreRelationFlags(int edgeId, EdgeIntAccess edgeIntAccess, IntsRef relFlags) {
+        for (RelationTagParser relParser : relationTagParsers)
+            relParser.restoreRelationFlags(relFlags, edgeId, edgeIntAccess);
+        return relFlags;
+    }
+
     public IntsRef createRelationFlags() {
         int requiredInts = relConfig.getRequiredInts();
         if (requiredInts > 2)
@@ -45,25 +45,29 @@ public class DefaultMaxSpeedParser implements TagParser {
                 if (country == Country.GBR) tags.put("lit", "yes");
 
                 // with computeIfAbsent we calculate the expensive hashCode of the key only once
-                Result result = cache.computeIfAbsent(tags, (key) -> {
-                    Result internRes = new Result();
-                    LegalDefaultSpeeds.Result tmpResult = speeds.getSpeedLimits(code,
-                            tags, Collections.emptyList(), (name, eval) -> eval.invoke() || "rural".equals(name));
-                    if (tmpResult != null) {
-                        internRes.rural = parseInt(tmpResult.getTags().get("maxspeed"));
-                        if (internRes.rural == null && "130".equals(tmpResult.getTags().get("maxspeed:advisory")))
-                            internRes.rural = (int) MAXSPEED_150;
-                    }
+                Result result;
+                // the cache is not thread-safe, but the tag parsers can be called from multiple threads during the import
+                synchronized (cache) {
+                    result = cache.computeIfAbsent(tags, (key) -> {
+                        Result internRes = new Result();
+                        LegalDefaultSpeeds.Result tmpResult = speeds.getSpeedLimits(code,
+                                tags, Collections.emptyList(), (name, eval) -> eval.invoke() || "rural".equals(name));
+                        if (tmpResult != null) {
+                            internRes.rural = parseInt(tmpResult.getTags().get("maxspeed"));
+                            if (internRes.rural == null && "130".equals(tmpResult.getTags().get("maxspeed:advisory")))
+                                internRes.rural = (int) MAXSPEED_150;
+                        }
 
-                    tmpResult = speeds.getSpeedLimits(code,
-                            tags, Collections.emptyList(), (name, eval) -> eval.invoke() || "urban".equals(name));
-                    if (tmpResult != null) {
-                        internRes.urban = parseInt(tmpResult.getTags().get("maxspeed"));
-                        if (internRes.urban == null && "130".equals(tmpResult.getTags().get("maxspeed:advisory")))
-                            internRes.urban = (int) MAXSPEED_150;
-                    }
-                    return internRes;
-                });
+                        tmpResult = speeds.getSpeedLimits(code,
+                                tags, Collections.emptyList(), (name, eval) -> eval.invoke() || "urban".equals(name));
+                        if (tmpResult != null) {
+                            internRes.urban = parseInt(tmpResult.getTags().get("maxspeed"));
+                            if (internRes.urban == null && "130".equals(tmpResult.getTags().get("maxspeed:advisory")))
+                                internRes.urban = (int) MAXSPEED_150;
+                        }
+                        return internRes;
+                    });
+                }
 
                 ruralSpeedInt = result.rural;
                 urbanSpeedInt = result.urban;
@@ -63,4 +63,10 @@ public class OSMFootNetworkTagParser implements RelationTagParser {
         RouteNetwork footNetwork = transformerRouteRelEnc.getEnum(false, -1, relIntAccess);
         footRouteEnc.setEnum(false, edgeId, edgeIntAccess, footNetwork);
     }
+
+    @Override
+    public void restoreRelationFlags(IntsRef relFlags, int edgeId, EdgeIntAccess edgeIntAccess) {
+        IntsRefEdgeIntAccess relIntAccess = new IntsRefEdgeIntAccess(relFlags);
+        transformerRouteRelEnc.setEnum(false, -1, relIntAccess, footRouteEnc.getEnum(false, edgeId, edgeIntAccess));
+    }
 }
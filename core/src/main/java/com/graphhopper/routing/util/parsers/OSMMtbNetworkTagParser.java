@@ -55,6 +55,12 @@ public class OSMMtbNetworkTagParser implements RelationTagParser {
         bikeRouteEnc.setEnum(false, edgeId, edgeIntAccess, routeNetwork);
     }
 
+    @Override
+    public void restoreRelationFlags(IntsRef relFlags, int edgeId, EdgeIntAccess edgeIntAccess) {
+        IntsRefEdgeIntAccess relIntAccess = new IntsRefEdgeIntAccess(relFlags);
+        transformerRouteRelEnc.setEnum(false, -1, relIntAccess, bikeRouteEnc.getEnum(false, edgeId, edgeIntAccess));
+    }
+
     public EnumEncodedValue<RouteNetwork> getTransformerRouteRelEnc() {
         return transformerRouteRelEnc;
     }
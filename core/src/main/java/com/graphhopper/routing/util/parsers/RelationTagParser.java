@@ -18,6 +18,7 @@
 package com.graphhopper.routing.util.parsers;
 
 import com.graphhopper.reader.ReaderRelation;
+import com.graphhopper.routing.ev.EdgeIntAccess;
 import com.graphhopper.storage.IntsRef;
 
 /**
@@ -32,4 +33,13 @@ public interface RelationTagParser extends TagParser {
      * In the pre-parsing step this method will be called to determine the useful relation tags.
      */
     void handleRelationTags(IntsRef relFlags, ReaderRelation relation);
+
+    /**
+     * The reverse of handleWayTags: writes the values that were stored for the given edge back into the relation flags.
+     * This is needed to run the tag parsers again for an existing edge when the relations are no longer available,
+     * see GraphHopper.importOSMChanges. Parsers that do not override this method cannot be used for such updates.
+     */
+    default void restoreRelationFlags(IntsRef relFlags, int edgeId, EdgeIntAccess edgeIntAccess) {
+        throw new IllegalStateException(getClass().getSimpleName() + " cannot restore the relation flags of an existing edge");
+    }
 }
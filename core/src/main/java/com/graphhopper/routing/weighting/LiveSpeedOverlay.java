@@ -0,0 +1,143 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing.weighting;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+
+/**
+ * Live speeds (in km/h) per edge key, e.g. from a traffic feed, that are used by the {@link LiveTrafficWeighting}.
+ * The speeds are stored in direct float buffers outside of the Java heap. Segments without any live speed are not
+ * allocated at all.
+ * <p>
+ * Readers work on an immutable {@link Snapshot}, so routing requests see consistent speeds and are never blocked.
+ * Updates copy only the segments they change and then atomically replace the current snapshot. Unchanged segments are
+ * shared between the snapshots. A speed of zero means there is no live speed for the edge key.
+ */
+public class LiveSpeedOverlay {
+    private static final int SEGMENT_BITS = 16;
+    private static final int SEGMENT_SIZE = 1 << SEGMENT_BITS;
+    private static final int SEGMENT_MASK = SEGMENT_SIZE - 1;
+    private final int edgeKeys;
+    private volatile Snapshot snapshot;
+
+    /**
+     * @param edgeKeys the number of edge keys, i.e. twice the number of edges of the graph
+     */
+    public LiveSpeedOverlay(int edgeKeys) {
+        if (edgeKeys < 0)
+            throw new IllegalArgumentException("edgeKeys must not be negative: " + edgeKeys);
+        this.edgeKeys = edgeKeys;
+        this.snapshot = new Snapshot(new FloatBuffer[(edgeKeys + SEGMENT_SIZE - 1) >>> SEGMENT_BITS], 0, 0);
+    }
+
+    public Snapshot getSnapshot() {
+        return snapshot;
+    }
+
+    public int getEdgeKeys() {
+        return edgeKeys;
+    }
+
+    /**
+     * Sets the live speeds for the given edge keys and publishes them as a new snapshot. Concurrent updates are applied
+     * one after the other, but readers of the previous snapshot are not affected.
+     *
+     * @param speeds  the new speeds in km/h, zero removes the live speed of an edge key
+     * @param replace if true all live speeds that are not contained in this update are removed
+     * @return the new snapshot
+     */
+    public synchronized Snapshot update(int[] keys, float[] speeds, int count, boolean replace) {
+        if (keys.length < count || speeds.length < count)
+            throw new IllegalArgumentException("keys and speeds must contain at least " + count + " entries");
+        for (int i = 0; i < count; i++) {
+            if (keys[i] < 0 || keys[i] >= edgeKeys)
+                throw new IllegalArgumentException("Invalid edge key " + keys[i] + ", must be in [0, " + edgeKeys + ")");
+            if (!(speeds[i] >= 0) || Float.isInfinite(speeds[i]))
+                throw new IllegalArgumentException("Invalid speed " + speeds[i] + " for edge key " + keys[i]);
+        }
+        Snapshot current = snapshot;
+        FloatBuffer[] segments = replace ? new FloatBuffer[current.segments.length] : current.segments.clone();
+        // the segments that were copied (or created) for this update and can be modified
+        boolean[] owned = new boolean[segments.length];
+        int liveSpeeds = replace ? 0 : current.liveSpeeds;
+        for (int i = 0; i < count; i++) {
+            int segment = keys[i] >>> SEGMENT_BITS;
+            int index = keys[i] & SEGMENT_MASK;
+            if (!owned[segment]) {
+                if (speeds[i] == 0 && segments[segment] == null)
+                    continue;
+                segments[segment] = copy(segments[segment]);
+                owned[segment] = true;
+            }
+            float previous = segments[segment].get(index);
+            if (previous == 0 && speeds[i] > 0)
+                liveSpeeds++;
+            else if (previous > 0 && speeds[i] == 0)
+                liveSpeeds--;
+            segments[segment].put(index, speeds[i]);
+        }
+        snapshot = new Snapshot(segments, current.version + 1, liveSpeeds);
+        return snapshot;
+    }
+
+    private static FloatBuffer copy(FloatBuffer segment) {
+        FloatBuffer copy = ByteBuffer.allocateDirect(SEGMENT_SIZE * Float.BYTES).order(ByteOrder.nativeOrder()).asFloatBuffer();
+        if (segment != null)
+            copy.put(segment.duplicate().rewind()).rewind();
+        return copy;
+    }
+
+    /**
+     * An immutable state of the live speeds.
+     */
+    public static final class Snapshot {
+        private final FloatBuffer[] segments;
+        private final long version;
+        private final int liveSpeeds;
+
+        private Snapshot(FloatBuffer[] segments, long version, int liveSpeeds) {
+            this.segments = segments;
+            this.version = version;
+            this.liveSpeeds = liveSpeeds;
+        }
+
+        /**
+         * @return the live speed in km/h or 0 if there is none
+         */
+        public float getSpeed(int edgeKey) {
+            FloatBuffer segment = segments[edgeKey >>> SEGMENT_BITS];
+            return segment == null ? 0 : segment.get(edgeKey & SEGMENT_MASK);
+        }
+
+        /**
+         * @return the number of updates that led to this snapshot
+         */
+        public long getVersion() {
+            return version;
+        }
+
+        /**
+         * @return the number of edge keys with a live speed
+         */
+        public int getLiveSpeeds() {
+            return liveSpeeds;
+        }
+    }
+}
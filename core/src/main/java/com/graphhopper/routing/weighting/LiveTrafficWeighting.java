@@ -0,0 +1,75 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing.weighting;
+
+import com.graphhopper.routing.querygraph.VirtualEdgeIteratorState;
+import com.graphhopper.util.EdgeIteratorState;
+import com.graphhopper.util.GHUtility;
+
+/**
+ * Slows down the edges for which the {@link LiveSpeedOverlay} contains a live speed that is lower than the speed of
+ * the wrapped weighting. The weight is increased by the same factor as the travel time. Live speeds that are higher
+ * than the speed of the wrapped weighting are ignored, i.e. the weights never get smaller and the landmarks or the
+ * minimum weight per distance calculated for the wrapped weighting stay valid.
+ */
+public class LiveTrafficWeighting extends AbstractAdjustedWeighting {
+    private final LiveSpeedOverlay.Snapshot snapshot;
+
+    public LiveTrafficWeighting(Weighting superWeighting, LiveSpeedOverlay.Snapshot snapshot) {
+        super(superWeighting);
+        this.snapshot = snapshot;
+    }
+
+    @Override
+    public double calcEdgeWeight(EdgeIteratorState edgeState, boolean reverse) {
+        double weight = superWeighting.calcEdgeWeight(edgeState, reverse);
+        float liveSpeed = getLiveSpeed(edgeState, reverse);
+        if (liveSpeed == 0 || Double.isInfinite(weight))
+            return weight;
+        long millis = superWeighting.calcEdgeMillis(edgeState, reverse);
+        long liveMillis = calcLiveMillis(edgeState, liveSpeed);
+        return millis > 0 && liveMillis > millis ? weight * liveMillis / millis : weight;
+    }
+
+    @Override
+    public long calcEdgeMillis(EdgeIteratorState edgeState, boolean reverse) {
+        long millis = superWeighting.calcEdgeMillis(edgeState, reverse);
+        float liveSpeed = getLiveSpeed(edgeState, reverse);
+        return liveSpeed == 0 ? millis : Math.max(millis, calcLiveMillis(edgeState, liveSpeed));
+    }
+
+    private float getLiveSpeed(EdgeIteratorState edgeState, boolean reverse) {
+        int edgeKey = edgeState instanceof VirtualEdgeIteratorState
+                ? ((VirtualEdgeIteratorState) edgeState).getOriginalEdgeKey() : edgeState.getEdgeKey();
+        return snapshot.getSpeed(reverse ? GHUtility.reverseEdgeKey(edgeKey) : edgeKey);
+    }
+
+    private static long calcLiveMillis(EdgeIteratorState edgeState, float liveSpeed) {
+        // the distance is in meters and the speed in km/h
+        return Math.round(edgeState.getDistance() / liveSpeed * 3600);
+    }
+
+    public LiveSpeedOverlay.Snapshot getSnapshot() {
+        return snapshot;
+    }
+
+    @Override
+    public String getName() {
+        return "live_traffic";
+    }
+}
@@ -0,0 +1,67 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing.weighting;
+
+import com.graphhopper.util.EdgeIteratorState;
+import com.graphhopper.util.GHUtility;
+
+/**
+ * Reads the edge weights and travel times from {@link PrecomputedWeights}. The wrapped weighting must calculate the same
+ * weights as the one that was used to calculate them, i.e. the weighting of the profile without a per-request custom
+ * model. It is still used for the turn costs, for the virtual edges of a query graph (which have another distance and
+ * may be unfavored) and for the values that are not stored.
+ */
+public class PrecomputedWeighting extends AbstractAdjustedWeighting {
+    private final PrecomputedWeights weights;
+    private final int edges;
+
+    public PrecomputedWeighting(Weighting superWeighting, PrecomputedWeights weights) {
+        super(superWeighting);
+        this.weights = weights;
+        this.edges = weights.getEdges();
+    }
+
+    @Override
+    public double calcEdgeWeight(EdgeIteratorState edgeState, boolean reverse) {
+        if (edgeState.getEdge() < edges) {
+            double weight = weights.getWeight(getEdgeKey(edgeState, reverse));
+            if (!Double.isNaN(weight))
+                return weight;
+        }
+        return superWeighting.calcEdgeWeight(edgeState, reverse);
+    }
+
+    @Override
+    public long calcEdgeMillis(EdgeIteratorState edgeState, boolean reverse) {
+        if (edgeState.getEdge() < edges) {
+            long millis = weights.getMillis(getEdgeKey(edgeState, reverse));
+            if (millis >= 0)
+                return millis;
+        }
+        return superWeighting.calcEdgeMillis(edgeState, reverse);
+    }
+
+    private static int getEdgeKey(EdgeIteratorState edgeState, boolean reverse) {
+        return reverse ? GHUtility.reverseEdgeKey(edgeState.getEdgeKey()) : edgeState.getEdgeKey();
+    }
+
+    @Override
+    public String getName() {
+        return superWeighting.getName();
+    }
+}
@@ -0,0 +1,123 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing.weighting;
+
+import com.graphhopper.routing.util.AllEdgesIterator;
+import com.graphhopper.storage.BaseGraph;
+import com.graphhopper.storage.DataAccess;
+import com.graphhopper.storage.Directory;
+import com.graphhopper.util.Constants;
+import com.graphhopper.util.GHUtility;
+
+/**
+ * The edge weights and travel times of a profile for all edge keys of the graph. They are calculated once with the
+ * weighting of the profile and stored together with the graph, so that the {@link PrecomputedWeighting} does not need
+ * to decode the edge flags and evaluate the custom model for every edge.
+ * <p>
+ * Memory layout: for every edge key the weight as float followed by the travel time in milliseconds as int. The weight
+ * is rounded up to the next float, so it is never smaller than the weight of the weighting and the landmarks and the
+ * minimum weight per distance stay valid. Values that cannot be stored like this, e.g. travel times of blocked edges,
+ * are marked and then calculated by the weighting.
+ */
+public class PrecomputedWeights {
+    private static final int BYTES_PER_EDGE_KEY = 8;
+    private static final int NOT_STORED_WEIGHT = Float.floatToRawIntBits(Float.NaN);
+    private static final int NOT_STORED_MILLIS = -1;
+    private final DataAccess da;
+    private int edges;
+
+    public PrecomputedWeights(Directory dir, String profile) {
+        da = dir.create(getStorageName(profile));
+    }
+
+    public static String getStorageName(String profile) {
+        return "weights_" + profile;
+    }
+
+    /**
+     * Calculates the weights and travel times of all edges of the graph with the given weighting.
+     */
+    public PrecomputedWeights calc(BaseGraph graph, Weighting weighting) {
+        edges = graph.getEdges();
+        da.create((long) BYTES_PER_EDGE_KEY * 2 * edges);
+        AllEdgesIterator iter = graph.getAllEdges();
+        while (iter.next()) {
+            set(iter.getEdgeKey(), weighting.calcEdgeWeight(iter, false), weighting.calcEdgeMillis(iter, false));
+            set(iter.getReverseEdgeKey(), weighting.calcEdgeWeight(iter, true), weighting.calcEdgeMillis(iter, true));
+        }
+        return this;
+    }
+
+    private void set(int edgeKey, double weight, long millis) {
+        long pointer = (long) BYTES_PER_EDGE_KEY * edgeKey;
+        float floatWeight = (float) weight;
+        if (floatWeight < weight)
+            floatWeight = Math.nextUp(floatWeight);
+        // the weight is too large for a float, but not infinite
+        boolean storeWeight = Float.isFinite(floatWeight) || Double.isInfinite(weight);
+        da.setInt(pointer, storeWeight ? Float.floatToRawIntBits(floatWeight) : NOT_STORED_WEIGHT);
+        da.setInt(pointer + 4, millis >= 0 && millis < Integer.MAX_VALUE ? (int) millis : NOT_STORED_MILLIS);
+    }
+
+    public boolean loadExisting() {
+        if (!da.loadExisting())
+            return false;
+        GHUtility.checkDAVersion(da.getName(), Constants.VERSION_PRECOMPUTED_WEIGHTS, da.getHeader(0));
+        edges = da.getHeader(4);
+        return true;
+    }
+
+    /**
+     * @return the number of edges of the graph the weights were calculated for
+     */
+    public int getEdges() {
+        return edges;
+    }
+
+    /**
+     * @return the stored weight of the given edge key or NaN if the weight is not stored
+     */
+    public double getWeight(int edgeKey) {
+        return Float.intBitsToFloat(da.getInt((long) BYTES_PER_EDGE_KEY * edgeKey));
+    }
+
+    /**
+     * @return the stored travel time of the given edge key or a negative value if the travel time is not stored
+     */
+    public long getMillis(int edgeKey) {
+        return da.getInt((long) BYTES_PER_EDGE_KEY * edgeKey + 4);
+    }
+
+    public void flush() {
+        da.setHeader(0, Constants.VERSION_PRECOMPUTED_WEIGHTS);
+        da.setHeader(4, edges);
+        da.flush();
+    }
+
+    public void close() {
+        da.close();
+    }
+
+    public boolean isClosed() {
+        return da.isClosed();
+    }
+
+    public long getCapacity() {
+        return da.getCapacity();
+    }
+}
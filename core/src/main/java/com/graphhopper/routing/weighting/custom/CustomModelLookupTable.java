@@ -0,0 +1,426 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing.weighting.custom;
+
+import com.graphhopper.json.Statement;
+import com.graphhopper.routing.ev.*;
+import com.graphhopper.util.EdgeIteratorState;
+import com.graphhopper.util.JsonFeature;
+import com.graphhopper.util.shapes.Polygon;
+import org.codehaus.janino.Java;
+import org.codehaus.janino.Parser;
+import org.codehaus.janino.Scanner;
+import org.codehaus.janino.TokenType;
+import org.locationtech.jts.geom.Polygonal;
+import org.locationtech.jts.geom.prep.PreparedPolygon;
+
+import java.io.StringReader;
+import java.util.*;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+
+import static com.graphhopper.routing.weighting.custom.CustomModelParser.BACKWARD_PREFIX;
+import static com.graphhopper.routing.weighting.custom.CustomModelParser.IN_AREA_PREFIX;
+
+/**
+ * This class evaluates the speed or priority statements of a CustomModel without compiling them. It supports
+ * conditions that only use enum, boolean and int encoded values (and areas) and values that are numbers or a single
+ * decimal or int encoded value. The statements are evaluated once for every combination of the values of the used
+ * variables and the result is stored in a table. For an edge only the index into this table has to be calculated.
+ * The result is identical to the one of the compiled class, as the operations are applied in the same order.
+ * <p>
+ * Use CustomModelParser.createWeightingParameters to create an instance, which also validates the CustomModel.
+ */
+final class CustomModelLookupTable implements CustomWeighting.EdgeToDoubleMapping {
+    // limits the time and memory to create the table, e.g. road_class x road_environment x 2 boolean values is ~700
+    static final int MAX_TABLE_SIZE = 1 << 14;
+    private static final Step[] NO_STEPS = new Step[0];
+    private static final Pattern NUMBER_PATTERN = Pattern.compile("(0|[1-9][0-9]{0,8})(\\.[0-9]*)?|\\.[0-9]+");
+
+    private final Variable[] variables;
+    private final int[] strides;
+    private final double[] initialValues;
+    // null for combinations where the initial value is already the result
+    private final Step[][] steps;
+
+    private CustomModelLookupTable(Variable[] variables, int[] strides, double[] initialValues, Step[][] steps) {
+        this.variables = variables;
+        this.strides = strides;
+        this.initialValues = initialValues;
+        this.steps = steps;
+    }
+
+    /**
+     * @param initialValue the value before the first statement is applied, e.g. the global maximum speed
+     * @throws IllegalArgumentException if the statements are not supported, in this case the CustomModel has to be
+     *                                  compiled
+     */
+    static CustomModelLookupTable create(List<Statement> statements, double initialValue,
+                                         EncodedValueLookup lookup, Map<String, JsonFeature> areas) {
+        Map<String, Variable> variableMap = new LinkedHashMap<>();
+        List<CompiledStatement> compiled = compile(statements, lookup, areas, variableMap);
+        Variable[] variables = variableMap.values().toArray(new Variable[0]);
+        int[] strides = new int[variables.length];
+        long size = 1;
+        for (int i = 0; i < variables.length; i++) {
+            strides[i] = (int) size;
+            size *= variables[i].size;
+            if (size > MAX_TABLE_SIZE)
+                throw new IllegalArgumentException("Too many combinations for a lookup table: " + variableMap.keySet());
+        }
+
+        double[] initialValues = new double[(int) size];
+        Step[][] steps = new Step[(int) size][];
+        int[] values = new int[variables.length];
+        List<Step> stepList = new ArrayList<>();
+        for (int index = 0; index < size; index++) {
+            int rest = index;
+            for (int i = 0; i < variables.length; i++) {
+                values[i] = variables[i].offset + rest % variables[i].size;
+                rest /= variables[i].size;
+            }
+            stepList.clear();
+            initialValues[index] = apply(compiled, values, initialValue, stepList);
+            steps[index] = stepList.isEmpty() ? null : stepList.toArray(NO_STEPS);
+        }
+        return new CustomModelLookupTable(variables, strides, initialValues, steps);
+    }
+
+    @Override
+    public double get(EdgeIteratorState edge, boolean reverse) {
+        int index = 0;
+        for (int i = 0; i < variables.length; i++) {
+            index += variables[i].getIndex(edge, reverse) * strides[i];
+        }
+        double value = initialValues[index];
+        Step[] indexSteps = steps[index];
+        if (indexSteps != null)
+            for (Step step : indexSteps) {
+                value = step.apply(value, edge, reverse);
+            }
+        return value;
+    }
+
+    int getTableSize() {
+        return initialValues.length;
+    }
+
+    /**
+     * Applies the statements like the if-else chains of the compiled class. Operations with constant values are done
+     * immediately as long as no encoded value was used. All later operations are collected in the specified steps.
+     *
+     * @return the value before the collected steps have to be applied
+     */
+    private static double apply(List<CompiledStatement> statements, int[] values, double value, List<Step> steps) {
+        boolean matched = false;
+        for (CompiledStatement statement : statements) {
+            if (statement.keyword == Statement.Keyword.IF)
+                matched = false;
+            if (matched || statement.condition != null && !statement.condition.test(values))
+                continue;
+            matched = true;
+            if (statement.doBlock != null) {
+                value = apply(statement.doBlock, values, value, steps);
+            } else if (steps.isEmpty() && statement.step.isConstant()) {
+                value = statement.step.apply(value, statement.step.constant);
+            } else {
+                steps.add(statement.step);
+            }
+        }
+        return value;
+    }
+
+    private static List<CompiledStatement> compile(List<Statement> statements, EncodedValueLookup lookup,
+                                                   Map<String, JsonFeature> areas, Map<String, Variable> variableMap) {
+        List<CompiledStatement> result = new ArrayList<>(statements.size());
+        for (Statement statement : statements) {
+            Predicate<int[]> condition = statement.keyword() == Statement.Keyword.ELSE
+                    ? null : compileCondition(statement.condition(), lookup, areas, variableMap);
+            if (statement.isBlock())
+                result.add(new CompiledStatement(statement.keyword(), condition,
+                        compile(statement.doBlock(), lookup, areas, variableMap), null));
+            else
+                result.add(new CompiledStatement(statement.keyword(), condition, null,
+                        createStep(statement.operation(), statement.value(), lookup)));
+        }
+        return result;
+    }
+
+    private static Step createStep(Statement.Op op, String valueExpression, EncodedValueLookup lookup) {
+        String value = valueExpression.trim();
+        if (lookup.hasEncodedValue(value)) {
+            EncodedValue enc = lookup.getEncodedValue(value, EncodedValue.class);
+            if (enc instanceof DecimalEncodedValue || isIntVariable(enc))
+                return new Step(op, 0, enc);
+            throw new IllegalArgumentException("Encoded value not supported as value: " + value);
+        }
+        // ValueExpressionVisitor.findVariables already made sure that this is a valid expression, but e.g. octal and
+        // float literals would be interpreted differently by Double.parseDouble than by the compiler
+        if (!NUMBER_PATTERN.matcher(value).matches())
+            throw new IllegalArgumentException("Value expression not supported: " + value);
+        return new Step(op, Double.parseDouble(value), null);
+    }
+
+    private static Predicate<int[]> compileCondition(String expression, EncodedValueLookup lookup,
+                                                     Map<String, JsonFeature> areas, Map<String, Variable> variableMap) {
+        Java.Rvalue rvalue;
+        try {
+            Parser parser = new Parser(new Scanner("ignore", new StringReader(expression)));
+            Java.Atom atom = parser.parseConditionalExpression();
+            if (parser.peek().type != TokenType.END_OF_INPUT)
+                throw new IllegalArgumentException("Condition not supported: " + expression);
+            rvalue = atom.toRvalue();
+        } catch (Exception ex) {
+            throw new IllegalArgumentException("Cannot parse condition: " + expression, ex);
+        }
+        if (rvalue == null)
+            throw new IllegalArgumentException("Condition not supported: " + expression);
+        return new ConditionCompiler(lookup, areas, variableMap).compile(rvalue);
+    }
+
+    private static boolean isIntVariable(EncodedValue enc) {
+        // the compiled class uses the index for a StringEncodedValue
+        return enc instanceof IntEncodedValue && !(enc instanceof EnumEncodedValue) && !(enc instanceof StringEncodedValue)
+                && !(enc instanceof DecimalEncodedValue) && !(enc instanceof BooleanEncodedValue);
+    }
+
+    private static class ConditionCompiler {
+        private final EncodedValueLookup lookup;
+        private final Map<String, JsonFeature> areas;
+        private final Map<String, Variable> variableMap;
+
+        ConditionCompiler(EncodedValueLookup lookup, Map<String, JsonFeature> areas, Map<String, Variable> variableMap) {
+            this.lookup = lookup;
+            this.areas = areas;
+            this.variableMap = variableMap;
+        }
+
+        Predicate<int[]> compile(Java.Rvalue rv) {
+            if (rv instanceof Java.BooleanLiteral) {
+                boolean value = Boolean.parseBoolean(((Java.BooleanLiteral) rv).value);
+                return values -> value;
+            } else if (rv instanceof Java.ParenthesizedExpression) {
+                return compile(((Java.ParenthesizedExpression) rv).value);
+            } else if (rv instanceof Java.UnaryOperation && ((Java.UnaryOperation) rv).operator.equals("!")) {
+                Predicate<int[]> operand = compile(((Java.UnaryOperation) rv).operand);
+                return operand.negate();
+            } else if (rv instanceof Java.AmbiguousName) {
+                Variable variable = getVariable(rv);
+                if (variable.type != VariableType.BOOLEAN)
+                    throw new IllegalArgumentException("Not a boolean: " + rv);
+                int index = variable.index;
+                return values -> values[index] != 0;
+            } else if (rv instanceof Java.BinaryOperation) {
+                Java.BinaryOperation binOp = (Java.BinaryOperation) rv;
+                if (binOp.operator.equals("&&"))
+                    return compile(binOp.lhs).and(compile(binOp.rhs));
+                if (binOp.operator.equals("||"))
+                    return compile(binOp.lhs).or(compile(binOp.rhs));
+                return compileComparison(binOp);
+            }
+            throw new IllegalArgumentException("Expression not supported: " + rv);
+        }
+
+        private Predicate<int[]> compileComparison(Java.BinaryOperation binOp) {
+            Variable variable = getVariable(binOp.lhs);
+            int index = variable.index;
+            String op = binOp.operator;
+            boolean equals = op.equals("==");
+            if (!equals && !op.equals("!=") && variable.type != VariableType.INT)
+                throw new IllegalArgumentException("Operator " + op + " not supported for " + binOp.lhs);
+
+            if (variable.type == VariableType.ENUM) {
+                // e.g. road_class == PRIMARY
+                if (!(binOp.rhs instanceof Java.AmbiguousName) || ((Java.AmbiguousName) binOp.rhs).identifiers.length != 1)
+                    throw new IllegalArgumentException("Enum constant expected: " + binOp.rhs);
+                String name = ((Java.AmbiguousName) binOp.rhs).identifiers[0];
+                int ordinal = -1;
+                for (Enum<?> e : ((EnumEncodedValue<?>) variable.intEncodedValue).getValues()) {
+                    if (e.name().equals(name))
+                        ordinal = e.ordinal();
+                }
+                if (ordinal < 0)
+                    throw new IllegalArgumentException("Enum constant " + name + " not found for " + binOp.lhs);
+                int value = ordinal;
+                return equals ? values -> values[index] == value : values -> values[index] != value;
+            } else if (variable.type == VariableType.BOOLEAN) {
+                // e.g. car_access == true
+                if (!(binOp.rhs instanceof Java.BooleanLiteral))
+                    throw new IllegalArgumentException("Boolean literal expected: " + binOp.rhs);
+                boolean value = Boolean.parseBoolean(((Java.BooleanLiteral) binOp.rhs).value);
+                return values -> (values[index] != 0) == (equals == value);
+            }
+
+            // e.g. lanes >= 2, compare as double like Java does for an int and a floating point literal
+            double value = parseNumber(binOp.rhs);
+            switch (op) {
+                case "==":
+                    return values -> values[index] == value;
+                case "!=":
+                    return values -> values[index] != value;
+                case "<":
+                    return values -> values[index] < value;
+                case "<=":
+                    return values -> values[index] <= value;
+                case ">":
+                    return values -> values[index] > value;
+                case ">=":
+                    return values -> values[index] >= value;
+                default:
+                    throw new IllegalArgumentException("Operator " + op + " not supported");
+            }
+        }
+
+        private static double parseNumber(Java.Rvalue rv) {
+            boolean negative = false;
+            if (rv instanceof Java.UnaryOperation && ((Java.UnaryOperation) rv).operator.equals("-")) {
+                negative = true;
+                rv = ((Java.UnaryOperation) rv).operand;
+            }
+            if (rv instanceof Java.IntegerLiteral || rv instanceof Java.FloatingPointLiteral) {
+                String value = ((Java.Literal) rv).value;
+                if (NUMBER_PATTERN.matcher(value).matches())
+                    return negative ? -Double.parseDouble(value) : Double.parseDouble(value);
+            }
+            throw new IllegalArgumentException("Number expected: " + rv);
+        }
+
+        private Variable getVariable(Java.Rvalue rv) {
+            if (!(rv instanceof Java.AmbiguousName) || ((Java.AmbiguousName) rv).identifiers.length != 1)
+                throw new IllegalArgumentException("Variable expected: " + rv);
+            String name = ((Java.AmbiguousName) rv).identifiers[0];
+            Variable variable = variableMap.get(name);
+            if (variable != null)
+                return variable;
+
+            int index = variableMap.size();
+            if (name.startsWith(IN_AREA_PREFIX)) {
+                String id = CustomModelParser.getPolygonalArea(name, areas);
+                variable = new Variable(index, VariableType.BOOLEAN, null, false,
+                        new Polygon(new PreparedPolygon((Polygonal) areas.get(id).getGeometry())), 2, 0);
+            } else {
+                boolean backward = !lookup.hasEncodedValue(name) && name.startsWith(BACKWARD_PREFIX);
+                String encName = backward ? name.substring(BACKWARD_PREFIX.length()) : name;
+                if (!lookup.hasEncodedValue(encName))
+                    throw new IllegalArgumentException("'" + name + "' not available");
+                EncodedValue enc = lookup.getEncodedValue(encName, EncodedValue.class);
+                if (enc instanceof EnumEncodedValue) {
+                    variable = new Variable(index, VariableType.ENUM, enc, backward, null,
+                            ((EnumEncodedValue<?>) enc).getValues().length, 0);
+                } else if (enc instanceof BooleanEncodedValue) {
+                    variable = new Variable(index, VariableType.BOOLEAN, enc, backward, null, 2, 0);
+                } else if (isIntVariable(enc)) {
+                    IntEncodedValue intEnc = (IntEncodedValue) enc;
+                    long size = (long) intEnc.getMaxStorableInt() - intEnc.getMinStorableInt() + 1;
+                    if (size > MAX_TABLE_SIZE)
+                        throw new IllegalArgumentException("Too many values for a lookup table: " + name);
+                    variable = new Variable(index, VariableType.INT, enc, backward, null, (int) size, intEnc.getMinStorableInt());
+                } else {
+                    throw new IllegalArgumentException("Encoded value not supported: " + name);
+                }
+            }
+            variableMap.put(name, variable);
+            return variable;
+        }
+    }
+
+    private enum VariableType {ENUM, BOOLEAN, INT}
+
+    /**
+     * An encoded value or an area used in the conditions. Its values are mapped to the indices 0 to size - 1.
+     */
+    private static class Variable {
+        final int index;
+        final VariableType type;
+        // enum and int encoded values are read as int, which avoids the conversion to an enum
+        final IntEncodedValue intEncodedValue;
+        final BooleanEncodedValue booleanEncodedValue;
+        final boolean backward;
+        final Polygon area;
+        final int size;
+        final int offset;
+
+        Variable(int index, VariableType type, EncodedValue encodedValue, boolean backward, Polygon area, int size, int offset) {
+            this.index = index;
+            this.type = type;
+            this.booleanEncodedValue = encodedValue instanceof BooleanEncodedValue ? (BooleanEncodedValue) encodedValue : null;
+            this.intEncodedValue = booleanEncodedValue == null ? (IntEncodedValue) encodedValue : null;
+            this.backward = backward;
+            this.area = area;
+            this.size = size;
+            this.offset = offset;
+        }
+
+        int getIndex(EdgeIteratorState edge, boolean reverse) {
+            if (area != null)
+                return CustomWeightingHelper.in(area, edge) ? 1 : 0;
+            if (booleanEncodedValue != null)
+                return (reverse != backward ? edge.getReverse(booleanEncodedValue) : edge.get(booleanEncodedValue)) ? 1 : 0;
+            return (reverse != backward ? edge.getReverse(intEncodedValue) : edge.get(intEncodedValue)) - offset;
+        }
+    }
+
+    private static class CompiledStatement {
+        final Statement.Keyword keyword;
+        final Predicate<int[]> condition;
+        final List<CompiledStatement> doBlock;
+        final Step step;
+
+        CompiledStatement(Statement.Keyword keyword, Predicate<int[]> condition, List<CompiledStatement> doBlock, Step step) {
+            this.keyword = keyword;
+            this.condition = condition;
+            this.doBlock = doBlock;
+            this.step = step;
+        }
+    }
+
+    /**
+     * A multiply_by or limit_to operation with a constant or the value of an encoded value.
+     */
+    private static class Step {
+        final Statement.Op op;
+        final double constant;
+        final DecimalEncodedValue decimalEncodedValue;
+        final IntEncodedValue encodedValue;
+
+        Step(Statement.Op op, double constant, EncodedValue encodedValue) {
+            if (op != Statement.Op.MULTIPLY && op != Statement.Op.LIMIT)
+                throw new IllegalArgumentException("Operation not supported: " + op);
+            this.op = op;
+            this.constant = constant;
+            this.decimalEncodedValue = encodedValue instanceof DecimalEncodedValue ? (DecimalEncodedValue) encodedValue : null;
+            this.encodedValue = encodedValue instanceof DecimalEncodedValue ? null : (IntEncodedValue) encodedValue;
+        }
+
+        double apply(double value, EdgeIteratorState edge, boolean reverse) {
+            if (decimalEncodedValue != null)
+                return apply(value, reverse ? edge.getReverse(decimalEncodedValue) : edge.get(decimalEncodedValue));
+            if (encodedValue != null)
+                return apply(value, reverse ? edge.getReverse(encodedValue) : edge.get(encodedValue));
+            return apply(value, constant);
+        }
+
+        boolean isConstant() {
+            return decimalEncodedValue == null && encodedValue == null;
+        }
+
+        double apply(double value, double operand) {
+            return op == Statement.Op.MULTIPLY ? value * operand : Math.min(value, operand);
+        }
+    }
+}
@@ -34,8 +34,16 @@ import org.locationtech.jts.geom.prep.PreparedPolygon;
 import org.slf4j.LoggerFactory;
 
 import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.*;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 import static com.graphhopper.json.Statement.Keyword.IF;
 
@@ -50,6 +58,9 @@ public class CustomModelParser {
     // CH requests and preparation is unaffected as cached weighting from preparation is used.
     // Use accessOrder==true to remove oldest accessed entry, not oldest inserted.
     private static final int CACHE_SIZE = Integer.getInteger("graphhopper.custom_weighting.cache_size", 1000);
+    // Custom models that only use enum, boolean and int encoded values and constant (or single encoded value) factors
+    // are evaluated via a precomputed table, which avoids the compilation, see CustomModelLookupTable.
+    private static final boolean LOOKUP_TABLE = Boolean.parseBoolean(System.getProperty("graphhopper.custom_weighting.lookup_table", "true"));
     private static final Map<String, Class<?>> CACHE = Collections.synchronizedMap(
             new LinkedHashMap<>(CACHE_SIZE, 0.75f, true) {
                 protected boolean removeEldestEntry(Map.Entry eldest) {
@@ -63,6 +74,13 @@ public class CustomModelParser {
     // TODO perf compare with ConcurrentHashMap, but I guess, if there is a difference at all, it is not big for small maps
     private static final Map<String, Class<?>> INTERNAL_CACHE = Collections.synchronizedMap(new HashMap<>());
 
+    // The compiled classes can additionally be stored on disk so that a restarted server (or another server with the
+    // same encoded values) does not have to compile the custom models again, see setClassCacheDirectory.
+    // Increase this version whenever the generated class changes.
+    private static final int CLASS_CACHE_VERSION = 1;
+    private static final Pattern AREA_PATTERN = Pattern.compile("\\b" + IN_AREA_PREFIX + "\\w+");
+    private static volatile Path classCacheDirectory;
+
     private CustomModelParser() {
         // utility class
     }
@@ -86,17 +104,96 @@ public class CustomModelParser {
         return new CustomWeighting2(turnCostProvider, parameters);
     }
 
+    /**
+     * Enables the persistent cache of the compiled custom model classes in the specified directory. A compiled class is
+     * stored under a hash of the statements of the custom model, the encoded values of the lookup and the GraphHopper
+     * version, i.e. custom models that differ only in e.g. distance_influence or in the geometry of their areas share
+     * the same class. Use null to disable the cache.
+     */
+    public static void setClassCacheDirectory(Path directory) {
+        if (directory != null) {
+            try {
+                Files.createDirectories(directory);
+            } catch (IOException ex) {
+                throw new UncheckedIOException("Cannot create directory for custom model classes " + directory, ex);
+            }
+        }
+        classCacheDirectory = directory;
+    }
+
+    /**
+     * This method creates the parameters of a CustomWeighting from the provided CustomModel. Simple custom models, e.g.
+     * a per-request model that only changes the priority of a few road classes, are evaluated via a precomputed
+     * CustomModelLookupTable. All other models and the internal models of the profiles are compiled, see
+     * createJaninoWeightingParameters.
+     */
+    public static CustomWeighting.Parameters createWeightingParameters(CustomModel customModel, EncodedValueLookup lookup) {
+        // internal models are compiled only once, so the faster setup of the lookup table does not matter for them
+        if (LOOKUP_TABLE && !customModel.isInternal()) {
+            CustomWeighting.Parameters parameters = createLookupTableWeightingParameters(customModel, lookup);
+            if (parameters != null)
+                return parameters;
+        }
+        return createJaninoWeightingParameters(customModel, lookup);
+    }
+
     /**
      * This method compiles a new subclass of CustomWeightingHelper composed of the provided CustomModel caches this
      * and returns an instance.
      */
-    public static CustomWeighting.Parameters createWeightingParameters(CustomModel customModel, EncodedValueLookup lookup) {
+    static CustomWeighting.Parameters createJaninoWeightingParameters(CustomModel customModel, EncodedValueLookup lookup) {
+        Class<?> clazz = getOrCreateClazz(customModel, lookup);
+        try {
+            // The class does not need to be thread-safe as we create an instance per request
+            CustomWeightingHelper prio = (CustomWeightingHelper) clazz.getDeclaredConstructor().newInstance();
+            prio.init(customModel, lookup, CustomModel.getAreasAsMap(customModel.getAreas()));
+            return createParameters(customModel, prio::getSpeed, prio::calcMaxSpeed, prio::getPriority, prio::calcMaxPriority);
+        } catch (ReflectiveOperationException ex) {
+            throw new IllegalArgumentException("Cannot compile expression " + ex.getMessage(), ex);
+        }
+    }
+
+    /**
+     * @return the parameters evaluated via a CustomModelLookupTable or null if the CustomModel is not supported by the
+     * lookup table or if it is invalid. In both cases the compilation has to be used, which also reports the errors.
+     */
+    static CustomWeighting.Parameters createLookupTableWeightingParameters(CustomModel customModel, EncodedValueLookup lookup) {
+        Map<String, JsonFeature> areas = CustomModel.getAreasAsMap(customModel.getAreas());
+        CustomModelLookupTable speedTable, priorityTable;
+        try {
+            // do the same checks as createClazz
+            ValueExpressionVisitor.findVariables(customModel.getPriority(), lookup);
+            checkFirstSpeedGroup(customModel.getSpeed());
+            ValueExpressionVisitor.findVariables(customModel.getSpeed(), lookup);
+
+            speedTable = CustomModelLookupTable.create(customModel.getSpeed(), CustomWeightingHelper.GLOBAL_MAX_SPEED, lookup, areas);
+            priorityTable = CustomModelLookupTable.create(customModel.getPriority(), CustomWeightingHelper.GLOBAL_PRIORITY, lookup, areas);
+        } catch (IllegalArgumentException ex) {
+            return null;
+        }
+        // the maximum values are calculated like for the compiled class
+        CustomWeightingHelper helper = new CustomWeightingHelper();
+        helper.init(customModel, lookup, areas);
+        return createParameters(customModel, speedTable, helper::calcMaxSpeed, priorityTable, helper::calcMaxPriority);
+    }
+
+    private static CustomWeighting.Parameters createParameters(CustomModel customModel,
+                                                               CustomWeighting.EdgeToDoubleMapping speedMapping, CustomWeighting.MaxCalc maxSpeedCalc,
+                                                               CustomWeighting.EdgeToDoubleMapping priorityMapping, CustomWeighting.MaxCalc maxPriorityCalc) {
+        return new CustomWeighting.Parameters(
+                speedMapping, maxSpeedCalc,
+                priorityMapping, maxPriorityCalc,
+                customModel.getDistanceInfluence() == null ? 0 : customModel.getDistanceInfluence(),
+                customModel.getHeadingPenalty() == null ? Parameters.Routing.DEFAULT_HEADING_PENALTY : customModel.getHeadingPenalty());
+    }
+
+    static Class<?> getOrCreateClazz(CustomModel customModel, EncodedValueLookup lookup) {
         String key = customModel.toString();
         Class<?> clazz = customModel.isInternal() ? INTERNAL_CACHE.get(key) : null;
         if (CACHE_SIZE > 0 && clazz == null)
             clazz = CACHE.get(key);
         if (clazz == null) {
-            clazz = createClazz(customModel, lookup);
+            clazz = loadOrCreateClazz(customModel, lookup);
             if (customModel.isInternal()) {
                 INTERNAL_CACHE.put(key, clazz);
                 if (INTERNAL_CACHE.size() > 100) {
@@ -109,18 +206,109 @@ public class CustomModelParser {
                 CACHE.put(key, clazz);
             }
         }
+        return clazz;
+    }
+
+    /**
+     * Clears the in-memory caches, but not the classes stored in the class cache directory.
+     */
+    static void clearCaches() {
+        CACHE.clear();
+        INTERNAL_CACHE.clear();
+    }
+
+    /**
+     * Loads the class for the specified CustomModel from the class cache directory or compiles it and stores it there.
+     */
+    private static Class<?> loadOrCreateClazz(CustomModel customModel, EncodedValueLookup lookup) {
+        Path directory = classCacheDirectory;
+        if (directory == null)
+            return defineClazz(createClazz(customModel, lookup));
+
+        Path file = directory.resolve(createClassCacheKey(customModel, lookup) + ".class");
+        if (Files.exists(file)) {
+            // the statements and encoded values are identical, but the areas were not checked when the class was stored
+            checkAreas(customModel);
+            try {
+                return defineClazz(Files.readAllBytes(file));
+            } catch (IOException | LinkageError ex) {
+                LoggerFactory.getLogger(CustomModelParser.class).warn("Cannot load custom model class from " + file + ", compiling it again", ex);
+            }
+        }
 
+        byte[] bytes = createClazz(customModel, lookup);
+        Path tmpFile = null;
         try {
-            // The class does not need to be thread-safe as we create an instance per request
-            CustomWeightingHelper prio = (CustomWeightingHelper) clazz.getDeclaredConstructor().newInstance();
-            prio.init(customModel, lookup, CustomModel.getAreasAsMap(customModel.getAreas()));
-            return new CustomWeighting.Parameters(
-                    prio::getSpeed, prio::calcMaxSpeed,
-                    prio::getPriority, prio::calcMaxPriority,
-                    customModel.getDistanceInfluence() == null ? 0 : customModel.getDistanceInfluence(),
-                    customModel.getHeadingPenalty() == null ? Parameters.Routing.DEFAULT_HEADING_PENALTY : customModel.getHeadingPenalty());
-        } catch (ReflectiveOperationException ex) {
-            throw new IllegalArgumentException("Cannot compile expression " + ex.getMessage(), ex);
+            // write to a temporary file first to never expose a partially written class to other servers or threads
+            tmpFile = Files.createTempFile(directory, "custom_model", ".tmp");
+            Files.write(tmpFile, bytes);
+            Files.move(tmpFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException ex) {
+            LoggerFactory.getLogger(CustomModelParser.class).warn("Cannot store custom model class in " + directory, ex);
+            try {
+                if (tmpFile != null) Files.deleteIfExists(tmpFile);
+            } catch (IOException ignored) {
+            }
+        }
+        return defineClazz(bytes);
+    }
+
+    /**
+     * @return a hash of everything the compiled class depends on: the statements (including the used area names) and
+     * the encoded values. Other properties like distance_influence or the area geometries are only used when creating
+     * the instance.
+     */
+    static String createClassCacheKey(CustomModel customModel, EncodedValueLookup lookup) {
+        StringBuilder sb = new StringBuilder();
+        sb.append(CLASS_CACHE_VERSION).append('|').append(Constants.VERSION);
+        sb.append("|speed=").append(customModel.getSpeed());
+        sb.append("|priority=").append(customModel.getPriority());
+        for (EncodedValue enc : lookup.getEncodedValues()) {
+            sb.append('|').append(enc.getName()).append(':').append(enc.getClass().getName());
+            if (enc instanceof EnumEncodedValue)
+                sb.append(':').append(((EnumEncodedValue<?>) enc).getEnumType().getName());
+        }
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(sb.toString().getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    private static void checkAreas(CustomModel customModel) {
+        Map<String, JsonFeature> areas = CustomModel.getAreasAsMap(customModel.getAreas());
+        Set<String> areaNames = new HashSet<>();
+        findAreaNames(customModel.getPriority(), areaNames);
+        findAreaNames(customModel.getSpeed(), areaNames);
+        for (String areaName : areaNames)
+            getPolygonalArea(areaName, areas);
+    }
+
+    private static void findAreaNames(List<Statement> statements, Set<String> areaNames) {
+        for (Statement statement : statements) {
+            if (statement.condition() != null) {
+                Matcher matcher = AREA_PATTERN.matcher(statement.condition());
+                while (matcher.find())
+                    areaNames.add(matcher.group());
+            }
+            if (statement.isBlock())
+                findAreaNames(statement.doBlock(), areaNames);
+        }
+    }
+
+    private static Class<?> defineClazz(byte[] bytes) {
+        // use the same parent as Janino, which resolves the classes while compiling
+        return new BytecodeClassLoader(Thread.currentThread().getContextClassLoader()).define(bytes);
+    }
+
+    private static class BytecodeClassLoader extends ClassLoader {
+        BytecodeClassLoader(ClassLoader parent) {
+            super(parent);
+        }
+
+        Class<?> define(byte[] bytes) {
+            // the name is read from the class file
+            return defineClass(null, bytes, 0, bytes.length);
         }
     }
 
@@ -133,28 +321,18 @@ public class CustomModelParser {
      * </li>
      * <li>2. parse conditional expression of priority and speed statements -> done in ConditionalExpressionVisitor (don't parse RHS expressions again)
      * </li>
-     * <li>3. create class template as String, inject the created statements and create the Class
+     * <li>3. create class template as String, inject the created statements and compile the class
      * </li>
      * </ul>
+     *
+     * @return the class file of the created class
      */
-    private static Class<?> createClazz(CustomModel customModel, EncodedValueLookup lookup) {
+    private static byte[] createClazz(CustomModel customModel, EncodedValueLookup lookup) {
         try {
             Set<String> priorityVariables = ValueExpressionVisitor.findVariables(customModel.getPriority(), lookup);
             List<Java.BlockStatement> priorityStatements = createGetPriorityStatements(priorityVariables, customModel, lookup);
 
-            if (customModel.getSpeed().isEmpty())
-                throw new IllegalArgumentException("At least one initial statement under 'speed' is required.");
-
-            List<Statement> firstGroup = splitIntoGroup(customModel.getSpeed()).get(0);
-            if (firstGroup.size() > 1) {
-                Statement lastSt = firstGroup.get(firstGroup.size() - 1);
-                if (lastSt.operation() != Statement.Op.LIMIT || lastSt.keyword() != Statement.Keyword.ELSE)
-                    throw new IllegalArgumentException("The first group needs to end with an 'else' (or contain a single unconditional 'if' statement).");
-            } else {
-                Statement firstSt = firstGroup.get(0);
-                if (!"true".equals(firstSt.condition()) || firstSt.operation() != Statement.Op.LIMIT || firstSt.keyword() != Statement.Keyword.IF)
-                    throw new IllegalArgumentException("The first group needs to contain a single unconditional 'if' statement (or end with an 'else').");
-            }
+            checkFirstSpeedGroup(customModel.getSpeed());
 
             Set<String> speedVariables = ValueExpressionVisitor.findVariables(customModel.getSpeed(), lookup);
             List<Java.BlockStatement> speedStatements = createGetSpeedStatements(speedVariables, customModel, lookup);
@@ -168,13 +346,35 @@ public class CustomModelParser {
                     parseAbstractCompilationUnit();
             cu = injectStatements(priorityStatements, speedStatements, cu);
             SimpleCompiler sc = createCompiler(counter, cu);
-            return sc.getClassLoader().loadClass("com.graphhopper.routing.weighting.custom.JaninoCustomWeightingHelperSubclass" + counter);
+            byte[] bytes = sc.getBytecodes().get("com.graphhopper.routing.weighting.custom.JaninoCustomWeightingHelperSubclass" + counter);
+            if (bytes == null)
+                throw new IllegalStateException("Compiled class not found");
+            return bytes;
         } catch (Exception ex) {
             String errString = "Cannot compile expression";
             throw new IllegalArgumentException(errString + ": " + ex.getMessage(), ex);
         }
     }
 
+    /**
+     * Checks that the first group of the speed statements sets the speed for every edge.
+     */
+    private static void checkFirstSpeedGroup(List<Statement> speedStatements) {
+        if (speedStatements.isEmpty())
+            throw new IllegalArgumentException("At least one initial statement under 'speed' is required.");
+
+        List<Statement> firstGroup = splitIntoGroup(speedStatements).get(0);
+        if (firstGroup.size() > 1) {
+            Statement lastSt = firstGroup.get(firstGroup.size() - 1);
+            if (lastSt.operation() != Statement.Op.LIMIT || lastSt.keyword() != Statement.Keyword.ELSE)
+                throw new IllegalArgumentException("The first group needs to end with an 'else' (or contain a single unconditional 'if' statement).");
+        } else {
+            Statement firstSt = firstGroup.get(0);
+            if (!"true".equals(firstSt.condition()) || firstSt.operation() != Statement.Op.LIMIT || firstSt.keyword() != Statement.Keyword.IF)
+                throw new IllegalArgumentException("The first group needs to contain a single unconditional 'if' statement (or end with an 'else').");
+        }
+    }
+
     public static List<String> findVariablesForEncodedValuesString(CustomModel model, NameValidator nameValidator, ClassHelper classHelper) {
         Set<String> variables = new LinkedHashSet<>();
         // avoid parsing exception for backward_xy or in_xy ...
@@ -353,18 +553,7 @@ public class CustomModelParser {
                     includedAreaImports = true;
                 }
 
-                if (!JsonFeature.isValidId(arg))
-                    throw new IllegalArgumentException("Area has invalid name: " + arg);
-                String id = arg.substring(IN_AREA_PREFIX.length());
-                JsonFeature feature = areas.get(id);
-                if (feature == null)
-                    throw new IllegalArgumentException("Area '" + id + "' wasn't found");
-                if (feature.getGeometry() == null)
-                    throw new IllegalArgumentException("Area '" + id + "' does not contain a geometry");
-                if (!(feature.getGeometry() instanceof Polygonal))
-                    throw new IllegalArgumentException("Currently only type=Polygon is supported for areas but was " + feature.getGeometry().getGeometryType());
-                if (feature.getBBox() != null)
-                    throw new IllegalArgumentException("Bounding box of area " + id + " must be empty");
+                String id = getPolygonalArea(arg, areas);
                 classSourceCode.append("protected " + Polygon.class.getSimpleName() + " " + arg + ";\n");
                 initSourceCode.append("JsonFeature feature_" + id + " = (JsonFeature) areas.get(\"" + id + "\");\n");
                 initSourceCode.append("this." + arg + " = new Polygon(new PreparedPolygon((Polygonal) feature_" + id + ".getGeometry()));\n");
@@ -398,6 +587,27 @@ public class CustomModelParser {
                 + "}";
     }
 
+    /**
+     * Checks that the area of the specified variable exists and can be used in a custom model.
+     *
+     * @return the id of the area
+     */
+    static String getPolygonalArea(String arg, Map<String, JsonFeature> areas) {
+        if (!JsonFeature.isValidId(arg))
+            throw new IllegalArgumentException("Area has invalid name: " + arg);
+        String id = arg.substring(IN_AREA_PREFIX.length());
+        JsonFeature feature = areas.get(id);
+        if (feature == null)
+            throw new IllegalArgumentException("Area '" + id + "' wasn't found");
+        if (feature.getGeometry() == null)
+            throw new IllegalArgumentException("Area '" + id + "' does not contain a geometry");
+        if (!(feature.getGeometry() instanceof Polygonal))
+            throw new IllegalArgumentException("Currently only type=Polygon is supported for areas but was " + feature.getGeometry().getGeometryType());
+        if (feature.getBBox() != null)
+            throw new IllegalArgumentException("Bounding box of area " + id + " must be empty");
+        return id;
+    }
+
     /**
      * This method does:
      * 1. check user expressions via Parser.parseConditionalExpression and only allow whitelisted variables and methods.
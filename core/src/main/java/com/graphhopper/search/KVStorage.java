@@ -17,6 +17,7 @@
  */
 package com.graphhopper.search;
 
+import com.carrotsearch.hppc.BitSet;
 import com.graphhopper.storage.DataAccess;
 import com.graphhopper.storage.Directory;
 import com.graphhopper.util.BitUtil;
@@ -443,6 +444,68 @@ public class KVStorage {
         return null;
     }
 
+    /**
+     * Gives access to the entry pointers of the objects (e.g. edges) that reference this storage, see
+     * {@link #relayout(int, PointerAccess)}.
+     */
+    public interface PointerAccess {
+        long getPointer(int index);
+
+        void setPointer(int index, long pointer);
+    }
+
+    /**
+     * Rewrites the entries sequentially in the order in which they are referenced by the given pointers, such that
+     * entries of objects that are close to each other in this order are also close to each other in memory. Entries
+     * that are shared by several objects are kept only once and the pointers are updated accordingly. Entries that are
+     * not referenced by any of the pointers are removed.
+     */
+    public void relayout(int count, PointerAccess pointers) {
+        if (bytePointer > 0xFFFF_FFFFL)
+            throw new IllegalStateException("Cannot relayout more than 4GB of entries: " + bytePointer);
+        DataAccess newVals = dir.create(vals.getName() + "_relayout", vals.getSegmentSize()).create(bytePointer);
+        byte[] buffer = new byte[vals.getSegmentSize()];
+        // for entries that were moved already the first four bytes (at least 4 bytes for the smallest possible entry)
+        // contain the new pointer
+        BitSet moved = new BitSet(bytePointer);
+        long newBytePointer = START_POINTER;
+        for (int i = 0; i < count; i++) {
+            long pointer = pointers.getPointer(i);
+            if (pointer == EMPTY_POINTER)
+                continue;
+            long newPointer;
+            if (moved.get(pointer)) {
+                newPointer = Integer.toUnsignedLong(vals.getInt(pointer));
+            } else {
+                int length = getEntryLength(pointer);
+                newPointer = newBytePointer;
+                newBytePointer += length;
+                newVals.ensureCapacity(newBytePointer);
+                GHUtility.copyBytes(vals, pointer, newVals, newPointer, length, buffer);
+                vals.setInt(pointer, BitUtil.toSignedInt(newPointer));
+                moved.set(pointer);
+            }
+            pointers.setPointer(i, newPointer);
+        }
+        GHUtility.copyBytes(newVals, START_POINTER, vals, START_POINTER, newBytePointer - START_POINTER, buffer);
+        dir.remove(newVals.getName());
+        bytePointer = newBytePointer;
+        lastEntries = null;
+        lastEntryPointer = -1;
+    }
+
+    private int getEntryLength(long entryPointer) {
+        int keyCount = vals.getByte(entryPointer) & 0xFF;
+        long tmpPointer = entryPointer + 1;
+        for (int i = 0; i < keyCount; i++) {
+            int currentKeyIndex = (vals.getShort(tmpPointer) & 0xFFFF) >>> 2;
+            tmpPointer += 2;
+            Class<?> clazz = indexToClass.get(currentKeyIndex);
+            tmpPointer += hasDynLength(clazz) ? 1 + (vals.getByte(tmpPointer) & 0xFF) : getFixLength(clazz);
+        }
+        return (int) (tmpPointer - entryPointer);
+    }
+
     public void flush() {
         keys.ensureCapacity(2);
         keys.setShort(0, (short) keyToIndex.size());
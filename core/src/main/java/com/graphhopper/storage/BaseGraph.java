@@ -27,6 +27,7 @@ import com.graphhopper.util.*;
 import com.graphhopper.util.shapes.BBox;
 
 import java.io.Closeable;
+import java.util.Arrays;
 import java.util.Map;
 import java.util.function.Consumer;
 import java.util.function.IntConsumer;
@@ -48,6 +49,8 @@ import static com.graphhopper.util.Parameters.Details.STREET_NAME;
  */
 public class BaseGraph implements Graph, Closeable {
     final static long MAX_UNSIGNED_INT = 0xFFFF_FFFFL;
+    // the zigzag encoded difference of two ints needs 33 bits, i.e. up to 5 varint bytes
+    private final static int MAX_VARINT_BYTES = 5;
     final BaseGraphNodesAndEdges store;
     final NodeAccess nodeAccess;
     final KVStorage edgeKVStorage;
@@ -62,9 +65,38 @@ public class BaseGraph implements Graph, Closeable {
     private long minGeoRef;
     private long maxGeoRef;
     private final int eleBytesPerCoord;
+    // true if the pillar nodes are stored delta and varint encoded, see createCompactWayGeometryBytes
+    private boolean compactGeometry;
+    // null if the adjacency array is not enabled
+    private final BaseGraphAdjacencyArray adjacencyArray;
+    // null as long as the graph is not frozen or the adjacency array is not enabled, in this case the edge explorers
+    // use the linked edge lists
+    BaseGraphAdjacencyArray builtAdjacencyArray;
 
     public BaseGraph(Directory dir, boolean withElevation, boolean withTurnCosts, int segmentSize, int bytesForFlags) {
+        this(dir, withElevation, withTurnCosts, segmentSize, bytesForFlags, false);
+    }
+
+    /**
+     * @param withAdjacencyArray if true, an adjacency array in CSR format is built when the graph is frozen, see
+     *                           {@link BaseGraphAdjacencyArray}. The edge explorers iterate it instead of the linked
+     *                           edge lists. This needs another 4 bytes per node and 8 bytes per edge.
+     */
+    public BaseGraph(Directory dir, boolean withElevation, boolean withTurnCosts, int segmentSize, int bytesForFlags, boolean withAdjacencyArray) {
+        this(dir, withElevation, withTurnCosts, segmentSize, bytesForFlags, withAdjacencyArray, false);
+    }
+
+    /**
+     * @param withCompactGeometry if true, the pillar nodes of new graphs are stored as varint encoded differences to
+     *                            the previous point instead of fixed size integers. Geometries with many pillar nodes
+     *                            need about half of the space. For existing graphs the format they were created with
+     *                            is used.
+     */
+    public BaseGraph(Directory dir, boolean withElevation, boolean withTurnCosts, int segmentSize, int bytesForFlags,
+                     boolean withAdjacencyArray, boolean withCompactGeometry) {
         this.dir = dir;
+        this.compactGeometry = withCompactGeometry;
+        this.adjacencyArray = withAdjacencyArray ? new BaseGraphAdjacencyArray(dir, segmentSize) : null;
         this.bitUtil = BitUtil.LITTLE;
         this.wayGeometry = dir.create("geometry", segmentSize);
         this.edgeKVStorage = new KVStorage(dir, true);
@@ -124,6 +156,7 @@ public class BaseGraph implements Graph, Closeable {
                 wayGeometry.getHeader(12),
                 wayGeometry.getHeader(16)
         );
+        compactGeometry = wayGeometry.getHeader(20) == 1;
     }
 
     private void setWayGeometryHeader() {
@@ -132,6 +165,7 @@ public class BaseGraph implements Graph, Closeable {
         wayGeometry.setHeader(8, bitUtil.getIntHigh(minGeoRef));
         wayGeometry.setHeader(12, bitUtil.getIntLow(maxGeoRef));
         wayGeometry.setHeader(16, bitUtil.getIntHigh(maxGeoRef));
+        wayGeometry.setHeader(20, compactGeometry ? 1 : 0);
     }
 
     private void setInitialized() {
@@ -165,6 +199,10 @@ public class BaseGraph implements Graph, Closeable {
     public synchronized void freeze() {
         if (isFrozen())
             throw new IllegalStateException("base graph already frozen");
+        if (adjacencyArray != null) {
+            adjacencyArray.build(store);
+            builtAdjacencyArray = adjacencyArray;
+        }
         store.setFrozen(true);
     }
 
@@ -219,6 +257,8 @@ public class BaseGraph implements Graph, Closeable {
             edgeKVStorage.flush();
 
         store.flush();
+        if (builtAdjacencyArray != null)
+            builtAdjacencyArray.flush();
         if (supportsTurnCosts()) {
             turnCostStorage.flush();
         }
@@ -231,6 +271,8 @@ public class BaseGraph implements Graph, Closeable {
         if (!edgeKVStorage.isClosed())
             edgeKVStorage.close();
         store.close();
+        if (builtAdjacencyArray != null && !builtAdjacencyArray.isClosed())
+            builtAdjacencyArray.close();
         if (supportsTurnCosts()) {
             turnCostStorage.close();
         }
@@ -238,7 +280,8 @@ public class BaseGraph implements Graph, Closeable {
 
     public long getCapacity() {
         return store.getCapacity() + edgeKVStorage.getCapacity()
-                + wayGeometry.getCapacity() + (supportsTurnCosts() ? turnCostStorage.getCapacity() : 0);
+                + wayGeometry.getCapacity() + (supportsTurnCosts() ? turnCostStorage.getCapacity() : 0)
+                + (builtAdjacencyArray != null ? builtAdjacencyArray.getCapacity() : 0);
     }
 
     long getMaxGeoRef() {
@@ -260,6 +303,15 @@ public class BaseGraph implements Graph, Closeable {
         if (supportsTurnCosts() && !turnCostStorage.loadExisting())
             return false;
 
+        if (adjacencyArray != null && isFrozen()) {
+            // the adjacency array is missing if the graph was frozen without it, in this case we build it now
+            if (!adjacencyArray.loadExisting())
+                adjacencyArray.build(store);
+            else if (!adjacencyArray.matches(getNodes()))
+                throw new IllegalStateException("The adjacency array does not match the graph, nodes: " + getNodes());
+            builtAdjacencyArray = adjacencyArray;
+        }
+
         setInitialized();
         loadWayGeometryHeader();
         return true;
@@ -382,6 +434,73 @@ public class BaseGraph implements Graph, Closeable {
             turnCostStorage.sortEdges(getNewEdgeForOldEdge);
     }
 
+    /**
+     * Rewrites the way geometries sequentially in the current edge order, which keeps the geometries of edges that are
+     * close to each other in the edge order (e.g. after {@link #sortEdges}) close to each other in memory as well.
+     * Copies of edges keep sharing their geometry and unused space, e.g. left behind by geometries that were replaced
+     * with shorter ones, is dropped.
+     */
+    public void relayoutWayGeometry() {
+        if (isFrozen())
+            throw new IllegalStateException("Cannot relayout the way geometry if graph is already frozen");
+        DataAccess newGeometry = dir.create(wayGeometry.getName() + "_relayout", segmentSize).create(maxGeoRef);
+        byte[] buffer = new byte[Math.min(wayGeometry.getSegmentSize(), newGeometry.getSegmentSize())];
+        long newMaxGeoRef = 1;
+        for (int edge = 0; edge < getEdges(); edge++) {
+            long edgePointer = store.toEdgePointer(edge);
+            long geoRef = store.getGeoRef(edgePointer);
+            if (geoRef <= 0)
+                continue;
+            long newGeoRef;
+            if (isRelocatedGeometry(geoRef)) {
+                // the geometry is shared with an edge we already visited
+                newGeoRef = bitUtil.toLong(wayGeometry.getInt(geoRef + 3), wayGeometry.getInt(geoRef + 7));
+            } else {
+                long bytes = getWayGeometryBytes(geoRef);
+                newGeoRef = newMaxGeoRef;
+                newMaxGeoRef += bytes;
+                newGeometry.ensureCapacity(newMaxGeoRef);
+                GHUtility.copyBytes(wayGeometry, geoRef, newGeometry, newGeoRef, bytes, buffer);
+                // every geometry has at least one point, so there is enough space for the marker and the new geo ref
+                wayGeometry.setShort(geoRef, (short) 0xFFFF);
+                wayGeometry.setByte(geoRef + 2, (byte) 0xFF);
+                wayGeometry.setInt(geoRef + 3, bitUtil.getIntLow(newGeoRef));
+                wayGeometry.setInt(geoRef + 7, bitUtil.getIntHigh(newGeoRef));
+            }
+            store.setGeoRef(edgePointer, newGeoRef);
+        }
+        GHUtility.copyBytes(newGeometry, 1, wayGeometry, 1, newMaxGeoRef - 1, buffer);
+        maxGeoRef = newMaxGeoRef;
+        dir.remove(newGeometry.getName());
+    }
+
+    /**
+     * A pillar count of 2^24-1 cannot occur for a real geometry (see {@link #createWayGeometryBytes}), so we use it to
+     * mark geometries that were already moved by {@link #relayoutWayGeometry()}.
+     */
+    private boolean isRelocatedGeometry(long geoRef) {
+        return wayGeometry.getShort(geoRef) == (short) 0xFFFF && wayGeometry.getByte(geoRef + 2) == (byte) 0xFF;
+    }
+
+    /**
+     * Rewrites the key-values of the edges sequentially in the current edge order, see {@link KVStorage#relayout}.
+     */
+    public void relayoutKeyValues() {
+        if (isFrozen())
+            throw new IllegalStateException("Cannot relayout the key-values if graph is already frozen");
+        edgeKVStorage.relayout(getEdges(), new KVStorage.PointerAccess() {
+            @Override
+            public long getPointer(int index) {
+                return Integer.toUnsignedLong(store.getKeyValuesRef(store.toEdgePointer(index)));
+            }
+
+            @Override
+            public void setPointer(int index, long pointer) {
+                store.setKeyValuesRef(store.toEdgePointer(index), BitUtil.toSignedInt(pointer));
+            }
+        });
+    }
+
     public void relabelNodes(IntUnaryOperator getNewNodeForOldNode) {
         if (isFrozen())
             throw new IllegalStateException("Cannot relabel nodes if graph is already frozen");
@@ -465,17 +584,22 @@ public class BaseGraph implements Graph, Closeable {
                 throw new IllegalStateException("This edge has already been copied so we can no longer change the geometry, pointer=" + edgePointer);
 
             int len = pillarNodes.size();
+            byte[] wayGeometryBytes = compactGeometry
+                    ? createCompactWayGeometryBytes(pillarNodes, reverse)
+                    : createWayGeometryBytes(pillarNodes, reverse);
             if (existingGeoRef > 0) {
                 final int count = getPillarCount(existingGeoRef);
-                if (len <= count) {
-                    setWayGeometryAtGeoRef(pillarNodes, edgePointer, reverse, existingGeoRef);
-                    return;
-                } else {
+                if (len > count)
                     throw new IllegalStateException("This edge already has a way geometry so it cannot be changed to a bigger geometry, pointer=" + edgePointer);
+                // with the compact format fewer points can still need more bytes, in this case we append the geometry
+                // and the old one becomes unused space that is dropped by relayoutWayGeometry
+                if (wayGeometryBytes.length <= getWayGeometryBytes(existingGeoRef)) {
+                    setWayGeometryAtGeoRef(wayGeometryBytes, edgePointer, existingGeoRef);
+                    return;
                 }
             }
-            long nextGeoRef = nextGeoRef(3 + len * (8 + eleBytesPerCoord));
-            setWayGeometryAtGeoRef(pillarNodes, edgePointer, reverse, nextGeoRef);
+            long nextGeoRef = nextGeoRef(wayGeometryBytes.length);
+            setWayGeometryAtGeoRef(wayGeometryBytes, edgePointer, nextGeoRef);
         } else {
             store.setGeoRef(edgePointer, 0L);
         }
@@ -485,8 +609,7 @@ public class BaseGraph implements Graph, Closeable {
         return store;
     }
 
-    private void setWayGeometryAtGeoRef(PointList pillarNodes, long edgePointer, boolean reverse, long geoRef) {
-        byte[] wayGeometryBytes = createWayGeometryBytes(pillarNodes, reverse);
+    private void setWayGeometryAtGeoRef(byte[] wayGeometryBytes, long edgePointer, long geoRef) {
         wayGeometry.ensureCapacity(geoRef + wayGeometryBytes.length);
         wayGeometry.setBytes(geoRef, wayGeometryBytes, wayGeometryBytes.length);
         store.setGeoRef(edgePointer, geoRef);
@@ -494,10 +617,7 @@ public class BaseGraph implements Graph, Closeable {
 
     private byte[] createWayGeometryBytes(PointList pillarNodes, boolean reverse) {
         int len = pillarNodes.size();
-        int totalLen = 3 + len * (8 + eleBytesPerCoord);
-        if ((totalLen & 0xFF00_0000) != 0)
-            throw new IllegalArgumentException("too long way geometry " + totalLen + ", " + len);
-
+        int totalLen = checkWayGeometryLength(len);
         byte[] bytes = new byte[totalLen];
         bitUtil.fromUInt3(bytes, len, 0);
         if (reverse)
@@ -520,59 +640,170 @@ public class BaseGraph implements Graph, Closeable {
         return bytes;
     }
 
+    private int checkWayGeometryLength(int len) {
+        int totalLen = 3 + len * (8 + eleBytesPerCoord);
+        if ((totalLen & 0xFF00_0000) != 0)
+            throw new IllegalArgumentException("too long way geometry " + totalLen + ", " + len);
+        return totalLen;
+    }
+
+    /**
+     * The compact format stores the pillar count like the fixed size format, followed by the differences of the
+     * latitude, longitude (and elevation) to the previous point as zigzag varints. The first point is relative to 0.
+     * Pillar nodes are usually only a few meters apart, so most differences need one or two bytes instead of four.
+     */
+    private byte[] createCompactWayGeometryBytes(PointList pillarNodes, boolean reverse) {
+        int len = pillarNodes.size();
+        // we keep the limit of the fixed size format, so a pillar count of 2^24-1 still cannot occur
+        checkWayGeometryLength(len);
+        boolean is3D = nodeAccess.is3D();
+        byte[] bytes = new byte[3 + len * (is3D ? 3 : 2) * MAX_VARINT_BYTES];
+        bitUtil.fromUInt3(bytes, len, 0);
+        int tmpOffset = 3;
+        long prevLat = 0, prevLon = 0, prevEle = 0;
+        for (int i = 0; i < len; i++) {
+            int index = reverse ? len - 1 - i : i;
+            long lat = Helper.degreeToInt(pillarNodes.getLat(index));
+            long lon = Helper.degreeToInt(pillarNodes.getLon(index));
+            tmpOffset = writeZigZagVarint(bytes, tmpOffset, lat - prevLat);
+            tmpOffset = writeZigZagVarint(bytes, tmpOffset, lon - prevLon);
+            prevLat = lat;
+            prevLon = lon;
+            if (is3D) {
+                long ele = Helper.eleToUInt(pillarNodes.getEle(index));
+                tmpOffset = writeZigZagVarint(bytes, tmpOffset, ele - prevEle);
+                prevEle = ele;
+            }
+        }
+        // relayoutWayGeometry overwrites moved geometries with an 11 byte marker, so we need at least this much space
+        return Arrays.copyOf(bytes, Math.max(11, tmpOffset));
+    }
+
+    private static int writeZigZagVarint(byte[] bytes, int offset, long value) {
+        long zigZag = (value << 1) ^ (value >> 63);
+        while ((zigZag & ~0x7FL) != 0) {
+            bytes[offset++] = (byte) ((zigZag & 0x7F) | 0x80);
+            zigZag >>>= 7;
+        }
+        bytes[offset++] = (byte) zigZag;
+        return offset;
+    }
+
     private int getPillarCount(long geoRef) {
-        return (wayGeometry.getByte(geoRef + 2) & 0xFF << 16) | wayGeometry.getShort(geoRef);
+        return (wayGeometry.getByte(geoRef + 2) & 0xFF) << 16 | (wayGeometry.getShort(geoRef) & 0xFFFF);
+    }
+
+    /**
+     * @return the number of bytes the geometry at the given geo ref occupies, including the pillar count
+     */
+    private long getWayGeometryBytes(long geoRef) {
+        int count = getPillarCount(geoRef);
+        if (!compactGeometry)
+            return 3 + (long) count * (8 + eleBytesPerCoord);
+        long pointer = geoRef + 3;
+        for (int varints = count * (nodeAccess.is3D() ? 3 : 2); varints > 0; pointer++) {
+            if (wayGeometry.getByte(pointer) >= 0)
+                varints--;
+        }
+        return Math.max(11, pointer - geoRef);
     }
 
-    private PointList fetchWayGeometry_(long edgePointer, boolean reverse, FetchMode mode, int baseNode, int adjNode) {
+    /**
+     * Decodes the pillar nodes at the given geo ref into the buffer of the given edge state. The buffer is reused for
+     * every call, so the returned list is only valid until the next call for the same edge state.
+     */
+    private IntPointList fetchPillarNodes(long geoRef, EdgeIteratorStateImpl edge) {
+        int count = getPillarCount(geoRef);
+        boolean is3D = nodeAccess.is3D();
+        int len = compactGeometry
+                // we do not know the encoded length without scanning, so we read as much as the geometry could need
+                ? (int) Math.min((long) count * (is3D ? 3 : 2) * MAX_VARINT_BYTES, maxGeoRef - geoRef - 3)
+                : count * (8 + eleBytesPerCoord);
+        if (edge.pillarBuffer == null)
+            edge.pillarBuffer = new IntPointList(count, is3D);
+        if (edge.geometryBytes == null || edge.geometryBytes.length < len)
+            edge.geometryBytes = new byte[Math.max(len, 64)];
+        byte[] bytes = edge.geometryBytes;
+        IntPointList pillarNodes = edge.pillarBuffer;
+        pillarNodes.clear();
+        wayGeometry.getBytes(geoRef + 3, bytes, len);
+
+        int index = 0;
+        if (compactGeometry) {
+            int dims = is3D ? 3 : 2;
+            long lat = 0, lon = 0, ele = 0;
+            for (int i = 0; i < count; i++) {
+                for (int d = 0; d < dims; d++) {
+                    long zigZag = 0;
+                    int shift = 0;
+                    byte b;
+                    do {
+                        b = bytes[index++];
+                        zigZag |= (long) (b & 0x7F) << shift;
+                        shift += 7;
+                    } while (b < 0);
+                    long delta = (zigZag >>> 1) ^ -(zigZag & 1);
+                    if (d == 0) lat += delta;
+                    else if (d == 1) lon += delta;
+                    else ele += delta;
+                }
+                if (is3D)
+                    pillarNodes.add((int) lat, (int) lon, (int) ele);
+                else
+                    pillarNodes.add((int) lat, (int) lon);
+            }
+        } else {
+            for (int i = 0; i < count; i++) {
+                int lat = bitUtil.toInt(bytes, index);
+                index += 4;
+                int lon = bitUtil.toInt(bytes, index);
+                index += 4;
+                if (is3D) {
+                    pillarNodes.add(lat, lon, bitUtil.toUInt3(bytes, index));
+                    index += 3;
+                } else {
+                    pillarNodes.add(lat, lon);
+                }
+            }
+        }
+        return pillarNodes;
+    }
+
+    private PointList fetchWayGeometry_(EdgeIteratorStateImpl edge, FetchMode mode) {
         if (mode == FetchMode.TOWER_ONLY) {
             // no reverse handling required as adjNode and baseNode is already properly switched
             PointList pillarNodes = new PointList(2, nodeAccess.is3D());
-            pillarNodes.add(nodeAccess, baseNode);
-            pillarNodes.add(nodeAccess, adjNode);
+            pillarNodes.add(nodeAccess, edge.getBaseNode());
+            pillarNodes.add(nodeAccess, edge.getAdjNode());
             return pillarNodes;
         }
-        long geoRef = store.getGeoRef(edgePointer);
-        int count = 0;
-        byte[] bytes = null;
-        if (geoRef > 0) {
-            count = getPillarCount(geoRef);
-            geoRef += 3L;
-            bytes = new byte[count * (8 + eleBytesPerCoord)];
-            wayGeometry.getBytes(geoRef, bytes, bytes.length);
-        } else if (mode == FetchMode.PILLAR_ONLY)
+        long geoRef = store.getGeoRef(edge.edgePointer);
+        if (geoRef <= 0 && mode == FetchMode.PILLAR_ONLY)
             return PointList.EMPTY;
+        IntPointList pillarNodes = geoRef > 0 ? fetchPillarNodes(geoRef, edge) : null;
+        PointList points = new PointList(getPointListLength(pillarNodes == null ? 0 : pillarNodes.size(), mode), nodeAccess.is3D());
+        addWayGeometry(edge, mode, pillarNodes, points);
+        return points;
+    }
 
-        PointList pillarNodes = new PointList(getPointListLength(count, mode), nodeAccess.is3D());
-        if (reverse) {
-            if (mode == FetchMode.ALL || mode == FetchMode.PILLAR_AND_ADJ)
-                pillarNodes.add(nodeAccess, adjNode);
-        } else if (mode == FetchMode.ALL || mode == FetchMode.BASE_AND_PILLAR)
-            pillarNodes.add(nodeAccess, baseNode);
-
-        int index = 0;
-        for (int i = 0; i < count; i++) {
-            double lat = Helper.intToDegree(bitUtil.toInt(bytes, index));
-            index += 4;
-            double lon = Helper.intToDegree(bitUtil.toInt(bytes, index));
-            index += 4;
-            if (nodeAccess.is3D()) {
-                pillarNodes.add(lat, lon, Helper.uIntToEle(bitUtil.toUInt3(bytes, index)));
-                index += 3;
-            } else {
-                pillarNodes.add(lat, lon);
-            }
+    private void fetchWayGeometry_(EdgeIteratorStateImpl edge, FetchMode mode, PointList target) {
+        if (mode == FetchMode.TOWER_ONLY) {
+            target.add(nodeAccess, edge.getBaseNode());
+            target.add(nodeAccess, edge.getAdjNode());
+            return;
         }
+        long geoRef = store.getGeoRef(edge.edgePointer);
+        addWayGeometry(edge, mode, geoRef > 0 ? fetchPillarNodes(geoRef, edge) : null, target);
+    }
 
-        if (reverse) {
-            if (mode == FetchMode.ALL || mode == FetchMode.BASE_AND_PILLAR)
-                pillarNodes.add(nodeAccess, baseNode);
-
-            pillarNodes.reverse();
-        } else if (mode == FetchMode.ALL || mode == FetchMode.PILLAR_AND_ADJ)
-            pillarNodes.add(nodeAccess, adjNode);
-
-        return pillarNodes;
+    private void addWayGeometry(EdgeIteratorStateImpl edge, FetchMode mode, IntPointList pillarNodes, PointList target) {
+        // the pillar nodes are stored in the direction of the edge, baseNode and adjNode are already switched
+        if (mode == FetchMode.ALL || mode == FetchMode.BASE_AND_PILLAR)
+            target.add(nodeAccess, edge.getBaseNode());
+        if (pillarNodes != null)
+            pillarNodes.addTo(target, edge.reverse);
+        if (mode == FetchMode.ALL || mode == FetchMode.PILLAR_AND_ADJ)
+            target.add(nodeAccess, edge.getAdjNode());
     }
 
     static int getPointListLength(int pillarNodes, FetchMode mode) {
@@ -613,6 +844,8 @@ public class BaseGraph implements Graph, Closeable {
         private Directory directory = new RAMDirectory();
         private boolean withElevation = false;
         private boolean withTurnCosts = false;
+        private boolean withAdjacencyArray = false;
+        private boolean withCompactGeometry = false;
         private long bytes = 100;
         private int segmentSize = -1;
 
@@ -643,6 +876,16 @@ public class BaseGraph implements Graph, Closeable {
             return this;
         }
 
+        public Builder withAdjacencyArray(boolean withAdjacencyArray) {
+            this.withAdjacencyArray = withAdjacencyArray;
+            return this;
+        }
+
+        public Builder withCompactGeometry(boolean withCompactGeometry) {
+            this.withCompactGeometry = withCompactGeometry;
+            return this;
+        }
+
         public Builder setSegmentSize(int segmentSize) {
             this.segmentSize = segmentSize;
             return this;
@@ -654,7 +897,7 @@ public class BaseGraph implements Graph, Closeable {
         }
 
         public BaseGraph build() {
-            return new BaseGraph(directory, withElevation, withTurnCosts, segmentSize, bytesForFlags);
+            return new BaseGraph(directory, withElevation, withTurnCosts, segmentSize, bytesForFlags, withAdjacencyArray, withCompactGeometry);
         }
 
         public BaseGraph create() {
@@ -667,6 +910,10 @@ public class BaseGraph implements Graph, Closeable {
     protected static class EdgeIteratorImpl extends EdgeIteratorStateImpl implements EdgeExplorer, EdgeIterator {
         final EdgeFilter filter;
         int nextEdgeId;
+        // only used if the graph has an adjacency array, otherwise we follow the linked edge list using nextEdgeId
+        private BaseGraphAdjacencyArray adjacencyArray;
+        private long nextIndex;
+        private long endIndex;
 
         public EdgeIteratorImpl(BaseGraph baseGraph, EdgeFilter filter) {
             super(baseGraph);
@@ -677,22 +924,50 @@ public class BaseGraph implements Graph, Closeable {
 
         @Override
         public EdgeIterator setBaseNode(int baseNode) {
-            nextEdgeId = edgeId = store.getEdgeRef(store.toNodePointer(baseNode));
+            adjacencyArray = baseGraph.builtAdjacencyArray;
+            if (adjacencyArray != null) {
+                nextEdgeId = edgeId = EdgeIterator.NO_EDGE;
+                nextIndex = adjacencyArray.getStart(baseNode);
+                endIndex = adjacencyArray.getStart(baseNode + 1);
+            } else {
+                nextEdgeId = edgeId = store.getEdgeRef(store.toNodePointer(baseNode));
+            }
             this.baseNode = baseNode;
             return this;
         }
 
         @Override
         public final boolean next() {
-            while (EdgeIterator.Edge.isValid(nextEdgeId)) {
-                goToNext();
+            while (nextUnfiltered()) {
                 if (filter.accept(this))
                     return true;
             }
             return false;
         }
 
-        void goToNext() {
+        /**
+         * Moves to the next edge of the base node without applying the filter
+         *
+         * @return false if there is no more edge
+         */
+        final boolean nextUnfiltered() {
+            if (adjacencyArray != null) {
+                if (nextIndex == endIndex)
+                    return false;
+                int edgeKey = adjacencyArray.getEdgeKey(nextIndex++);
+                edgeId = GHUtility.getEdgeFromEdgeKey(edgeKey);
+                edgePointer = store.toEdgePointer(edgeId);
+                reverse = (edgeKey & 1) == 1;
+                adjNode = reverse ? store.getNodeA(edgePointer) : store.getNodeB(edgePointer);
+                return true;
+            }
+            if (!EdgeIterator.Edge.isValid(nextEdgeId))
+                return false;
+            goToNext();
+            return true;
+        }
+
+        private void goToNext() {
             edgePointer = store.toEdgePointer(nextEdgeId);
             edgeId = nextEdgeId;
             int nodeA = store.getNodeA(edgePointer);
@@ -770,6 +1045,9 @@ public class BaseGraph implements Graph, Closeable {
         boolean reverse = false;
         int edgeId = -1;
         private final EdgeIntAccess edgeIntAccess;
+        // reused buffers to decode the way geometry, see fetchPillarNodes
+        private IntPointList pillarBuffer;
+        private byte[] geometryBytes;
 
         public EdgeIteratorStateImpl(BaseGraph baseGraph) {
             this.baseGraph = baseGraph;
@@ -1025,7 +1303,12 @@ public class BaseGraph implements Graph, Closeable {
 
         @Override
         public PointList fetchWayGeometry(FetchMode mode) {
-            return baseGraph.fetchWayGeometry_(edgePointer, reverse, mode, getBaseNode(), getAdjNode());
+            return baseGraph.fetchWayGeometry_(this, mode);
+        }
+
+        @Override
+        public void fetchWayGeometry(FetchMode mode, PointList target) {
+            baseGraph.fetchWayGeometry_(this, mode, target);
         }
 
         @Override
@@ -0,0 +1,108 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.storage;
+
+import com.graphhopper.util.Constants;
+import com.graphhopper.util.EdgeIterator;
+import com.graphhopper.util.GHUtility;
+
+/**
+ * The adjacency of a frozen {@link BaseGraph} in compressed sparse row (CSR) format: the edges of every node are stored
+ * contiguously, so iterating them reads consecutive memory instead of following the links of the edge entries one by
+ * one. The edges of a node are stored in the same order in which the linked lists return them.
+ * <p>
+ * Memory layout: (nodes + 1) offsets (unsigned 4 byte integers) followed by the edge keys (4 bytes each, two per
+ * edge). The edge keys of a node are stored between its offset and the offset of the next node. An edge key is
+ * reversed if the node is the second node of the edge, i.e. the base node of the edge key is the node.
+ */
+class BaseGraphAdjacencyArray {
+    private final DataAccess adjacency;
+    private int nodeCount;
+    private long keysPointer;
+
+    BaseGraphAdjacencyArray(Directory dir, int segmentSize) {
+        adjacency = dir.create("adjacency", segmentSize);
+    }
+
+    void build(BaseGraphNodesAndEdges store) {
+        nodeCount = store.getNodes();
+        keysPointer = 4L * (nodeCount + 1);
+        adjacency.create(keysPointer + 8L * store.getEdges());
+        long index = 0;
+        for (int node = 0; node < nodeCount; node++) {
+            adjacency.setInt(4L * node, (int) index);
+            int edge = store.getEdgeRef(store.toNodePointer(node));
+            while (EdgeIterator.Edge.isValid(edge)) {
+                long edgePointer = store.toEdgePointer(edge);
+                boolean nodeIsNodeA = store.getNodeA(edgePointer) == node;
+                adjacency.setInt(keysPointer + 4 * index, GHUtility.createEdgeKey(edge, !nodeIsNodeA));
+                index++;
+                edge = nodeIsNodeA ? store.getLinkA(edgePointer) : store.getLinkB(edgePointer);
+            }
+        }
+        adjacency.setInt(4L * nodeCount, (int) index);
+        if (index != 2L * store.getEdges())
+            throw new IllegalStateException("Unexpected number of adjacent edges: " + index + ", edges: " + store.getEdges());
+    }
+
+    boolean loadExisting() {
+        if (!adjacency.loadExisting())
+            return false;
+        GHUtility.checkDAVersion(adjacency.getName(), Constants.VERSION_ADJACENCY, adjacency.getHeader(0));
+        nodeCount = adjacency.getHeader(4);
+        keysPointer = 4L * (nodeCount + 1);
+        return true;
+    }
+
+    /**
+     * @return true if this adjacency array was built for a graph with the given number of nodes
+     */
+    boolean matches(int nodes) {
+        return nodeCount == nodes;
+    }
+
+    /**
+     * @return the index of the first edge key of the given node, the edge keys of the node end at the start of the
+     * next node
+     */
+    long getStart(int node) {
+        return Integer.toUnsignedLong(adjacency.getInt(4L * node));
+    }
+
+    int getEdgeKey(long index) {
+        return adjacency.getInt(keysPointer + 4 * index);
+    }
+
+    void flush() {
+        adjacency.setHeader(0, Constants.VERSION_ADJACENCY);
+        adjacency.setHeader(4, nodeCount);
+        adjacency.flush();
+    }
+
+    void close() {
+        adjacency.close();
+    }
+
+    boolean isClosed() {
+        return adjacency.isClosed();
+    }
+
+    long getCapacity() {
+        return adjacency.getCapacity();
+    }
+}
@@ -25,6 +25,7 @@ import com.graphhopper.util.shapes.BBox;
 
 import java.util.Locale;
 import java.util.function.IntUnaryOperator;
+import java.util.stream.IntStream;
 
 import static com.graphhopper.util.EdgeIterator.NO_EDGE;
 import static com.graphhopper.util.Helper.nf;
@@ -274,19 +275,20 @@ class BaseGraphNodesAndEdges implements EdgeIntAccess {
             } while (curr != edge);
         }
 
-        // update edge references
-        for (int node = 0; node < getNodes(); node++) {
+        // update edge references. every node is written independently, so unlike the cycles above this can be done
+        // in parallel
+        IntStream.range(0, getNodes()).parallel().forEach(node -> {
             long pointer = toNodePointer(node);
             setEdgeRef(pointer, getNewEdgeForOldEdge.applyAsInt(getEdgeRef(pointer)));
-        }
+        });
     }
 
     public void relabelNodes(IntUnaryOperator getNewNodeForOldNode) {
-        for (int edge = 0; edge < getEdges(); edge++) {
+        IntStream.range(0, getEdges()).parallel().forEach(edge -> {
             long pointer = toEdgePointer(edge);
             setNodeA(pointer, getNewNodeForOldNode.applyAsInt(getNodeA(pointer)));
             setNodeB(pointer, getNewNodeForOldNode.applyAsInt(getNodeB(pointer)));
-        }
+        });
         BitSet visited = new BitSet(getNodes());
         for (int node = 0; node < getNodes(); node++) {
             if (visited.get(node)) continue;
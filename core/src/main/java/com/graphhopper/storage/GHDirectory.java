@@ -139,6 +139,8 @@ public class GHDirectory implements Directory {
                 da = new RAMDataAccess(name, location, false, segmentSize);
         } else if (type.isMMap()) {
             da = new MMapDataAccess(name, location, type.isAllowWrites(), segmentSize);
+        } else if (type.isOffHeap()) {
+            da = new OffHeapDataAccess(name, location, type.isStoring(), segmentSize);
         } else {
             throw new IllegalArgumentException("DAType not supported " + type);
         }
@@ -42,6 +42,10 @@ import java.util.List;
  * implementations are.
  * <p>
  * The exact behavior of memory-mapping is reported to be wildly platform-dependent.
+ * <p>
+ * If writes are not allowed the existing file is mapped read-only in a few big regions and the segments are slices of
+ * these regions. Nothing is copied into the Java heap, loading takes only milliseconds and several processes that map
+ * the same file share one copy in the page cache of the operating system.
  *
  * @author Peter Karich
  * @author Michael Zilske
@@ -51,6 +55,9 @@ public final class MMapDataAccess extends AbstractDataAccess {
     private final boolean allowWrites;
     private RandomAccessFile raFile;
     private final List<MappedByteBuffer> segments = new ArrayList<>();
+    // the regions the segments were sliced from when mapping read-only, a slice cannot be unmapped itself
+    private final List<MappedByteBuffer> readOnlyRegions = new ArrayList<>();
+    private long maxReadOnlyRegionSize = 1L << 30;
 
     MMapDataAccess(String name, String location, boolean allowWrites, int segmentSize) {
         super(name, location, segmentSize);
@@ -203,13 +210,47 @@ public final class MMapDataAccess extends AbstractDataAccess {
             if (byteCount < 0)
                 return false;
 
-            mapIt(HEADER_OFFSET, byteCount - HEADER_OFFSET);
+            if (allowWrites)
+                mapIt(HEADER_OFFSET, byteCount - HEADER_OFFSET);
+            else
+                mapReadOnly(HEADER_OFFSET, byteCount - HEADER_OFFSET);
             return true;
         } catch (IOException ex) {
             throw new RuntimeException("Problem while loading " + getFullName(), ex);
         }
     }
 
+    /**
+     * Maps the given byte range with as few mappings as possible, which is faster than mapping every segment
+     * separately and avoids running into the maximum number of mappings per process (vm.max_map_count on Linux).
+     */
+    private void mapReadOnly(long offset, long byteCount) throws IOException {
+        int segmentsToMap = (int) ((byteCount + segmentSizeInBytes - 1) / segmentSizeInBytes);
+        int segmentsPerRegion = (int) Math.max(1, maxReadOnlyRegionSize / segmentSizeInBytes);
+        for (int first = 0; first < segmentsToMap; first += segmentsPerRegion) {
+            int count = Math.min(segmentsPerRegion, segmentsToMap - first);
+            MappedByteBuffer region = newByteBuffer(offset + (long) first * segmentSizeInBytes, (long) count * segmentSizeInBytes);
+            readOnlyRegions.add(region);
+            for (int i = 0; i < count; i++) {
+                MappedByteBuffer segment = region.slice(i * segmentSizeInBytes, segmentSizeInBytes);
+                segment.order(byteOrder);
+                segments.add(segment);
+            }
+        }
+    }
+
+    /**
+     * Sets the maximum size of the regions that are mapped when writes are not allowed, only used for tests.
+     */
+    MMapDataAccess setMaxReadOnlyRegionSize(long maxReadOnlyRegionSize) {
+        this.maxReadOnlyRegionSize = maxReadOnlyRegionSize;
+        return this;
+    }
+
+    int getReadOnlyRegions() {
+        return readOnlyRegions.size();
+    }
+
     @Override
     public void flush() {
         if (isClosed())
@@ -245,7 +286,13 @@ public final class MMapDataAccess extends AbstractDataAccess {
     @Override
     public void close() {
         super.close();
-        clean(0, segments.size());
+        if (readOnlyRegions.isEmpty()) {
+            clean(0, segments.size());
+        } else {
+            for (MappedByteBuffer region : readOnlyRegions)
+                cleanMappedByteBuffer(region);
+            readOnlyRegions.clear();
+        }
         segments.clear();
         Helper.close(raFile);
     }
@@ -405,6 +452,6 @@ public final class MMapDataAccess extends AbstractDataAccess {
 
     @Override
     public DAType getType() {
-        return DAType.MMAP;
+        return allowWrites ? DAType.MMAP : DAType.MMAP_RO;
     }
 }
@@ -32,6 +32,13 @@ public class MMapDirectory extends GHDirectory {
     }
 
     public MMapDirectory(String _location) {
-        super(_location, DAType.MMAP);
+        this(_location, true);
+    }
+
+    /**
+     * @param allowWrites if false all DataAccess objects are mapped read-only and can only be loaded, not created
+     */
+    public MMapDirectory(String _location, boolean allowWrites) {
+        super(_location, allowWrites ? DAType.MMAP : DAType.MMAP_RO);
     }
 }
@@ -0,0 +1,319 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.storage;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+/**
+ * This is an in-memory byte-based data structure like {@link RAMDataAccess}, but the segments are direct ByteBuffers
+ * that are allocated outside of the Java heap. This way even huge graphs do not increase the heap size and the
+ * garbage collector does not need to scan or copy them. The memory is released on close() and not only when the
+ * object becomes unreachable. Like RAMDataAccess the data can optionally be loaded from and stored to disc.
+ * <p>
+ * Use a big segment size (e.g. 1 << 30) to reduce the number of segments. Read thread-safe.
+ */
+public final class OffHeapDataAccess extends AbstractDataAccess {
+    private ByteBuffer[] segments = new ByteBuffer[0];
+    private final boolean store;
+
+    OffHeapDataAccess(String name, String location, boolean store, int segmentSize) {
+        super(name, location, segmentSize);
+        this.store = store;
+    }
+
+    @Override
+    public boolean isStoring() {
+        return store;
+    }
+
+    @Override
+    public OffHeapDataAccess create(long bytes) {
+        if (segments.length > 0)
+            throw new IllegalThreadStateException("already created");
+
+        ensureCapacity(Math.max(10 * 4, bytes));
+        return this;
+    }
+
+    @Override
+    public boolean ensureCapacity(long bytes) {
+        if (bytes < 0)
+            throw new IllegalArgumentException("new capacity has to be strictly positive");
+
+        long cap = getCapacity();
+        long newBytes = bytes - cap;
+        if (newBytes <= 0)
+            return false;
+
+        int segmentsToCreate = (int) (newBytes / segmentSizeInBytes);
+        if (newBytes % segmentSizeInBytes != 0)
+            segmentsToCreate++;
+
+        ByteBuffer[] newSegs = Arrays.copyOf(segments, segments.length + segmentsToCreate);
+        try {
+            for (int i = segments.length; i < newSegs.length; i++) {
+                newSegs[i] = newSegment();
+            }
+        } catch (OutOfMemoryError err) {
+            // release what we got so far, otherwise it is only freed after the next GC
+            for (int i = segments.length; i < newSegs.length && newSegs[i] != null; i++) {
+                MMapDataAccess.cleanMappedByteBuffer(newSegs[i]);
+            }
+            throw new OutOfMemoryError(err.getMessage() + " - problem when allocating new off-heap memory (see -XX:MaxDirectMemorySize)."
+                    + " Old capacity: " + cap + ", new bytes:" + newBytes + ", segmentSizeIntsPower:" + segmentSizePower
+                    + ", new segments:" + segmentsToCreate + ", existing:" + segments.length);
+        }
+        segments = newSegs;
+        return true;
+    }
+
+    private ByteBuffer newSegment() {
+        // allocateDirect zeroes the memory, so we do not need to care about stale data
+        return ByteBuffer.allocateDirect(segmentSizeInBytes).order(byteOrder);
+    }
+
+    @Override
+    public boolean loadExisting() {
+        if (segments.length > 0)
+            throw new IllegalStateException("already initialized");
+
+        if (isClosed())
+            throw new IllegalStateException("already closed");
+
+        if (!store)
+            return false;
+
+        File file = new File(getFullName());
+        if (!file.exists() || file.length() == 0)
+            return false;
+
+        try {
+            try (RandomAccessFile raFile = new RandomAccessFile(getFullName(), "r")) {
+                long byteCount = readHeader(raFile) - HEADER_OFFSET;
+                if (byteCount < 0)
+                    return false;
+
+                int segmentCount = (int) (byteCount / segmentSizeInBytes);
+                if (byteCount % segmentSizeInBytes != 0)
+                    segmentCount++;
+
+                // read directly into the off-heap memory without copying it through a byte array on the heap
+                FileChannel channel = raFile.getChannel();
+                segments = new ByteBuffer[segmentCount];
+                long position = HEADER_OFFSET;
+                for (int s = 0; s < segmentCount; s++) {
+                    ByteBuffer segment = newSegment();
+                    segments[s] = segment;
+                    while (segment.hasRemaining()) {
+                        int read = channel.read(segment, position);
+                        if (read <= 0) {
+                            if (segment.position() == 0)
+                                throw new IllegalStateException("segment " + s + " is empty? " + toString());
+                            break;
+                        }
+                        position += read;
+                    }
+                    segment.clear();
+                }
+                return true;
+            }
+        } catch (IOException ex) {
+            throw new RuntimeException("Problem while loading " + getFullName(), ex);
+        }
+    }
+
+    @Override
+    public void flush() {
+        if (closed)
+            throw new IllegalStateException("already closed");
+
+        if (!store)
+            return;
+
+        try {
+            try (RandomAccessFile raFile = new RandomAccessFile(getFullName(), "rw")) {
+                long len = getCapacity();
+                writeHeader(raFile, len, segmentSizeInBytes);
+                FileChannel channel = raFile.getChannel();
+                long position = HEADER_OFFSET;
+                for (ByteBuffer segment : segments) {
+                    // use a duplicate so that concurrent readers are not affected by the changed position
+                    ByteBuffer area = segment.duplicate();
+                    area.clear();
+                    while (area.hasRemaining()) {
+                        position += channel.write(area, position);
+                    }
+                }
+            }
+        } catch (Exception ex) {
+            throw new RuntimeException("Couldn't store bytes to " + toString(), ex);
+        }
+    }
+
+    @Override
+    public void setInt(long bytePos, int value) {
+        assert segments.length > 0 : "call create or loadExisting before usage!";
+        int bufferIndex = (int) (bytePos >>> segmentSizePower);
+        int index = (int) (bytePos & indexDivisor);
+        ByteBuffer b1 = segments[bufferIndex];
+        if (index + 3 >= segmentSizeInBytes) {
+            // seldom and special case if int has to be written into two separate segments
+            ByteBuffer b2 = segments[bufferIndex + 1];
+            if (index + 1 >= segmentSizeInBytes) {
+                b2.putShort(1, (short) (value >>> 16));
+                b2.put(0, (byte) (value >>> 8));
+                b1.put(index, (byte) value);
+            } else if (index + 2 >= segmentSizeInBytes) {
+                b2.putShort(0, (short) (value >>> 16));
+                b1.putShort(index, (short) value);
+            } else {
+                // index + 3 >= segmentSizeInBytes
+                b2.put(0, (byte) (value >>> 24));
+                b1.putShort(index + 1, (short) (value >>> 8));
+                b1.put(index, (byte) value);
+            }
+        } else {
+            b1.putInt(index, value);
+        }
+    }
+
+    @Override
+    public int getInt(long bytePos) {
+        assert segments.length > 0 : "call create or loadExisting before usage!";
+        int bufferIndex = (int) (bytePos >>> segmentSizePower);
+        int index = (int) (bytePos & indexDivisor);
+        ByteBuffer b1 = segments[bufferIndex];
+        if (index + 3 >= segmentSizeInBytes) {
+            ByteBuffer b2 = segments[bufferIndex + 1];
+            if (index + 1 >= segmentSizeInBytes)
+                return (b2.getShort(1) & 0xFFFF) << 16 | (b2.get(0) & 0xFF) << 8 | (b1.get(index) & 0xFF);
+            if (index + 2 >= segmentSizeInBytes)
+                return (b2.getShort(0) & 0xFFFF) << 16 | (b1.getShort(index) & 0xFFFF);
+            // index + 3 >= segmentSizeInBytes
+            return (b2.get(0) & 0xFF) << 24 | (b1.getShort(index + 1) & 0xFFFF) << 8 | (b1.get(index) & 0xFF);
+        }
+        return b1.getInt(index);
+    }
+
+    @Override
+    public void setShort(long bytePos, short value) {
+        assert segments.length > 0 : "call create or loadExisting before usage!";
+        int bufferIndex = (int) (bytePos >>> segmentSizePower);
+        int index = (int) (bytePos & indexDivisor);
+        ByteBuffer byteBuffer = segments[bufferIndex];
+        if (index + 1 >= segmentSizeInBytes) {
+            // seldom and special case if short has to be written into two separate segments
+            byteBuffer.put(index, (byte) value);
+            segments[bufferIndex + 1].put(0, (byte) (value >>> 8));
+        } else {
+            byteBuffer.putShort(index, value);
+        }
+    }
+
+    @Override
+    public short getShort(long bytePos) {
+        assert segments.length > 0 : "call create or loadExisting before usage!";
+        int bufferIndex = (int) (bytePos >>> segmentSizePower);
+        int index = (int) (bytePos & indexDivisor);
+        ByteBuffer byteBuffer = segments[bufferIndex];
+        if (index + 1 >= segmentSizeInBytes)
+            return (short) ((segments[bufferIndex + 1].get(0) & 0xFF) << 8 | byteBuffer.get(index) & 0xFF);
+        return byteBuffer.getShort(index);
+    }
+
+    @Override
+    public void setBytes(long bytePos, byte[] values, int length) {
+        assert length <= segmentSizeInBytes : "the length has to be smaller or equal to the segment size: " + length + " vs. " + segmentSizeInBytes;
+        assert segments.length > 0 : "call create or loadExisting before usage!";
+        int bufferIndex = (int) (bytePos >>> segmentSizePower);
+        int index = (int) (bytePos & indexDivisor);
+        int delta = index + length - segmentSizeInBytes;
+        if (delta > 0) {
+            length -= delta;
+            segments[bufferIndex].put(index, values, 0, length);
+            segments[bufferIndex + 1].put(0, values, length, delta);
+        } else {
+            segments[bufferIndex].put(index, values, 0, length);
+        }
+    }
+
+    @Override
+    public void getBytes(long bytePos, byte[] values, int length) {
+        assert length <= segmentSizeInBytes : "the length has to be smaller or equal to the segment size: " + length + " vs. " + segmentSizeInBytes;
+        assert segments.length > 0 : "call create or loadExisting before usage!";
+        int bufferIndex = (int) (bytePos >>> segmentSizePower);
+        int index = (int) (bytePos & indexDivisor);
+        int delta = index + length - segmentSizeInBytes;
+        if (delta > 0) {
+            length -= delta;
+            segments[bufferIndex].get(index, values, 0, length);
+            segments[bufferIndex + 1].get(0, values, length, delta);
+        } else {
+            segments[bufferIndex].get(index, values, 0, length);
+        }
+    }
+
+    @Override
+    public void setByte(long bytePos, byte value) {
+        assert segments.length > 0 : "call create or loadExisting before usage!";
+        int bufferIndex = (int) (bytePos >>> segmentSizePower);
+        int index = (int) (bytePos & indexDivisor);
+        segments[bufferIndex].put(index, value);
+    }
+
+    @Override
+    public byte getByte(long bytePos) {
+        assert segments.length > 0 : "call create or loadExisting before usage!";
+        int bufferIndex = (int) (bytePos >>> segmentSizePower);
+        int index = (int) (bytePos & indexDivisor);
+        return segments[bufferIndex].get(index);
+    }
+
+    @Override
+    public void close() {
+        super.close();
+        ByteBuffer[] tmp = segments;
+        segments = new ByteBuffer[0];
+        // free the native memory immediately instead of waiting for the garbage collector
+        for (ByteBuffer segment : tmp) {
+            MMapDataAccess.cleanMappedByteBuffer(segment);
+        }
+    }
+
+    @Override
+    public long getCapacity() {
+        return (long) getSegments() * segmentSizeInBytes;
+    }
+
+    @Override
+    public int getSegments() {
+        return segments.length;
+    }
+
+    @Override
+    public DAType getType() {
+        if (isStoring())
+            return DAType.OFF_HEAP_STORE;
+        return DAType.OFF_HEAP;
+    }
+}
@@ -194,6 +194,43 @@ public class ArrayUtil {
         return IndirectSort.mergesort(0, length, comp);
     }
 
+    /**
+     * Calculates the same (stable) sort order of the given non-negative keys as {@link IndirectSort#mergesort}, but
+     * uses all available cores. The indices are sorted by the upper 31 bits of their keys using
+     * {@link Arrays#parallelSort} first and afterwards only the (typically short) runs of indices with equal upper
+     * bits are sorted by their full keys.
+     *
+     * @return an array x such that keys[x[0]] is the smallest key and so on
+     */
+    public static int[] calcSortOrderParallel(long[] keys) {
+        final int length = keys.length;
+        long[] packed = new long[length];
+        for (int i = 0; i < length; i++) {
+            if (keys[i] < 0)
+                throw new IllegalArgumentException("Keys must not be negative: " + keys[i]);
+            packed[i] = (keys[i] >>> 32) << 32 | i;
+        }
+        Arrays.parallelSort(packed);
+        int[] order = new int[length];
+        for (int i = 0; i < length; i++)
+            order[i] = (int) packed[i];
+        int runStart = 0;
+        for (int i = 1; i <= length; i++) {
+            if (i < length && packed[i] >>> 32 == packed[runStart] >>> 32)
+                continue;
+            if (i - runStart > 1) {
+                // the run is ordered by index already, so the stable merge sort keeps the indices of equal keys in order
+                int[] runOrder = IndirectSort.mergesort(runStart, i - runStart, (indexA, indexB) -> Long.compare(keys[order[indexA]], keys[order[indexB]]));
+                int[] run = new int[runOrder.length];
+                for (int j = 0; j < runOrder.length; j++)
+                    run[j] = order[runOrder[j]];
+                System.arraycopy(run, 0, order, runStart, run.length);
+            }
+            runStart = i;
+        }
+        return order;
+    }
+
     /**
      * Creates a copy of the given array such that it is ordered by the given order.
      * The order can be shorter or equal, but not longer than the array.
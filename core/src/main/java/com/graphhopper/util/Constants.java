@@ -66,6 +66,8 @@ public class Constants {
     public static final int VERSION_NODE_CH = 0;
     public static final int VERSION_GEOMETRY = 7;
     public static final int VERSION_TURN_COSTS = 0;
+    public static final int VERSION_ADJACENCY = 0;
+    public static final int VERSION_PRECOMPUTED_WEIGHTS = 0;
     public static final int VERSION_LOCATION_IDX = 5;
     public static final int VERSION_KV_STORAGE = 2;
     /**
@@ -144,6 +144,14 @@ public interface EdgeIteratorState {
      */
     PointList fetchWayGeometry(FetchMode mode);
 
+    /**
+     * Same as {@link #fetchWayGeometry(FetchMode)}, but appends the points to the given list instead of creating a
+     * new one, e.g. to avoid allocating a list for every edge of a path.
+     */
+    default void fetchWayGeometry(FetchMode mode, PointList target) {
+        target.add(fetchWayGeometry(mode));
+    }
+
     /**
      * @param list is a sorted collection of coordinates between the base node and the current adjacent node. Specify
      *             the list without the adjacent and base node. This method can be called multiple times, unless the
@@ -46,7 +46,10 @@ import java.io.*;
 import java.nio.charset.StandardCharsets;
 import java.util.*;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 import java.util.stream.Stream;
@@ -315,6 +318,21 @@ public class GHUtility {
         return adjNode;
     }
 
+    /**
+     * Copies the given number of bytes from one DataAccess to another, using the given buffer for chunks of at most
+     * buffer.length bytes. The target must have enough capacity already.
+     */
+    public static void copyBytes(DataAccess from, long fromPointer, DataAccess to, long toPointer, long length, byte[] buffer) {
+        while (length > 0) {
+            int chunk = (int) Math.min(length, buffer.length);
+            from.getBytes(fromPointer, buffer, chunk);
+            to.setBytes(toPointer, buffer, chunk);
+            fromPointer += chunk;
+            toPointer += chunk;
+            length -= chunk;
+        }
+    }
+
     public static void checkDAVersion(String name, int expectedVersion, int version) {
         if (version != expectedVersion) {
             throw new IllegalStateException("Unexpected version for '" + name + "'. Got: " + version + ", " +
@@ -538,6 +556,34 @@ public class GHUtility {
         }
     }
 
+    /**
+     * Runs the given tasks on at most the given number of threads of the given (shared) executor and waits until all
+     * of them are done. The tasks are started in the given order. If a task fails the remaining tasks are not started
+     * and the exception is rethrown.
+     */
+    public static void runConcurrently(ExecutorService executor, List<Runnable> tasks, int threads) {
+        AtomicInteger next = new AtomicInteger();
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < Math.min(threads, tasks.size()); i++) {
+            futures.add(executor.submit(() -> {
+                for (int task = next.getAndIncrement(); task < tasks.size(); task = next.getAndIncrement())
+                    tasks.get(task).run();
+            }));
+        }
+        try {
+            for (Future<?> future : futures)
+                future.get();
+        } catch (InterruptedException | ExecutionException e) {
+            next.set(tasks.size());
+            futures.forEach(f -> f.cancel(true));
+            if (e instanceof InterruptedException)
+                Thread.currentThread().interrupt();
+            if (e.getCause() instanceof RuntimeException)
+                throw (RuntimeException) e.getCause();
+            throw new RuntimeException(e);
+        }
+    }
+
     public static BBox createBBox(EdgeIteratorState edgeState) {
         PointList towerNodes = edgeState.fetchWayGeometry(FetchMode.TOWER_ONLY);
         int secondIndex = towerNodes.size() == 1 ? 0 : 1;
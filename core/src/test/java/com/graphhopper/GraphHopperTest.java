@@ -28,9 +28,14 @@ import com.graphhopper.routing.ev.*;
 import com.graphhopper.routing.util.AllEdgesIterator;
 import com.graphhopper.routing.util.DefaultSnapFilter;
 import com.graphhopper.routing.util.EdgeFilter;
+import com.graphhopper.routing.util.EncodingManager;
 import com.graphhopper.routing.util.countryrules.CountryRuleFactory;
 import com.graphhopper.routing.util.parsers.OSMRoadEnvironmentParser;
+import com.graphhopper.routing.weighting.PrecomputedWeights;
 import com.graphhopper.routing.weighting.Weighting;
+import com.graphhopper.routing.weighting.custom.CustomModelParser;
+import com.graphhopper.storage.BaseGraph;
+import com.graphhopper.storage.DAType;
 import com.graphhopper.storage.IntsRef;
 import com.graphhopper.storage.index.LocationIndexTree;
 import com.graphhopper.storage.index.Snap;
@@ -42,6 +47,7 @@ import com.graphhopper.util.details.PathDetail;
 import com.graphhopper.util.exceptions.ConnectionNotFoundException;
 import com.graphhopper.util.exceptions.MaximumNodesExceededException;
 import com.graphhopper.util.exceptions.PointDistanceExceededException;
+import com.graphhopper.util.exceptions.PointOutOfBoundsException;
 import com.graphhopper.util.shapes.BBox;
 import com.graphhopper.util.shapes.GHPoint;
 import com.graphhopper.util.shapes.GHPoint3D;
@@ -49,6 +55,7 @@ import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Disabled;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.CsvSource;
 import org.junit.jupiter.params.provider.ValueSource;
@@ -56,8 +63,14 @@ import org.locationtech.jts.geom.Coordinate;
 import org.locationtech.jts.geom.GeometryFactory;
 
 import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
 
 import static com.graphhopper.json.Statement.If;
 import static com.graphhopper.json.Statement.Op.LIMIT;
@@ -141,6 +154,40 @@ public class GraphHopperTest {
         assertTrue(rsp.getErrors().toString().contains("ConnectionNotFoundException"), rsp.getErrors().toString());
     }
 
+    @Test
+    public void testWayThreads() {
+        GraphHopper sequential = createMonacoHopperWithWayThreads(1);
+        GraphHopper parallel = createMonacoHopperWithWayThreads(4);
+        BaseGraph seqGraph = sequential.getBaseGraph();
+        BaseGraph parGraph = parallel.getBaseGraph();
+        assertEquals(seqGraph.getNodes(), parGraph.getNodes());
+        assertEquals(seqGraph.getEdges(), parGraph.getEdges());
+        AllEdgesIterator iter = seqGraph.getAllEdges();
+        while (iter.next()) {
+            EdgeIteratorState edge = parGraph.getEdgeIteratorState(iter.getEdge(), Integer.MIN_VALUE);
+            assertEquals(iter.getBaseNode(), edge.getBaseNode());
+            assertEquals(iter.getAdjNode(), edge.getAdjNode());
+            assertEquals(iter.getDistance(), edge.getDistance());
+            assertEquals(iter.getFlags(), edge.getFlags(), "flags of edge " + iter.getEdge());
+            assertEquals(iter.getKeyValues(), edge.getKeyValues());
+            assertEquals(iter.fetchWayGeometry(FetchMode.ALL), edge.fetchWayGeometry(FetchMode.ALL));
+        }
+        sequential.close();
+        parallel.close();
+    }
+
+    private GraphHopper createMonacoHopperWithWayThreads(int wayThreads) {
+        GraphHopper hopper = new GraphHopper().
+                setGraphHopperLocation(GH_LOCATION).
+                setOSMFile(MONACO).
+                setEncodedValuesString("car_access, car_average_speed, bike_access, bike_average_speed, bike_priority, road_class, max_speed, country").
+                setProfiles(TestProfiles.accessAndSpeed("car")).
+                setStoreOnFlush(false);
+        hopper.getReaderConfig().setWayThreads(wayThreads);
+        hopper.importOrLoad();
+        return hopper;
+    }
+
     @Test
     public void testMonacoWithInstructions() {
         final String profile = "profile";
@@ -288,6 +335,221 @@ public class GraphHopperTest {
         }
     }
 
+    @Test
+    public void testLoadReadOnlyMMap() {
+        final String profile = "profile";
+        GraphHopperConfig config = new GraphHopperConfig().
+                putObject("graph.location", GH_LOCATION).
+                putObject("datareader.file", MONACO).
+                putObject("graph.encoded_values", "car_access, car_average_speed").
+                putObject("import.osm.ignored_highways", "").
+                setProfiles(List.of(TestProfiles.accessAndSpeed(profile, "car"))).
+                setCHProfiles(List.of(new CHProfile(profile)));
+        GraphHopper hopper = new GraphHopper().init(config);
+        hopper.importOrLoad();
+        GHRequest req = new GHRequest(43.727687, 7.418737, 43.74958, 7.436566).setProfile(profile);
+        ResponsePath expected = hopper.route(req).getBest();
+        hopper.close();
+
+        // two instances can map the same files at the same time
+        config.putObject("graph.dataaccess.default_type", "MMAP_RO");
+        GraphHopper first = new GraphHopper().init(config);
+        GraphHopper second = new GraphHopper().init(config);
+        assertFalse(first.isAllowWrites());
+        assertTrue(first.load());
+        assertTrue(second.load());
+        assertEquals(DAType.MMAP_RO, first.getBaseGraph().getDirectory().getDAs().get("nodes").getType());
+        assertFalse(first.getBaseGraph().getDirectory().getDAs().get("nodes").getType().isAllowWrites());
+        for (GraphHopper gh : List.of(first, second)) {
+            ResponsePath path = gh.route(req).getBest();
+            assertEquals(expected.getDistance(), path.getDistance(), 1.e-6);
+            assertEquals(expected.getTime(), path.getTime());
+            assertEquals(expected.getPoints(), path.getPoints());
+        }
+        first.close();
+        second.close();
+        assertTrue(new File(GH_LOCATION).exists());
+    }
+
+    @Test
+    public void testAdjacencyArray() {
+        final String profile = "profile";
+        GraphHopperConfig config = new GraphHopperConfig().
+                putObject("graph.location", GH_LOCATION).
+                putObject("datareader.file", MONACO).
+                putObject("graph.encoded_values", "car_access, car_average_speed").
+                putObject("import.osm.ignored_highways", "").
+                setProfiles(List.of(TestProfiles.accessAndSpeed(profile, "car")));
+        GraphHopper hopper = new GraphHopper().init(config);
+        hopper.importOrLoad();
+        GHRequest req = new GHRequest(43.727687, 7.418737, 43.74958, 7.436566).setProfile(profile);
+        ResponsePath expected = hopper.route(req).getBest();
+        assertFalse(hopper.getBaseGraph().isFrozen());
+        hopper.close();
+
+        // without any preparation the graph is frozen only to build the adjacency array
+        config.putObject("graph.adjacency_array", true);
+        for (int i = 0; i < 2; i++) {
+            hopper = new GraphHopper().init(config);
+            hopper.importOrLoad();
+            assertTrue(hopper.getBaseGraph().isFrozen());
+            ResponsePath path = hopper.route(req).getBest();
+            assertEquals(expected.getDistance(), path.getDistance(), 1.e-6);
+            assertEquals(expected.getTime(), path.getTime());
+            assertEquals(expected.getPoints(), path.getPoints());
+            hopper.close();
+        }
+    }
+
+    @Test
+    public void testPrecomputedWeights() {
+        GraphHopper hopper = new GraphHopper().
+                setGraphHopperLocation(GH_LOCATION).
+                setOSMFile(MONACO).
+                setEncodedValuesString("car_access, car_average_speed, road_class").
+                setProfiles(TestProfiles.accessAndSpeed("car")).
+                setPrecomputedWeightsProfiles(List.of("car")).
+                setStoreOnFlush(true);
+        hopper.importOrLoad();
+        assertTrue(new File(GH_LOCATION, PrecomputedWeights.getStorageName("car")).exists());
+        hopper.close();
+
+        hopper = new GraphHopper().
+                setGraphHopperLocation(GH_LOCATION).
+                setEncodedValuesString("car_access, car_average_speed, road_class").
+                setProfiles(TestProfiles.accessAndSpeed("car")).
+                setPrecomputedWeightsProfiles(List.of("car"));
+        hopper.importOrLoad();
+        Random rnd = new Random(42);
+        for (int i = 0; i < 20; i++) {
+            GHRequest req = new GHRequest(43.727 + rnd.nextDouble() * 0.02, 7.41 + rnd.nextDouble() * 0.02,
+                    43.727 + rnd.nextDouble() * 0.02, 7.41 + rnd.nextDouble() * 0.02).setProfile("car");
+            GHResponse rsp = hopper.route(req);
+            assertFalse(rsp.hasErrors(), rsp.getErrors().toString());
+            // a request custom model, even an empty one, cannot use the precomputed weights
+            GHResponse expected = hopper.route(req.setCustomModel(new CustomModel()));
+            assertFalse(expected.hasErrors(), expected.getErrors().toString());
+            assertEquals(expected.getBest().getDistance(), rsp.getBest().getDistance(), 1.e-6, "request " + i);
+            assertEquals(expected.getBest().getTime(), rsp.getBest().getTime(), "request " + i);
+            assertEquals(expected.getBest().getRouteWeight(), rsp.getBest().getRouteWeight(), 1.e-3, "request " + i);
+        }
+        hopper.close();
+    }
+
+    @Test
+    public void testHasSameEncodedValues() {
+        EncodingManager em1 = EncodingManager.start().add(Lanes.create()).add(Roundabout.create()).build();
+        EncodingManager em2 = EncodingManager.start().add(Lanes.create()).add(Roundabout.create()).build();
+        BaseGraph graph = new BaseGraph.Builder(em1).create();
+        graph.edge(0, 1).set(em1.getIntEncodedValue(Lanes.KEY), 3);
+        // only the maximum value differs
+        assertNotEquals(em1.toEncodedValuesAsString(), em2.toEncodedValuesAsString());
+        assertTrue(GraphHopper.hasSameEncodedValues(em1, em2));
+
+        EncodingManager moreBits = EncodingManager.start().add(new IntEncodedValueImpl(Lanes.KEY, 4, false)).add(Roundabout.create()).build();
+        assertFalse(GraphHopper.hasSameEncodedValues(em1, moreBits));
+        EncodingManager otherEncodedValues = EncodingManager.start().add(Lanes.create()).add(Roundabout.create()).add(Crossing.create()).build();
+        assertFalse(GraphHopper.hasSameEncodedValues(em1, otherEncodedValues));
+    }
+
+    @Test
+    public void testPrewarmCustomModels(@TempDir Path dir) throws IOException {
+        Path classCacheDir = dir.resolve("classes");
+        Path prewarmFile = dir.resolve("prewarm.json");
+        // the decimal encoded value in the condition makes sure that the custom model is compiled and not evaluated via a lookup table
+        Files.writeString(prewarmFile, "// popular custom models\n" +
+                "[{\"profile\": \"car\", \"custom_model\": {\"priority\": [{\"if\": \"road_class == TERTIARY && car_average_speed > 50\", \"multiply_by\": \"0.35\"}]}}]");
+        CustomModelParser.setClassCacheDirectory(classCacheDir);
+        try {
+            GraphHopper hopper = new GraphHopper().
+                    setGraphHopperLocation(GH_LOCATION).
+                    setOSMFile(MONACO).
+                    setEncodedValuesString("car_access, car_average_speed, road_class").
+                    setProfiles(TestProfiles.accessAndSpeed("car")).
+                    setStoreOnFlush(true);
+            hopper.importOrLoad();
+            hopper.close();
+            long classFiles = countFiles(classCacheDir);
+
+            hopper = new GraphHopper().
+                    setGraphHopperLocation(GH_LOCATION).
+                    setEncodedValuesString("car_access, car_average_speed, road_class").
+                    setProfiles(TestProfiles.accessAndSpeed("car")).
+                    setCustomModelPrewarmFile(prewarmFile.toString());
+            hopper.importOrLoad();
+            assertEquals(classFiles + 1, countFiles(classCacheDir));
+            hopper.close();
+
+            Files.writeString(prewarmFile, "[{\"profile\": \"bike\"}]");
+            hopper = new GraphHopper().
+                    setGraphHopperLocation(GH_LOCATION).
+                    setEncodedValuesString("car_access, car_average_speed, road_class").
+                    setProfiles(TestProfiles.accessAndSpeed("car")).
+                    setCustomModelPrewarmFile(prewarmFile.toString());
+            IllegalArgumentException ex = assertThrows(IllegalArgumentException.class, hopper::importOrLoad);
+            assertEquals("Unknown profile 'bike' in " + prewarmFile, ex.getMessage());
+            hopper.close();
+        } finally {
+            CustomModelParser.setClassCacheDirectory(null);
+        }
+    }
+
+    private static long countFiles(Path dir) throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.count();
+        }
+    }
+
+    @Test
+    public void testRouteBatch() {
+        GraphHopper hopper = new GraphHopper().
+                setGraphHopperLocation(GH_LOCATION).
+                setOSMFile(MONACO).
+                setEncodedValuesString("car_access, car_average_speed, foot_access, foot_average_speed, foot_priority").
+                setProfiles(TestProfiles.accessAndSpeed("car"), TestProfiles.accessSpeedAndPriority("foot")).
+                setStoreOnFlush(true);
+        hopper.getCHPreparationHandler().setCHProfiles(new CHProfile("car"));
+        hopper.getRouterConfig().setBatchThreads(3);
+        hopper.importOrLoad();
+
+        Random rnd = new Random(123);
+        List<GHRequest> requests = new ArrayList<>();
+        for (int i = 0; i < 30; i++)
+            requests.add(new GHRequest(43.727 + rnd.nextDouble() * 0.02, 7.41 + rnd.nextDouble() * 0.02,
+                    43.727 + rnd.nextDouble() * 0.02, 7.41 + rnd.nextDouble() * 0.02).setProfile(i % 3 == 0 ? "foot" : "car"));
+        // a request with an error does not stop the others
+        requests.add(new GHRequest(43.727, 7.41, 45.0, 7.41).setProfile("car"));
+        requests.add(new GHRequest(43.727, 7.41, 43.74, 7.42).setProfile("unknown"));
+
+        List<GHResponse> responses = hopper.routeBatch(requests);
+        assertEquals(requests.size(), responses.size());
+        for (int i = 0; i < requests.size(); i++) {
+            GHResponse expected = hopper.route(requests.get(i));
+            GHResponse rsp = responses.get(i);
+            assertEquals(expected.hasErrors(), rsp.hasErrors(), "request " + i);
+            if (expected.hasErrors()) {
+                assertEquals(expected.getErrors().toString(), rsp.getErrors().toString(), "request " + i);
+                continue;
+            }
+            assertEquals(expected.getBest().getDistance(), rsp.getBest().getDistance(), 1.e-6, "request " + i);
+            assertEquals(expected.getBest().getPoints(), rsp.getBest().getPoints(), "request " + i);
+        }
+        assertTrue(responses.get(30).getErrors().get(0) instanceof PointOutOfBoundsException, responses.get(30).getErrors().toString());
+
+        Set<Integer> indices = ConcurrentHashMap.newKeySet();
+        hopper.routeBatch(requests, (rsp, index) -> assertTrue(indices.add(index)));
+        assertEquals(requests.size(), indices.size());
+
+        hopper.getRouterConfig().setMaxBatchSize(10);
+        assertThrows(IllegalArgumentException.class, () -> hopper.routeBatch(requests));
+
+        // all batches share one executor, which is shut down with the GraphHopper instance
+        ExecutorService batchExecutor = hopper.getBatchExecutor();
+        assertSame(batchExecutor, hopper.getBatchExecutor());
+        hopper.close();
+        assertTrue(batchExecutor.isShutdown());
+    }
+
     private void testImportCloseAndLoad(boolean ch, boolean lm) {
         final String profileName = "profile";
         GraphHopper hopper = new GraphHopper().
@@ -1704,6 +1966,47 @@ public class GraphHopperTest {
         assertEquals(3587, response.getBest().getDistance(), 1);
     }
 
+    @Test
+    public void testCustomizableCH() {
+        final String profile = "profile";
+        GraphHopper hopper = new GraphHopper().
+                setGraphHopperLocation(GH_LOCATION).
+                setOSMFile(MONACO).
+                setEncodedValuesString("car_access, car_average_speed").
+                setProfiles(TestProfiles.accessAndSpeed(profile, "car")).
+                setStoreOnFlush(true);
+        hopper.getCHPreparationHandler().setCHProfiles(new CHProfile(profile)).setCustomizable(true);
+        hopper.setMinNetworkSize(0);
+        hopper.importOrLoad();
+
+        for (double distanceInfluence : new double[]{0, 70, 1000}) {
+            CustomModel customModel = new CustomModel().setDistanceInfluence(distanceInfluence);
+            GHRequest req = new GHRequest(43.727687, 7.418737, 43.74958, 7.436566).
+                    setCustomModel(customModel).
+                    setProfile(profile);
+            GHResponse flexResponse = hopper.route(req.putHint(CH.DISABLE, true));
+            assertFalse(flexResponse.hasErrors(), flexResponse.getErrors().toString());
+            GHResponse cchResponse = hopper.route(req.putHint(CH.DISABLE, false));
+            assertFalse(cchResponse.hasErrors(), cchResponse.getErrors().toString());
+            assertEquals(flexResponse.getBest().getRouteWeight(), cchResponse.getBest().getRouteWeight(), 1.e-2);
+            assertEquals(flexResponse.getBest().getDistance(), cchResponse.getBest().getDistance(), 1);
+            assertTrue(cchResponse.getHints().getLong("visited_nodes.sum", 0) < flexResponse.getHints().getLong("visited_nodes.sum", 0));
+        }
+        hopper.close();
+
+        // the topology does not depend on the profile and is loaded from disk
+        hopper = new GraphHopper().
+                setGraphHopperLocation(GH_LOCATION).
+                setProfiles(TestProfiles.accessAndSpeed(profile, "car"));
+        hopper.getCHPreparationHandler().setCHProfiles(new CHProfile(profile)).setCustomizable(true);
+        hopper.load();
+        GHResponse response = hopper.route(new GHRequest(43.727687, 7.418737, 43.74958, 7.436566).
+                setCustomModel(new CustomModel().setDistanceInfluence(70d)).
+                setProfile(profile));
+        assertFalse(response.hasErrors(), response.getErrors().toString());
+        hopper.close();
+    }
+
     @Test
     public void testCreateWeightingHintsMerging() {
         GraphHopper hopper = new GraphHopper().
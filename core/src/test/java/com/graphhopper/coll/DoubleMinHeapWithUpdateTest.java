@@ -0,0 +1,130 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.graphhopper.coll;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class DoubleMinHeapWithUpdateTest implements BinaryHeapTestInterface {
+
+    private DoubleMinHeapWithUpdate heap;
+
+    @Override
+    public void create(int capacity) {
+        heap = new DoubleMinHeapWithUpdate(capacity);
+    }
+
+    @Override
+    public int size() {
+        return heap.size();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return heap.isEmpty();
+    }
+
+    @Override
+    public void push(int id, float val) {
+        heap.push(id, val);
+    }
+
+    boolean contains(int id) {
+        return heap.contains(id);
+    }
+
+    @Override
+    public int peekId() {
+        return heap.peekId();
+    }
+
+    @Override
+    public float peekVal() {
+        return (float) heap.peekValue();
+    }
+
+    @Override
+    public void update(int id, float val) {
+        heap.update(id, val);
+    }
+
+    @Override
+    public int poll() {
+        return heap.poll();
+    }
+
+    @Override
+    public void clear() {
+        heap.clear();
+    }
+
+    @Test
+    void grow() {
+        create(2);
+        for (int i = 0; i < 100; i++)
+            heap.push(99 - i, i);
+        assertEquals(100, size());
+        assertTrue(heap.getCapacity() >= 100);
+        heap.update(0, -1);
+        assertEquals(0, poll());
+        for (int i = 0; i < 99; i++)
+            assertEquals(99 - i, poll());
+        assertTrue(isEmpty());
+    }
+
+    @Test
+    void doublePrecision() {
+        create(4);
+        // these values cannot be distinguished as floats
+        heap.push(0, 1_000_000.2);
+        heap.push(1, 1_000_000.1);
+        assertEquals(1_000_000.1, heap.peekValue());
+        assertEquals(1, poll());
+        assertEquals(0, poll());
+    }
+
+    @Test
+    void duplicateElements() {
+        create(5);
+        push(1, 0.2f);
+        push(0, 0.4f);
+        push(2, 0.1f);
+        assertEquals(2, poll());
+        // pushing 2 again is ok because it was polled before
+        push(2, 0.6f);
+        // but now its not ok to push it again
+        assertThrows(IllegalStateException.class, () -> push(2, 0.4f));
+        assertThrows(IllegalArgumentException.class, () -> push(-1, 0.4f));
+    }
+
+    @Test
+    void containsAfterClear() {
+        create(4);
+        push(1, 0.1f);
+        push(2, 0.1f);
+        assertEquals(2, size());
+        clear();
+        assertFalse(contains(0));
+        assertFalse(contains(1));
+        assertFalse(contains(2));
+        assertFalse(contains(10));
+        assertThrows(IllegalStateException.class, () -> update(1, 0.3f));
+    }
+}
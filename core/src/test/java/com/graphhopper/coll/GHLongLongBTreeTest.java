@@ -19,9 +19,7 @@ package com.graphhopper.coll;
 
 import org.junit.jupiter.api.Test;
 
-import java.util.LinkedHashSet;
-import java.util.Random;
-import java.util.Set;
+import java.util.*;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -251,4 +249,24 @@ public class GHLongLongBTreeTest {
             }
         }
     }
+
+    @Test
+    public void testDrain() {
+        Random rand = new Random(0);
+        GHLongLongBTree instance = new GHLongLongBTree(5, 4, -1);
+        Set<Long> keys = new TreeSet<>();
+        for (int i = 0; i < 1000; i++) {
+            long key = rand.nextInt(100_000);
+            keys.add(key);
+            instance.put(key, key % 1000);
+        }
+        List<Long> visited = new ArrayList<>();
+        instance.drain((key, value) -> {
+            assertEquals(key % 1000, value);
+            visited.add(key);
+        });
+        assertEquals(new ArrayList<>(keys), visited);
+        assertEquals(0, instance.getSize());
+        assertEquals(-1, instance.get(visited.get(0)));
+    }
 }
@@ -0,0 +1,131 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.coll;
+
+import com.graphhopper.storage.RAMDirectory;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class GHSortedLongLongMapTest {
+
+    @Test
+    public void testPutAndGet() {
+        GHSortedLongLongMap map = new GHSortedLongLongMap(new RAMDirectory(), "test", 4, -1);
+        assertEquals(-1, map.get(5));
+        assertEquals(-1, map.put(5, 10));
+        assertEquals(-1, map.put(7, 14));
+        assertEquals(-1, map.put(Long.MAX_VALUE, 3));
+        assertEquals(10, map.get(5));
+        assertEquals(14, map.get(7));
+        assertEquals(3, map.get(Long.MAX_VALUE));
+        assertEquals(-1, map.get(6));
+        assertEquals(-1, map.get(4));
+
+        // update in place
+        assertEquals(14, map.put(7, 15));
+        assertEquals(15, map.get(7));
+        assertEquals(3, map.getSize());
+
+        // smaller keys are still accepted
+        assertEquals(-1, map.put(-Long.MAX_VALUE, -5));
+        assertEquals(-1, map.put(6, 12));
+        assertEquals(-5, map.get(-Long.MAX_VALUE));
+        assertEquals(12, map.get(6));
+        assertEquals(12, map.put(6, 13));
+        assertEquals(13, map.get(6));
+        assertEquals(5, map.getSize());
+
+        IllegalArgumentException ex = assertThrows(IllegalArgumentException.class, () -> map.put(8, -1));
+        assertTrue(ex.getMessage().contains("Value cannot be the 'empty value' -1"));
+        assertThrows(IllegalArgumentException.class, () -> map.put(8, 1L << 31));
+
+        map.clear();
+        assertEquals(0, map.getSize());
+        assertEquals(-1, map.get(5));
+    }
+
+    @Test
+    public void testMoveFromBTreeDoesNotIncreasePeakMemory() {
+        // like the OSM node IDs of the ways in pass 1 of the import: random order, small gaps between the sorted keys
+        Random rand = new Random(0);
+        GHLongLongBTree bTree = new GHLongLongBTree(200, 5, -1);
+        for (int i = 0; i < 1_000_000; i++)
+            bTree.put(rand.nextInt(4_000_000), rand.nextInt(3));
+        long size = bTree.getSize();
+        long bTreeBytes = bTree.getCapacity();
+        GHSortedLongLongMap map = new GHSortedLongLongMap(new RAMDirectory(), "test", 5, -1);
+        long[] peakBytes = {0};
+        long[] count = {0};
+        bTree.drain((key, value) -> {
+            map.put(key, value);
+            if (++count[0] % 10_000 == 0)
+                peakBytes[0] = Math.max(peakBytes[0], bTree.getCapacity() + map.getCapacity());
+        });
+        assertEquals(size, map.getSize());
+        assertEquals(0, bTree.getSize());
+
+        // the sorted map allocates the first segment of each storage right away, but apart from that the b-tree is
+        // released while the sorted map grows, so we never need the memory for both maps
+        GHSortedLongLongMap emptyMap = new GHSortedLongLongMap(new RAMDirectory(), "test", 5, -1);
+        emptyMap.put(0, 0);
+        assertTrue(peakBytes[0] <= bTreeBytes + emptyMap.getCapacity(), peakBytes[0] + " vs. " + bTreeBytes);
+        assertTrue(map.getCapacity() < 0.6 * bTreeBytes, map.getCapacity() + " vs. " + bTreeBytes);
+    }
+
+    @Test
+    public void testRandom() {
+        long seed = System.nanoTime();
+        Random rand = new Random(seed);
+        for (int bytesPerValue = 4; bytesPerValue <= 8; bytesPerValue++) {
+            GHSortedLongLongMap map = new GHSortedLongLongMap(new RAMDirectory(), "test", bytesPerValue, Long.MIN_VALUE);
+            Map<Long, Long> expected = new HashMap<>();
+            long maxValue = map.getMaxValue();
+            long key = -rand.nextInt(1000);
+            for (int i = 0; i < 10_000; i++) {
+                // mostly increasing keys with small and some large gaps, but also some keys in random order
+                if (rand.nextInt(100) == 0)
+                    key += rand.nextLong() >>> 8;
+                else
+                    key += 1 + rand.nextInt(rand.nextBoolean() ? 10 : 100_000);
+                long k = rand.nextInt(50) == 0 ? rand.nextLong() : key;
+                long value = rand.nextLong() % maxValue;
+                assertEquals(expected.getOrDefault(k, Long.MIN_VALUE), map.put(k, value), "seed: " + seed);
+                expected.put(k, value);
+                // update some existing entries
+                if (rand.nextInt(10) == 0) {
+                    long existing = k - rand.nextInt(3);
+                    if (expected.containsKey(existing)) {
+                        map.put(existing, 42);
+                        expected.put(existing, 42L);
+                    }
+                }
+            }
+            assertEquals(expected.size(), map.getSize());
+            for (Map.Entry<Long, Long> e : expected.entrySet()) {
+                assertEquals(e.getValue(), map.get(e.getKey()), "seed: " + seed + ", key: " + e.getKey());
+                if (!expected.containsKey(e.getKey() + 1))
+                    assertEquals(Long.MIN_VALUE, map.get(e.getKey() + 1), "seed: " + seed);
+            }
+        }
+    }
+}
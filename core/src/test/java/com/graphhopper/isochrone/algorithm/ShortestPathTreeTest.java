@@ -373,6 +373,55 @@ public class ShortestPathTreeTest {
         );
     }
 
+    @Test
+    public void testPrimitiveLabelsAndReusedStore() {
+        // a tiny store needs to grow during the search
+        SPTLabelStore store = new SPTLabelStore(1, 2);
+        for (TraversalMode traversalMode : new TraversalMode[]{TraversalMode.NODE_BASED, TraversalMode.EDGE_BASED}) {
+            List<ShortestPathTree.IsoLabel> expected = new ArrayList<>();
+            ShortestPathTree adapter = new ShortestPathTree(graph, createWeighting(), false, traversalMode);
+            adapter.setTimeLimit(60_000);
+            adapter.search(0, expected::add);
+
+            ShortestPathTree instance = new ShortestPathTree(graph, createWeighting(), false, traversalMode, store);
+            instance.setTimeLimit(60_000);
+            List<Integer> labels = new ArrayList<>();
+            instance.searchLabels(0, labels::add);
+            assertEquals(expected.size(), labels.size());
+            assertEquals(adapter.getVisitedNodes(), instance.getVisitedNodes());
+            for (int i = 0; i < labels.size(); i++) {
+                int label = labels.get(i);
+                ShortestPathTree.IsoLabel isoLabel = expected.get(i);
+                assertEquals(isoLabel.time, instance.getTime(label));
+                assertEquals(isoLabel.distance, instance.getDistance(label), 1.e-6);
+                assertEquals(isoLabel.weight, instance.getWeight(label), 1.e-6);
+                assertEquals(isoLabel.time, instance.getExploreValue(label), 1.e-6);
+                if (i == 0) {
+                    assertEquals(0, label);
+                    assertEquals(-1, instance.getParent(label));
+                    assertEquals(EdgeIterator.NO_EDGE, instance.getEdge(label));
+                } else {
+                    assertEquals(isoLabel.parent.node, instance.getNode(instance.getParent(label)));
+                    assertTrue(graph.isAdjacentToNode(instance.getEdge(label), instance.getNode(label)));
+                }
+            }
+            assertEquals(store.size(), instance.getLabelCount());
+        }
+
+        ShortestPathTree first = new ShortestPathTree(graph, createWeighting(), false, TraversalMode.NODE_BASED, store);
+        first.setTimeLimit(25_000);
+        first.searchLabels(0, l -> {
+        });
+        assertEquals(2, first.getIsochroneEdges().size());
+        ShortestPathTree second = new ShortestPathTree(graph, createWeighting(), false, TraversalMode.NODE_BASED, store);
+        second.setTimeLimit(25_000);
+        second.searchLabels(1, l -> {
+        });
+        // the labels of the first tree were overwritten by the second search
+        assertThrows(IllegalStateException.class, () -> first.getNode(0));
+        assertEquals(1, second.getNode(0));
+    }
+
     EdgeIteratorState findEdge(int a, int b) {
         EdgeIterator edgeIterator = graph.createEdgeExplorer().setBaseNode(a);
         while (edgeIterator.next()) {
@@ -21,6 +21,7 @@ import com.graphhopper.GHRequest;
 import com.graphhopper.GHResponse;
 import com.graphhopper.GraphHopper;
 import com.graphhopper.GraphHopperTest;
+import com.graphhopper.config.CHProfile;
 import com.graphhopper.reader.ReaderElement;
 import com.graphhopper.reader.ReaderRelation;
 import com.graphhopper.reader.ReaderWay;
@@ -407,6 +408,67 @@ public class OSMReaderTest {
         assertEquals(3, notBlocked);
     }
 
+    @Test
+    public void testApplyChanges() {
+        GraphHopper hopper = createHopperForChanges().setOSMFile(getClass().getResource(file1).getFile()).importOrLoad();
+        int edges = hopper.getBaseGraph().getEdges();
+        // values derived from node tags cannot be parsed again and must be kept
+        EnumEncodedValue<Crossing> crossingEnc = hopper.getEncodingManager().getEnumEncodedValue(Crossing.KEY, Crossing.class);
+        hopper.getBaseGraph().getEdgeIteratorState(findEdgeOfWay(hopper, 11), Integer.MIN_VALUE).set(crossingEnc, Crossing.TRAFFIC_SIGNALS);
+        hopper.getBaseGraph().flush();
+        hopper.close();
+
+        hopper = createHopperForChanges().importOSMChanges(new File(getClass().getResource("test-osm-change.osc").getFile()));
+        BaseGraph graph = hopper.getBaseGraph();
+        // the created way is not added
+        assertEquals(edges, graph.getEdges());
+        BooleanEncodedValue accessEnc = hopper.getEncodingManager().getBooleanEncodedValue(VehicleAccess.key("car"));
+        IntEncodedValue osmWayIdEnc = hopper.getEncodingManager().getIntEncodedValue(OSMWayID.KEY);
+        AllEdgesIterator iter = graph.getAllEdges();
+        while (iter.next()) {
+            if (iter.get(osmWayIdEnc) == 11) {
+                assertEquals("street 124", iter.getName());
+                assertFalse(iter.get(accessEnc));
+                assertFalse(iter.getReverse(accessEnc));
+            } else {
+                // the deleted way is blocked
+                assertEquals(10, iter.get(osmWayIdEnc));
+                assertEquals("route 666", iter.getName());
+                assertFalse(iter.get(accessEnc));
+                assertFalse(iter.getReverse(accessEnc));
+            }
+        }
+        assertEquals(Crossing.TRAFFIC_SIGNALS, graph.getEdgeIteratorState(findEdgeOfWay(hopper, 11), Integer.MIN_VALUE).
+                get(hopper.getEncodingManager().getEnumEncodedValue(Crossing.KEY, Crossing.class)));
+        assertTrue(hopper.getCHGraphs().containsKey("car"));
+        hopper.close();
+
+        // the changes are stored
+        hopper = createHopperForChanges().importOrLoad();
+        assertEquals("street 124", hopper.getBaseGraph().getEdgeIteratorState(
+                findEdgeOfWay(hopper, 11), Integer.MIN_VALUE).getName());
+        hopper.close();
+    }
+
+    private GraphHopper createHopperForChanges() {
+        GraphHopper hopper = new GraphHopper().
+                setEncodedValuesString("car_access, car_average_speed, osm_way_id, crossing").
+                setGraphHopperLocation(dir).
+                setProfiles(TestProfiles.accessAndSpeed("car")).
+                setMinNetworkSize(0);
+        hopper.getCHPreparationHandler().setCHProfiles(new CHProfile("car"));
+        return hopper;
+    }
+
+    private static int findEdgeOfWay(GraphHopper hopper, int osmWayId) {
+        IntEncodedValue osmWayIdEnc = hopper.getEncodingManager().getIntEncodedValue(OSMWayID.KEY);
+        AllEdgesIterator iter = hopper.getBaseGraph().getAllEdges();
+        while (iter.next())
+            if (iter.get(osmWayIdEnc) == osmWayId)
+                return iter.getEdge();
+        throw new IllegalArgumentException("No edge found for OSM way " + osmWayId);
+    }
+
     @Test
     public void avoidsLoopEdges_1525() {
         // loops in OSM should be avoided by adding additional tower node (see #1525, #1531)
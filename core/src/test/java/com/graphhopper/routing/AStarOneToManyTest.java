@@ -0,0 +1,146 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing;
+
+import com.carrotsearch.hppc.IntArrayList;
+import com.graphhopper.routing.ev.DecimalEncodedValue;
+import com.graphhopper.routing.ev.DecimalEncodedValueImpl;
+import com.graphhopper.routing.ev.TurnCost;
+import com.graphhopper.routing.util.EncodingManager;
+import com.graphhopper.routing.util.TraversalMode;
+import com.graphhopper.routing.weighting.BeelineWeightApproximator;
+import com.graphhopper.routing.weighting.SpeedWeighting;
+import com.graphhopper.routing.weighting.Weighting;
+import com.graphhopper.storage.BaseGraph;
+import com.graphhopper.util.EdgeIterator;
+import com.graphhopper.util.EdgeIteratorState;
+import com.graphhopper.util.GHUtility;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.util.List;
+import java.util.Random;
+
+import static com.graphhopper.util.EdgeIterator.ANY_EDGE;
+import static com.graphhopper.util.EdgeIterator.NO_EDGE;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AStarOneToManyTest {
+    private DecimalEncodedValue speedEnc;
+    private DecimalEncodedValue turnCostEnc;
+    private BaseGraph graph;
+    private Weighting weighting;
+
+    @BeforeEach
+    public void setup() {
+        speedEnc = new DecimalEncodedValueImpl("speed", 5, 5, true);
+        turnCostEnc = TurnCost.create("car", 10);
+        EncodingManager em = EncodingManager.start().add(speedEnc).addTurnCostEncodedValue(turnCostEnc).build();
+        graph = new BaseGraph.Builder(em).withTurnCosts(true).create();
+        weighting = new SpeedWeighting(speedEnc, turnCostEnc, graph.getTurnCostStorage(), 40);
+    }
+
+    @ParameterizedTest
+    @ValueSource(booleans = {false, true})
+    public void compareWithBidirectionalDijkstra(boolean useApproximation) {
+        final long seed = System.nanoTime();
+        Random rnd = new Random(seed);
+        GHUtility.buildRandomGraph(graph, rnd, 100, 2.2, true, speedEnc, null, 0.8, 0.8);
+        GHUtility.addRandomTurnCosts(graph, seed, null, turnCostEnc, 10, graph.getTurnCostStorage());
+        for (int i = 0; i < 100; i++) {
+            int source = rnd.nextInt(graph.getNodes());
+            int fromOutEdge = getAdjEdge(rnd, source);
+            int[] toNodes = new int[rnd.nextInt(10) + 1];
+            int[] toInEdges = new int[toNodes.length];
+            for (int j = 0; j < toNodes.length; j++) {
+                // the candidates of map matching often share the same node
+                toNodes[j] = j > 0 && rnd.nextBoolean() ? toNodes[j - 1] : rnd.nextInt(graph.getNodes());
+                toInEdges[j] = getAdjEdge(rnd, toNodes[j]);
+            }
+            AStarOneToMany algo = new AStarOneToMany(graph, weighting, TraversalMode.EDGE_BASED);
+            if (useApproximation)
+                algo.setApproximation(() -> new BeelineWeightApproximator(graph.getNodeAccess(), weighting));
+            List<Path> paths = algo.calcPaths(source, fromOutEdge, toNodes, toInEdges);
+            assertFalse(algo.isStoppedEarly());
+            assertEquals(toNodes.length, paths.size());
+            for (int j = 0; j < toNodes.length; j++) {
+                Path refPath = new DijkstraBidirectionRef(graph, weighting, TraversalMode.EDGE_BASED)
+                        .calcPath(source, toNodes[j], fromOutEdge, toInEdges[j]);
+                Path path = paths.get(j);
+                String msg = "seed: " + seed + ", source: " + source + ", target: " + toNodes[j] + ", fromOutEdge: " + fromOutEdge + ", toInEdge: " + toInEdges[j];
+                assertEquals(refPath.isFound(), path.isFound(), msg);
+                if (!refPath.isFound())
+                    continue;
+                assertEquals(refPath.getWeight(), path.getWeight(), 1.e-3, msg);
+                assertEquals(refPath.getWeight(), calcWeight(path), 1.e-3, msg);
+                assertEquals(source, path.getFromNode(), msg);
+                assertEquals(toNodes[j], path.getEndNode(), msg);
+            }
+        }
+    }
+
+    @Test
+    public void stopEarly() {
+        // 0-1-2-3-4-5-6-7-8-9
+        for (int i = 0; i < 9; i++)
+            graph.edge(i, i + 1).setDistance(100).set(speedEnc, 10, 10);
+        AStarOneToMany algo = new AStarOneToMany(graph, weighting, TraversalMode.EDGE_BASED);
+        algo.setMaxWeightFactor(2);
+        List<Path> paths = algo.calcPaths(0, ANY_EDGE, new int[]{9, 2, 0, 3}, new int[]{ANY_EDGE, ANY_EDGE, ANY_EDGE, NO_EDGE});
+        assertTrue(algo.isStoppedEarly());
+        // node 9 is too far away compared to node 2
+        assertFalse(paths.get(0).isFound());
+        assertEquals(IntArrayList.from(0, 1, 2), paths.get(1).calcNodes());
+        assertEquals(20, paths.get(1).getWeight(), 1.e-6);
+        // the start node itself does not count for the weight factor
+        assertTrue(paths.get(2).isFound());
+        assertEquals(0, paths.get(2).getWeight());
+        assertFalse(paths.get(3).isFound());
+        assertTrue(algo.getVisitedNodes() < 7, "visited nodes: " + algo.getVisitedNodes());
+
+        algo = new AStarOneToMany(graph, weighting, TraversalMode.EDGE_BASED);
+        paths = algo.calcPaths(0, ANY_EDGE, new int[]{9, 2}, new int[]{ANY_EDGE, ANY_EDGE});
+        assertFalse(algo.isStoppedEarly());
+        assertEquals(90, paths.get(0).getWeight(), 1.e-6);
+        assertEquals(20, paths.get(1).getWeight(), 1.e-6);
+    }
+
+    private double calcWeight(Path path) {
+        double weight = 0;
+        int prevEdge = NO_EDGE;
+        for (EdgeIteratorState edge : path.calcEdges()) {
+            weight += GHUtility.calcWeightWithTurnWeight(weighting, edge, false, prevEdge);
+            prevEdge = edge.getEdge();
+        }
+        return weight;
+    }
+
+    private int getAdjEdge(Random rnd, int node) {
+        if (rnd.nextDouble() < 0.3)
+            return ANY_EDGE;
+        if (rnd.nextDouble() < 0.05)
+            return NO_EDGE;
+        IntArrayList edges = new IntArrayList();
+        EdgeIterator iter = graph.createEdgeExplorer().setBaseNode(node);
+        while (iter.next())
+            edges.add(iter.getEdge());
+        return edges.isEmpty() ? ANY_EDGE : edges.get(rnd.nextInt(edges.size()));
+    }
+}
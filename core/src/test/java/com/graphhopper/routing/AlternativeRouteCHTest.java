@@ -17,22 +17,28 @@
  */
 package com.graphhopper.routing;
 
+import com.carrotsearch.hppc.IntHashSet;
 import com.graphhopper.routing.ch.NodeOrderingProvider;
 import com.graphhopper.routing.ch.PrepareContractionHierarchies;
 import com.graphhopper.routing.ev.DecimalEncodedValue;
 import com.graphhopper.routing.ev.DecimalEncodedValueImpl;
 import com.graphhopper.routing.util.EncodingManager;
 import com.graphhopper.routing.weighting.SpeedWeighting;
+import com.graphhopper.routing.weighting.Weighting;
 import com.graphhopper.storage.BaseGraph;
 import com.graphhopper.storage.CHConfig;
 import com.graphhopper.storage.RoutingCHGraph;
 import com.graphhopper.storage.RoutingCHGraphImpl;
+import com.graphhopper.util.EdgeIteratorState;
+import com.graphhopper.util.GHUtility;
 import com.graphhopper.util.PMap;
 import org.junit.jupiter.api.Test;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Random;
 
-import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.*;
 
 public class AlternativeRouteCHTest {
     private final DecimalEncodedValue speedEnc = new DecimalEncodedValueImpl("speed", 5, 5, false);
@@ -116,4 +122,66 @@ public class AlternativeRouteCHTest {
         // 4 -> 11 -> 12 -> 10 is not too long compared to 4 -> 10
     }
 
+    @Test
+    public void testRandomGraph() {
+        final BaseGraph graph = new BaseGraph.Builder(em).create();
+        Random rnd = new Random(123);
+        GHUtility.buildRandomGraph(graph, rnd, 2000, 2.5, false, speedEnc, null, 0.9, 0.8);
+        graph.freeze();
+        SpeedWeighting weighting = new SpeedWeighting(speedEnc);
+        CHConfig chConfig = CHConfig.nodeBased("p", weighting);
+        PrepareContractionHierarchies.Result res = PrepareContractionHierarchies.fromGraph(graph, chConfig).doWork();
+        RoutingCHGraph routingCHGraph = RoutingCHGraphImpl.fromGraph(graph, res.getCHStorage(), res.getCHConfig());
+        long plainVisitedNodes = 0;
+        long alternativeVisitedNodes = 0;
+        int alternatives = 0;
+        for (int i = 0; i < 100; i++) {
+            int s = rnd.nextInt(graph.getNodes());
+            int t = rnd.nextInt(graph.getNodes());
+            DijkstraBidirectionCHNoSOD dijkstra = new DijkstraBidirectionCHNoSOD(routingCHGraph);
+            Path path = dijkstra.calcPath(s, t);
+            plainVisitedNodes += dijkstra.getVisitedNodes();
+            AlternativeRouteCH altDijkstra = new AlternativeRouteCH(routingCHGraph, new PMap());
+            List<AlternativeRouteCH.AlternativeInfo> pathInfos = altDijkstra.calcAlternatives(s, t);
+            alternativeVisitedNodes += altDijkstra.getVisitedNodes();
+            if (!path.isFound()) {
+                assertTrue(pathInfos.isEmpty());
+                continue;
+            }
+            assertEquals(path.getWeight(), pathInfos.get(0).path.getWeight(), 1.e-6);
+            for (int j = 1; j < pathInfos.size(); j++) {
+                Path alternative = pathInfos.get(j).path;
+                assertTrue(alternative.getWeight() >= path.getWeight() - 1.e-6);
+                assertTrue(alternative.getWeight() <= path.getWeight() * 1.25 + 1.e-6);
+                assertEquals(s, alternative.calcNodes().get(0));
+                assertEquals(t, alternative.getEndNode());
+                // the speeds differ, so the share by weight is not the same as the share by distance
+                double share = pathInfos.get(j).shareWeight;
+                assertEquals(sharedWeight(alternative, pathInfos.subList(0, j), weighting) / alternative.getWeight(), share, 1.e-6);
+                assertTrue(share <= 0.8, "share: " + share);
+                alternatives++;
+            }
+        }
+        assertTrue(alternatives > 0);
+        // the alternatives are found in the search spaces of the extended search, unpacking and checking the candidates
+        // must not add much on top
+        assertTrue(alternativeVisitedNodes < 3 * plainVisitedNodes, alternativeVisitedNodes + " vs. " + plainVisitedNodes);
+    }
+
+    private static double sharedWeight(Path path, List<AlternativeRouteCH.AlternativeInfo> others, Weighting weighting) {
+        List<IntHashSet> otherNodes = new ArrayList<>();
+        for (AlternativeRouteCH.AlternativeInfo other : others)
+            otherNodes.add(new IntHashSet(other.path.calcNodes()));
+        double sharedWeight = 0;
+        for (EdgeIteratorState edge : path.calcEdges()) {
+            for (IntHashSet nodes : otherNodes) {
+                if (nodes.contains(edge.getBaseNode()) && nodes.contains(edge.getAdjNode())) {
+                    sharedWeight += weighting.calcEdgeWeight(edge, false);
+                    break;
+                }
+            }
+        }
+        return sharedWeight;
+    }
+
 }
@@ -0,0 +1,161 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing;
+
+import com.graphhopper.routing.ch.PrepareContractionHierarchies;
+import com.graphhopper.routing.ev.DecimalEncodedValue;
+import com.graphhopper.routing.ev.DecimalEncodedValueImpl;
+import com.graphhopper.routing.ev.TurnCost;
+import com.graphhopper.routing.querygraph.QueryGraph;
+import com.graphhopper.routing.querygraph.QueryRoutingCHGraph;
+import com.graphhopper.routing.util.EdgeFilter;
+import com.graphhopper.routing.util.EncodingManager;
+import com.graphhopper.routing.util.TraversalMode;
+import com.graphhopper.routing.weighting.SpeedWeighting;
+import com.graphhopper.routing.weighting.Weighting;
+import com.graphhopper.storage.BaseGraph;
+import com.graphhopper.storage.CHConfig;
+import com.graphhopper.storage.RoutingCHGraph;
+import com.graphhopper.storage.RoutingCHGraphImpl;
+import com.graphhopper.storage.index.LocationIndexTree;
+import com.graphhopper.storage.index.Snap;
+import com.graphhopper.util.GHUtility;
+import org.junit.jupiter.api.RepeatedTest;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static com.graphhopper.util.GHUtility.createRandomSnaps;
+import static org.junit.jupiter.api.Assertions.*;
+
+class ManyToManyCHTest {
+    private final DecimalEncodedValue speedEnc = new DecimalEncodedValueImpl("speed", 5, 5, true);
+    private final EncodingManager encodingManager = EncodingManager.start().add(speedEnc).build();
+    private final BaseGraph graph = new BaseGraph.Builder(encodingManager).create();
+
+    private RoutingCHGraph prepareCH(Weighting weighting) {
+        graph.freeze();
+        CHConfig chConfig = CHConfig.nodeBased("p", weighting);
+        PrepareContractionHierarchies.Result res = PrepareContractionHierarchies.fromGraph(graph, chConfig).doWork();
+        return RoutingCHGraphImpl.fromGraph(graph, res.getCHStorage(), res.getCHConfig());
+    }
+
+    @Test
+    void simpleMatrix() {
+        // 0-1-2-3
+        //   |   |
+        //   4---5   6
+        graph.edge(0, 1).setDistance(100).set(speedEnc, 10, 10);
+        graph.edge(1, 2).setDistance(100).set(speedEnc, 10, 10);
+        graph.edge(2, 3).setDistance(100).set(speedEnc, 10, 10);
+        graph.edge(1, 4).setDistance(100).set(speedEnc, 10, 10);
+        graph.edge(4, 5).setDistance(500).set(speedEnc, 10, 10);
+        // one-way
+        graph.edge(3, 5).setDistance(100).set(speedEnc, 10, 0);
+        // node 6 is isolated
+        graph.getNodeAccess().setNode(6, 0, 0);
+        RoutingCHGraph chGraph = prepareCH(new SpeedWeighting(speedEnc));
+
+        ManyToManyCH.Result result = new ManyToManyCH(chGraph).calcMatrix(new int[]{0, 5, 6}, new int[]{0, 3, 5, 6});
+        assertEquals(3, result.getSources());
+        assertEquals(4, result.getTargets());
+        assertEquals(0, result.getDistance(0, 0), 1.e-6);
+        assertEquals(300, result.getDistance(0, 1), 1.e-6);
+        assertEquals(400, result.getDistance(0, 2), 1.e-6);
+        assertEquals(30_000, result.getTime(0, 1));
+        // we cannot use the one-way in the reverse direction
+        assertEquals(700, result.getDistance(1, 0), 1.e-6);
+        assertEquals(800, result.getDistance(1, 1), 1.e-6);
+        assertEquals(0, result.getWeight(1, 2), 1.e-6);
+        assertEquals(Double.POSITIVE_INFINITY, result.getWeight(0, 3));
+        assertEquals(Long.MAX_VALUE, result.getTime(2, 0));
+        assertEquals(0, result.getWeight(2, 3), 1.e-6);
+    }
+
+    @Test
+    void weightsOnly() {
+        graph.edge(0, 1).setDistance(100).set(speedEnc, 10, 10);
+        graph.edge(1, 2).setDistance(100).set(speedEnc, 10, 10);
+        RoutingCHGraph chGraph = prepareCH(new SpeedWeighting(speedEnc));
+        ManyToManyCH.Result result = new ManyToManyCH(chGraph).setCalcTimeAndDistance(false).calcMatrix(new int[]{0, 2}, new int[]{2});
+        assertEquals(20, result.getWeight(0, 0), 1.e-6);
+        assertEquals(0, result.getWeight(1, 0), 1.e-6);
+        assertEquals(0, result.getTimes().length);
+        assertEquals(0, result.getDistances().length);
+    }
+
+    @RepeatedTest(10)
+    void randomGraphWithVirtualNodes() {
+        long seed = System.nanoTime();
+        Random rnd = new Random(seed);
+        // no offset, otherwise traveling via virtual edges is not the same as taking the direct edge
+        GHUtility.buildRandomGraph(graph, rnd, 100, 2.5, true, speedEnc, null, 0.9, 0);
+        LocationIndexTree locationIndex = new LocationIndexTree(graph, graph.getDirectory());
+        locationIndex.prepareIndex();
+        Weighting weighting = new SpeedWeighting(speedEnc);
+        RoutingCHGraph chGraph = prepareCH(weighting);
+
+        List<Snap> snaps = createRandomSnaps(graph.getBounds(), locationIndex, rnd, 20, false, EdgeFilter.ALL_EDGES);
+        QueryGraph queryGraph = QueryGraph.create(graph, snaps);
+        int[] sources = new int[15];
+        int[] targets = new int[12];
+        for (int i = 0; i < sources.length; i++)
+            sources[i] = rnd.nextInt(queryGraph.getNodes());
+        for (int i = 0; i < targets.length; i++)
+            targets[i] = rnd.nextInt(queryGraph.getNodes());
+
+        ManyToManyCH.Result result = new ManyToManyCH(new QueryRoutingCHGraph(chGraph, queryGraph)).calcMatrix(sources, targets);
+        Weighting queryWeighting = queryGraph.wrapWeighting(weighting);
+        List<String> strictViolations = new ArrayList<>();
+        for (int i = 0; i < sources.length; i++) {
+            for (int j = 0; j < targets.length; j++) {
+                Path refPath = new Dijkstra(queryGraph, queryWeighting, TraversalMode.NODE_BASED).calcPath(sources[i], targets[j]);
+                String msg = "seed: " + seed + ", " + sources[i] + "->" + targets[j];
+                if (!refPath.isFound()) {
+                    assertEquals(Double.POSITIVE_INFINITY, result.getWeight(i, j), msg);
+                    continue;
+                }
+                // the shortcut weights are stored with limited precision
+                assertEquals(refPath.getWeight(), result.getWeight(i, j), 1.e-2, msg);
+                // there can be multiple shortest paths with different distances and times
+                if (Math.abs(refPath.getDistance() - result.getDistance(i, j)) > 1.e-1)
+                    strictViolations.add("wrong distance " + msg + ", expected: " + refPath.getDistance() + ", given: " + result.getDistance(i, j));
+                if (Math.abs(refPath.getTime() - result.getTime(i, j)) > 50)
+                    strictViolations.add("wrong time " + msg + ", expected: " + refPath.getTime() + ", given: " + result.getTime(i, j));
+            }
+        }
+        if (strictViolations.size() > 0.05 * sources.length * targets.length)
+            fail("Too many strict violations: " + strictViolations.size() + "\n" + String.join("\n", strictViolations));
+    }
+
+    @Test
+    void edgeBasedNotSupported() {
+        DecimalEncodedValue speedEnc = new DecimalEncodedValueImpl("speed", 5, 5, true);
+        DecimalEncodedValue turnCostEnc = TurnCost.create("car", 1);
+        EncodingManager em = EncodingManager.start().add(speedEnc).addTurnCostEncodedValue(turnCostEnc).build();
+        BaseGraph graph = new BaseGraph.Builder(em).withTurnCosts(true).create();
+        graph.edge(0, 1).setDistance(100).set(speedEnc, 10, 10);
+        graph.freeze();
+        CHConfig chConfig = CHConfig.edgeBased("p", new SpeedWeighting(speedEnc, turnCostEnc, graph.getTurnCostStorage(), Double.POSITIVE_INFINITY));
+        PrepareContractionHierarchies.Result res = PrepareContractionHierarchies.fromGraph(graph, chConfig).doWork();
+        RoutingCHGraph chGraph = RoutingCHGraphImpl.fromGraph(graph, res.getCHStorage(), res.getCHConfig());
+        assertThrows(IllegalArgumentException.class, () -> new ManyToManyCH(chGraph));
+    }
+}
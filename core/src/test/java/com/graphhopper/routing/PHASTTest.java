@@ -0,0 +1,241 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing;
+
+import com.graphhopper.routing.ch.PrepareContractionHierarchies;
+import com.graphhopper.routing.ev.DecimalEncodedValue;
+import com.graphhopper.routing.ev.DecimalEncodedValueImpl;
+import com.graphhopper.routing.querygraph.QueryGraph;
+import com.graphhopper.routing.querygraph.QueryRoutingCHGraph;
+import com.graphhopper.routing.util.EncodingManager;
+import com.graphhopper.routing.util.TraversalMode;
+import com.graphhopper.routing.weighting.SpeedWeighting;
+import com.graphhopper.routing.weighting.Weighting;
+import com.graphhopper.storage.BaseGraph;
+import com.graphhopper.storage.CHConfig;
+import com.graphhopper.storage.RoutingCHGraph;
+import com.graphhopper.storage.RoutingCHGraphImpl;
+import com.graphhopper.storage.index.LocationIndexTree;
+import com.graphhopper.storage.index.Snap;
+import com.graphhopper.util.EdgeIterator;
+import com.graphhopper.util.GHUtility;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.function.IntPredicate;
+import java.util.function.IntToDoubleFunction;
+import java.util.function.UnaryOperator;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PHASTTest {
+    private final DecimalEncodedValue speedEnc = new DecimalEncodedValueImpl("speed", 5, 5, true);
+    private final EncodingManager encodingManager = EncodingManager.start().add(speedEnc).build();
+    private final BaseGraph graph = new BaseGraph.Builder(encodingManager).create();
+
+    private RoutingCHGraph prepareCH(Weighting weighting) {
+        graph.freeze();
+        CHConfig chConfig = CHConfig.nodeBased("p", weighting);
+        PrepareContractionHierarchies.Result res = PrepareContractionHierarchies.fromGraph(graph, chConfig).doWork();
+        return RoutingCHGraphImpl.fromGraph(graph, res.getCHStorage(), res.getCHConfig());
+    }
+
+    @Test
+    void simpleTree() {
+        // 0-1-2-3
+        //   |   |
+        //   4---5   6
+        graph.edge(0, 1).setDistance(100).set(speedEnc, 10, 10);
+        graph.edge(1, 2).setDistance(100).set(speedEnc, 10, 10);
+        graph.edge(2, 3).setDistance(100).set(speedEnc, 10, 10);
+        graph.edge(1, 4).setDistance(100).set(speedEnc, 10, 10);
+        graph.edge(4, 5).setDistance(500).set(speedEnc, 10, 10);
+        // one-way
+        graph.edge(3, 5).setDistance(100).set(speedEnc, 10, 0);
+        // node 6 is isolated
+        graph.getNodeAccess().setNode(6, 0, 0);
+        RoutingCHGraph chGraph = prepareCH(new SpeedWeighting(speedEnc));
+
+        PHAST.Result result = new PHAST(chGraph, false).createCalculator().calc(chGraph, 0);
+        assertEquals(7, result.size());
+        assertArrayEquals(new double[]{0, 100, 200, 300, 200, 400, Double.POSITIVE_INFINITY}, result.getDistances(), 1.e-6);
+        assertArrayEquals(new long[]{0, 10_000, 20_000, 30_000, 20_000, 40_000, Long.MAX_VALUE}, result.getTimes());
+        assertArrayEquals(new int[]{EdgeIterator.NO_EDGE, 0, 1, 2, 3, 5, EdgeIterator.NO_EDGE}, result.getLastEdges());
+        assertFalse(result.isReached(6));
+
+        // we cannot use the one-way in the reverse direction
+        result = new PHAST(chGraph, true).createCalculator().calc(chGraph, 0);
+        assertArrayEquals(new double[]{0, 100, 200, 300, 200, 700, Double.POSITIVE_INFINITY}, result.getDistances(), 1.e-6);
+        assertEquals(4, result.getLastEdges()[5]);
+
+        // restricted to some nodes
+        result = new PHAST(chGraph, false).createCalculator(new int[]{5, 6, 3}).calc(chGraph, 0);
+        assertEquals(3, result.size());
+        assertEquals(5, result.getNode(0));
+        assertArrayEquals(new double[]{400, Double.POSITIVE_INFINITY, 300}, result.getDistances(), 1.e-6);
+    }
+
+    @Test
+    void calculatorPool() {
+        graph.edge(0, 1).setDistance(100).set(speedEnc, 10, 10);
+        RoutingCHGraph chGraph = prepareCH(new SpeedWeighting(speedEnc));
+        PHAST phast = new PHAST(chGraph, false, 1);
+        PHAST.Calculator first = phast.borrowCalculator();
+        PHAST.Calculator second = phast.borrowCalculator();
+        assertNotSame(first, second);
+        first.setDistanceLimit(50);
+        phast.returnCalculator(first);
+        // the pool is full, so the second calculator is not kept
+        phast.returnCalculator(second);
+        // calculators for selected nodes are never kept
+        phast.returnCalculator(phast.createCalculator(new int[]{1}));
+
+        PHAST.Calculator calculator = phast.borrowCalculator();
+        assertSame(first, calculator);
+        // the limit was reset
+        assertEquals(2, calculator.calc(chGraph, 0).size());
+        assertNotSame(first, phast.borrowCalculator());
+        assertNotSame(second, phast.borrowCalculator());
+    }
+
+    @Test
+    void weightsOnly() {
+        graph.edge(0, 1).setDistance(100).set(speedEnc, 10, 10);
+        graph.edge(1, 2).setDistance(100).set(speedEnc, 10, 10);
+        RoutingCHGraph chGraph = prepareCH(new SpeedWeighting(speedEnc));
+        PHAST.Result result = new PHAST(chGraph, false).createCalculator().setCalcTimeAndDistance(false).calc(chGraph, 2);
+        assertArrayEquals(new double[]{20, 10, 0}, result.getWeights(), 1.e-6);
+        assertEquals(0, result.getTimes().length);
+        assertEquals(0, result.getDistances().length);
+    }
+
+    @ParameterizedTest
+    @ValueSource(booleans = {false, true})
+    void randomGraphWithVirtualSource(boolean reverseFlow) {
+        long seed = System.nanoTime();
+        Random rnd = new Random(seed);
+        // no offset, otherwise traveling via virtual edges is not the same as taking the direct edge
+        GHUtility.buildRandomGraph(graph, rnd, 200, 2.5, true, speedEnc, null, 0.9, 0);
+        LocationIndexTree locationIndex = new LocationIndexTree(graph, graph.getDirectory());
+        locationIndex.prepareIndex();
+        Weighting weighting = new SpeedWeighting(speedEnc);
+        RoutingCHGraph chGraph = prepareCH(weighting);
+        PHAST phast = new PHAST(chGraph, reverseFlow);
+        PHAST.Calculator calculator = phast.createCalculator();
+        int[] targets = new int[20];
+        for (int i = 0; i < targets.length; i++)
+            targets[i] = rnd.nextInt(graph.getNodes());
+        PHAST.Calculator restrictedCalculator = phast.createCalculator(targets);
+
+        List<String> strictViolations = new ArrayList<>();
+        for (int rep = 0; rep < 5; rep++) {
+            Snap snap = GHUtility.createRandomSnaps(graph.getBounds(), locationIndex, rnd, 1, false, e -> true).get(0);
+            QueryGraph queryGraph = QueryGraph.create(graph, snap);
+            RoutingCHGraph queryCHGraph = new QueryRoutingCHGraph(chGraph, queryGraph);
+            int source = snap.getClosestNode();
+            PHAST.Result result = calculator.calc(queryCHGraph, source);
+            assertEquals(graph.getNodes(), result.size());
+            Weighting queryWeighting = queryGraph.wrapWeighting(weighting);
+            for (int node = 0; node < graph.getNodes(); node++) {
+                Path refPath = reverseFlow
+                        ? new Dijkstra(queryGraph, queryWeighting, TraversalMode.NODE_BASED).calcPath(node, source)
+                        : new Dijkstra(queryGraph, queryWeighting, TraversalMode.NODE_BASED).calcPath(source, node);
+                String msg = "seed: " + seed + ", source: " + source + ", node: " + node;
+                if (!refPath.isFound()) {
+                    assertFalse(result.isReached(node), msg);
+                    continue;
+                }
+                // the shortcut weights are stored with limited precision
+                assertEquals(refPath.getWeight(), result.getWeights()[node], 1.e-2, msg);
+                if (node != source)
+                    assertTrue(queryGraph.isAdjacentToNode(result.getLastEdges()[node], node), msg);
+                // there can be multiple shortest paths with different distances and times
+                if (Math.abs(refPath.getDistance() - result.getDistances()[node]) > 1.e-1)
+                    strictViolations.add("wrong distance " + msg + ", expected: " + refPath.getDistance() + ", given: " + result.getDistances()[node]);
+                if (Math.abs(refPath.getTime() - result.getTimes()[node]) > 50)
+                    strictViolations.add("wrong time " + msg + ", expected: " + refPath.getTime() + ", given: " + result.getTimes()[node]);
+            }
+
+            PHAST.Result restrictedResult = restrictedCalculator.calc(queryCHGraph, source);
+            assertEquals(targets.length, restrictedResult.size());
+            for (int i = 0; i < targets.length; i++) {
+                assertEquals(targets[i], restrictedResult.getNode(i));
+                assertEquals(result.getWeights()[targets[i]], restrictedResult.getWeights()[i], 1.e-6, "seed: " + seed);
+                assertEquals(result.getDistances()[targets[i]], restrictedResult.getDistances()[i], 1.e-6, "seed: " + seed);
+            }
+            assertTrue(restrictedCalculator.getVisitedNodes() <= calculator.getVisitedNodes());
+
+            // with a limit we get the same values, but only for the nodes within the limit
+            // the calculators are taken from the pool, so their limits must be reset when they are returned
+            double timeLimit = 0.3 * maxReached(result, i -> result.getTimes()[i]);
+            assertLimitedResult(result, calcWithPooledCalculator(phast, c -> c.setTimeLimit(timeLimit), queryCHGraph, source),
+                    i -> result.getTimes()[i] <= timeLimit, seed);
+            double distanceLimit = 0.3 * maxReached(result, i -> result.getDistances()[i]);
+            assertLimitedResult(result, calcWithPooledCalculator(phast, c -> c.setDistanceLimit(distanceLimit), queryCHGraph, source),
+                    i -> result.getDistances()[i] <= distanceLimit, seed);
+            double weightLimit = 0.3 * maxReached(result, i -> result.getWeights()[i]);
+            assertLimitedResult(result, calcWithPooledCalculator(phast, c -> c.setWeightLimit(weightLimit), queryCHGraph, source),
+                    i -> result.getWeights()[i] <= weightLimit, seed);
+            assertLimitedResult(result, calcWithPooledCalculator(phast, c -> c.setWeightLimit(weightLimit).setCalcTimeAndDistance(false), queryCHGraph, source),
+                    i -> result.getWeights()[i] <= weightLimit, seed);
+        }
+        if (strictViolations.size() > 0.05 * 5 * graph.getNodes())
+            fail("Too many strict violations: " + strictViolations.size() + "\n" + String.join("\n", strictViolations));
+    }
+
+    private static PHAST.Result calcWithPooledCalculator(PHAST phast, UnaryOperator<PHAST.Calculator> settings, RoutingCHGraph chGraph, int source) {
+        PHAST.Calculator calculator = phast.borrowCalculator();
+        try {
+            return settings.apply(calculator).calc(chGraph, source);
+        } finally {
+            phast.returnCalculator(calculator);
+        }
+    }
+
+    private static double maxReached(PHAST.Result result, IntToDoubleFunction value) {
+        double max = 0;
+        for (int i = 0; i < result.size(); i++)
+            if (result.isReached(i))
+                max = Math.max(max, value.applyAsDouble(i));
+        return max;
+    }
+
+    private static void assertLimitedResult(PHAST.Result result, PHAST.Result limitedResult, IntPredicate withinLimit, long seed) {
+        int count = 0;
+        for (int node = 0; node < result.size(); node++) {
+            int index = limitedResult.indexOf(node);
+            if (!result.isReached(node) || !withinLimit.test(node)) {
+                assertEquals(-1, index, "seed: " + seed + ", node: " + node);
+                continue;
+            }
+            count++;
+            assertEquals(node, limitedResult.getNode(index));
+            assertEquals(result.getWeights()[node], limitedResult.getWeights()[index], 1.e-6, "seed: " + seed);
+            if (limitedResult.getTimes().length > 0) {
+                assertEquals(result.getTimes()[node], limitedResult.getTimes()[index], "seed: " + seed);
+                assertEquals(result.getDistances()[node], limitedResult.getDistances()[index], 1.e-6, "seed: " + seed);
+                assertEquals(result.getLastEdges()[node], limitedResult.getLastEdges()[index], "seed: " + seed);
+            }
+        }
+        assertEquals(count, limitedResult.size(), "seed: " + seed);
+    }
+}
@@ -0,0 +1,183 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing;
+
+import com.carrotsearch.hppc.IntArrayList;
+import com.graphhopper.routing.ev.DecimalEncodedValue;
+import com.graphhopper.routing.ev.DecimalEncodedValueImpl;
+import com.graphhopper.routing.util.EncodingManager;
+import com.graphhopper.routing.util.TraversalMode;
+import com.graphhopper.routing.weighting.SpeedWeighting;
+import com.graphhopper.storage.BaseGraph;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SearchSpaceTest {
+
+    @Test
+    public void putGetPoll() {
+        SearchSpace searchSpace = new SearchSpace(4);
+        SPTEntry a = new SPTEntry(1, 5);
+        SPTEntry b = new SPTEntry(2, 3);
+        SPTEntry c = new SPTEntry(3, 4);
+        searchSpace.put(7, a);
+        searchSpace.put(8, b);
+        searchSpace.add(c);
+        assertEquals(2, searchSpace.size());
+        assertSame(a, searchSpace.get(7));
+        assertSame(b, searchSpace.get(8));
+        assertNull(searchSpace.get(9));
+
+        // a better entry replaces the old one, also in the queue
+        SPTEntry betterA = new SPTEntry(1, 1);
+        searchSpace.put(7, betterA);
+        assertEquals(2, searchSpace.size());
+        assertSame(betterA, searchSpace.get(7));
+        assertSame(betterA, searchSpace.poll());
+        assertSame(b, searchSpace.poll());
+        assertSame(c, searchSpace.poll());
+        assertTrue(searchSpace.isQueueEmpty());
+        // polled entries are still stored and can be queued again
+        assertSame(b, searchSpace.get(8));
+        SPTEntry betterB = new SPTEntry(2, 2);
+        searchSpace.put(8, betterB);
+        assertSame(betterB, searchSpace.poll());
+        assertThrows(IllegalArgumentException.class, () -> searchSpace.put(-1, a));
+    }
+
+    @Test
+    public void forEachInInsertionOrder() {
+        SearchSpace searchSpace = new SearchSpace(2);
+        searchSpace.add(new SPTEntry(0, 0));
+        for (int i = 0; i < 10; i++)
+            searchSpace.put(100 - i, new SPTEntry(i, i));
+        IntArrayList keys = new IntArrayList();
+        searchSpace.forEach((int key, SPTEntry entry) -> {
+            assertEquals(100 - key, entry.adjNode);
+            keys.add(key);
+        });
+        assertEquals(IntArrayList.from(100, 99, 98, 97, 96, 95, 94, 93, 92, 91), keys);
+        keys.clear();
+        searchSpace.forEach((int key, SPTEntry entry) -> {
+            keys.add(key);
+            return keys.size() < 3;
+        });
+        assertEquals(IntArrayList.from(100, 99, 98), keys);
+    }
+
+    @Test
+    public void growAndClear() {
+        SearchSpace searchSpace = new SearchSpace(2);
+        Random rnd = new Random(123);
+        for (int run = 0; run < 3; run++) {
+            int[] keys = new int[1000];
+            for (int i = 0; i < keys.length; i++) {
+                keys[i] = rnd.nextInt(1_000_000);
+                if (searchSpace.get(keys[i]) == null)
+                    searchSpace.put(keys[i], new SPTEntry(keys[i], rnd.nextDouble()));
+            }
+            for (int key : keys)
+                assertEquals(key, searchSpace.get(key).adjNode);
+            double prevWeight = -1;
+            int polled = 0;
+            while (!searchSpace.isQueueEmpty()) {
+                SPTEntry entry = searchSpace.poll();
+                assertTrue(entry.weight >= prevWeight);
+                prevWeight = entry.weight;
+                polled++;
+            }
+            assertEquals(searchSpace.size(), polled);
+            assertTrue(searchSpace.getCapacity() >= searchSpace.size());
+
+            searchSpace.clear();
+            assertEquals(0, searchSpace.size());
+            assertTrue(searchSpace.isQueueEmpty());
+            for (int key : keys)
+                assertNull(searchSpace.get(key));
+        }
+    }
+
+    @Test
+    public void reuseReleasedWorkspace() {
+        SearchWorkspace workspace = SearchWorkspace.borrow(100);
+        workspace.from.put(3, new SPTEntry(3, 1));
+        workspace.to.add(new SPTEntry(4, 1));
+        workspace.release();
+        assertThrows(IllegalStateException.class, workspace::release);
+
+        // other workspaces might be in the pool as well, so we borrow until we get ours or the pool is empty
+        List<SearchWorkspace> borrowed = new ArrayList<>();
+        SearchWorkspace next;
+        do {
+            next = SearchWorkspace.borrow(100);
+            borrowed.add(next);
+            assertEquals(0, next.from.size());
+            assertTrue(next.from.isQueueEmpty());
+            assertTrue(next.to.isQueueEmpty());
+            assertNull(next.from.get(3));
+        } while (next != workspace && borrowed.size() < 1000);
+        assertSame(workspace, next);
+        borrowed.forEach(SearchWorkspace::release);
+    }
+
+    @Test
+    public void doNotRetainLargeWorkspace() {
+        SearchWorkspace workspace = SearchWorkspace.borrow(100);
+        for (int i = 0; i <= SearchWorkspace.MAX_RETAINED_CAPACITY; i++)
+            workspace.to.put(i, new SPTEntry(i, i));
+        workspace.release();
+        for (int i = 0; i < 1000; i++)
+            assertNotSame(workspace, SearchWorkspace.borrow(100));
+    }
+
+    @Test
+    public void algorithmsReuseWorkspace() {
+        DecimalEncodedValue speedEnc = new DecimalEncodedValueImpl("speed", 5, 5, true);
+        EncodingManager em = EncodingManager.start().add(speedEnc).build();
+        BaseGraph graph = new BaseGraph.Builder(em).create();
+        graph.edge(0, 1).setDistance(100).set(speedEnc, 10, 10);
+        graph.edge(1, 2).setDistance(100).set(speedEnc, 10, 10);
+        graph.edge(2, 3).setDistance(100).set(speedEnc, 10, 10);
+        graph.edge(0, 4).setDistance(100).set(speedEnc, 10, 10);
+        graph.edge(4, 3).setDistance(300).set(speedEnc, 10, 10);
+        SpeedWeighting weighting = new SpeedWeighting(speedEnc);
+
+        for (int i = 0; i < 3; i++) {
+            DijkstraBidirectionRef algo = new DijkstraBidirectionRef(graph, weighting, TraversalMode.NODE_BASED);
+            Path path = algo.calcPath(0, 3);
+            algo.releaseWorkspace();
+            assertEquals(IntArrayList.from(0, 1, 2, 3), path.calcNodes());
+            assertEquals(300, path.getDistance(), 1.e-6);
+
+            AStarBidirection astar = new AStarBidirection(graph, weighting, TraversalMode.EDGE_BASED);
+            path = astar.calcPath(3, 0);
+            astar.releaseWorkspace();
+            assertEquals(IntArrayList.from(3, 2, 1, 0), path.calcNodes());
+        }
+        // releasing twice is fine, but the algorithm cannot be used anymore
+        DijkstraBidirectionRef algo = new DijkstraBidirectionRef(graph, weighting, TraversalMode.NODE_BASED);
+        algo.releaseWorkspace();
+        algo.releaseWorkspace();
+        assertThrows(IllegalStateException.class, () -> algo.calcPath(0, 4));
+    }
+}
@@ -0,0 +1,171 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing.ch;
+
+import com.graphhopper.routing.Dijkstra;
+import com.graphhopper.routing.Path;
+import com.graphhopper.routing.RoutingAlgorithm;
+import com.graphhopper.routing.ev.DecimalEncodedValue;
+import com.graphhopper.routing.ev.DecimalEncodedValueImpl;
+import com.graphhopper.routing.querygraph.QueryGraph;
+import com.graphhopper.routing.querygraph.QueryRoutingCHGraph;
+import com.graphhopper.routing.util.EdgeFilter;
+import com.graphhopper.routing.util.EncodingManager;
+import com.graphhopper.routing.util.TraversalMode;
+import com.graphhopper.routing.weighting.SpeedWeighting;
+import com.graphhopper.routing.weighting.Weighting;
+import com.graphhopper.storage.BaseGraph;
+import com.graphhopper.storage.CHStorage;
+import com.graphhopper.storage.RAMDirectory;
+import com.graphhopper.storage.RoutingCHGraph;
+import com.graphhopper.storage.index.LocationIndexTree;
+import com.graphhopper.storage.index.Snap;
+import com.graphhopper.util.EdgeIteratorState;
+import com.graphhopper.util.GHUtility;
+import com.graphhopper.util.PMap;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.graphhopper.util.GHUtility.createRandomSnaps;
+import static org.junit.jupiter.api.Assertions.*;
+
+class CustomizableCHTest {
+    private final DecimalEncodedValue speedEnc = new DecimalEncodedValueImpl("speed", 5, 5, true);
+    private final DecimalEncodedValue otherSpeedEnc = new DecimalEncodedValueImpl("other_speed", 5, 5, true);
+    private final BaseGraph graph = new BaseGraph.Builder(EncodingManager.start().add(speedEnc).add(otherSpeedEnc).build()).create();
+
+    @Test
+    void nodeOrderingIsPermutation() {
+        GHUtility.buildRandomGraph(graph, new Random(123), 1_000, 2.5, true, speedEnc, null, 0.9, 0.0);
+        graph.freeze();
+        int[] rankToNode = new PrepareCustomizableCH(graph, createTopologyStorage()).calcNodeOrdering();
+        int[] sorted = rankToNode.clone();
+        Arrays.sort(sorted);
+        for (int i = 0; i < sorted.length; i++)
+            assertEquals(i, sorted[i]);
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, 4})
+    void compareWithDijkstra(int threads) {
+        long seed = System.nanoTime();
+        Random rnd = new Random(seed);
+        buildRandomGrid(rnd, 50);
+        LocationIndexTree locationIndex = new LocationIndexTree(graph, graph.getDirectory());
+        locationIndex.prepareIndex();
+        graph.freeze();
+        CustomizableCH cch = prepare().setCustomizationThreads(threads);
+
+        for (Weighting weighting : List.of(new SpeedWeighting(speedEnc), new SpeedWeighting(otherSpeedEnc))) {
+            RoutingCHGraph chGraph = cch.customize(weighting);
+            List<Snap> snaps = createRandomSnaps(graph.getBounds(), locationIndex, rnd, 20, false, EdgeFilter.ALL_EDGES);
+            QueryGraph queryGraph = QueryGraph.create(graph, snaps);
+            for (int i = 0; i < 100; i++) {
+                int from = rnd.nextInt(queryGraph.getNodes());
+                int to = rnd.nextInt(queryGraph.getNodes());
+                Weighting queryWeighting = queryGraph.wrapWeighting(weighting);
+                RoutingAlgorithm refAlgo = new Dijkstra(queryGraph, queryWeighting, TraversalMode.NODE_BASED);
+                Path refPath = refAlgo.calcPath(from, to);
+                RoutingAlgorithm algo = new CHRoutingAlgorithmFactory(new QueryRoutingCHGraph(chGraph, queryGraph))
+                        .createAlgo(new PMap().putObject("stall_on_demand", true));
+                Path path = algo.calcPath(from, to);
+                String msg = "seed: " + seed + ", " + from + "->" + to;
+                assertEquals(refPath.isFound(), path.isFound(), msg);
+                if (!path.isFound())
+                    continue;
+                assertEquals(refPath.getWeight(), path.getWeight(), 1.e-2, msg);
+                // the shortcut weights are rounded, so for (almost) equal weights a path with a different distance can
+                // win. In this case the unpacked path must still be consistent and have the optimal weight.
+                if (Math.abs(refPath.getDistance() - path.getDistance()) > 1.e-1) {
+                    double distance = 0, weight = 0;
+                    for (EdgeIteratorState edge : path.calcEdges()) {
+                        distance += edge.getDistance();
+                        weight += queryWeighting.calcEdgeWeight(edge, false);
+                    }
+                    assertEquals(distance, path.getDistance(), 1.e-1, msg);
+                    assertEquals(refPath.getWeight(), weight, 1.e-2, msg);
+                }
+            }
+        }
+    }
+
+    @Test
+    void customizationIsCached() {
+        GHUtility.buildRandomGraph(graph, new Random(123), 100, 2.5, true, speedEnc, null, 0.9, 0.0);
+        graph.freeze();
+        CustomizableCH cch = prepare();
+        AtomicInteger customizations = new AtomicInteger();
+        RoutingCHGraph chGraph = cch.getOrCustomize("a", () -> {
+            customizations.incrementAndGet();
+            return new SpeedWeighting(speedEnc);
+        });
+        assertSame(chGraph, cch.getOrCustomize("a", () -> {
+            customizations.incrementAndGet();
+            return new SpeedWeighting(speedEnc);
+        }));
+        assertEquals(1, customizations.get());
+        assertNotSame(chGraph, cch.getOrCustomize("b", () -> new SpeedWeighting(otherSpeedEnc)));
+        assertThrows(IllegalArgumentException.class, () -> cch.getOrCustomize("c", () -> {
+            throw new IllegalArgumentException("invalid custom model");
+        }));
+        // failed customizations are not cached
+        assertNotNull(cch.getOrCustomize("c", () -> new SpeedWeighting(speedEnc)));
+    }
+
+    /**
+     * Builds a grid with some missing and some diagonal edges, which is closer to a road network than a random graph
+     */
+    private void buildRandomGrid(Random rnd, int size) {
+        for (int row = 0; row < size; row++)
+            for (int col = 0; col < size; col++)
+                graph.getNodeAccess().setNode(row * size + col, 49.4 + row * 0.001 + rnd.nextDouble() * 0.0005, 9.7 + col * 0.001 + rnd.nextDouble() * 0.0005);
+        for (int row = 0; row < size; row++)
+            for (int col = 0; col < size; col++) {
+                int node = row * size + col;
+                if (col + 1 < size && rnd.nextDouble() < 0.9)
+                    addRandomEdge(rnd, node, node + 1);
+                if (row + 1 < size && rnd.nextDouble() < 0.9)
+                    addRandomEdge(rnd, node, node + size);
+                if (col + 1 < size && row + 1 < size && rnd.nextDouble() < 0.1)
+                    addRandomEdge(rnd, node, node + size + 1);
+            }
+    }
+
+    private void addRandomEdge(Random rnd, int from, int to) {
+        EdgeIteratorState edge = graph.edge(from, to).setDistance(GHUtility.getDistance(from, to, graph.getNodeAccess()));
+        // the two metrics are not correlated, and some edges are one-way for each of them
+        edge.set(speedEnc, 5 + 5 * rnd.nextInt(20), rnd.nextDouble() < 0.1 ? 0 : 5 + 5 * rnd.nextInt(20));
+        edge.set(otherSpeedEnc, rnd.nextDouble() < 0.1 ? 0 : 5 + 5 * rnd.nextInt(20), 5 + 5 * rnd.nextInt(20));
+    }
+
+    private CustomizableCH prepare() {
+        CHStorage topology = createTopologyStorage();
+        new PrepareCustomizableCH(graph, topology).doWork();
+        return CustomizableCH.fromStorage(graph, topology, 2);
+    }
+
+    private CHStorage createTopologyStorage() {
+        return new CHStorage(new RAMDirectory(), "cch", -1, false);
+    }
+}
@@ -30,6 +30,7 @@ import com.graphhopper.routing.weighting.Weighting;
 import com.graphhopper.storage.BaseGraph;
 import com.graphhopper.storage.Directory;
 import com.graphhopper.storage.RAMDirectory;
+import com.graphhopper.util.GHUtility;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -37,6 +38,7 @@ import org.junit.jupiter.api.Test;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.Random;
 
 import static java.util.Collections.emptyList;
 import static org.junit.jupiter.api.Assertions.*;
@@ -152,6 +154,34 @@ public class LandmarkStorageTest {
         assertEquals("[4, 0]", Arrays.toString(storage.getLandmarks(1)));
     }
 
+    @Test
+    public void testLandmarkThreads() {
+        GHUtility.buildRandomGraph(graph, new Random(123), 500, 2.2, true, speedEnc, null, 0.8, 0.8);
+        Weighting weighting = new SpeedWeighting(speedEnc);
+        subnetworkRemoval(weighting, 10);
+
+        LandmarkStorage sequential = new LandmarkStorage(graph, encodingManager, new RAMDirectory(), new LMConfig("car", weighting), 8);
+        sequential.setMinimumNodes(10);
+        sequential.createLandmarks();
+
+        LandmarkStorage parallel = new LandmarkStorage(graph, encodingManager, new RAMDirectory(), new LMConfig("car", weighting), 8);
+        parallel.setMinimumNodes(10);
+        parallel.setLandmarkThreads(4);
+        parallel.createLandmarks();
+
+        assertEquals(sequential.getSubnetworksWithLandmarks(), parallel.getSubnetworksWithLandmarks());
+        assertEquals(sequential.getFactor(), parallel.getFactor());
+        for (int sn = 1; sn < sequential.getSubnetworksWithLandmarks(); sn++) {
+            assertArrayEquals(sequential.getLandmarks(sn), parallel.getLandmarks(sn));
+        }
+        for (int node = 0; node < graph.getNodes(); node++) {
+            for (int lmIdx = 0; lmIdx < 8; lmIdx++) {
+                assertEquals(sequential.getFromWeight(lmIdx, node), parallel.getFromWeight(lmIdx, node), "from weight, node " + node);
+                assertEquals(sequential.getToWeight(lmIdx, node), parallel.getToWeight(lmIdx, node), "to weight, node " + node);
+            }
+        }
+    }
+
     private void subnetworkRemoval(Weighting weighting, int minNodeSize) {
         // currently we rely on subnetwork removal in Landmark preparation, see #2256
         // PrepareRoutingSubnetworks removes OSM bugs regarding turn restriction mapping which the node-based Tarjan in Landmark preparation can't
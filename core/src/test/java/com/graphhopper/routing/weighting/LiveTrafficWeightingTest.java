@@ -0,0 +1,94 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing.weighting;
+
+import com.graphhopper.routing.ev.DecimalEncodedValue;
+import com.graphhopper.routing.ev.DecimalEncodedValueImpl;
+import com.graphhopper.routing.util.EncodingManager;
+import com.graphhopper.storage.BaseGraph;
+import com.graphhopper.util.EdgeIteratorState;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LiveTrafficWeightingTest {
+    private final DecimalEncodedValue speedEnc = new DecimalEncodedValueImpl("speed", 5, 5, true);
+    private final BaseGraph graph = new BaseGraph.Builder(EncodingManager.start().add(speedEnc).build()).create();
+
+    @Test
+    void liveSpeedSlowsDownEdge() {
+        EdgeIteratorState edge = graph.edge(0, 1).setDistance(1000).set(speedEnc, 50, 50);
+        LiveSpeedOverlay overlay = new LiveSpeedOverlay(2 * graph.getEdges());
+        Weighting base = new SpeedWeighting(speedEnc);
+        assertEquals(20, base.calcEdgeWeight(edge, false), 1.e-6);
+        assertEquals(20_000, base.calcEdgeMillis(edge, false));
+
+        // 36km/h means 100s for 1km, which is five times slower than the base weighting
+        overlay.update(new int[]{edge.getEdgeKey()}, new float[]{36}, 1, false);
+        Weighting weighting = new LiveTrafficWeighting(base, overlay.getSnapshot());
+        assertEquals(100, weighting.calcEdgeWeight(edge, false), 1.e-6);
+        assertEquals(100_000, weighting.calcEdgeMillis(edge, false));
+        // the other direction has no live speed
+        assertEquals(20, weighting.calcEdgeWeight(edge, true), 1.e-6);
+        assertEquals(100, weighting.calcEdgeWeight(edge.detach(true), true), 1.e-6);
+
+        // live speeds that are faster than the base weighting are ignored
+        overlay.update(new int[]{edge.getEdgeKey()}, new float[]{1000}, 1, false);
+        weighting = new LiveTrafficWeighting(base, overlay.getSnapshot());
+        assertEquals(20, weighting.calcEdgeWeight(edge, false), 1.e-6);
+        assertEquals(20_000, weighting.calcEdgeMillis(edge, false));
+    }
+
+    @Test
+    void snapshotsAreImmutable() {
+        LiveSpeedOverlay overlay = new LiveSpeedOverlay(200_000);
+        LiveSpeedOverlay.Snapshot empty = overlay.getSnapshot();
+        LiveSpeedOverlay.Snapshot first = overlay.update(new int[]{3, 150_000}, new float[]{20, 30}, 2, false);
+        assertEquals(2, first.getLiveSpeeds());
+        assertEquals(1, first.getVersion());
+
+        LiveSpeedOverlay.Snapshot second = overlay.update(new int[]{3, 4}, new float[]{0, 40}, 2, false);
+        assertEquals(2, second.getLiveSpeeds());
+        assertEquals(0, second.getSpeed(3));
+        assertEquals(40, second.getSpeed(4));
+        assertEquals(30, second.getSpeed(150_000));
+        // the previous snapshots did not change
+        assertEquals(20, first.getSpeed(3));
+        assertEquals(0, first.getSpeed(4));
+        assertEquals(0, empty.getSpeed(150_000));
+        assertEquals(0, empty.getLiveSpeeds());
+
+        LiveSpeedOverlay.Snapshot replaced = overlay.update(new int[]{5}, new float[]{10}, 1, true);
+        assertEquals(1, replaced.getLiveSpeeds());
+        assertEquals(0, replaced.getSpeed(4));
+        assertEquals(0, replaced.getSpeed(150_000));
+        assertEquals(10, replaced.getSpeed(5));
+        assertSame(replaced, overlay.getSnapshot());
+    }
+
+    @Test
+    void invalidUpdates() {
+        LiveSpeedOverlay overlay = new LiveSpeedOverlay(10);
+        assertThrows(IllegalArgumentException.class, () -> overlay.update(new int[]{10}, new float[]{10}, 1, false));
+        assertThrows(IllegalArgumentException.class, () -> overlay.update(new int[]{-1}, new float[]{10}, 1, false));
+        assertThrows(IllegalArgumentException.class, () -> overlay.update(new int[]{1}, new float[]{-5}, 1, false));
+        assertThrows(IllegalArgumentException.class, () -> overlay.update(new int[]{1}, new float[]{Float.NaN}, 1, false));
+        // a failed update does not change anything
+        assertEquals(0, overlay.getSnapshot().getVersion());
+    }
+}
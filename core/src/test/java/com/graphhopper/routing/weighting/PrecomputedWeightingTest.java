@@ -0,0 +1,89 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing.weighting;
+
+import com.graphhopper.routing.ev.DecimalEncodedValue;
+import com.graphhopper.routing.ev.DecimalEncodedValueImpl;
+import com.graphhopper.routing.util.EncodingManager;
+import com.graphhopper.storage.BaseGraph;
+import com.graphhopper.storage.DAType;
+import com.graphhopper.storage.GHDirectory;
+import com.graphhopper.storage.RAMDirectory;
+import com.graphhopper.util.EdgeIteratorState;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PrecomputedWeightingTest {
+    private final DecimalEncodedValue speedEnc = new DecimalEncodedValueImpl("speed", 5, 5, true);
+    private final BaseGraph graph = new BaseGraph.Builder(EncodingManager.start().add(speedEnc).build()).create();
+
+    @Test
+    void sameWeightsAsWeighting() {
+        EdgeIteratorState edge1 = graph.edge(0, 1).setDistance(1000).set(speedEnc, 50, 0);
+        EdgeIteratorState edge2 = graph.edge(1, 2).setDistance(333.3).set(speedEnc, 45, 45);
+        Weighting base = new SpeedWeighting(speedEnc);
+        PrecomputedWeights weights = new PrecomputedWeights(new RAMDirectory(), "car").calc(graph, base);
+        Weighting weighting = new PrecomputedWeighting(base, weights);
+        assertEquals(2, weights.getEdges());
+
+        assertEquals(20, weighting.calcEdgeWeight(edge1, false));
+        assertEquals(20_000, weighting.calcEdgeMillis(edge1, false));
+        assertEquals(Double.POSITIVE_INFINITY, weighting.calcEdgeWeight(edge1, true));
+        assertEquals(Double.POSITIVE_INFINITY, weighting.calcEdgeWeight(edge1.detach(true), false));
+        // the travel time of the blocked direction is too large and is calculated by the wrapped weighting
+        assertTrue(weights.getMillis(edge1.getReverseEdgeKey()) < 0);
+        assertEquals(base.calcEdgeMillis(edge1, true), weighting.calcEdgeMillis(edge1, true));
+
+        // the weight is rounded up to the next float
+        double weight = base.calcEdgeWeight(edge2, false);
+        assertNotEquals(weight, weighting.calcEdgeWeight(edge2, false));
+        assertTrue(weighting.calcEdgeWeight(edge2, false) > weight);
+        assertEquals(weight, weighting.calcEdgeWeight(edge2, false), weight * 1.e-7);
+        assertEquals(weighting.calcEdgeWeight(edge2, false), weighting.calcEdgeWeight(edge2.detach(true), true));
+        assertEquals(base.calcEdgeMillis(edge2, true), weighting.calcEdgeMillis(edge2, true));
+
+        // edges that were added later, like the virtual edges of a query graph, use the wrapped weighting
+        EdgeIteratorState edge3 = graph.edge(2, 3).setDistance(100).set(speedEnc, 10, 10);
+        assertEquals(10, weighting.calcEdgeWeight(edge3, false));
+        assertEquals(10_000, weighting.calcEdgeMillis(edge3, true));
+        assertEquals(base.getName(), weighting.getName());
+    }
+
+    @Test
+    void storeAndLoad(@TempDir Path dir) {
+        EdgeIteratorState edge = graph.edge(0, 1).setDistance(1000).set(speedEnc, 50, 25);
+        PrecomputedWeights weights = new PrecomputedWeights(new GHDirectory(dir.toString(), DAType.RAM_STORE), "car");
+        assertFalse(weights.loadExisting());
+        weights.calc(graph, new SpeedWeighting(speedEnc));
+        weights.flush();
+        weights.close();
+        assertTrue(weights.isClosed());
+
+        PrecomputedWeights loaded = new PrecomputedWeights(new GHDirectory(dir.toString(), DAType.RAM_STORE), "car");
+        assertTrue(loaded.loadExisting());
+        assertEquals(1, loaded.getEdges());
+        assertEquals(20, loaded.getWeight(edge.getEdgeKey()));
+        assertEquals(40, loaded.getWeight(edge.getReverseEdgeKey()));
+        assertEquals(40_000, loaded.getMillis(edge.getReverseEdgeKey()));
+        loaded.close();
+    }
+}
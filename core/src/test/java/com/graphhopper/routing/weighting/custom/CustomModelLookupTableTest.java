@@ -0,0 +1,198 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing.weighting.custom;
+
+import com.graphhopper.routing.ev.*;
+import com.graphhopper.routing.util.EncodingManager;
+import com.graphhopper.storage.BaseGraph;
+import com.graphhopper.util.CustomModel;
+import com.graphhopper.util.EdgeIteratorState;
+import com.graphhopper.util.JsonFeature;
+import com.graphhopper.util.JsonFeatureCollection;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.GeometryFactory;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Random;
+
+import static com.graphhopper.json.Statement.*;
+import static com.graphhopper.json.Statement.Op.LIMIT;
+import static com.graphhopper.json.Statement.Op.MULTIPLY;
+import static org.junit.jupiter.api.Assertions.*;
+
+class CustomModelLookupTableTest {
+    BaseGraph graph;
+    EncodingManager encodingManager;
+    BooleanEncodedValue accessEnc;
+    DecimalEncodedValue avgSpeedEnc;
+    EnumEncodedValue<RoadClass> roadClassEnc;
+    EnumEncodedValue<RoadEnvironment> roadEnvEnc;
+    BooleanEncodedValue roundaboutEnc;
+    IntEncodedValue lanesEnc;
+    DecimalEncodedValue maxSpeedEnc;
+    List<EdgeIteratorState> edges;
+
+    @BeforeEach
+    void setup() {
+        accessEnc = VehicleAccess.create("car");
+        avgSpeedEnc = VehicleSpeed.create("car", 5, 5, true);
+        roundaboutEnc = Roundabout.create();
+        lanesEnc = Lanes.create();
+        maxSpeedEnc = MaxSpeed.create();
+        encodingManager = new EncodingManager.Builder().add(accessEnc).add(avgSpeedEnc).add(roundaboutEnc).add(lanesEnc)
+                .add(maxSpeedEnc).add(RoadClass.create()).add(RoadEnvironment.create()).build();
+        roadClassEnc = encodingManager.getEnumEncodedValue(RoadClass.KEY, RoadClass.class);
+        roadEnvEnc = encodingManager.getEnumEncodedValue(RoadEnvironment.KEY, RoadEnvironment.class);
+        graph = new BaseGraph.Builder(encodingManager).create();
+
+        Random rand = new Random(123);
+        edges = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            graph.getNodeAccess().setNode(i, 50 + rand.nextDouble() / 10, 11.5 + rand.nextDouble() / 10);
+            if (i == 0) continue;
+            EdgeIteratorState edge = graph.edge(i - 1, i).setDistance(100).
+                    set(roadClassEnc, RoadClass.values()[rand.nextInt(RoadClass.values().length)]).
+                    set(roadEnvEnc, RoadEnvironment.values()[rand.nextInt(RoadEnvironment.values().length)]).
+                    set(accessEnc, rand.nextBoolean(), rand.nextBoolean()).
+                    set(avgSpeedEnc, 5 * rand.nextInt(20), 5 * rand.nextInt(20)).
+                    set(roundaboutEnc, rand.nextBoolean()).
+                    set(lanesEnc, rand.nextInt(4)).
+                    set(maxSpeedEnc, 10 * rand.nextInt(14));
+            edges.add(edge);
+        }
+    }
+
+    private CustomModel createBaseModel() {
+        CustomModel customModel = new CustomModel();
+        customModel.addToPriority(If("!car_access", MULTIPLY, "0"));
+        customModel.addToSpeed(If("true", LIMIT, "car_average_speed"));
+        return customModel;
+    }
+
+    private void assertSameAsCompiled(CustomModel customModel) {
+        CustomWeighting.Parameters table = CustomModelParser.createLookupTableWeightingParameters(customModel, encodingManager);
+        assertNotNull(table, "model should be supported by the lookup table: " + customModel);
+        CustomWeighting.Parameters compiled = CustomModelParser.createJaninoWeightingParameters(customModel, encodingManager);
+        for (EdgeIteratorState edge : edges) {
+            for (boolean reverse : new boolean[]{false, true}) {
+                assertEquals(compiled.getEdgeToSpeedMapping().get(edge, reverse), table.getEdgeToSpeedMapping().get(edge, reverse),
+                        "speed " + edge + ", reverse: " + reverse);
+                assertEquals(compiled.getEdgeToPriorityMapping().get(edge, reverse), table.getEdgeToPriorityMapping().get(edge, reverse),
+                        "priority " + edge + ", reverse: " + reverse);
+            }
+        }
+        assertEquals(compiled.getMaxSpeedCalc().calcMax(), table.getMaxSpeedCalc().calcMax());
+        assertEquals(compiled.getMaxPrioCalc().calcMax(), table.getMaxPrioCalc().calcMax());
+        assertEquals(compiled.getDistanceInfluence(), table.getDistanceInfluence());
+        assertEquals(compiled.getHeadingPenaltySeconds(), table.getHeadingPenaltySeconds());
+    }
+
+    @Test
+    void testSameAsCompiled() {
+        assertSameAsCompiled(createBaseModel());
+
+        CustomModel customModel = createBaseModel();
+        customModel.addToPriority(If("road_class == PRIMARY", MULTIPLY, "0.5"));
+        customModel.addToPriority(ElseIf("road_class == SECONDARY || road_environment == TUNNEL", MULTIPLY, "0.7"));
+        customModel.addToPriority(Else(MULTIPLY, "0.9"));
+        customModel.addToPriority(If("road_environment != FERRY && !roundabout", MULTIPLY, "0.8"));
+        customModel.addToSpeed(If("road_class == MOTORWAY", MULTIPLY, "0.85"));
+        customModel.addToSpeed(If("lanes >= 2", LIMIT, "70"));
+        customModel.setDistanceInfluence(70d);
+        assertSameAsCompiled(customModel);
+
+        customModel = createBaseModel();
+        customModel.addToSpeed(If("backward_car_access", MULTIPLY, "0.9"));
+        customModel.addToSpeed(If("car_access == false", LIMIT, "20"));
+        customModel.addToPriority(If("lanes == 0 || (lanes < 3 && road_class != RESIDENTIAL)", MULTIPLY, "0.6"));
+        assertSameAsCompiled(customModel);
+
+        // the first group sets the speed without an unconditional statement
+        customModel = new CustomModel();
+        customModel.addToSpeed(If("road_class == MOTORWAY", LIMIT, "100"));
+        customModel.addToSpeed(ElseIf("road_class == PRIMARY", LIMIT, "car_average_speed"));
+        customModel.addToSpeed(Else(LIMIT, "30"));
+        customModel.addToSpeed(If("true", LIMIT, "max_speed"));
+        assertSameAsCompiled(customModel);
+    }
+
+    @Test
+    void testBlocks() {
+        CustomModel customModel = createBaseModel();
+        customModel.addToPriority(If("road_class == PRIMARY", List.of(
+                If("lanes > 1", MULTIPLY, "0.5"),
+                Else(MULTIPLY, "0.8"))));
+        customModel.addToPriority(Else(List.of(If("roundabout", MULTIPLY, "0.3"))));
+        assertSameAsCompiled(customModel);
+    }
+
+    @Test
+    void testArea() {
+        JsonFeatureCollection areas = new JsonFeatureCollection();
+        areas.getFeatures().add(new JsonFeature("area_1", "Feature", null, new GeometryFactory().createPolygon(new Coordinate[]{
+                new Coordinate(11.5, 50), new Coordinate(11.55, 50), new Coordinate(11.55, 50.05),
+                new Coordinate(11.5, 50.05), new Coordinate(11.5, 50)}), new HashMap<>()));
+        CustomModel customModel = createBaseModel();
+        customModel.setAreas(areas);
+        customModel.addToPriority(If("in_area_1", MULTIPLY, "0.2"));
+        customModel.addToSpeed(If("!in_area_1 && road_class == PRIMARY", LIMIT, "50"));
+        assertSameAsCompiled(customModel);
+    }
+
+    @Test
+    void testUnsupported() {
+        // decimal encoded values in conditions and methods are compiled
+        CustomModel customModel = createBaseModel();
+        customModel.addToPriority(If("max_speed > 50", MULTIPLY, "0.5"));
+        assertNull(CustomModelParser.createLookupTableWeightingParameters(customModel, encodingManager));
+        assertEquals(0.5, CustomModelParser.createWeightingParameters(customModel, encodingManager).getEdgeToPriorityMapping().get(
+                graph.edge(0, 1).set(accessEnc, true, true).set(maxSpeedEnc, 60), false), 1.e-6);
+
+        customModel = createBaseModel();
+        customModel.addToSpeed(If("edge.getDistance() > 50", LIMIT, "10"));
+        assertNull(CustomModelParser.createLookupTableWeightingParameters(customModel, encodingManager));
+
+        customModel = createBaseModel();
+        customModel.addToPriority(If("true", MULTIPLY, "0.5 * car_average_speed"));
+        assertNull(CustomModelParser.createLookupTableWeightingParameters(customModel, encodingManager));
+
+        // invalid models are reported by the compilation
+        CustomModel invalid = createBaseModel();
+        invalid.addToPriority(If("road_class == PRIMAR", MULTIPLY, "0.5"));
+        assertNull(CustomModelParser.createLookupTableWeightingParameters(invalid, encodingManager));
+        assertThrows(IllegalArgumentException.class, () -> CustomModelParser.createWeightingParameters(invalid, encodingManager));
+
+        CustomModel noSpeed = new CustomModel();
+        noSpeed.addToSpeed(If("road_class == PRIMARY", LIMIT, "50"));
+        assertNull(CustomModelParser.createLookupTableWeightingParameters(noSpeed, encodingManager));
+        assertThrows(IllegalArgumentException.class, () -> CustomModelParser.createWeightingParameters(noSpeed, encodingManager));
+    }
+
+    @Test
+    void testTableSize() {
+        CustomModel customModel = createBaseModel();
+        customModel.addToPriority(If("road_class == PRIMARY && roundabout", MULTIPLY, "0.5"));
+        CustomModelLookupTable table = CustomModelLookupTable.create(customModel.getPriority(),
+                CustomWeightingHelper.GLOBAL_PRIORITY, encodingManager, new HashMap<>());
+        assertEquals(2 * RoadClass.values().length * 2, table.getTableSize());
+    }
+}
@@ -27,13 +27,19 @@ import com.graphhopper.util.JsonFeature;
 import com.graphhopper.util.JsonFeatureCollection;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 import org.locationtech.jts.geom.Coordinate;
 import org.locationtech.jts.geom.GeometryFactory;
 
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.stream.Stream;
 
 import static com.graphhopper.json.Statement.*;
 import static com.graphhopper.json.Statement.Op.LIMIT;
@@ -242,6 +248,71 @@ class CustomModelParserTest {
         assertThrows(IllegalArgumentException.class, () -> CustomModelParser.createWeightingParameters(customModel2, encodingManager));
     }
 
+    @Test
+    public void classCacheDirectory(@TempDir Path dir) throws IOException {
+        JsonFeatureCollection areas = new JsonFeatureCollection();
+        areas.getFeatures().add(new JsonFeature("area_1", "Feature", null, new GeometryFactory().createPolygon(new Coordinate[]{
+                new Coordinate(11.5, 48.1), new Coordinate(11.6, 48.1), new Coordinate(11.6, 48.2), new Coordinate(11.5, 48.1)}),
+                new HashMap<>()));
+        CustomModel customModel = new CustomModel();
+        customModel.setAreas(areas);
+        customModel.addToPriority(If("road_class == PRIMARY", MULTIPLY, "0.5"));
+        customModel.addToPriority(If("in_area_1", MULTIPLY, "0.8"));
+        customModel.addToSpeed(If("true", LIMIT, "100"));
+
+        CustomModelParser.setClassCacheDirectory(dir);
+        try {
+            Class<?> clazz = CustomModelParser.getOrCreateClazz(customModel, encodingManager);
+            assertEquals(1, countFiles(dir));
+
+            // a newly compiled class would get a new name
+            CustomModelParser.clearCaches();
+            Class<?> cachedClazz = CustomModelParser.getOrCreateClazz(customModel, encodingManager);
+            assertNotSame(clazz, cachedClazz);
+            assertEquals(clazz.getName(), cachedClazz.getName());
+
+            // the distance influence is not part of the class
+            CustomModelParser.clearCaches();
+            CustomModel otherDistanceInfluence = new CustomModel(customModel).setDistanceInfluence(70d);
+            assertEquals(clazz.getName(), CustomModelParser.getOrCreateClazz(otherDistanceInfluence, encodingManager).getName());
+            assertEquals(1, countFiles(dir));
+
+            EdgeIteratorState edge = graph.edge(0, 1).setDistance(10).set(roadClassEnc, PRIMARY);
+            assertEquals(0.5, CustomModelParser.createWeightingParameters(customModel, encodingManager).
+                    getEdgeToPriorityMapping().get(edge, false), 1.e-6);
+
+            // the areas are still checked for a cached class
+            CustomModelParser.clearCaches();
+            JsonFeatureCollection pointAreas = new JsonFeatureCollection();
+            pointAreas.getFeatures().add(new JsonFeature("area_1", "Feature", null,
+                    new GeometryFactory().createPoint(new Coordinate(11.5, 48.1)), new HashMap<>()));
+            CustomModel pointModel = new CustomModel(customModel);
+            pointModel.setAreas(pointAreas);
+            IllegalArgumentException ex = assertThrows(IllegalArgumentException.class, () -> CustomModelParser.getOrCreateClazz(pointModel, encodingManager));
+            assertTrue(ex.getMessage().contains("only type=Polygon is supported"), ex.getMessage());
+
+            // a broken class file is replaced
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(dir)) {
+                for (Path file : files)
+                    Files.write(file, new byte[]{1, 2, 3});
+            }
+            CustomModelParser.clearCaches();
+            assertNotEquals(clazz.getName(), CustomModelParser.getOrCreateClazz(customModel, encodingManager).getName());
+            assertEquals(1, countFiles(dir));
+            assertEquals(0.5, CustomModelParser.createWeightingParameters(customModel, encodingManager).
+                    getEdgeToPriorityMapping().get(edge, false), 1.e-6);
+        } finally {
+            CustomModelParser.setClassCacheDirectory(null);
+            CustomModelParser.clearCaches();
+        }
+    }
+
+    private static long countFiles(Path dir) throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.count();
+        }
+    }
+
     @Test
     public void parseValue() {
         DecimalEncodedValue maxSpeedEnc = encodingManager.getDecimalEncodedValue(MaxSpeed.KEY);
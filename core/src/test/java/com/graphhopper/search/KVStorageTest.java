@@ -48,6 +48,38 @@ public class KVStorageTest {
         assertEquals("a name", index.get(aPointer, "a", false));
     }
 
+    @Test
+    public void relayout() {
+        KVStorage index = create();
+        long aPointer = index.add(createMap("a", "a name", "i", 42));
+        long bPointer = index.add(createMap("b", ""));
+        long cPointer = index.add(createMap("a", "c name", "l", 7L));
+        long[] pointers = {cPointer, 0, aPointer, cPointer};
+        index.relayout(pointers.length, new KVStorage.PointerAccess() {
+            @Override
+            public long getPointer(int index) {
+                return pointers[index];
+            }
+
+            @Override
+            public void setPointer(int index, long pointer) {
+                pointers[index] = pointer;
+            }
+        });
+        // c comes first now, the shared entry is kept only once and b is removed
+        assertEquals(1, pointers[0]);
+        assertEquals(0, pointers[1]);
+        assertEquals(pointers[0], pointers[3]);
+        assertEquals(createMap("a", "c name", "l", 7L), index.getAll(pointers[0]));
+        assertEquals(createMap("a", "a name", "i", 42), index.getAll(pointers[2]));
+
+        long dPointer = index.add(createMap("a", "a name", "i", 42));
+        // new entries are appended after the relaid out entries, which take less space without b
+        long cLength = pointers[2] - pointers[0];
+        assertEquals(cPointer + cLength - (cPointer - bPointer), dPointer);
+        assertEquals(createMap("a", "a name", "i", 42), index.getAll(dPointer));
+    }
+
     @Test
     public void putAB() {
         KVStorage index = create();
@@ -18,8 +18,10 @@
 package com.graphhopper.storage;
 
 import com.carrotsearch.hppc.IntArrayList;
+import com.graphhopper.routing.ch.PrepareContractionHierarchies;
 import com.graphhopper.routing.ev.EnumEncodedValue;
 import com.graphhopper.routing.ev.RoadClass;
+import com.graphhopper.routing.weighting.SpeedWeighting;
 import com.graphhopper.search.KVStorage.KValue;
 import com.graphhopper.util.*;
 import com.graphhopper.util.shapes.BBox;
@@ -27,8 +29,12 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.ValueSource;
 
+import java.io.File;
+import java.util.Arrays;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Random;
 
 import static com.graphhopper.util.EdgeIteratorState.REVERSE_STATE;
 import static com.graphhopper.util.FetchMode.*;
@@ -392,6 +398,135 @@ public class BaseGraphTest extends AbstractGraphStorageTester {
         assertTrue(e.getMessage().contains("This edge already has a way geometry so it cannot be changed to a bigger geometry"), e.getMessage());
     }
 
+    @Test
+    public void relayoutGeometryAndKeyValues() {
+        BaseGraph graph = createGHStorage();
+        graph.edge(0, 1).setWayGeometry(Helper.createPointList(1, 1, 2, 2)).setKeyValues(Map.of(STREET_NAME, new KValue("a")));
+        // the same key-values are stored only once
+        graph.edge(1, 2).setWayGeometry(Helper.createPointList(3, 3)).setKeyValues(Map.of(STREET_NAME, new KValue("a")));
+        graph.edge(2, 3).setKeyValues(Map.of(STREET_NAME, new KValue("b", "c")));
+        // a geometry that is replaced with a shorter one leaves unused space behind
+        graph.edge(3, 4).setWayGeometry(Helper.createPointList(4, 4, 5, 5, 6, 6)).setWayGeometry(Helper.createPointList(7, 7));
+        graph.copyEdge(0, true);
+        graph.copyEdge(2, true);
+        graph.copyEdge(3, false);
+        int edges = graph.getEdges();
+        PointList[] geometries = new PointList[edges];
+        Map<?, ?>[] keyValues = new Map[edges];
+        for (int edge = 0; edge < edges; edge++) {
+            EdgeIteratorState state = graph.getEdgeIteratorState(edge, Integer.MIN_VALUE);
+            geometries[edge] = state.fetchWayGeometry(ALL);
+            keyValues[edge] = state.getKeyValues();
+        }
+        long maxGeoRef = graph.getMaxGeoRef();
+
+        graph.sortEdges(edge -> edges - 1 - edge);
+        graph.relayoutWayGeometry();
+        graph.relayoutKeyValues();
+        for (int edge = 0; edge < edges; edge++) {
+            EdgeIteratorState state = graph.getEdgeIteratorState(edges - 1 - edge, Integer.MIN_VALUE);
+            assertEquals(geometries[edge], state.fetchWayGeometry(ALL), "edge " + edge);
+            assertEquals(keyValues[edge], state.getKeyValues(), "edge " + edge);
+        }
+        // the geometries are stored in the new edge order, only the last edge shares its geometry with an earlier one
+        long prevGeoRef = 0;
+        for (int edge = 0; edge < edges - 1; edge++) {
+            long geoRef = graph.getStore().getGeoRef(graph.getStore().toEdgePointer(edge));
+            if (geoRef > 0) {
+                assertTrue(geoRef > prevGeoRef, "edge " + edge);
+                prevGeoRef = geoRef;
+            }
+        }
+        assertEquals(1, graph.getStore().getGeoRef(graph.getStore().toEdgePointer(0)));
+        assertTrue(graph.getMaxGeoRef() < maxGeoRef, graph.getMaxGeoRef() + " vs. " + maxGeoRef);
+
+        // the copies still share their geometry
+        IntArrayList copies = new IntArrayList();
+        graph.forEdgeAndCopiesOfEdge(graph.createEdgeExplorer(), 2, edges - 1 - 2, copies::add);
+        int[] sortedCopies = copies.toArray();
+        Arrays.sort(sortedCopies);
+        assertArrayEquals(new int[]{edges - 1 - 5, edges - 1 - 2}, sortedCopies);
+
+        // we can still add new key-values
+        EdgeIteratorState newEdge = graph.edge(5, 6).setKeyValues(Map.of(STREET_NAME, new KValue("a")));
+        assertEquals(Map.of(STREET_NAME, new KValue("a")), newEdge.getKeyValues());
+        assertEquals(keyValues[0], graph.getEdgeIteratorState(edges - 1, Integer.MIN_VALUE).getKeyValues());
+        graph.close();
+    }
+
+    @ParameterizedTest
+    @ValueSource(booleans = {true, false})
+    public void adjacencyArray(boolean store) {
+        long seed = System.nanoTime();
+        Helper.removeDir(new File(defaultGraphLoc));
+        BaseGraph linked = new BaseGraph.Builder(encodingManager).create();
+        BaseGraph withArray = new BaseGraph.Builder(encodingManager).setDir(new RAMDirectory(defaultGraphLoc, store))
+                .withAdjacencyArray(true).create();
+        for (BaseGraph g : List.of(linked, withArray)) {
+            GHUtility.buildRandomGraph(g, new Random(seed), 100, 2.5, true, footSpeedEnc, 10.0, 0.8, 0.8);
+            g.freeze();
+        }
+        assertAdjacencyEquals(linked, withArray, "seed: " + seed);
+
+        // the CH graph uses the adjacency array for the original edges
+        CHConfig chConfig = CHConfig.nodeBased("p", new SpeedWeighting(footSpeedEnc));
+        RoutingCHGraph linkedCH = RoutingCHGraphImpl.fromGraph(linked, PrepareContractionHierarchies.fromGraph(linked, chConfig).doWork().getCHStorage(), chConfig);
+        RoutingCHGraph arrayCH = RoutingCHGraphImpl.fromGraph(withArray, PrepareContractionHierarchies.fromGraph(withArray, chConfig).doWork().getCHStorage(), chConfig);
+        for (int node = 0; node < linked.getNodes(); node++) {
+            RoutingCHEdgeIterator expectedIter = linkedCH.createOutEdgeExplorer().setBaseNode(node);
+            RoutingCHEdgeIterator givenIter = arrayCH.createOutEdgeExplorer().setBaseNode(node);
+            while (expectedIter.next()) {
+                assertTrue(givenIter.next(), "seed: " + seed);
+                assertEquals(expectedIter.getEdge(), givenIter.getEdge(), "seed: " + seed);
+                assertEquals(expectedIter.getAdjNode(), givenIter.getAdjNode(), "seed: " + seed);
+                assertEquals(expectedIter.getWeight(false), givenIter.getWeight(false), 1.e-6, "seed: " + seed);
+            }
+            assertFalse(givenIter.next(), "seed: " + seed);
+        }
+
+        // filters and detach work as before
+        EdgeIterator iter = withArray.createEdgeExplorer(e -> e.getAdjNode() % 2 == 0).setBaseNode(0);
+        assertThrows(IllegalStateException.class, () -> iter.detach(false));
+        while (iter.next()) {
+            assertEquals(0, iter.getAdjNode() % 2);
+            EdgeIteratorState detached = iter.detach(true);
+            assertEquals(iter.getAdjNode(), detached.getBaseNode());
+            assertEquals(iter.getBaseNode(), detached.getAdjNode());
+            PointList geometry = iter.fetchWayGeometry(ALL);
+            geometry.reverse();
+            assertEquals(geometry, detached.fetchWayGeometry(ALL));
+        }
+
+        if (store) {
+            withArray.flush();
+            withArray.close();
+            BaseGraph loaded = new BaseGraph.Builder(encodingManager).setDir(new RAMDirectory(defaultGraphLoc, true))
+                    .withAdjacencyArray(true).build();
+            assertTrue(loaded.loadExisting());
+            assertTrue(loaded.isFrozen());
+            assertAdjacencyEquals(linked, loaded, "seed: " + seed);
+            loaded.close();
+            Helper.removeDir(new File(defaultGraphLoc));
+        }
+    }
+
+    private static void assertAdjacencyEquals(BaseGraph expected, BaseGraph given, String msg) {
+        EdgeExplorer expectedExplorer = expected.createEdgeExplorer();
+        EdgeExplorer givenExplorer = given.createEdgeExplorer();
+        for (int node = 0; node < expected.getNodes(); node++) {
+            EdgeIterator expectedIter = expectedExplorer.setBaseNode(node);
+            EdgeIterator givenIter = givenExplorer.setBaseNode(node);
+            while (expectedIter.next()) {
+                assertTrue(givenIter.next(), msg);
+                assertEquals(expectedIter.getEdgeKey(), givenIter.getEdgeKey(), msg);
+                assertEquals(expectedIter.getBaseNode(), givenIter.getBaseNode(), msg);
+                assertEquals(expectedIter.getAdjNode(), givenIter.getAdjNode(), msg);
+                assertEquals(expectedIter.getDistance(), givenIter.getDistance(), 1.e-6, msg);
+            }
+            assertFalse(givenIter.next(), msg);
+        }
+    }
+
     @Test
     public void testGeoRef() {
         BaseGraph graph = createGHStorage();
@@ -0,0 +1,133 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.storage;
+
+import com.graphhopper.util.*;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static com.graphhopper.util.FetchMode.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs all BaseGraph tests with the delta and varint encoded way geometry.
+ */
+public class BaseGraphWithCompactGeometryTest extends BaseGraphTest {
+
+    @Override
+    protected BaseGraph newGHStorage(Directory dir, boolean enabled3D, int segmentSize) {
+        return new BaseGraph.Builder(encodingManager).setDir(dir).set3D(enabled3D).setSegmentSize(segmentSize)
+                .withCompactGeometry(true).build();
+    }
+
+    @Override
+    @Test
+    public void testDontGrowOnUpdate() {
+        graph = createGHStorage(defaultGraphLoc, true);
+        NodeAccess na = graph.getNodeAccess();
+        na.setNode(0, 10, 10, 0);
+        na.setNode(1, 11, 20, 1);
+        na.setNode(2, 12, 12, 0.4);
+
+        EdgeIteratorState edge = graph.edge(0, 1).setDistance(100);
+        BaseGraph baseGraph = graph.getBaseGraph();
+        edge.setWayGeometry(Helper.createPointList3D(10.1, 10.1, 0, 10.1001, 10.1001, 0, 10.1002, 10.1002, 0));
+        long maxGeoRef = baseGraph.getMaxGeoRef();
+        edge.setWayGeometry(Helper.createPointList3D(10.1, 10.1, 0, 10.1001, 10.1001, 0));
+        assertEquals(maxGeoRef, baseGraph.getMaxGeoRef());
+        // fewer points, but the differences are larger, so the geometry no longer fits and is appended
+        edge.setWayGeometry(Helper.createPointList3D(10.1, 10.1, 0, -40, -120, 500));
+        assertTrue(baseGraph.getMaxGeoRef() > maxGeoRef);
+        assertEquals(Helper.createPointList3D(10, 10, 0, 10.1, 10.1, 0, -40, -120, 500, 11, 20, 1), edge.fetchWayGeometry(ALL));
+        assertThrows(IllegalStateException.class, () -> edge.setWayGeometry(Helper.createPointList3D(1, 1, 0, 2, 2, 0, 3, 3, 0)));
+    }
+
+    @Test
+    public void compactGeometryNeedsLessSpace() {
+        BaseGraph fixed = new BaseGraph.Builder(encodingManager).set3D(true).create();
+        BaseGraph compact = new BaseGraph.Builder(encodingManager).set3D(true).withCompactGeometry(true).create();
+        Random rnd = new Random(42);
+        for (BaseGraph g : new BaseGraph[]{fixed, compact}) {
+            g.getNodeAccess().setNode(0, 50, 10, 100);
+            g.getNodeAccess().setNode(1, 50.1, 10.1, 120);
+        }
+        for (int i = 0; i < 100; i++) {
+            PointList pillars = new PointList(20, true);
+            double lat = 50, lon = 10, ele = 100;
+            for (int j = 0; j < 20; j++) {
+                // pillar nodes are usually only a few meters apart
+                lat += rnd.nextDouble() * 0.0005;
+                lon += rnd.nextDouble() * 0.0005;
+                ele += rnd.nextDouble() - 0.5;
+                pillars.add(lat, lon, ele);
+            }
+            fixed.edge(0, 1).setWayGeometry(pillars);
+            compact.edge(0, 1).setWayGeometry(pillars);
+        }
+        assertTrue(compact.getMaxGeoRef() < 0.6 * fixed.getMaxGeoRef(), compact.getMaxGeoRef() + " vs. " + fixed.getMaxGeoRef());
+        for (int edge = 0; edge < fixed.getEdges(); edge++) {
+            assertEquals(fixed.getEdgeIteratorState(edge, 1).fetchWayGeometry(ALL), compact.getEdgeIteratorState(edge, 1).fetchWayGeometry(ALL));
+            assertEquals(fixed.getEdgeIteratorState(edge, 0).fetchWayGeometry(ALL), compact.getEdgeIteratorState(edge, 0).fetchWayGeometry(ALL));
+        }
+    }
+
+    @Test
+    public void fetchWayGeometryIntoList() {
+        graph = createGHStorage();
+        NodeAccess na = graph.getNodeAccess();
+        na.setNode(0, 0, 0);
+        na.setNode(1, 1, 1);
+        na.setNode(2, 2, 2);
+        EdgeIteratorState edge1 = graph.edge(0, 1).setWayGeometry(Helper.createPointList(0.5, 0.4, 0.6, 0.7));
+        graph.edge(1, 2);
+
+        for (FetchMode mode : FetchMode.values()) {
+            EdgeExplorer explorer = graph.createEdgeExplorer();
+            EdgeIterator iter = explorer.setBaseNode(1);
+            while (iter.next()) {
+                PointList expected = iter.fetchWayGeometry(mode);
+                PointList actual = new PointList();
+                iter.fetchWayGeometry(mode, actual);
+                assertEquals(expected, actual, mode + ", edge " + iter.getEdge());
+            }
+        }
+        // the geometries of consecutive edges can be appended to the same list
+        PointList points = new PointList();
+        points.add(na, 0);
+        edge1.fetchWayGeometry(PILLAR_AND_ADJ, points);
+        graph.getEdgeIteratorState(1, 2).fetchWayGeometry(PILLAR_AND_ADJ, points);
+        assertEquals(Helper.createPointList(0, 0, 0.5, 0.4, 0.6, 0.7, 1, 1, 2, 2), points);
+    }
+
+    @Test
+    public void keepFormatOfExistingGraph() {
+        graph = newGHStorage(new RAMDirectory(defaultGraphLoc, true), false).create(defaultSize);
+        NodeAccess na = graph.getNodeAccess();
+        na.setNode(0, 10, 10);
+        na.setNode(1, 11, 11);
+        graph.edge(0, 1).setWayGeometry(Helper.createPointList(10.2, 10.2, 10.5, 10.6));
+        graph.flush();
+        graph.close();
+
+        // the graph is loaded in the format it was created with, even if the new format is not enabled
+        graph = new BaseGraph.Builder(encodingManager).setDir(new RAMDirectory(defaultGraphLoc, true)).build();
+        assertTrue(graph.loadExisting());
+        assertEquals(Helper.createPointList(10, 10, 10.2, 10.2, 10.5, 10.6, 11, 11), graph.getEdgeIteratorState(0, 1).fetchWayGeometry(ALL));
+    }
+}
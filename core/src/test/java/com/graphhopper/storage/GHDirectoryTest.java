@@ -5,6 +5,7 @@ import org.junit.jupiter.api.Test;
 import java.util.LinkedHashMap;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 class GHDirectoryTest {
 
@@ -33,4 +34,18 @@ class GHDirectoryTest {
         assertEquals(DAType.MMAP, dir.getDefaultType("nodes_ch_car", false));
     }
 
-}
\ No newline at end of file
+    @Test
+    public void testOffHeap() {
+        GHDirectory dir = new GHDirectory("", DAType.RAM);
+        LinkedHashMap<String, String> map = new LinkedHashMap<>();
+        map.put("nodes", "OFF_HEAP");
+        map.put("edges", "off_heap_store");
+        dir.configure(map);
+        assertEquals(DAType.OFF_HEAP, dir.getDefaultType("nodes", true));
+        assertEquals(DAType.OFF_HEAP_STORE, dir.getDefaultType("edges", true));
+        DataAccess da = dir.create("nodes");
+        assertTrue(da instanceof OffHeapDataAccess);
+        assertEquals(DAType.OFF_HEAP, da.getType());
+        dir.close();
+    }
+}
@@ -19,6 +19,8 @@ package com.graphhopper.storage;
 
 import org.junit.jupiter.api.Test;
 
+import java.nio.ReadOnlyBufferException;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 /**
@@ -59,4 +61,36 @@ public class MMapDataAccessTest extends DataAccessTest {
         assertEquals(123, da.getInt(7 * 4));
         da.close();
     }
+
+    @Test
+    public void testReadOnly() {
+        DataAccess da = createDataAccess(name, 128);
+        da.create(2000);
+        for (int i = 0; i < 500; i++)
+            // we start at 2 to also test the ints that are split between two segments
+            da.setInt(2 + i * 4L, i * 7);
+        da.setHeader(4, 123);
+        da.flush();
+        da.close();
+
+        MMapDataAccess readOnly = new MMapDataAccess(name, directory, false, 128).setMaxReadOnlyRegionSize(1000);
+        assertTrue(readOnly.loadExisting());
+        assertEquals(DAType.MMAP_RO, readOnly.getType());
+        assertFalse(readOnly.getType().isAllowWrites());
+        assertEquals(16, readOnly.getSegments());
+        // 1000 bytes are seven segments
+        assertEquals(3, readOnly.getReadOnlyRegions());
+        assertEquals(123, readOnly.getHeader(4));
+        for (int i = 0; i < 500; i++)
+            assertEquals(i * 7, readOnly.getInt(2 + i * 4L));
+        assertThrows(ReadOnlyBufferException.class, () -> readOnly.setInt(0, 1));
+
+        // the same file can be opened several times
+        MMapDataAccess other = new MMapDataAccess(name, directory, false, 128);
+        assertTrue(other.loadExisting());
+        assertEquals(1, other.getReadOnlyRegions());
+        assertEquals(7 * 499, other.getInt(2 + 499 * 4L));
+        other.close();
+        readOnly.close();
+    }
 }
@@ -19,6 +19,7 @@
 package com.graphhopper.util;
 
 import com.carrotsearch.hppc.IntArrayList;
+import com.carrotsearch.hppc.sorting.IndirectSort;
 import org.junit.jupiter.api.Test;
 
 import java.util.Arrays;
@@ -156,6 +157,24 @@ class ArrayUtilTest {
         assertEquals(from(2, 3, 1, 0), from(ArrayUtil.calcSortOrder(new int[]{3, 3, 0, 0}, new int[]{0, -1, 1, 2}, 4)));
     }
 
+    @Test
+    public void testCalcSortOrderParallel() {
+        assertArrayEquals(new int[]{}, ArrayUtil.calcSortOrderParallel(new long[]{}));
+        assertArrayEquals(new int[]{2, 0, 3, 1}, ArrayUtil.calcSortOrderParallel(new long[]{5, 1L << 40, 3, 5}));
+        assertThrows(IllegalArgumentException.class, () -> ArrayUtil.calcSortOrderParallel(new long[]{3, -1}));
+
+        long seed = System.nanoTime();
+        Random rnd = new Random(seed);
+        for (int rep = 0; rep < 20; rep++) {
+            long[] keys = new long[rnd.nextInt(10_000)];
+            for (int i = 0; i < keys.length; i++)
+                // few distinct upper bits and some duplicates, so there are long runs and ties
+                keys[i] = (long) rnd.nextInt(5) << 32 | rnd.nextInt(1000);
+            int[] expected = IndirectSort.mergesort(0, keys.length, (a, b) -> Long.compare(keys[a], keys[b]));
+            assertArrayEquals(expected, ArrayUtil.calcSortOrderParallel(keys), "seed: " + seed);
+        }
+    }
+
     @Test
     public void testApplyOrder() {
         assertEquals(from(0, 6, 3, 1, 4), from(ArrayUtil.applyOrder(new int[]{3, 4, 6, 0, 1}, new int[]{3, 2, 0, 4, 1})));
@@ -0,0 +1,61 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class IntPointListTest {
+
+    @Test
+    public void testAddAndGet() {
+        IntPointList list = new IntPointList(1, true);
+        for (int i = 0; i < 20; i++)
+            list.add(Helper.degreeToInt(50 + i * 0.001), Helper.degreeToInt(10 - i * 0.001), Helper.eleToUInt(100 + i));
+        assertEquals(20, list.size());
+        assertEquals(50.019, list.getLat(19), 1e-7);
+        assertEquals(9.981, list.getLon(19), 1e-7);
+        assertEquals(119, list.getEle(19), 1e-2);
+        assertThrows(ArrayIndexOutOfBoundsException.class, () -> list.getLat(20));
+        assertThrows(IllegalStateException.class, () -> list.add(1, 2));
+
+        list.clear();
+        assertTrue(list.isEmpty());
+        list.add(1, 2, 3);
+        assertEquals(1, list.size());
+        assertEquals(1, list.getIntLat(0));
+        assertEquals(2, list.getIntLon(0));
+        assertEquals(3, list.getIntEle(0));
+    }
+
+    @Test
+    public void testAddTo() {
+        IntPointList list = new IntPointList(3, false);
+        list.add(Helper.degreeToInt(1), Helper.degreeToInt(2));
+        list.add(Helper.degreeToInt(3), Helper.degreeToInt(4));
+        assertTrue(Double.isNaN(list.getEle(0)));
+        assertThrows(IllegalStateException.class, () -> list.getIntEle(0));
+
+        PointList target = Helper.createPointList(0, 0);
+        list.addTo(target, false);
+        list.addTo(target, true);
+        assertEquals(Helper.createPointList(0, 0, 1, 2, 3, 4, 3, 4, 1, 2), target);
+        assertEquals(Helper.createPointList(1, 2, 3, 4), list.toPointList());
+    }
+}
@@ -21,6 +21,7 @@ import com.carrotsearch.hppc.IntHashSet;
 import com.graphhopper.GraphHopper;
 import com.graphhopper.config.Profile;
 import com.graphhopper.routing.AStarBidirection;
+import com.graphhopper.routing.AStarOneToMany;
 import com.graphhopper.routing.DijkstraBidirectionRef;
 import com.graphhopper.routing.Path;
 import com.graphhopper.routing.ev.BooleanEncodedValue;
@@ -42,6 +43,7 @@ import com.graphhopper.util.shapes.BBox;
 import org.locationtech.jts.geom.Envelope;
 
 import java.util.*;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 
@@ -66,6 +68,10 @@ import static com.graphhopper.util.DistancePlaneProjection.DIST_PLANE;
  * @author kodonnell
  */
 public class MapMatching {
+    // the one-to-many search for the transitions gives up on the remaining candidates if it has to look this far
+    private static final int ONE_TO_MANY_MAX_VISITED_NODES = 10_000;
+    private static final double ONE_TO_MANY_MAX_WEIGHT_FACTOR = 2;
+    private static final int NO_CANDIDATE = -1;
     private final BaseGraph graph;
     private final Router router;
     private final LocationIndexTree locationIndex;
@@ -129,12 +135,30 @@ public class MapMatching {
                 return snapFilter;
             }
 
+            private long visitedNodes;
+
             @Override
             public List<Path> calcPaths(QueryGraph queryGraph, int fromNode, int fromOutEdge, int[] toNodes, int[] toInEdges) {
                 assert (toNodes.length == toInEdges.length);
-                List<Path> result = new ArrayList<>();
-                for (int i = 0; i < toNodes.length; i++) {
-                    result.add(calcOnePath(queryGraph, fromNode, toNodes[i], fromOutEdge, toInEdges[i]));
+                // a single search finds the paths to all candidates of the next observation, which are usually close
+                // to each other
+                Weighting queryGraphWeighting = queryGraph.wrapWeighting(weighting);
+                AStarOneToMany oneToMany = new AStarOneToMany(queryGraph, queryGraphWeighting, TraversalMode.EDGE_BASED);
+                if (landmarks != null) {
+                    int activeLM = Math.min(8, landmarks.getLandmarkCount());
+                    oneToMany.setApproximation(() -> LMApproximator.forLandmarks(queryGraph, queryGraphWeighting, landmarks, activeLM));
+                }
+                oneToMany.setMaxVisitedNodes(Math.min(maxVisitedNodes, ONE_TO_MANY_MAX_VISITED_NODES));
+                oneToMany.setMaxWeightFactor(ONE_TO_MANY_MAX_WEIGHT_FACTOR);
+                List<Path> result = oneToMany.calcPaths(fromNode, fromOutEdge, toNodes, toInEdges);
+                visitedNodes += oneToMany.getVisitedNodes();
+                if (oneToMany.isStoppedEarly()) {
+                    // the remaining candidates are far away or cannot be reached at all, which a point to point
+                    // search finds out much faster
+                    for (int i = 0; i < toNodes.length; i++) {
+                        if (!result.get(i).isFound())
+                            result.set(i, calcOnePath(queryGraph, fromNode, toNodes[i], fromOutEdge, toInEdges[i]));
+                    }
                 }
                 return result;
             }
@@ -152,7 +176,13 @@ public class MapMatching {
                     LMApproximator lmApproximator = LMApproximator.forLandmarks(queryGraph, queryGraphWeighting, landmarks, activeLM);
                     aStarBidirection.setApproximation(lmApproximator);
                     aStarBidirection.setMaxVisitedNodes(maxVisitedNodes);
-                    return aStarBidirection.calcPath(fromNode, toNode, fromOutEdge, toInEdge);
+                    try {
+                        Path path = aStarBidirection.calcPath(fromNode, toNode, fromOutEdge, toInEdge);
+                        visitedNodes += aStarBidirection.getVisitedNodes();
+                        return path;
+                    } finally {
+                        aStarBidirection.releaseWorkspace();
+                    }
                 } else {
                     DijkstraBidirectionRef dijkstraBidirectionRef = new DijkstraBidirectionRef(queryGraph, queryGraphWeighting, TraversalMode.EDGE_BASED) {
                         @Override
@@ -161,7 +191,13 @@ public class MapMatching {
                         }
                     };
                     dijkstraBidirectionRef.setMaxVisitedNodes(maxVisitedNodes);
-                    return dijkstraBidirectionRef.calcPath(fromNode, toNode, fromOutEdge, toInEdge);
+                    try {
+                        Path path = dijkstraBidirectionRef.calcPath(fromNode, toNode, fromOutEdge, toInEdge);
+                        visitedNodes += dijkstraBidirectionRef.getVisitedNodes();
+                        return path;
+                    } finally {
+                        dijkstraBidirectionRef.releaseWorkspace();
+                    }
                 }
             }
 
@@ -169,6 +205,11 @@ public class MapMatching {
             public Weighting getWeighting() {
                 return weighting;
             }
+
+            @Override
+            public long getVisitedNodes() {
+                return visitedNodes;
+            }
         };
         return router;
     }
@@ -234,6 +275,123 @@ public class MapMatching {
         return result;
     }
 
+    /**
+     * Like {@link #match(List)}, but runs the Viterbi algorithm on windows of at most windowSize (filtered)
+     * observations. Only the snaps, the query graph and the labels of the current window are kept, and the edge
+     * matches are passed to the consumer as soon as they are final, i.e. with a lag of at most one window.
+     * <p>
+     * The last lag observations of a window are matched again as part of the next window, which starts at the state
+     * chosen for the last final observation. A larger lag gives the Viterbi algorithm more context before it settles
+     * on a state and makes it more likely that the result is the same as the one of {@link #match(List)}.
+     * <p>
+     * The merged path of the result consists of the complete edges of the edge matches, while the match length and
+     * time only count the edges up to the first and last observation, as for {@link #match(List)}.
+     */
+    public MatchResult matchWindowed(List<Observation> observations, int windowSize, int lag, Consumer<EdgeMatch> edgeMatchConsumer) {
+        if (lag < 0 || windowSize < lag + 2)
+            throw new IllegalArgumentException("The window size must be at least lag + 2 and the lag must not be negative, window size: " + windowSize + ", lag: " + lag);
+        List<Observation> filteredObservations = filterObservations(observations);
+        statistics.put("filteredObservations", filteredObservations.size());
+
+        List<EdgeMatch> edgeMatches = new ArrayList<>();
+        // the last edge match of a window might be continued by the next window, so we hold it back
+        EdgeMatch pending = null;
+        double matchLength = 0;
+        long matchMillis = 0;
+        int windows = 0;
+        int startKey = NO_CANDIDATE;
+        int from = 0;
+        while (from < filteredObservations.size()) {
+            int to = Math.min(from + windowSize, filteredObservations.size());
+            boolean lastWindow = to == filteredObservations.size();
+            List<SequenceState<State, Observation, Path>> seq = computeWindowSequence(filteredObservations.subList(from, to), startKey);
+            windows++;
+            List<SequenceState<State, Observation, Path>> finalSeq = lastWindow ? seq : seq.subList(0, seq.size() - lag);
+            for (SequenceState<State, Observation, Path> s : finalSeq) {
+                if (s.transitionDescriptor != null) {
+                    matchLength += s.transitionDescriptor.getDistance();
+                    matchMillis += s.transitionDescriptor.getTime();
+                }
+            }
+
+            List<EdgeMatch> windowMatches = prepareEdgeMatches(finalSeq);
+            // the first state of every window but the first was already assigned to an edge by the previous window
+            int skipFirstState = startKey == NO_CANDIDATE ? 0 : 1;
+            if (windowMatches.isEmpty()) {
+                // all final states of this window are at the same node, they belong to the current edge
+                for (int i = skipFirstState; pending != null && i < finalSeq.size(); i++)
+                    pending.getStates().add(finalSeq.get(i).state);
+            } else {
+                EdgeMatch first = windowMatches.get(0);
+                List<State> firstStates = first.getStates().subList(skipFirstState, first.getStates().size());
+                if (pending != null && equalEdges(pending.getEdgeState(), first.getEdgeState())) {
+                    pending.getStates().addAll(firstStates);
+                    windowMatches.set(0, pending);
+                } else {
+                    windowMatches.set(0, new EdgeMatch(first.getEdgeState(), new ArrayList<>(firstStates)));
+                    if (pending != null)
+                        windowMatches.add(0, pending);
+                }
+                pending = null;
+                if (!lastWindow) {
+                    EdgeMatch last = windowMatches.remove(windowMatches.size() - 1);
+                    pending = new EdgeMatch(last.getEdgeState(), new ArrayList<>(last.getStates()));
+                }
+                for (EdgeMatch edgeMatch : windowMatches) {
+                    edgeMatches.add(edgeMatch);
+                    edgeMatchConsumer.accept(edgeMatch);
+                }
+            }
+            if (lastWindow)
+                break;
+            from += finalSeq.size() - 1;
+            startKey = candidateKey(finalSeq.get(finalSeq.size() - 1).state);
+        }
+        if (pending != null) {
+            edgeMatches.add(pending);
+            edgeMatchConsumer.accept(pending);
+        }
+        statistics.put("windows", windows);
+        statistics.put("visitedNodes", router.getVisitedNodes());
+
+        MatchResult result = new MatchResult(edgeMatches);
+        Weighting weighting = router.getWeighting();
+        result.setMergedPath(new MapMatchedPath(graph, weighting, edgeMatches.stream().map(EdgeMatch::getEdgeState).collect(Collectors.toList())));
+        result.setMatchMillis(matchMillis);
+        result.setMatchLength(matchLength);
+        result.setGPXEntriesLength(gpxLength(observations));
+        result.setGraph(graph);
+        result.setWeighting(weighting);
+        return result;
+    }
+
+    private List<SequenceState<State, Observation, Path>> computeWindowSequence(List<Observation> window, int startKey) {
+        List<List<Snap>> snapsPerObservation = window.stream()
+                .map(o -> findCandidateSnaps(o.getPoint().lat, o.getPoint().lon))
+                .collect(Collectors.toList());
+        queryGraph = QueryGraph.create(graph, snapsPerObservation.stream().flatMap(Collection::stream).collect(Collectors.toList()));
+        List<ObservationWithCandidateStates> timeSteps = createTimeSteps(window, snapsPerObservation);
+        if (startKey != NO_CANDIDATE) {
+            // the window has to continue where the previous one ended. the snaps of the same observation are the same
+            // in every query graph, so we only need to find the candidate on the same real edge or node.
+            ObservationWithCandidateStates first = timeSteps.get(0);
+            List<State> candidates = first.candidates.stream().filter(c -> candidateKey(c) == startKey).collect(Collectors.toList());
+            if (!candidates.isEmpty())
+                timeSteps.set(0, new ObservationWithCandidateStates(first.observation, candidates));
+        }
+        return computeViterbiSequence(timeSteps);
+    }
+
+    /**
+     * @return a key that identifies the given candidate independent of the query graph: the key of the directed real
+     * edge for candidates on an edge and the (negative) node for candidates on a node
+     */
+    private int candidateKey(State state) {
+        if (state.isOnDirectedEdge())
+            return resolveToRealEdge(state.getOutgoingVirtualEdge()).getEdgeKey();
+        return -2 - state.getSnap().getClosestNode();
+    }
+
     /**
      * Filters observations to only those which will be used for map matching (i.e. those which
      * are separated by at least 2 * measurementErrorSigman
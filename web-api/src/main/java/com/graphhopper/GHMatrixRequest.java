@@ -0,0 +1,124 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper;
+
+import com.fasterxml.jackson.annotation.JsonAnySetter;
+import com.graphhopper.util.PMap;
+import com.graphhopper.util.shapes.GHPoint;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Request object to calculate the weights, times and/or distances between all 'from' and all 'to' points.
+ *
+ * @see GHMatrixResponse
+ */
+public class GHMatrixRequest {
+    public static final String WEIGHTS = "weights";
+    public static final String TIMES = "times";
+    public static final String DISTANCES = "distances";
+
+    private List<GHPoint> fromPoints = new ArrayList<>();
+    private List<GHPoint> toPoints = new ArrayList<>();
+    private String profile = "";
+    private List<String> outArrays = Arrays.asList(WEIGHTS, TIMES, DISTANCES);
+    private List<String> snapPreventions;
+    private final PMap hints = new PMap();
+
+    public GHMatrixRequest setFromPoints(List<GHPoint> fromPoints) {
+        this.fromPoints = fromPoints;
+        return this;
+    }
+
+    public List<GHPoint> getFromPoints() {
+        return fromPoints;
+    }
+
+    public GHMatrixRequest setToPoints(List<GHPoint> toPoints) {
+        this.toPoints = toPoints;
+        return this;
+    }
+
+    public List<GHPoint> getToPoints() {
+        return toPoints;
+    }
+
+    /**
+     * Uses the same points as 'from' and 'to' points, i.e. creates a symmetric matrix.
+     */
+    public GHMatrixRequest setPoints(List<GHPoint> points) {
+        this.fromPoints = points;
+        this.toPoints = points;
+        return this;
+    }
+
+    public GHMatrixRequest setProfile(String profile) {
+        this.profile = profile;
+        return this;
+    }
+
+    public String getProfile() {
+        return profile;
+    }
+
+    /**
+     * Specifies which of the arrays {@link #WEIGHTS}, {@link #TIMES} and {@link #DISTANCES} should be calculated.
+     * Calculating only the weights is faster.
+     */
+    public GHMatrixRequest setOutArrays(List<String> outArrays) {
+        this.outArrays = outArrays;
+        return this;
+    }
+
+    public List<String> getOutArrays() {
+        return outArrays;
+    }
+
+    public boolean hasSnapPreventions() {
+        return snapPreventions != null;
+    }
+
+    public GHMatrixRequest setSnapPreventions(List<String> snapPreventions) {
+        this.snapPreventions = snapPreventions;
+        return this;
+    }
+
+    public List<String> getSnapPreventions() {
+        if (snapPreventions == null) return Collections.emptyList();
+        return snapPreventions;
+    }
+
+    public PMap getHints() {
+        return hints;
+    }
+
+    @JsonAnySetter
+    public GHMatrixRequest putHint(String fieldName, Object value) {
+        this.hints.putObject(fieldName, value);
+        return this;
+    }
+
+    @Override
+    public String toString() {
+        return "from: " + fromPoints.size() + " points, to: " + toPoints.size() + " points, profile: " + profile
+                + ", out_arrays: " + outArrays;
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper;
+
+import com.graphhopper.util.PMap;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The result of a {@link GHMatrixRequest}. The values are stored in primitive arrays in row-major order, i.e. the
+ * entry for the i-th 'from' point and the j-th 'to' point is found at index i * getToSize() + j. Arrays that were not
+ * requested are empty. For unreachable pairs the weight and distance are infinite and the time is
+ * {@link Long#MAX_VALUE}.
+ */
+public class GHMatrixResponse {
+    private final List<Throwable> errors = new ArrayList<>(4);
+    private final PMap hints = new PMap();
+    private int fromSize;
+    private int toSize;
+    private double[] weights = new double[0];
+    private long[] times = new long[0];
+    private double[] distances = new double[0];
+
+    public GHMatrixResponse() {
+    }
+
+    public GHMatrixResponse(int fromSize, int toSize, double[] weights, long[] times, double[] distances) {
+        if (weights.length != fromSize * toSize)
+            throw new IllegalArgumentException("weights must have " + fromSize * toSize + " entries, but was: " + weights.length);
+        this.fromSize = fromSize;
+        this.toSize = toSize;
+        this.weights = weights;
+        this.times = times;
+        this.distances = distances;
+    }
+
+    public int getFromSize() {
+        return fromSize;
+    }
+
+    public int getToSize() {
+        return toSize;
+    }
+
+    public double[] getWeights() {
+        return weights;
+    }
+
+    public long[] getTimes() {
+        return times;
+    }
+
+    public double[] getDistances() {
+        return distances;
+    }
+
+    public double getWeight(int from, int to) {
+        return weights[from * toSize + to];
+    }
+
+    /**
+     * @return the time in milliseconds
+     */
+    public long getTime(int from, int to) {
+        return times[from * toSize + to];
+    }
+
+    /**
+     * @return the distance in meters
+     */
+    public double getDistance(int from, int to) {
+        return distances[from * toSize + to];
+    }
+
+    public PMap getHints() {
+        return hints;
+    }
+
+    public boolean hasErrors() {
+        return !errors.isEmpty();
+    }
+
+    public List<Throwable> getErrors() {
+        return errors;
+    }
+
+    public GHMatrixResponse addError(Throwable error) {
+        errors.add(error);
+        return this;
+    }
+
+    @Override
+    public String toString() {
+        if (hasErrors())
+            return "errors: " + errors;
+        return fromSize + "x" + toSize + " matrix";
+    }
+}
@@ -0,0 +1,170 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.util;
+
+import java.util.Arrays;
+
+/**
+ * A list of points in the fixed-point format of the graph storage: latitude and longitude as int (see
+ * {@link Helper#degreeToInt}) and the elevation as unsigned int (see {@link Helper#eleToUInt}). It uses half the memory
+ * of a {@link PointList} and can be cleared and reused, e.g. as buffer when decoding way geometries.
+ */
+public class IntPointList implements PointAccess {
+    private final boolean is3D;
+    private int size = 0;
+    private int[] latitudes;
+    private int[] longitudes;
+    private int[] elevations;
+
+    public IntPointList(int cap, boolean is3D) {
+        latitudes = new int[cap];
+        longitudes = new int[cap];
+        this.is3D = is3D;
+        if (is3D)
+            elevations = new int[cap];
+    }
+
+    @Override
+    public boolean is3D() {
+        return is3D;
+    }
+
+    @Override
+    public int getDimension() {
+        return is3D ? 3 : 2;
+    }
+
+    @Override
+    public void ensureNode(int nodeId) {
+        incCap(nodeId + 1);
+    }
+
+    @Override
+    public void setNode(int nodeId, double lat, double lon, double ele) {
+        if (nodeId >= size)
+            throw new ArrayIndexOutOfBoundsException("index has to be smaller than size " + size);
+        latitudes[nodeId] = Helper.degreeToInt(lat);
+        longitudes[nodeId] = Helper.degreeToInt(lon);
+        if (is3D)
+            elevations[nodeId] = Helper.eleToUInt(ele);
+        else if (!Double.isNaN(ele))
+            throw new IllegalStateException("This is a 2D list we cannot store elevation: " + ele);
+    }
+
+    private void incCap(int newSize) {
+        if (newSize <= latitudes.length)
+            return;
+
+        int cap = Math.max(15, newSize * 2);
+        latitudes = Arrays.copyOf(latitudes, cap);
+        longitudes = Arrays.copyOf(longitudes, cap);
+        if (is3D)
+            elevations = Arrays.copyOf(elevations, cap);
+    }
+
+    public void add(int lat, int lon) {
+        if (is3D)
+            throw new IllegalStateException("Cannot add point without elevation data in 3D mode");
+        incCap(size + 1);
+        latitudes[size] = lat;
+        longitudes[size] = lon;
+        size++;
+    }
+
+    public void add(int lat, int lon, int ele) {
+        if (!is3D)
+            throw new IllegalStateException("This is a 2D list we cannot store elevation: " + ele);
+        incCap(size + 1);
+        latitudes[size] = lat;
+        longitudes[size] = lon;
+        elevations[size] = ele;
+        size++;
+    }
+
+    public int getIntLat(int index) {
+        checkIndex(index);
+        return latitudes[index];
+    }
+
+    public int getIntLon(int index) {
+        checkIndex(index);
+        return longitudes[index];
+    }
+
+    public int getIntEle(int index) {
+        checkIndex(index);
+        if (!is3D)
+            throw new IllegalStateException("This is a 2D list without elevation");
+        return elevations[index];
+    }
+
+    @Override
+    public double getLat(int index) {
+        return Helper.intToDegree(getIntLat(index));
+    }
+
+    @Override
+    public double getLon(int index) {
+        return Helper.intToDegree(getIntLon(index));
+    }
+
+    @Override
+    public double getEle(int index) {
+        return is3D ? Helper.uIntToEle(getIntEle(index)) : Double.NaN;
+    }
+
+    private void checkIndex(int index) {
+        if (index >= size)
+            throw new ArrayIndexOutOfBoundsException(PointList.ERR_MSG + " index:" + index + ", size:" + size);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Removes all points but keeps the allocated arrays.
+     */
+    public void clear() {
+        size = 0;
+    }
+
+    /**
+     * Appends all points to the given PointList, in reverse order if reverse is true.
+     */
+    public void addTo(PointList target, boolean reverse) {
+        target.ensureNode(target.size() + size - 1);
+        for (int i = 0; i < size; i++)
+            target.add(this, reverse ? size - 1 - i : i);
+    }
+
+    public PointList toPointList() {
+        PointList pointList = new PointList(size, is3D);
+        addTo(pointList, false);
+        return pointList;
+    }
+
+    @Override
+    public String toString() {
+        return toPointList().toString();
+    }
+}
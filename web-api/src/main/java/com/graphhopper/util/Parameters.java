@@ -99,6 +99,10 @@ public class Parameters {
         public static final String INIT_MAX_VISITED_NODES = ROUTING_INIT_PREFIX + "max_visited_nodes";
         public static final String TIMEOUT_MS = "timeout_ms";
         public static final String INIT_TIMEOUT_MS = ROUTING_INIT_PREFIX + "timeout_ms";
+        /**
+         * if false the live speeds are not used for this request, see routing.live_traffic.profiles
+         */
+        public static final String LIVE_TRAFFIC = "live_traffic";
         /**
          * if true the response will contain turn instructions
          */
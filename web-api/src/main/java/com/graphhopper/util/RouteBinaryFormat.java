@@ -0,0 +1,423 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.util;
+
+import com.graphhopper.GHResponse;
+import com.graphhopper.ResponsePath;
+import com.graphhopper.util.details.PathDetail;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * A compact binary alternative to the JSON response of POST /route. It is requested with the Accept header
+ * {@link #MEDIA_TYPE} and written directly to the output stream, without building a JSON tree first. Errors are
+ * still returned as JSON.
+ * <p>
+ * All numbers are big-endian. A varint is an unsigned LEB128 integer (7 bits per byte, lowest group first) and a
+ * signed varint is zigzag encoded before. A string is its UTF-8 length as varint followed by the UTF-8 bytes.
+ * <pre>
+ * response    := int32 magic "GHRB", varint version, map hints, varint copyright count, string copyrights...,
+ *                signed varint took, string road data timestamp (empty if unknown), varint path count, path...
+ * path        := float64 distance, float64 weight, signed varint time, varint transfers,
+ *                varint description count, string descriptions..., byte flags (1: points, 2: elevation,
+ *                4: instructions), [points, [varint instruction count, instruction...], details,
+ *                float64 ascend, float64 descend]  (only if the points flag is set), points snapped waypoints,
+ *                varint points order count, varint points order...
+ * points      := varint count, then per point the signed varint deltas of lat*1e6, lon*1e6 and (if the elevation
+ *                flag is set) elevation*100 to the previous point
+ * instruction := signed varint sign, string text, string street name, signed varint time, float64 distance,
+ *                varint number of points (the interval ends at its start plus this number), map extra info
+ * details     := varint count, then per detail: string name, varint count, (varint first, varint last, value)...
+ * map         := varint count, (string key, value)...
+ * value       := byte tag (0: null, 1: false, 2: true, 3: int, 4: long, 5: float64, 6: string, 7: map, 8: list)
+ *                followed by a signed varint (int, long), float64, string, map or (varint count, value...) for lists
+ * </pre>
+ * The legs and the fare of public transit routes are not part of this format.
+ */
+public class RouteBinaryFormat {
+    public static final String MEDIA_TYPE = "application/x-gh-route";
+    public static final int VERSION = 1;
+    private static final int MAGIC = 'G' << 24 | 'H' << 16 | 'R' << 8 | 'B';
+    private static final double MULTIPLIER = 1e6;
+    private static final double ELE_MULTIPLIER = 100;
+    private static final int POINTS = 1, ELEVATION = 2, INSTRUCTIONS = 4;
+    private static final int NULL = 0, FALSE = 1, TRUE = 2, INT = 3, LONG = 4, DOUBLE = 5, STRING = 6, MAP = 7, LIST = 8;
+
+    /**
+     * Writes the paths of the given response, which must not have errors, to the given output stream
+     */
+    public static void write(GHResponse rsp, List<String> copyrights, long took, String roadDataTimestamp,
+                             boolean enableInstructions, boolean calcPoints, boolean enableElevation, OutputStream out) throws IOException {
+        if (rsp.hasErrors())
+            throw new IllegalArgumentException("Responses with errors cannot be written in binary format: " + rsp.getErrors());
+        Writer writer = new Writer(out);
+        writer.out.writeInt(MAGIC);
+        writer.writeVarLong(VERSION);
+        writer.writeMap(rsp.getHints().toMap());
+        writer.writeVarLong(copyrights.size());
+        for (String copyright : copyrights)
+            writer.writeString(copyright);
+        writer.writeSignedVarLong(took);
+        writer.writeString(roadDataTimestamp == null ? "" : roadDataTimestamp);
+        writer.writeVarLong(rsp.getAll().size());
+        for (ResponsePath path : rsp.getAll())
+            writePath(writer, path, enableInstructions, calcPoints, enableElevation);
+        writer.out.flush();
+    }
+
+    private static void writePath(Writer writer, ResponsePath path, boolean enableInstructions, boolean calcPoints,
+                                  boolean enableElevation) throws IOException {
+        writer.out.writeDouble(path.getDistance());
+        writer.out.writeDouble(path.getRouteWeight());
+        writer.writeSignedVarLong(path.getTime());
+        writer.writeVarLong(path.getNumChanges());
+        writer.writeVarLong(path.getDescription().size());
+        for (String description : path.getDescription())
+            writer.writeString(description);
+        boolean elevation = enableElevation && path.getWaypoints().is3D();
+        boolean instructions = calcPoints && enableInstructions && path.getInstructions() != null;
+        writer.out.writeByte((calcPoints ? POINTS : 0) | (elevation ? ELEVATION : 0) | (instructions ? INSTRUCTIONS : 0));
+        if (calcPoints) {
+            writer.writePoints(path.getPoints(), elevation);
+            if (instructions) {
+                InstructionList instructionList = path.getInstructions();
+                writer.writeVarLong(instructionList.size());
+                for (Instruction instruction : instructionList) {
+                    writer.writeSignedVarLong(instruction.getSign());
+                    writer.writeString(Helper.firstBig(instruction.getTurnDescription(instructionList.getTr())));
+                    writer.writeString(instruction.getName());
+                    writer.writeSignedVarLong(instruction.getTime());
+                    writer.out.writeDouble(instruction.getDistance());
+                    writer.writeVarLong(instruction.getLength());
+                    writer.writeMap(instruction.getExtraInfoJSON());
+                }
+            }
+            writer.writeVarLong(path.getPathDetails().size());
+            for (Map.Entry<String, List<PathDetail>> entry : path.getPathDetails().entrySet()) {
+                writer.writeString(entry.getKey());
+                writer.writeVarLong(entry.getValue().size());
+                for (PathDetail detail : entry.getValue()) {
+                    writer.writeVarLong(detail.getFirst());
+                    writer.writeVarLong(detail.getLast());
+                    writer.writeValue(detail.getValue());
+                }
+            }
+            writer.out.writeDouble(path.getAscend());
+            writer.out.writeDouble(path.getDescend());
+        }
+        writer.writePoints(path.getWaypoints(), elevation);
+        writer.writeVarLong(path.getPointsOrder().size());
+        for (int index : path.getPointsOrder())
+            writer.writeVarLong(index);
+    }
+
+    /**
+     * Reads a response written by {@link #write}.
+     *
+     * @param turnDescription if false the street names are used as instruction texts instead of the turn descriptions
+     */
+    public static GHResponse read(InputStream in, boolean turnDescription) throws IOException {
+        Reader reader = new Reader(in);
+        if (reader.in.readInt() != MAGIC)
+            throw new IOException("Not a binary route response");
+        int version = (int) reader.readVarLong();
+        if (version != VERSION)
+            throw new IOException("Unsupported binary route response version " + version + ", expected: " + VERSION);
+        GHResponse rsp = new GHResponse();
+        reader.readMap().forEach((key, value) -> rsp.getHints().putObject(key, value));
+        int copyrights = (int) reader.readVarLong();
+        for (int i = 0; i < copyrights; i++)
+            reader.readString();
+        reader.readSignedVarLong();
+        reader.readString();
+        int paths = (int) reader.readVarLong();
+        for (int i = 0; i < paths; i++)
+            rsp.add(readPath(reader, turnDescription));
+        return rsp;
+    }
+
+    private static ResponsePath readPath(Reader reader, boolean turnDescription) throws IOException {
+        ResponsePath path = new ResponsePath();
+        path.setDistance(reader.in.readDouble());
+        path.setRouteWeight(reader.in.readDouble());
+        path.setTime(reader.readSignedVarLong());
+        path.setNumChanges((int) reader.readVarLong());
+        int descriptions = (int) reader.readVarLong();
+        if (descriptions > 0) {
+            List<String> description = new ArrayList<>(descriptions);
+            for (int i = 0; i < descriptions; i++)
+                description.add(reader.readString());
+            path.setDescription(description);
+        }
+        int flags = reader.in.readByte();
+        boolean elevation = (flags & ELEVATION) != 0;
+        if ((flags & POINTS) != 0) {
+            PointList points = reader.readPoints(elevation);
+            path.setPoints(points);
+            if ((flags & INSTRUCTIONS) != 0)
+                path.setInstructions(readInstructions(reader, points, elevation, turnDescription));
+            int details = (int) reader.readVarLong();
+            Map<String, List<PathDetail>> pathDetails = new HashMap<>(details);
+            for (int i = 0; i < details; i++) {
+                String name = reader.readString();
+                int count = (int) reader.readVarLong();
+                List<PathDetail> list = new ArrayList<>(count);
+                for (int j = 0; j < count; j++) {
+                    int first = (int) reader.readVarLong();
+                    int last = (int) reader.readVarLong();
+                    PathDetail detail = new PathDetail(reader.readValue());
+                    detail.setFirst(first);
+                    detail.setLast(last);
+                    list.add(detail);
+                }
+                pathDetails.put(name, list);
+            }
+            path.addPathDetails(pathDetails);
+            path.setAscend(reader.in.readDouble());
+            path.setDescend(reader.in.readDouble());
+        }
+        path.setWaypoints(reader.readPoints(elevation));
+        int pointsOrder = (int) reader.readVarLong();
+        List<Integer> order = new ArrayList<>(pointsOrder);
+        for (int i = 0; i < pointsOrder; i++)
+            order.add((int) reader.readVarLong());
+        path.setPointsOrder(order);
+        return path;
+    }
+
+    private static InstructionList readInstructions(Reader reader, PointList points, boolean elevation, boolean turnDescription) throws IOException {
+        int count = (int) reader.readVarLong();
+        InstructionList instructions = new InstructionList(count, null);
+        int viaCount = 1;
+        int from = 0;
+        for (int i = 0; i < count; i++) {
+            int sign = (int) reader.readSignedVarLong();
+            String text = reader.readString();
+            String streetName = reader.readString();
+            long time = reader.readSignedVarLong();
+            double distance = reader.in.readDouble();
+            int to = from + (int) reader.readVarLong();
+            Map<String, Object> extraInfo = reader.readMap();
+            PointList instructionPoints = new PointList(to - from + 1, elevation);
+            for (int j = from; j <= to && j < points.size(); j++)
+                instructionPoints.add(points, j);
+            from = to;
+
+            // the instructions are created like in ResponsePathDeserializerHelper for the JSON response
+            String name = turnDescription ? text : streetName;
+            Instruction instruction;
+            if (sign == Instruction.USE_ROUNDABOUT || sign == Instruction.LEAVE_ROUNDABOUT) {
+                RoundaboutInstruction roundabout = new RoundaboutInstruction(sign, name, instructionPoints);
+                if (extraInfo.get("exit_number") instanceof Number)
+                    roundabout.setExitNumber(((Number) extraInfo.get("exit_number")).intValue());
+                if (Boolean.TRUE.equals(extraInfo.get("exited")))
+                    roundabout.setExited();
+                if (extraInfo.get("turn_angle") instanceof Number) {
+                    double angle = ((Number) extraInfo.get("turn_angle")).doubleValue();
+                    roundabout.setDirOfRotation(angle);
+                    roundabout.setRadian((angle < 0 ? -Math.PI : Math.PI) - angle);
+                }
+                instruction = roundabout;
+            } else if (sign == Instruction.REACHED_VIA) {
+                ViaInstruction via = new ViaInstruction(name, instructionPoints);
+                via.setViaCount(viaCount++);
+                instruction = via;
+            } else if (sign == Instruction.FINISH) {
+                instruction = new FinishInstruction(name, instructionPoints, 0);
+            } else {
+                instruction = new Instruction(sign, name, instructionPoints);
+                extraInfo.forEach(instruction::setExtraInfo);
+            }
+            if (turnDescription)
+                instruction.setUseRawName();
+            instruction.setDistance(distance).setTime(time);
+            instructions.add(instruction);
+        }
+        return instructions;
+    }
+
+    private static class Writer {
+        final DataOutputStream out;
+
+        Writer(OutputStream out) {
+            this.out = new DataOutputStream(new BufferedOutputStream(out));
+        }
+
+        void writeVarLong(long value) throws IOException {
+            while ((value & ~0x7FL) != 0) {
+                out.writeByte((int) (value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            out.writeByte((int) value);
+        }
+
+        void writeSignedVarLong(long value) throws IOException {
+            writeVarLong((value << 1) ^ (value >> 63));
+        }
+
+        void writeString(String str) throws IOException {
+            byte[] bytes = str.getBytes(StandardCharsets.UTF_8);
+            writeVarLong(bytes.length);
+            out.write(bytes);
+        }
+
+        void writePoints(PointList points, boolean elevation) throws IOException {
+            writeVarLong(points.size());
+            long prevLat = 0, prevLon = 0, prevEle = 0;
+            for (int i = 0; i < points.size(); i++) {
+                long lat = Math.round(points.getLat(i) * MULTIPLIER);
+                long lon = Math.round(points.getLon(i) * MULTIPLIER);
+                writeSignedVarLong(lat - prevLat);
+                writeSignedVarLong(lon - prevLon);
+                prevLat = lat;
+                prevLon = lon;
+                if (elevation) {
+                    long ele = Math.round(points.getEle(i) * ELE_MULTIPLIER);
+                    writeSignedVarLong(ele - prevEle);
+                    prevEle = ele;
+                }
+            }
+        }
+
+        void writeMap(Map<String, Object> map) throws IOException {
+            writeVarLong(map.size());
+            for (Map.Entry<String, Object> entry : map.entrySet()) {
+                writeString(entry.getKey());
+                writeValue(entry.getValue());
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        void writeValue(Object value) throws IOException {
+            if (value == null) {
+                out.writeByte(NULL);
+            } else if (value instanceof Boolean) {
+                out.writeByte((Boolean) value ? TRUE : FALSE);
+            } else if (value instanceof Integer || value instanceof Short || value instanceof Byte) {
+                out.writeByte(INT);
+                writeSignedVarLong(((Number) value).intValue());
+            } else if (value instanceof Long) {
+                out.writeByte(LONG);
+                writeSignedVarLong((Long) value);
+            } else if (value instanceof Number) {
+                out.writeByte(DOUBLE);
+                out.writeDouble(((Number) value).doubleValue());
+            } else if (value instanceof Map) {
+                out.writeByte(MAP);
+                writeMap((Map<String, Object>) value);
+            } else if (value instanceof Collection) {
+                out.writeByte(LIST);
+                writeVarLong(((Collection<?>) value).size());
+                for (Object element : (Collection<?>) value)
+                    writeValue(element);
+            } else {
+                out.writeByte(STRING);
+                writeString(value.toString());
+            }
+        }
+    }
+
+    private static class Reader {
+        final DataInputStream in;
+
+        Reader(InputStream in) {
+            this.in = new DataInputStream(new BufferedInputStream(in));
+        }
+
+        long readVarLong() throws IOException {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                int b = in.readUnsignedByte();
+                value |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0)
+                    return value;
+            }
+            throw new IOException("Malformed varint");
+        }
+
+        long readSignedVarLong() throws IOException {
+            long value = readVarLong();
+            return (value >>> 1) ^ -(value & 1);
+        }
+
+        String readString() throws IOException {
+            byte[] bytes = new byte[(int) readVarLong()];
+            in.readFully(bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        PointList readPoints(boolean elevation) throws IOException {
+            int count = (int) readVarLong();
+            PointList points = new PointList(count, elevation);
+            long lat = 0, lon = 0, ele = 0;
+            for (int i = 0; i < count; i++) {
+                lat += readSignedVarLong();
+                lon += readSignedVarLong();
+                if (elevation) {
+                    ele += readSignedVarLong();
+                    points.add(lat / MULTIPLIER, lon / MULTIPLIER, ele / ELE_MULTIPLIER);
+                } else {
+                    points.add(lat / MULTIPLIER, lon / MULTIPLIER);
+                }
+            }
+            return points;
+        }
+
+        Map<String, Object> readMap() throws IOException {
+            int count = (int) readVarLong();
+            Map<String, Object> map = new LinkedHashMap<>(count);
+            for (int i = 0; i < count; i++) {
+                String key = readString();
+                map.put(key, readValue());
+            }
+            return map;
+        }
+
+        Object readValue() throws IOException {
+            int tag = in.readByte();
+            switch (tag) {
+                case NULL:
+                    return null;
+                case FALSE:
+                    return false;
+                case TRUE:
+                    return true;
+                case INT:
+                    return (int) readSignedVarLong();
+                case LONG:
+                    return readSignedVarLong();
+                case DOUBLE:
+                    return in.readDouble();
+                case STRING:
+                    return readString();
+                case MAP:
+                    return readMap();
+                case LIST:
+                    int count = (int) readVarLong();
+                    List<Object> list = new ArrayList<>(count);
+                    for (int i = 0; i < count; i++)
+                        list.add(readValue());
+                    return list;
+                default:
+                    throw new IOException("Unknown value tag " + tag);
+            }
+        }
+    }
+}
@@ -0,0 +1,157 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.util;
+
+import com.graphhopper.GHResponse;
+import com.graphhopper.ResponsePath;
+import com.graphhopper.util.details.PathDetail;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RouteBinaryFormatTest {
+
+    @Test
+    public void writeAndRead() throws IOException {
+        PointList points = new PointList(5, true);
+        points.add(42.5, 1.5, 1000.12);
+        points.add(42.501234, 1.499999, 1001.5);
+        points.add(42.502, 1.498, 999);
+        points.add(42.503, 1.4975, 998);
+        points.add(42.504, 1.497, 990.05);
+
+        InstructionList instructions = new InstructionList(null);
+        Instruction start = new Instruction(Instruction.CONTINUE_ON_STREET, "Main Street", points.copy(0, 2));
+        start.setExtraInfo("heading", 12.5);
+        start.setExtraInfo("street_ref", "B1");
+        start.setUseRawName();
+        start.setDistance(120.5).setTime(10_000);
+        instructions.add(start);
+        RoundaboutInstruction roundabout = new RoundaboutInstruction(Instruction.USE_ROUNDABOUT, "At roundabout, take exit 2", points.copy(2, 4));
+        roundabout.setExitNumber(2).setExited().setDirOfRotation(-1).setRadian(-Math.PI / 2);
+        roundabout.setUseRawName();
+        roundabout.setDistance(80).setTime(7_000);
+        instructions.add(roundabout);
+        FinishInstruction finish = new FinishInstruction("Arrive at destination", points.copy(4, 5), 0);
+        finish.setUseRawName();
+        instructions.add(finish);
+
+        ResponsePath path = new ResponsePath();
+        path.setPoints(points);
+        PointList waypoints = new PointList(2, true);
+        waypoints.add(42.5, 1.5, 1000.12);
+        waypoints.add(42.504, 1.497, 990.05);
+        path.setWaypoints(waypoints);
+        path.setInstructions(instructions);
+        path.setDistance(200.5).setTime(17_000).setRouteWeight(25.123456).setAscend(1.38).setDescend(11.45);
+        path.setDescription(List.of("via Main Street"));
+        path.setPointsOrder(List.of(0, 1));
+        Map<String, List<PathDetail>> details = new HashMap<>();
+        details.put("street_name", List.of(detail("Main Street", 0, 2), detail(null, 2, 4)));
+        details.put("max_speed", List.of(detail(50.0, 0, 3), detail(30.0, 3, 4)));
+        details.put("edge_id", List.of(detail(17L, 0, 2), detail(4, 2, 4)));
+        details.put("toll", List.of(detail(true, 0, 4)));
+        details.put("intersection", List.of(detail(Map.of("bearings", List.of(90, 180), "out", 1), 1, 1)));
+        path.addPathDetails(details);
+
+        GHResponse rsp = new GHResponse();
+        rsp.getHints().putObject("visited_nodes.sum", 123);
+        rsp.add(path);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        RouteBinaryFormat.write(rsp, List.of("GraphHopper", "OpenStreetMap contributors"), 12, "2024-01-01T00:00:00Z", true, true, true, out);
+        GHResponse result = RouteBinaryFormat.read(new ByteArrayInputStream(out.toByteArray()), true);
+
+        assertEquals(123, result.getHints().getInt("visited_nodes.sum", 0));
+        assertEquals(1, result.getAll().size());
+        ResponsePath resultPath = result.getBest();
+        assertEquals(200.5, resultPath.getDistance());
+        assertEquals(17_000, resultPath.getTime());
+        assertEquals(25.123456, resultPath.getRouteWeight());
+        assertEquals(1.38, resultPath.getAscend());
+        assertEquals(11.45, resultPath.getDescend());
+        assertEquals(List.of("via Main Street"), resultPath.getDescription());
+        assertEquals(List.of(0, 1), resultPath.getPointsOrder());
+        assertEquals(points, resultPath.getPoints());
+        assertEquals(waypoints, resultPath.getWaypoints());
+        assertEquals(details.keySet(), resultPath.getPathDetails().keySet());
+        for (Map.Entry<String, List<PathDetail>> entry : details.entrySet())
+            assertEquals(entry.getValue().toString(), resultPath.getPathDetails().get(entry.getKey()).toString());
+
+        InstructionList resultInstructions = resultPath.getInstructions();
+        assertEquals(3, resultInstructions.size());
+        assertEquals("Main Street", resultInstructions.get(0).getName());
+        assertEquals(12.5, resultInstructions.get(0).getExtraInfoJSON().get("heading"));
+        assertEquals("B1", resultInstructions.get(0).getExtraInfoJSON().get("street_ref"));
+        assertEquals(120.5, resultInstructions.get(0).getDistance());
+        assertEquals(10_000, resultInstructions.get(0).getTime());
+        assertEquals(points.copy(0, 3), resultInstructions.get(0).getPoints());
+        RoundaboutInstruction resultRoundabout = (RoundaboutInstruction) resultInstructions.get(1);
+        assertEquals(2, resultRoundabout.getExitNumber());
+        assertEquals(roundabout.getExtraInfoJSON(), resultRoundabout.getExtraInfoJSON());
+        assertEquals("At roundabout, take exit 2", resultRoundabout.getName());
+        assertTrue(resultInstructions.get(2) instanceof FinishInstruction);
+        assertEquals(points.copy(4, 5), resultInstructions.get(2).getPoints());
+
+        // without turn descriptions the street names are used
+        result = RouteBinaryFormat.read(new ByteArrayInputStream(out.toByteArray()), false);
+        assertEquals("Main Street", result.getBest().getInstructions().get(0).getName());
+        assertEquals("Arrive at destination", result.getBest().getInstructions().get(2).getName());
+    }
+
+    @Test
+    public void withoutPoints() throws IOException {
+        ResponsePath path = new ResponsePath();
+        PointList waypoints = new PointList(2, false);
+        waypoints.add(42.5, 1.5);
+        waypoints.add(42.504, 1.497);
+        path.setWaypoints(waypoints);
+        path.setDistance(100).setTime(1000).setRouteWeight(10);
+        path.setPointsOrder(List.of(0, 1));
+        GHResponse rsp = new GHResponse();
+        rsp.add(path);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        RouteBinaryFormat.write(rsp, List.of(), 0, null, true, false, false, out);
+        ResponsePath result = RouteBinaryFormat.read(new ByteArrayInputStream(out.toByteArray()), true).getBest();
+        assertEquals(100, result.getDistance());
+        assertEquals(waypoints, result.getWaypoints());
+        assertTrue(result.getPoints().isEmpty());
+        assertTrue(result.getPathDetails().isEmpty());
+    }
+
+    @Test
+    public void errorsAreNotWritten() {
+        GHResponse rsp = new GHResponse();
+        rsp.addError(new IllegalArgumentException("invalid"));
+        assertThrows(IllegalArgumentException.class, () -> RouteBinaryFormat.write(rsp, List.of(), 0, null, true, true, false, new ByteArrayOutputStream()));
+        assertThrows(IOException.class, () -> RouteBinaryFormat.read(new ByteArrayInputStream("{\"message\":\"x\"}".getBytes()), true));
+    }
+
+    private static PathDetail detail(Object value, int first, int last) {
+        PathDetail detail = new PathDetail(value);
+        detail.setFirst(first);
+        detail.setLast(last);
+        return detail;
+    }
+}
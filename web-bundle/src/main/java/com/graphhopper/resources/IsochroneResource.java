@@ -1,5 +1,6 @@
 package com.graphhopper.resources;
 
+import com.carrotsearch.hppc.IntHashSet;
 import com.fasterxml.jackson.databind.node.JsonNodeFactory;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 import com.graphhopper.GraphHopper;
@@ -8,11 +9,14 @@ import com.graphhopper.config.Profile;
 import com.graphhopper.http.GHPointParam;
 import com.graphhopper.http.ProfileResolver;
 import com.graphhopper.isochrone.algorithm.ContourBuilder;
+import com.graphhopper.isochrone.algorithm.SPTLabelStore;
 import com.graphhopper.isochrone.algorithm.ShortestPathTree;
 import com.graphhopper.isochrone.algorithm.Triangulator;
+import com.graphhopper.routing.PHAST;
 import com.graphhopper.routing.ev.BooleanEncodedValue;
 import com.graphhopper.routing.ev.Subnetwork;
 import com.graphhopper.routing.querygraph.QueryGraph;
+import com.graphhopper.routing.querygraph.QueryRoutingCHGraph;
 import com.graphhopper.routing.util.DefaultSnapFilter;
 import com.graphhopper.routing.util.TraversalMode;
 import com.graphhopper.routing.weighting.Weighting;
@@ -20,6 +24,8 @@ import com.graphhopper.storage.BaseGraph;
 import com.graphhopper.storage.index.LocationIndex;
 import com.graphhopper.storage.index.Snap;
 import com.graphhopper.util.*;
+import com.graphhopper.util.shapes.BBox;
+import com.graphhopper.util.shapes.GHPoint;
 import org.hibernate.validator.constraints.Range;
 import org.locationtech.jts.geom.*;
 import org.slf4j.Logger;
@@ -36,7 +42,7 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.OptionalInt;
 import java.util.OptionalLong;
-import java.util.function.ToDoubleFunction;
+import java.util.function.IntToDoubleFunction;
 
 import static com.graphhopper.resources.IsochroneResource.ResponseType.geojson;
 import static com.graphhopper.resources.RouteResource.removeLegacyParameters;
@@ -47,6 +53,8 @@ import static com.graphhopper.routing.util.TraversalMode.NODE_BASED;
 public class IsochroneResource {
 
     private static final Logger logger = LoggerFactory.getLogger(IsochroneResource.class);
+    // restricting the sweep to the selected nodes is only faster if these are a small part of the graph
+    private static final double MAX_RPHAST_TARGETS_SHARE = 0.25;
 
     private final GraphHopperConfig config;
     private final GraphHopper graphHopper;
@@ -82,6 +90,7 @@ public class IsochroneResource {
         StopWatch sw = new StopWatch().start();
         PMap hintsMap = new PMap();
         RouteResource.initHints(hintsMap, uriInfo.getQueryParameters());
+        boolean disableCH = hintsMap.getBool(Parameters.CH.DISABLE, false);
         hintsMap.putObject(Parameters.CH.DISABLE, true);
         hintsMap.putObject(Parameters.Landmark.DISABLE, true);
 
@@ -95,29 +104,28 @@ public class IsochroneResource {
             throw new IllegalArgumentException("The requested profile '" + profileName + "' does not exist");
         LocationIndex locationIndex = graphHopper.getLocationIndex();
         BaseGraph graph = graphHopper.getBaseGraph();
-        Weighting weighting = graphHopper.createWeighting(profile, hintsMap);
+        // with a CH preparation we can use PHAST, which is much faster than a dijkstra search for large isochrones
+        PHAST phast = disableCH || profile.hasTurnCosts() ? null : graphHopper.getPHAST(profileName, reverseFlow);
+        Weighting weighting = phast == null ? graphHopper.createWeighting(profile, hintsMap) : phast.getGraph().getWeighting();
         BooleanEncodedValue inSubnetworkEnc = graphHopper.getEncodingManager().getBooleanEncodedValue(Subnetwork.key(profileName));
         Snap snap = locationIndex.findClosest(point.get().lat, point.get().lon, new DefaultSnapFilter(weighting, inSubnetworkEnc));
         if (!snap.isValid())
             throw new IllegalArgumentException("Point not found:" + point);
         QueryGraph queryGraph = QueryGraph.create(graph, snap);
-        TraversalMode traversalMode = profile.hasTurnCosts() ? EDGE_BASED : NODE_BASED;
-        ShortestPathTree shortestPathTree = new ShortestPathTree(queryGraph, queryGraph.wrapWeighting(weighting), reverseFlow, traversalMode);
 
-        double limit;
-        ToDoubleFunction<ShortestPathTree.IsoLabel> fz;
+        double limit, searchLimit;
+        boolean byWeight = false, byDistance = false;
         if (weightLimit.orElseThrow(() -> new IllegalArgumentException("query param weight_limit is not a number.")) > 0) {
             limit = weightLimit.getAsLong();
-            shortestPathTree.setWeightLimit(limit + Math.max(limit * 0.14, 200));
-            fz = l -> l.weight;
+            searchLimit = limit + Math.max(limit * 0.14, 200);
+            byWeight = true;
         } else if (distanceLimitInMeter.orElseThrow(() -> new IllegalArgumentException("query param distance_limit is not a number.")) > 0) {
             limit = distanceLimitInMeter.getAsLong();
-            shortestPathTree.setDistanceLimit(limit + Math.max(limit * 0.14, 2_000));
-            fz = l -> l.distance;
+            searchLimit = limit + Math.max(limit * 0.14, 2_000);
+            byDistance = true;
         } else {
             limit = timeLimitInSeconds.orElseThrow(() -> new IllegalArgumentException("query param time_limit is not a number.")) * 1000d;
-            shortestPathTree.setTimeLimit(limit + Math.max(limit * 0.14, 200_000));
-            fz = l -> l.time;
+            searchLimit = limit + Math.max(limit * 0.14, 200_000);
         }
         ArrayList<Double> zs = new ArrayList<>();
         double delta = limit / nBuckets.orElseThrow(() -> new IllegalArgumentException("query param buckets is not a number."));
@@ -125,7 +133,32 @@ public class IsochroneResource {
             zs.add((i + 1) * delta);
         }
 
-        Triangulator.Result result = triangulator.triangulate(snap, queryGraph, shortestPathTree, fz, degreesFromMeters(toleranceInMeter));
+        Triangulator.Result result;
+        int visitedNodes;
+        if (phast != null) {
+            PHAST.Calculator calculator = createPHASTCalculator(phast, graph, locationIndex, point.get(), byWeight, byDistance, searchLimit);
+            PHAST.Result tree;
+            try {
+                tree = calculator.calc(new QueryRoutingCHGraph(phast.getGraph(), queryGraph), snap.getClosestNode());
+                visitedNodes = calculator.getVisitedNodes();
+            } finally {
+                phast.returnCalculator(calculator);
+            }
+            IntToDoubleFunction fz = byWeight ? i -> tree.getWeights()[i] : byDistance ? i -> tree.getDistances()[i] : i -> tree.getTimes()[i];
+            result = triangulator.triangulate(queryGraph, tree, fz, searchLimit, degreesFromMeters(toleranceInMeter));
+        } else {
+            TraversalMode traversalMode = profile.hasTurnCosts() ? EDGE_BASED : NODE_BASED;
+            ShortestPathTree shortestPathTree = new ShortestPathTree(queryGraph, queryGraph.wrapWeighting(weighting), reverseFlow, traversalMode, SPTLabelStore.forCurrentThread());
+            if (byWeight) {
+                shortestPathTree.setWeightLimit(searchLimit);
+            } else if (byDistance) {
+                shortestPathTree.setDistanceLimit(searchLimit);
+            } else {
+                shortestPathTree.setTimeLimit(searchLimit);
+            }
+            result = triangulator.triangulate(snap, queryGraph, shortestPathTree, degreesFromMeters(toleranceInMeter));
+            visitedNodes = shortestPathTree.getVisitedNodes();
+        }
 
         ContourBuilder contourBuilder = new ContourBuilder(result.triangulation);
         ArrayList<Geometry> isochrones = new ArrayList<>();
@@ -168,11 +201,32 @@ public class IsochroneResource {
             finalJson = json;
         }
 
-        logger.info("took: " + sw.getSeconds() + ", visited nodes:" + shortestPathTree.getVisitedNodes());
+        logger.info("took: " + sw.getSeconds() + ", visited nodes:" + visitedNodes);
         return Response.ok(finalJson).header("X-GH-Took", "" + sw.getSeconds() * 1000).
                 build();
     }
 
+    /**
+     * For distance and weight limits we know which nodes can be reached (the beeline distance is a lower bound) and
+     * only calculate the paths to these nodes, unless these are a large part of the graph anyway. Otherwise we use the
+     * calculator for all nodes, which is borrowed from the pool and has to be returned. In any case only the nodes within
+     * the limit are unpacked.
+     */
+    private static PHAST.Calculator createPHASTCalculator(PHAST phast, BaseGraph graph, LocationIndex locationIndex, GHPoint point,
+                                                          boolean byWeight, boolean byDistance, double searchLimit) {
+        double minWeightPerDistance = phast.getGraph().getWeighting().calcMinWeightPerDistance();
+        double radius = byDistance ? searchLimit : byWeight && minWeightPerDistance > 0 ? searchLimit / minWeightPerDistance : Double.POSITIVE_INFINITY;
+        int[] targets = radius < Double.POSITIVE_INFINITY ? findNodesWithin(graph, locationIndex, point, radius) : null;
+        PHAST.Calculator calculator = targets != null && targets.length < graph.getNodes() * MAX_RPHAST_TARGETS_SHARE
+                ? phast.createCalculator(targets)
+                : phast.borrowCalculator();
+        if (byWeight)
+            return calculator.setWeightLimit(searchLimit);
+        else if (byDistance)
+            return calculator.setDistanceLimit(searchLimit);
+        return calculator.setTimeLimit(searchLimit);
+    }
+
     private Polygon heuristicallyFindMainConnectedComponent(MultiPolygon multiPolygon, Point point) {
         int maxPoints = 0;
         Polygon maxPolygon = null;
@@ -189,6 +243,20 @@ public class IsochroneResource {
         return maxPolygon;
     }
 
+    /**
+     * @return the nodes of all edges that are (at least partially) within the given distance of the given point
+     */
+    static int[] findNodesWithin(BaseGraph graph, LocationIndex locationIndex, GHPoint point, double distanceInMeters) {
+        IntHashSet nodes = new IntHashSet();
+        BBox bbox = DistanceCalcEarth.DIST_EARTH.createBBox(point.lat, point.lon, distanceInMeters);
+        locationIndex.query(bbox, edgeId -> {
+            EdgeIteratorState edge = graph.getEdgeIteratorState(edgeId, Integer.MIN_VALUE);
+            nodes.add(edge.getBaseNode());
+            nodes.add(edge.getAdjNode());
+        });
+        return nodes.toArray();
+    }
+
     /**
      * We want to specify a tolerance in something like meters, but we need it in unprojected lat/lon-space.
      * This is more correct in some parts of the world, and in some directions, than in others.
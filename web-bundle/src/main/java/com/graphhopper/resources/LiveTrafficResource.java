@@ -0,0 +1,140 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.resources;
+
+import com.carrotsearch.hppc.FloatArrayList;
+import com.carrotsearch.hppc.IntArrayList;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.graphhopper.GraphHopper;
+import com.graphhopper.routing.weighting.LiveSpeedOverlay;
+import com.graphhopper.util.StopWatch;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import jakarta.inject.Inject;
+import jakarta.ws.rs.*;
+import jakarta.ws.rs.core.MediaType;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Loads live speeds for the profiles configured with routing.live_traffic.profiles. The speeds are given in km/h per
+ * edge key (see the edge_key path detail) and a speed of zero removes the live speed of an edge key. Two formats are
+ * accepted:
+ * <ul>
+ * <li>text/csv: one 'edge_key,speed' pair per line, empty lines and lines starting with # are ignored</li>
+ * <li>application/octet-stream: a sequence of records, each with the edge key as 32-bit integer followed by the
+ * speed as 32-bit float, both big-endian</li>
+ * </ul>
+ * By default the given speeds are added to the current ones. Use replace=true to remove all other live speeds. The
+ * update is applied atomically and does not block running routing requests.
+ */
+@Path("traffic")
+@Produces(MediaType.APPLICATION_JSON)
+public class LiveTrafficResource {
+    private static final Logger logger = LoggerFactory.getLogger(LiveTrafficResource.class);
+
+    private final GraphHopper graphHopper;
+
+    @Inject
+    public LiveTrafficResource(GraphHopper graphHopper) {
+        this.graphHopper = graphHopper;
+    }
+
+    public static class Response {
+        @JsonProperty("version")
+        public final long version;
+        @JsonProperty("live_speeds")
+        public final int liveSpeeds;
+
+        Response(LiveSpeedOverlay.Snapshot snapshot) {
+            this.version = snapshot.getVersion();
+            this.liveSpeeds = snapshot.getLiveSpeeds();
+        }
+    }
+
+    @GET
+    public Response doGet() {
+        return new Response(getOverlay().getSnapshot());
+    }
+
+    @POST
+    @Consumes({"text/csv", MediaType.TEXT_PLAIN})
+    public Response doPostCSV(InputStream body, @QueryParam("replace") @DefaultValue("false") boolean replace) throws IOException {
+        StopWatch sw = new StopWatch().start();
+        IntArrayList keys = new IntArrayList();
+        FloatArrayList speeds = new FloatArrayList();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8));
+        String line;
+        int lineNumber = 0;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#"))
+                continue;
+            int comma = line.indexOf(',');
+            try {
+                if (comma < 0)
+                    throw new NumberFormatException("missing comma");
+                keys.add(Integer.parseInt(line.substring(0, comma).trim()));
+                speeds.add(Float.parseFloat(line.substring(comma + 1).trim()));
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid line " + lineNumber + ": '" + line + "', expected edge_key,speed");
+            }
+        }
+        return update(keys, speeds, replace, sw);
+    }
+
+    @POST
+    @Consumes(MediaType.APPLICATION_OCTET_STREAM)
+    public Response doPostBinary(InputStream body, @QueryParam("replace") @DefaultValue("false") boolean replace) throws IOException {
+        StopWatch sw = new StopWatch().start();
+        IntArrayList keys = new IntArrayList();
+        FloatArrayList speeds = new FloatArrayList();
+        DataInputStream in = new DataInputStream(new BufferedInputStream(body));
+        while (true) {
+            int key;
+            try {
+                key = in.readInt();
+            } catch (EOFException e) {
+                break;
+            }
+            try {
+                speeds.add(in.readFloat());
+            } catch (EOFException e) {
+                throw new IllegalArgumentException("Incomplete record for edge key " + key + ", every record needs 8 bytes");
+            }
+            keys.add(key);
+        }
+        return update(keys, speeds, replace, sw);
+    }
+
+    private Response update(IntArrayList keys, FloatArrayList speeds, boolean replace, StopWatch sw) {
+        LiveSpeedOverlay.Snapshot snapshot = getOverlay().update(keys.buffer, speeds.buffer, keys.size(), replace);
+        logger.info("updated " + keys.size() + " live speeds, replace: " + replace + ", version: " + snapshot.getVersion()
+                + ", live speeds: " + snapshot.getLiveSpeeds() + ", took: " + sw.stop().getMillis() + "ms");
+        return new Response(snapshot);
+    }
+
+    private LiveSpeedOverlay getOverlay() {
+        LiveSpeedOverlay overlay = graphHopper.getLiveSpeedOverlay();
+        if (overlay == null)
+            throw new IllegalArgumentException("Live traffic is not enabled, use routing.live_traffic.profiles");
+        return overlay;
+    }
+}
@@ -30,8 +30,10 @@ import com.graphhopper.gpx.GpxConversions;
 import com.graphhopper.http.ProfileResolver;
 import com.graphhopper.jackson.Gpx;
 import com.graphhopper.jackson.Jackson;
+import com.graphhopper.jackson.MultiException;
 import com.graphhopper.jackson.ResponsePathSerializer;
 import com.graphhopper.matching.*;
+import com.graphhopper.routing.RouterConfig;
 import com.graphhopper.storage.index.LocationIndexTree;
 import com.graphhopper.util.*;
 import org.slf4j.Logger;
@@ -43,8 +45,13 @@ import jakarta.ws.rs.*;
 import jakarta.ws.rs.core.Context;
 import jakarta.ws.rs.core.MediaType;
 import jakarta.ws.rs.core.Response;
+import jakarta.ws.rs.core.StreamingOutput;
 import jakarta.ws.rs.core.UriInfo;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
 
 import static com.graphhopper.resources.RouteResource.removeLegacyParameters;
 import static com.graphhopper.util.Parameters.Details.PATH_DETAILS;
@@ -63,6 +70,7 @@ public class MapMatchingResource {
     }
 
     private static final Logger logger = LoggerFactory.getLogger(MapMatchingResource.class);
+    private static final String NDJSON = "application/x-ndjson";
 
     private final GraphHopperConfig config;
     private final GraphHopper graphHopper;
@@ -101,7 +109,9 @@ public class MapMatchingResource {
             @QueryParam("gpx.route") @DefaultValue("true") boolean withRoute,
             @QueryParam("gpx.track") @DefaultValue("true") boolean withTrack,
             @QueryParam("traversal_keys") @DefaultValue("false") boolean enableTraversalKeys,
-            @QueryParam("gps_accuracy") @DefaultValue("10") double gpsAccuracy) {
+            @QueryParam("gps_accuracy") @DefaultValue("10") double gpsAccuracy,
+            @QueryParam("window") @DefaultValue("0") int window,
+            @QueryParam("window_lag") @DefaultValue("20") int windowLag) {
         boolean writeGPX = "gpx".equalsIgnoreCase(outType);
         if (gpx.trk.isEmpty()) {
             throw new IllegalArgumentException("No tracks found in GPX document. Are you using waypoints or routes instead?");
@@ -114,23 +124,14 @@ public class MapMatchingResource {
 
         StopWatch sw = new StopWatch().start();
 
-        PMap hints = new PMap();
-        RouteResource.initHints(hints, uriInfo.getQueryParameters());
-
-        // resolve profile and remove legacy vehicle/weighting parameters
-        // we need to explicitly disable CH here because map matching does not use it
-        PMap profileResolverHints = new PMap(hints);
-        profileResolverHints.putObject("profile", profile);
-        profileResolverHints.putObject(Parameters.CH.DISABLE, true);
-        profile = profileResolver.resolveProfile(profileResolverHints);
-        hints.putObject("profile", profile);
-        removeLegacyParameters(hints);
+        PMap hints = createHints(uriInfo, profile);
+        profile = hints.getString("profile", "");
 
         MapMatching matching = new MapMatching(graphHopper.getBaseGraph(), (LocationIndexTree) graphHopper.getLocationIndex(), mapMatchingRouterFactory.createMapMatchingRouter(hints));
         matching.setMeasurementErrorSigma(gpsAccuracy);
 
         List<Observation> measurements = GpxConversions.getEntries(gpx.trk.get(0));
-        MatchResult matchResult = matching.match(measurements);
+        MatchResult matchResult = match(matching, measurements, window, windowLag);
 
         sw.stop();
         logger.info(objectMapper.createObjectNode()
@@ -193,6 +194,104 @@ public class MapMatchingResource {
         }
     }
 
+    /**
+     * Matches all tracks of the given GPX document independently of each other, e.g. the daily traces of a fleet. The
+     * tracks are matched in parallel on the batch executor of GraphHopper, which is shared with the route batches and
+     * has routing.batch.threads threads. Every track gets its own query graph, while the
+     * graph and the location index are shared. The response contains one JSON object per line (NDJSON) for every
+     * track, in the order in which the tracks are done. The 'index' field refers to the position of the track in the
+     * document.
+     */
+    @POST
+    @jakarta.ws.rs.Path("bulk")
+    @Consumes({MediaType.APPLICATION_XML, "application/gpx+xml"})
+    @Produces(NDJSON)
+    public Response matchBulk(
+            @NotNull Gpx gpx,
+            @Context UriInfo uriInfo,
+            @QueryParam("elevation") @DefaultValue("false") boolean enableElevation,
+            @QueryParam("points_encoded") @DefaultValue("true") boolean pointsEncoded,
+            @QueryParam("points_encoded_multiplier") @DefaultValue("1e5") double pointsEncodedMultiplier,
+            @QueryParam("profile") String profile,
+            @QueryParam("traversal_keys") @DefaultValue("false") boolean enableTraversalKeys,
+            @QueryParam("gps_accuracy") @DefaultValue("10") double gpsAccuracy,
+            @QueryParam("window") @DefaultValue("0") int window,
+            @QueryParam("window_lag") @DefaultValue("20") int windowLag) {
+        if (gpx.trk.isEmpty())
+            throw new IllegalArgumentException("No tracks found in GPX document. Are you using waypoints or routes instead?");
+        RouterConfig routerConfig = graphHopper.getRouterConfig();
+        if (gpx.trk.size() > routerConfig.getMaxBatchSize())
+            throw new IllegalArgumentException("Too many tracks: " + gpx.trk.size() + ", max: " + routerConfig.getMaxBatchSize());
+        StopWatch sw = new StopWatch().start();
+        PMap hints = createHints(uriInfo, profile);
+        StreamingOutput out = output -> {
+            AtomicInteger errors = new AtomicInteger();
+            GHUtility.runConcurrently(graphHopper.getBatchExecutor(), IntStream.range(0, gpx.trk.size()).<Runnable>mapToObj(index -> () -> {
+                Gpx.Trk trk = gpx.trk.get(index);
+                ObjectNode json = objectMapper.createObjectNode();
+                json.put("index", index);
+                if (trk.name != null)
+                    json.put("name", trk.name);
+                try {
+                    MapMatching matching = new MapMatching(graphHopper.getBaseGraph(), (LocationIndexTree) graphHopper.getLocationIndex(), mapMatchingRouterFactory.createMapMatchingRouter(hints));
+                    matching.setMeasurementErrorSigma(gpsAccuracy);
+                    MatchResult matchResult = match(matching, GpxConversions.getEntries(trk), window, windowLag);
+                    ObjectNode matchStatistics = json.putObject("map_matching");
+                    matchStatistics.put("distance", matchResult.getMatchLength());
+                    matchStatistics.put("time", matchResult.getMatchMillis());
+                    matchStatistics.put("original_distance", matchResult.getGpxEntriesLength());
+                    PointList points = matchResult.getMergedPath().calcPoints();
+                    json.putPOJO("points", pointsEncoded ? ResponsePathSerializer.encodePolyline(points, enableElevation, pointsEncodedMultiplier) : points.toLineString(enableElevation));
+                    if (enableTraversalKeys)
+                        json.putPOJO("traversal_keys", matchResult.getEdgeMatches().stream().map(em -> em.getEdgeState().getEdgeKey()).toList());
+                } catch (RuntimeException e) {
+                    errors.incrementAndGet();
+                    json.setAll((ObjectNode) objectMapper.valueToTree(new MultiException(e)));
+                }
+                try {
+                    byte[] line = objectMapper.writeValueAsBytes(json);
+                    synchronized (output) {
+                        output.write(line);
+                        output.write('\n');
+                        output.flush();
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }).toList(), routerConfig.getBatchThreads());
+            logger.info("bulk: " + gpx.trk.size() + ", profile: " + hints.getString("profile", "") + ", errors: " + errors.get()
+                    + ", took: " + String.format("%.1f", sw.stop().getMillisDouble()) + " ms");
+        };
+        return Response.ok(out).type(NDJSON).build();
+    }
+
+    private PMap createHints(UriInfo uriInfo, String profile) {
+        PMap hints = new PMap();
+        RouteResource.initHints(hints, uriInfo.getQueryParameters());
+
+        // resolve profile and remove legacy vehicle/weighting parameters
+        // we need to explicitly disable CH here because map matching does not use it
+        PMap profileResolverHints = new PMap(hints);
+        profileResolverHints.putObject("profile", profile);
+        profileResolverHints.putObject(Parameters.CH.DISABLE, true);
+        hints.putObject("profile", profileResolver.resolveProfile(profileResolverHints));
+        removeLegacyParameters(hints);
+        return hints;
+    }
+
+    /**
+     * Matches the observations at once or, if window is positive, in windows of this size. The lag is limited to
+     * window - 2, so a small window can be used without specifying the lag as well. The edge matches of a windowed
+     * match are final early, but the responses still contain the complete track (the merged path and the instructions
+     * need all edges), so the window only limits the size of the Viterbi search, not the size of the response.
+     */
+    public static MatchResult match(MapMatching matching, List<Observation> observations, int window, int windowLag) {
+        if (window > 0)
+            return matching.matchWindowed(observations, window, Math.max(0, Math.min(windowLag, window - 2)), edgeMatch -> {
+            });
+        return matching.match(observations);
+    }
+
     public static JsonNode convertToTree(MatchResult result, boolean elevation, boolean pointsEncoded, double pointsEncodedMultiplier) {
         ObjectNode root = JsonNodeFactory.instance.objectNode();
         ObjectNode diary = root.putObject("diary");
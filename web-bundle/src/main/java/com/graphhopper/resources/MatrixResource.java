@@ -0,0 +1,196 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.resources;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.graphhopper.GHMatrixRequest;
+import com.graphhopper.GHMatrixResponse;
+import com.graphhopper.GraphHopper;
+import com.graphhopper.GraphHopperConfig;
+import com.graphhopper.http.GHPointParam;
+import com.graphhopper.http.ProfileResolver;
+import com.graphhopper.jackson.MultiException;
+import com.graphhopper.util.PMap;
+import com.graphhopper.util.StopWatch;
+import com.graphhopper.util.shapes.GHPoint;
+import io.dropwizard.jersey.params.AbstractParam;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import jakarta.inject.Inject;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.validation.constraints.NotNull;
+import jakarta.ws.rs.*;
+import jakarta.ws.rs.core.Context;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Response;
+import jakarta.ws.rs.core.StreamingOutput;
+import jakarta.ws.rs.core.UriInfo;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+import static com.graphhopper.resources.RouteResource.removeLegacyParameters;
+import static com.graphhopper.util.Parameters.Routing.SNAP_PREVENTION;
+import static java.util.stream.Collectors.toList;
+
+/**
+ * Calculates the weights, times and distances between many 'from' and 'to' points in one request, see
+ * {@link com.graphhopper.routing.ManyToManyCH}. The response uses the same format as the GraphHopper Matrix API,
+ * i.e. the rows of the matrices correspond to the 'from' points, times are given in seconds and distances in meters
+ * and unreachable entries are null.
+ */
+@Path("matrix")
+public class MatrixResource {
+
+    private static final Logger logger = LoggerFactory.getLogger(MatrixResource.class);
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    private final GraphHopperConfig config;
+    private final GraphHopper graphHopper;
+    private final ProfileResolver profileResolver;
+    private final List<String> snapPreventionsDefault;
+
+    @Inject
+    public MatrixResource(GraphHopperConfig config, GraphHopper graphHopper, ProfileResolver profileResolver) {
+        this.config = config;
+        this.graphHopper = graphHopper;
+        this.profileResolver = profileResolver;
+        this.snapPreventionsDefault = Arrays.stream(config.getString("routing.snap_preventions_default", "")
+                .split(",")).map(String::trim).filter(s -> !s.isEmpty()).toList();
+    }
+
+    @GET
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response doGet(
+            @Context HttpServletRequest httpReq,
+            @Context UriInfo uriInfo,
+            @QueryParam("point") @NotNull List<GHPointParam> pointParams,
+            @QueryParam("from_point") @NotNull List<GHPointParam> fromPointParams,
+            @QueryParam("to_point") @NotNull List<GHPointParam> toPointParams,
+            @QueryParam("out_array") @NotNull List<String> outArrays,
+            @QueryParam(SNAP_PREVENTION) List<String> snapPreventions,
+            @QueryParam("profile") String profileName) {
+        GHMatrixRequest request = new GHMatrixRequest();
+        RouteResource.initHints(request.getHints(), uriInfo.getQueryParameters());
+        if (!pointParams.isEmpty()) {
+            if (!fromPointParams.isEmpty() || !toPointParams.isEmpty())
+                throw new IllegalArgumentException("Use either point or from_point and to_point, but not both");
+            request.setPoints(toPoints(pointParams));
+        } else {
+            request.setFromPoints(toPoints(fromPointParams));
+            request.setToPoints(toPoints(toPointParams));
+        }
+        if (!outArrays.isEmpty())
+            request.setOutArrays(outArrays);
+        if (uriInfo.getQueryParameters().containsKey(SNAP_PREVENTION)) {
+            if (snapPreventions.size() == 1 && snapPreventions.contains(""))
+                request.setSnapPreventions(List.of()); // e.g. "&snap_prevention=&" to force empty list
+            else
+                request.setSnapPreventions(snapPreventions);
+        }
+        request.setProfile(profileName);
+        return doMatrix(request, httpReq);
+    }
+
+    @POST
+    @Consumes(MediaType.APPLICATION_JSON)
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response doPost(@NotNull GHMatrixRequest request, @Context HttpServletRequest httpReq) {
+        return doMatrix(request, httpReq);
+    }
+
+    private Response doMatrix(GHMatrixRequest request, HttpServletRequest httpReq) {
+        StopWatch sw = new StopWatch().start();
+        if (!request.hasSnapPreventions())
+            request.setSnapPreventions(snapPreventionsDefault);
+        PMap profileResolverHints = new PMap(request.getHints());
+        profileResolverHints.putObject("profile", request.getProfile());
+        request.setProfile(profileResolver.resolveProfile(profileResolverHints));
+        removeLegacyParameters(request.getHints());
+
+        GHMatrixResponse matrixResponse = graphHopper.matrix(request);
+        long took = Math.round(sw.stop().getMillisDouble());
+        String logStr = httpReq.getRemoteAddr() + " " + httpReq.getLocale() + " " + httpReq.getHeader("User-Agent")
+                + " " + request + ", took: " + took + "ms";
+        if (matrixResponse.hasErrors()) {
+            logger.info(logStr + " " + matrixResponse);
+            throw new MultiException(matrixResponse.getErrors());
+        }
+        logger.info(logStr + ", " + matrixResponse + ", " + matrixResponse.getHints().toMap());
+
+        List<String> outArrays = request.getOutArrays();
+        List<String> copyrights = config.getCopyrights();
+        StreamingOutput out = output -> {
+            // we write the json directly instead of building an ObjectNode, because the matrices can be large
+            try (JsonGenerator json = JSON_FACTORY.createGenerator(output)) {
+                json.writeStartObject();
+                if (outArrays.contains(GHMatrixRequest.WEIGHTS))
+                    writeMatrix(json, GHMatrixRequest.WEIGHTS, matrixResponse, (from, to) -> {
+                        double weight = matrixResponse.getWeight(from, to);
+                        if (Double.isInfinite(weight)) json.writeNull();
+                        else json.writeNumber(weight);
+                    });
+                if (outArrays.contains(GHMatrixRequest.TIMES))
+                    writeMatrix(json, GHMatrixRequest.TIMES, matrixResponse, (from, to) -> {
+                        long time = matrixResponse.getTime(from, to);
+                        if (time == Long.MAX_VALUE) json.writeNull();
+                        else json.writeNumber(Math.round(time / 1000.0));
+                    });
+                if (outArrays.contains(GHMatrixRequest.DISTANCES))
+                    writeMatrix(json, GHMatrixRequest.DISTANCES, matrixResponse, (from, to) -> {
+                        double distance = matrixResponse.getDistance(from, to);
+                        if (Double.isInfinite(distance)) json.writeNull();
+                        else json.writeNumber(Math.round(distance));
+                    });
+                json.writeObjectFieldStart("info");
+                json.writeArrayFieldStart("copyrights");
+                for (String copyright : copyrights)
+                    json.writeString(copyright);
+                json.writeEndArray();
+                json.writeNumberField("took", took);
+                json.writeEndObject();
+                json.writeEndObject();
+            }
+        };
+        return Response.ok(out).
+                header("X-GH-Took", "" + took).
+                type(MediaType.APPLICATION_JSON).
+                build();
+    }
+
+    private static List<GHPoint> toPoints(List<GHPointParam> params) {
+        return params.stream().map(AbstractParam::get).collect(toList());
+    }
+
+    private interface EntryWriter {
+        void write(int from, int to) throws IOException;
+    }
+
+    private static void writeMatrix(JsonGenerator json, String name, GHMatrixResponse rsp, EntryWriter entryWriter) throws IOException {
+        json.writeArrayFieldStart(name);
+        for (int from = 0; from < rsp.getFromSize(); from++) {
+            json.writeStartArray();
+            for (int to = 0; to < rsp.getToSize(); to++)
+                entryWriter.write(from, to);
+            json.writeEndArray();
+        }
+        json.writeEndArray();
+    }
+}
@@ -17,6 +17,8 @@
  */
 package com.graphhopper.resources;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
 import com.graphhopper.GHRequest;
 import com.graphhopper.GHResponse;
 import com.graphhopper.GraphHopper;
@@ -25,6 +27,7 @@ import com.graphhopper.gpx.GpxConversions;
 import com.graphhopper.http.GHPointParam;
 import com.graphhopper.http.GHRequestTransformer;
 import com.graphhopper.http.ProfileResolver;
+import com.graphhopper.jackson.Jackson;
 import com.graphhopper.jackson.MultiException;
 import com.graphhopper.jackson.ResponsePathSerializer;
 import com.graphhopper.util.*;
@@ -39,9 +42,11 @@ import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.constraints.NotNull;
 import jakarta.ws.rs.*;
 import jakarta.ws.rs.core.*;
-import java.util.Arrays;
-import java.util.List;
-import java.util.Map;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.ObjIntConsumer;
 
 import static com.graphhopper.util.Parameters.Details.PATH_DETAILS;
 import static com.graphhopper.util.Parameters.Routing.*;
@@ -58,6 +63,7 @@ import static java.util.stream.Collectors.toList;
 public class RouteResource {
 
     private static final Logger logger = LoggerFactory.getLogger(RouteResource.class);
+    private static final String NDJSON = "application/x-ndjson";
 
     private final GraphHopperConfig config;
     private final GraphHopper graphHopper;
@@ -66,6 +72,7 @@ public class RouteResource {
     private final Boolean hasElevation;
     private final String osmDate;
     private final List<String> snapPreventionsDefault;
+    private final ObjectMapper objectMapper = Jackson.newObjectMapper();
 
     @Inject
     public RouteResource(GraphHopperConfig config, GraphHopper graphHopper, ProfileResolver profileResolver, GHRequestTransformer ghRequestTransformer, @Named("hasElevation") Boolean hasElevation) {
@@ -185,21 +192,8 @@ public class RouteResource {
     @Consumes(MediaType.APPLICATION_JSON)
     @Produces(MediaType.APPLICATION_JSON)
     public Response doPost(@NotNull GHRequest request, @Context HttpServletRequest httpReq) {
-        if (!request.hasSnapPreventions())
-            request.setSnapPreventions(snapPreventionsDefault);
-
         StopWatch sw = new StopWatch().start();
-        request = ghRequestTransformer.transformRequest(request);
-
-        if (Helper.isEmpty(request.getProfile()) && request.getCustomModel() != null)
-            // throw a dedicated exception here, otherwise a missing profile is still caught in Router
-            throw new IllegalArgumentException("The 'profile' parameter is required when you use the `custom_model` parameter");
-
-        PMap profileResolverHints = new PMap(request.getHints());
-        profileResolverHints.putObject("profile", request.getProfile());
-        profileResolverHints.putObject("has_curbsides", !request.getCurbsides().isEmpty());
-        request.setProfile(profileResolver.resolveProfile(profileResolverHints));
-        removeLegacyParameters(request.getHints());
+        request = prepareRequest(request);
 
         GHResponse ghResponse = graphHopper.route(request);
         boolean instructions = request.getHints().getBool(INSTRUCTIONS, true);
@@ -230,6 +224,125 @@ public class RouteResource {
         }
     }
 
+    /**
+     * Same as {@link #doPost} but writes the paths in the compact binary format of {@link RouteBinaryFormat}, which is
+     * selected with the Accept header. Errors are still returned as JSON.
+     */
+    @POST
+    @Consumes(MediaType.APPLICATION_JSON)
+    // qs < 1 makes sure that JSON is preferred if the client accepts any media type
+    @Produces(RouteBinaryFormat.MEDIA_TYPE + ";qs=0.5")
+    public Response doPostBinary(@NotNull GHRequest request, @Context HttpServletRequest httpReq) {
+        StopWatch sw = new StopWatch().start();
+        request = prepareRequest(request);
+
+        GHResponse ghResponse = graphHopper.route(request);
+        double took = sw.stop().getMillisDouble();
+        String logStr = httpReq.getRemoteAddr() + " " + httpReq.getLocale() + " " + httpReq.getHeader("User-Agent")
+                + " " + request.getPoints().size() + ", took: " + String.format("%.1f", took) + " ms, algo: "
+                + request.getAlgorithm() + ", profile: " + request.getProfile() + ", binary";
+        if (ghResponse.hasErrors()) {
+            logger.info(logStr + " " + ghResponse);
+            return Response.status(Response.Status.BAD_REQUEST).
+                    entity(new MultiException(ghResponse.getErrors())).
+                    type(MediaType.APPLICATION_JSON).
+                    build();
+        }
+        logger.info(logStr + ", alternatives: " + ghResponse.getAll().size()
+                + ", distance0: " + ghResponse.getBest().getDistance()
+                + ", time0: " + Math.round(ghResponse.getBest().getTime() / 60000f) + "min"
+                + ", points0: " + ghResponse.getBest().getPoints().size());
+        PMap hints = request.getHints();
+        StreamingOutput out = output -> RouteBinaryFormat.write(ghResponse, config.getCopyrights(), Math.round(took), osmDate,
+                hints.getBool(INSTRUCTIONS, true), hints.getBool(CALC_POINTS, true), hints.getBool("elevation", false), output);
+        return Response.ok(out).
+                header("X-GH-Took", "" + Math.round(took)).
+                type(RouteBinaryFormat.MEDIA_TYPE).
+                build();
+    }
+
+    /**
+     * Routes many independent requests at once. Every request has the same format as the body of POST /route and the
+     * requests are solved in parallel on the server. The response contains one JSON object per line (NDJSON) for
+     * every request, in the order in which the requests are done. The 'index' field of every line refers to the
+     * position of the request in the batch and the other fields are the same as for a single route or error response.
+     */
+    @POST
+    @Path("batch")
+    @Consumes(MediaType.APPLICATION_JSON)
+    @Produces(NDJSON)
+    public Response doPostBatch(@NotNull List<GHRequest> requests, @Context HttpServletRequest httpReq) {
+        StopWatch sw = new StopWatch().start();
+        int maxBatchSize = graphHopper.getRouterConfig().getMaxBatchSize();
+        if (requests.size() > maxBatchSize)
+            throw new IllegalArgumentException("Too many requests in batch: " + requests.size() + ", max: " + maxBatchSize);
+        // an invalid request only fails its own line, so we keep the errors and only route the valid requests
+        GHRequest[] preparedByIndex = new GHRequest[requests.size()];
+        List<GHRequest> preparedRequests = new ArrayList<>(requests.size());
+        List<Integer> preparedIndexes = new ArrayList<>(requests.size());
+        Map<Integer, GHResponse> invalidResponses = new LinkedHashMap<>();
+        for (int i = 0; i < requests.size(); i++) {
+            try {
+                preparedByIndex[i] = prepareRequest(requests.get(i));
+                preparedRequests.add(preparedByIndex[i]);
+                preparedIndexes.add(i);
+            } catch (RuntimeException e) {
+                invalidResponses.put(i, new GHResponse().addError(e));
+            }
+        }
+        String infoStr = httpReq.getRemoteAddr() + " " + httpReq.getLocale() + " " + httpReq.getHeader("User-Agent");
+        StreamingOutput out = output -> {
+            AtomicInteger errors = new AtomicInteger();
+            ObjIntConsumer<GHResponse> writer = (ghResponse, index) -> {
+                ObjectNode json = objectMapper.createObjectNode();
+                json.put("index", index);
+                if (ghResponse.hasErrors()) {
+                    errors.incrementAndGet();
+                    json.setAll((ObjectNode) objectMapper.valueToTree(new MultiException(ghResponse.getErrors())));
+                } else {
+                    PMap hints = preparedByIndex[index].getHints();
+                    json.setAll(ResponsePathSerializer.jsonObject(ghResponse,
+                            new ResponsePathSerializer.Info(config.getCopyrights(), Math.round(sw.getCurrentSeconds() * 1000), osmDate),
+                            hints.getBool(INSTRUCTIONS, true), hints.getBool(CALC_POINTS, true), hints.getBool("elevation", false),
+                            hints.getBool("points_encoded", true), hints.getDouble("points_encoded_multiplier", 1e5)));
+                }
+                try {
+                    byte[] line = objectMapper.writeValueAsBytes(json);
+                    synchronized (output) {
+                        output.write(line);
+                        output.write('\n');
+                        output.flush();
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            };
+            invalidResponses.forEach((index, ghResponse) -> writer.accept(ghResponse, index));
+            graphHopper.routeBatch(preparedRequests, (ghResponse, index) -> writer.accept(ghResponse, preparedIndexes.get(index)));
+            logger.info(infoStr + " batch: " + requests.size() + ", errors: " + errors.get()
+                    + ", took: " + String.format("%.1f", sw.stop().getMillisDouble()) + " ms");
+        };
+        return Response.ok(out).type(NDJSON).build();
+    }
+
+    private GHRequest prepareRequest(GHRequest request) {
+        if (!request.hasSnapPreventions())
+            request.setSnapPreventions(snapPreventionsDefault);
+
+        request = ghRequestTransformer.transformRequest(request);
+
+        if (Helper.isEmpty(request.getProfile()) && request.getCustomModel() != null)
+            // throw a dedicated exception here, otherwise a missing profile is still caught in Router
+            throw new IllegalArgumentException("The 'profile' parameter is required when you use the `custom_model` parameter");
+
+        PMap profileResolverHints = new PMap(request.getHints());
+        profileResolverHints.putObject("profile", request.getProfile());
+        profileResolverHints.putObject("has_curbsides", !request.getCurbsides().isEmpty());
+        request.setProfile(profileResolver.resolveProfile(profileResolverHints));
+        removeLegacyParameters(request.getHints());
+        return request;
+    }
+
     public static void removeLegacyParameters(PMap hints) {
         // these parameters should only be used to resolve the profile, but should not be passed to GraphHopper
         hints.remove("weighting");
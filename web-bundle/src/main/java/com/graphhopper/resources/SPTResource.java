@@ -4,9 +4,12 @@ import com.graphhopper.GraphHopper;
 import com.graphhopper.config.Profile;
 import com.graphhopper.http.GHPointParam;
 import com.graphhopper.http.ProfileResolver;
+import com.graphhopper.isochrone.algorithm.SPTLabelStore;
 import com.graphhopper.isochrone.algorithm.ShortestPathTree;
+import com.graphhopper.routing.PHAST;
 import com.graphhopper.routing.ev.*;
 import com.graphhopper.routing.querygraph.QueryGraph;
+import com.graphhopper.routing.querygraph.QueryRoutingCHGraph;
 import com.graphhopper.routing.util.DefaultSnapFilter;
 import com.graphhopper.routing.util.EncodingManager;
 import com.graphhopper.routing.util.TraversalMode;
@@ -32,6 +35,7 @@ import java.io.IOException;
 import java.io.OutputStreamWriter;
 import java.io.Writer;
 import java.util.*;
+import java.util.function.Consumer;
 
 import static com.graphhopper.resources.RouteResource.removeLegacyParameters;
 import static com.graphhopper.routing.util.TraversalMode.EDGE_BASED;
@@ -80,6 +84,7 @@ public class SPTResource {
         StopWatch sw = new StopWatch().start();
         PMap hintsMap = new PMap();
         RouteResource.initHints(hintsMap, uriInfo.getQueryParameters());
+        boolean disableCH = hintsMap.getBool(Parameters.CH.DISABLE, false);
         hintsMap.putObject(Parameters.CH.DISABLE, true);
         hintsMap.putObject(Parameters.Landmark.DISABLE, true);
 
@@ -93,7 +98,9 @@ public class SPTResource {
             throw new IllegalArgumentException("The requested profile '" + profileName + "' does not exist");
         LocationIndex locationIndex = graphHopper.getLocationIndex();
         BaseGraph graph = graphHopper.getBaseGraph();
-        Weighting weighting = graphHopper.createWeighting(profile, hintsMap);
+        // with a CH preparation we can use PHAST, which is much faster than a dijkstra search for large trees
+        PHAST phast = disableCH || profile.hasTurnCosts() ? null : graphHopper.getPHAST(profileName, reverseFlow);
+        Weighting weighting = phast == null ? graphHopper.createWeighting(profile, hintsMap) : phast.getGraph().getWeighting();
         BooleanEncodedValue inSubnetworkEnc = graphHopper.getEncodingManager().getBooleanEncodedValue(Subnetwork.key(profileName));
         Snap snap = locationIndex.findClosest(point.get().lat, point.get().lon, new DefaultSnapFilter(weighting, inSubnetworkEnc));
         if (!snap.isValid())
@@ -101,12 +108,15 @@ public class SPTResource {
         QueryGraph queryGraph = QueryGraph.create(graph, snap);
         NodeAccess nodeAccess = queryGraph.getNodeAccess();
         TraversalMode traversalMode = profile.hasTurnCosts() ? EDGE_BASED : NODE_BASED;
-        ShortestPathTree shortestPathTree = new ShortestPathTree(queryGraph, queryGraph.wrapWeighting(weighting), reverseFlow, traversalMode);
+        ShortestPathTree shortestPathTree = new ShortestPathTree(queryGraph, queryGraph.wrapWeighting(weighting), reverseFlow, traversalMode, SPTLabelStore.forCurrentThread());
 
-        if (distanceInMeter.orElseThrow(() -> new IllegalArgumentException("query param distance_limit is not a number.")) > 0) {
-            shortestPathTree.setDistanceLimit(distanceInMeter.getAsLong());
+        final double limit;
+        final boolean byDistance = distanceInMeter.orElseThrow(() -> new IllegalArgumentException("query param distance_limit is not a number.")) > 0;
+        if (byDistance) {
+            limit = distanceInMeter.getAsLong();
+            shortestPathTree.setDistanceLimit(limit);
         } else {
-            double limit = timeLimitInSeconds.orElseThrow(() -> new IllegalArgumentException("query param time_limit is not a number.")) * 1000d;
+            limit = timeLimitInSeconds.orElseThrow(() -> new IllegalArgumentException("query param time_limit is not a number.")) * 1000d;
             shortestPathTree.setTimeLimit(limit);
         }
 
@@ -136,8 +146,7 @@ public class SPTResource {
                 }
                 sb.append(LINE_SEP);
                 writer.write(sb.toString());
-                shortestPathTree.search(snap.getClosestNode(), l -> {
-                    IsoLabelWithCoordinates label = isoLabelWithCoordinates(nodeAccess, l);
+                Consumer<IsoLabelWithCoordinates> labelWriter = label -> {
                     sb.setLength(0);
                     for (int colIndex = 0; colIndex < columns.size(); colIndex++) {
                         String col = columns.get(colIndex);
@@ -218,9 +227,34 @@ public class SPTResource {
                     } catch (IOException ex) {
                         throw new RuntimeException(ex);
                     }
-                });
+                };
 
-                logger.info("took: " + sw.stop().getSeconds() + ", visited nodes:" + shortestPathTree.getVisitedNodes() + ", " + uriInfo.getQueryParameters());
+                int visitedNodes;
+                if (phast != null) {
+                    // the calculator only unpacks the shortest paths of the nodes within the limit
+                    PHAST.Calculator calculator = phast.borrowCalculator();
+                    PHAST.Result tree;
+                    try {
+                        if (byDistance)
+                            calculator.setDistanceLimit(limit);
+                        else
+                            calculator.setTimeLimit(limit);
+                        tree = calculator.calc(new QueryRoutingCHGraph(phast.getGraph(), queryGraph), snap.getClosestNode());
+                        visitedNodes = calculator.getVisitedNodes();
+                    } finally {
+                        phast.returnCalculator(calculator);
+                    }
+                    // virtual nodes are not part of the result, but we include the snapped point like the dijkstra search
+                    if (snap.getClosestNode() >= graph.getNodes())
+                        labelWriter.accept(isoLabelWithCoordinates(queryGraph, tree, snap.getClosestNode()));
+                    for (int i = 0; i < tree.size(); i++)
+                        labelWriter.accept(isoLabelWithCoordinates(queryGraph, tree, tree.getNode(i)));
+                } else {
+                    shortestPathTree.searchLabels(snap.getClosestNode(), l -> labelWriter.accept(isoLabelWithCoordinates(nodeAccess, shortestPathTree, l)));
+                    visitedNodes = shortestPathTree.getVisitedNodes();
+                }
+
+                logger.info("took: " + sw.stop().getSeconds() + ", visited nodes:" + visitedNodes + ", " + uriInfo.getQueryParameters());
             } catch (IOException e) {
                 throw new RuntimeException(e);
             }
@@ -229,25 +263,57 @@ public class SPTResource {
         return Response.ok(out).type("text/csv").build();
     }
 
-    private IsoLabelWithCoordinates isoLabelWithCoordinates(NodeAccess na, ShortestPathTree.IsoLabel label) {
-        double lat = na.getLat(label.node);
-        double lon = na.getLon(label.node);
+    private IsoLabelWithCoordinates isoLabelWithCoordinates(NodeAccess na, ShortestPathTree tree, int label) {
+        int node = tree.getNode(label);
+        double lat = na.getLat(node);
+        double lon = na.getLon(node);
         IsoLabelWithCoordinates isoLabelWC = new IsoLabelWithCoordinates();
-        isoLabelWC.nodeId = label.node;
+        isoLabelWC.nodeId = node;
         isoLabelWC.coordinate = new GHPoint(lat, lon);
-        isoLabelWC.timeMillis = Math.round(label.time);
-        isoLabelWC.distance = (int) Math.round(label.distance);
-        isoLabelWC.edgeId = label.edge;
-        if (label.parent != null) {
-            ShortestPathTree.IsoLabel prevLabel = label.parent;
-            int prevNodeId = prevLabel.node;
+        isoLabelWC.timeMillis = (int) tree.getTime(label);
+        isoLabelWC.distance = (int) Math.round(tree.getDistance(label));
+        isoLabelWC.edgeId = tree.getEdge(label);
+        int prevLabel = tree.getParent(label);
+        if (prevLabel >= 0) {
+            int prevNodeId = tree.getNode(prevLabel);
             double prevLat = na.getLat(prevNodeId);
             double prevLon = na.getLon(prevNodeId);
             isoLabelWC.prevNodeId = prevNodeId;
-            isoLabelWC.prevEdgeId = prevLabel.edge;
+            isoLabelWC.prevEdgeId = tree.getEdge(prevLabel);
             isoLabelWC.prevCoordinate = new GHPoint(prevLat, prevLon);
-            isoLabelWC.prevDistance = (int) Math.round(prevLabel.distance);
-            isoLabelWC.prevTimeMillis = Math.round(prevLabel.time);
+            isoLabelWC.prevDistance = (int) Math.round(tree.getDistance(prevLabel));
+            isoLabelWC.prevTimeMillis = (int) tree.getTime(prevLabel);
+        }
+        return isoLabelWC;
+    }
+
+    private IsoLabelWithCoordinates isoLabelWithCoordinates(QueryGraph queryGraph, PHAST.Result tree, int node) {
+        NodeAccess na = queryGraph.getNodeAccess();
+        IsoLabelWithCoordinates isoLabelWC = new IsoLabelWithCoordinates();
+        isoLabelWC.nodeId = node;
+        isoLabelWC.coordinate = new GHPoint(na.getLat(node), na.getLon(node));
+        isoLabelWC.edgeId = EdgeIterator.NO_EDGE;
+        int index = tree.indexOf(node);
+        if (index < 0)
+            // the virtual source node
+            return isoLabelWC;
+        isoLabelWC.timeMillis = (int) tree.getTimes()[index];
+        isoLabelWC.distance = (int) Math.round(tree.getDistances()[index]);
+        isoLabelWC.edgeId = tree.getLastEdges()[index];
+        if (EdgeIterator.Edge.isValid(isoLabelWC.edgeId)) {
+            // the previous node of the shortest path is the other node of the last edge
+            int prevNodeId = queryGraph.getOtherNode(isoLabelWC.edgeId, node);
+            isoLabelWC.prevNodeId = prevNodeId;
+            isoLabelWC.prevCoordinate = new GHPoint(na.getLat(prevNodeId), na.getLon(prevNodeId));
+            // the previous node is within the limit as well, unless it is the virtual source node
+            int prevIndex = tree.indexOf(prevNodeId);
+            if (prevIndex >= 0) {
+                isoLabelWC.prevEdgeId = tree.getLastEdges()[prevIndex];
+                isoLabelWC.prevDistance = (int) Math.round(tree.getDistances()[prevIndex]);
+                isoLabelWC.prevTimeMillis = (int) tree.getTimes()[prevIndex];
+            } else {
+                isoLabelWC.prevEdgeId = EdgeIterator.NO_EDGE;
+            }
         }
         return isoLabelWC;
     }
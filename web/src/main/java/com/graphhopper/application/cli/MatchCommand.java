@@ -28,6 +28,7 @@ import com.graphhopper.jackson.Gpx;
 import com.graphhopper.matching.MapMatching;
 import com.graphhopper.matching.MatchResult;
 import com.graphhopper.matching.Observation;
+import com.graphhopper.resources.MapMatchingResource;
 import com.graphhopper.util.*;
 import io.dropwizard.core.cli.ConfiguredCommand;
 import io.dropwizard.core.setup.Bootstrap;
@@ -41,6 +42,7 @@ import java.io.FileWriter;
 import java.util.Collections;
 import java.util.Date;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class MatchCommand extends ConfiguredCommand<GraphHopperServerConfiguration> {
 
@@ -75,6 +77,21 @@ public class MatchCommand extends ConfiguredCommand<GraphHopperServerConfigurati
                 .type(Double.class)
                 .required(false)
                 .setDefault(2.0);
+        subparser.addArgument("--threads")
+                .type(Integer.class)
+                .required(false)
+                .setDefault(1)
+                .help("number of gpx files that are matched in parallel");
+        subparser.addArgument("--window")
+                .type(Integer.class)
+                .required(false)
+                .setDefault(0)
+                .help("match long tracks in windows of this many observations, 0 matches the whole track at once");
+        subparser.addArgument("--window_lag")
+                .type(Integer.class)
+                .required(false)
+                .setDefault(20)
+                .help("number of observations at the end of a window that are matched again with the next window, at most window - 2");
     }
 
     @Override
@@ -96,20 +113,21 @@ public class MatchCommand extends ConfiguredCommand<GraphHopperServerConfigurati
 
         PMap hints = new PMap();
         hints.putObject("profile", args.get("profile"));
-        MapMatching mapMatching = MapMatching.fromGraphHopper(hopper, hints);
-        mapMatching.setTransitionProbabilityBeta(args.getDouble("transition_probability_beta"));
-        mapMatching.setMeasurementErrorSigma(args.getInt("gps_accuracy"));
+        int window = args.getInt("window");
+        int windowLag = args.getInt("window_lag");
 
-        StopWatch importSW = new StopWatch();
-        StopWatch matchSW = new StopWatch();
+        AtomicLong importNanos = new AtomicLong();
+        AtomicLong matchNanos = new AtomicLong();
 
         Translation tr = new TranslationMap().doImport().getWithFallBack(Helper.getLocale(args.getString("instructions")));
         final boolean withRoute = !args.getString("instructions").isEmpty();
         XmlMapper xmlMapper = new XmlMapper();
 
-        for (File gpxFile : args.<File>getList("gpx")) {
+        // every file gets its own MapMatching and query graph, only the graph and the location index are shared
+        GHUtility.runConcurrently(args.<File>getList("gpx").stream().map(gpxFile -> () -> {
+            StringBuilder out = new StringBuilder();
             try {
-                importSW.start();
+                StopWatch importSW = new StopWatch().start();
                 Gpx gpx = xmlMapper.readValue(gpxFile, Gpx.class);
                 if (gpx.trk == null) {
                     throw new IllegalArgumentException("No tracks found in GPX document. Are you using waypoints or routes instead?");
@@ -118,22 +136,27 @@ public class MatchCommand extends ConfiguredCommand<GraphHopperServerConfigurati
                     throw new IllegalArgumentException("GPX documents with multiple tracks not supported yet.");
                 }
                 List<Observation> measurements = GpxConversions.getEntries(gpx.trk.get(0));
-                importSW.stop();
-                matchSW.start();
-                MatchResult mr = mapMatching.match(measurements);
-                matchSW.stop();
-                System.out.println(gpxFile);
-                System.out.println("\tmatches:\t" + mr.getEdgeMatches().size() + ", gps entries:" + measurements.size());
-                System.out.println("\tgpx length:\t" + (float) mr.getGpxEntriesLength() + " vs " + (float) mr.getMatchLength());
+                importNanos.addAndGet(importSW.stop().getNanos());
+                MapMatching mapMatching = MapMatching.fromGraphHopper(hopper, hints);
+                mapMatching.setTransitionProbabilityBeta(args.getDouble("transition_probability_beta"));
+                mapMatching.setMeasurementErrorSigma(args.getInt("gps_accuracy"));
+                StopWatch matchSW = new StopWatch().start();
+                // the result file contains the complete track, so we do not use the edge matches of the windows early
+                MatchResult mr = MapMatchingResource.match(mapMatching, measurements, window, windowLag);
+                matchNanos.addAndGet(matchSW.stop().getNanos());
+                out.append(gpxFile).append("\n");
+                out.append("\tmatches:\t").append(mr.getEdgeMatches().size()).append(", gps entries:").append(measurements.size()).append("\n");
+                out.append("\tgpx length:\t").append((float) mr.getGpxEntriesLength()).append(" vs ").append((float) mr.getMatchLength()).append("\n");
 
                 String outFile = gpxFile.getAbsolutePath() + ".res.gpx";
-                System.out.println("\texport results to:" + outFile);
+                out.append("\texport results to:").append(outFile).append("\n");
 
                 ResponsePath responsePath = new PathMerger(mr.getGraph(), mr.getWeighting()).
                         doWork(PointList.EMPTY, Collections.singletonList(mr.getMergedPath()), hopper.getEncodingManager(), tr);
                 if (responsePath.hasErrors()) {
+                    System.out.print(out);
                     System.err.println("Problem with file " + gpxFile + ", " + responsePath.getErrors());
-                    continue;
+                    return;
                 }
 
                 try (BufferedWriter writer = new BufferedWriter(new FileWriter(outFile))) {
@@ -142,14 +165,15 @@ public class MatchCommand extends ConfiguredCommand<GraphHopperServerConfigurati
                             .orElse(System.currentTimeMillis());
                     writer.append(GpxConversions.createGPX(responsePath.getInstructions(), gpx.trk.get(0).name != null ? gpx.trk.get(0).name : "", time, hopper.hasElevation(), withRoute, true, false, Constants.VERSION, tr));
                 }
+                System.out.print(out);
             } catch (Exception ex) {
-                importSW.stop();
-                matchSW.stop();
-                System.err.println("Problem with file " + gpxFile);
-                ex.printStackTrace(System.err);
+                synchronized (System.err) {
+                    System.err.println("Problem with file " + gpxFile);
+                    ex.printStackTrace(System.err);
+                }
             }
-        }
-        System.out.println("gps import took:" + importSW.getSeconds() + "s, match took: " + matchSW.getSeconds());
+        }), Math.max(1, args.getInt("threads")));
+        System.out.println("gps import took:" + importNanos.get() / 1.e9 + "s, match took: " + matchNanos.get() / 1.e9);
     }
 
 }
@@ -25,7 +25,9 @@ import com.graphhopper.jackson.Gpx;
 import com.graphhopper.matching.EdgeMatch;
 import com.graphhopper.matching.MapMatching;
 import com.graphhopper.matching.MatchResult;
+import com.graphhopper.matching.Observation;
 import com.graphhopper.matching.State;
+import com.graphhopper.resources.MapMatchingResource;
 import com.graphhopper.routing.TestProfiles;
 import com.graphhopper.storage.index.Snap;
 import com.graphhopper.util.Helper;
@@ -36,7 +38,10 @@ import org.junit.jupiter.api.Test;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
 
 import static com.graphhopper.application.MapMatchingTest.fetchStreets;
 import static org.junit.jupiter.api.Assertions.*;
@@ -127,6 +132,43 @@ public class MapMatching2Test {
         assertEquals(0, mr.getMatchMillis(), 50);
     }
 
+    @Test
+    public void testWindowed() throws IOException {
+        GraphHopper hopper = new GraphHopper();
+        hopper.setOSMFile("../map-matching/files/map-issue13.osm.gz");
+        hopper.setGraphHopperLocation(GH_LOCATION);
+        hopper.setEncodedValuesString("car_access, car_average_speed");
+        hopper.setProfiles(TestProfiles.accessAndSpeed("my_profile", "car"));
+        hopper.getLMPreparationHandler().setLMProfiles(new LMProfile("my_profile"));
+        hopper.importOrLoad();
+
+        Gpx gpx = xmlMapper.readValue(getClass().getResourceAsStream("/issue-13.gpx"), Gpx.class);
+        List<Observation> observations = GpxConversions.getEntries(gpx.trk.get(0));
+        MatchResult mr = MapMatching.fromGraphHopper(hopper, new PMap().putObject("profile", "my_profile")).match(observations);
+
+        MapMatching mapMatching = MapMatching.fromGraphHopper(hopper, new PMap().putObject("profile", "my_profile"));
+        List<EdgeMatch> emitted = new ArrayList<>();
+        MatchResult windowed = mapMatching.matchWindowed(observations, 6, 2, emitted::add);
+        assertTrue((int) mapMatching.getStatistics().get("windows") > 1);
+        assertEquals(windowed.getEdgeMatches(), emitted);
+        assertEquals(mr.getEdgeMatches().stream().map(em -> em.getEdgeState().getEdgeKey()).collect(Collectors.toList()),
+                windowed.getEdgeMatches().stream().map(em -> em.getEdgeState().getEdgeKey()).collect(Collectors.toList()));
+        // every observation is assigned to the same edge as without windows
+        assertEquals(mr.getEdgeMatches().stream().map(em -> em.getStates().size()).collect(Collectors.toList()),
+                windowed.getEdgeMatches().stream().map(em -> em.getStates().size()).collect(Collectors.toList()));
+        for (EdgeMatch em : windowed.getEdgeMatches())
+            validateEdgeMatch(em);
+        assertEquals(mr.getMatchLength(), windowed.getMatchLength(), 1.e-6);
+        assertEquals(mr.getMatchMillis(), windowed.getMatchMillis());
+
+        assertThrows(IllegalArgumentException.class, () -> mapMatching.matchWindowed(observations, 3, 2, em -> {
+        }));
+        // the resource limits the (default) lag to the window size
+        MatchResult clamped = MapMatchingResource.match(mapMatching, observations, 6, 20);
+        assertEquals(windowed.getEdgeMatches().stream().map(em -> em.getEdgeState().getEdgeKey()).collect(Collectors.toList()),
+                clamped.getEdgeMatches().stream().map(em -> em.getEdgeState().getEdgeKey()).collect(Collectors.toList()));
+    }
+
     private void validateEdgeMatch(EdgeMatch edgeMatch) {
         for (State state : edgeMatch.getStates()) {
             if (state.getSnap().getSnappedPosition() == Snap.Position.TOWER) {
@@ -22,6 +22,7 @@ import com.fasterxml.jackson.databind.JsonNode;
 import com.graphhopper.application.GraphHopperApplication;
 import com.graphhopper.application.GraphHopperServerConfiguration;
 import com.graphhopper.application.util.GraphHopperServerTestConfiguration;
+import com.graphhopper.config.CHProfile;
 import com.graphhopper.routing.TestProfiles;
 import com.graphhopper.util.BodyAndStatus;
 import com.graphhopper.util.Helper;
@@ -34,6 +35,8 @@ import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Disabled;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
 import org.locationtech.jts.geom.Coordinate;
 import org.locationtech.jts.geom.Geometry;
 import org.locationtech.jts.geom.GeometryFactory;
@@ -42,6 +45,7 @@ import org.locationtech.jts.geom.Polygon;
 import jakarta.ws.rs.client.WebTarget;
 import java.io.File;
 import java.util.Arrays;
+import java.util.List;
 
 import static com.graphhopper.application.resources.Util.getWithStatus;
 import static com.graphhopper.application.util.TestUtils.clientTarget;
@@ -63,7 +67,8 @@ public class IsochroneResourceTest {
                         TestProfiles.accessAndSpeed("fast_car", "car").setTurnCostsConfig(TurnCostsConfig.car()),
                         TestProfiles.constantSpeed("short_car", 35).setTurnCostsConfig(TurnCostsConfig.car()),
                         TestProfiles.accessAndSpeed("fast_car_no_turn_restrictions", "car")
-                ));
+                )).
+                setCHProfiles(List.of(new CHProfile("fast_car_no_turn_restrictions")));
         return config;
     }
 
@@ -117,6 +122,28 @@ public class IsochroneResourceTest {
         assertFalse(polygon1.contains(geometryFactory.createPoint(new Coordinate(1.635246, 42.53841))));
     }
 
+    @ParameterizedTest
+    @CsvSource({"time_limit,300,false", "time_limit,300,true", "distance_limit,3000,false", "weight_limit,200,false"})
+    public void requestWithCH(String limitParam, int limit, boolean reverseFlow) {
+        // the profile has a CH preparation, so the isochrone is calculated with PHAST unless we disable CH
+        Geometry[] polygons = new Geometry[2];
+        for (int i = 0; i < 2; i++) {
+            JsonFeatureCollection featureCollection = clientTarget(app, "/isochrone")
+                    .queryParam("profile", "fast_car_no_turn_restrictions")
+                    .queryParam("point", "42.531073,1.573792")
+                    .queryParam(limitParam, limit)
+                    .queryParam("reverse_flow", reverseFlow)
+                    .queryParam("ch.disable", i == 1)
+                    .queryParam("type", "geojson")
+                    .request().get(JsonFeatureCollection.class);
+            assertEquals(1, featureCollection.getFeatures().size());
+            polygons[i] = featureCollection.getFeatures().get(0).getGeometry();
+        }
+        // the polygons are not exactly the same, because PHAST does not include the virtual nodes of the query graph
+        double difference = polygons[0].symDifference(polygons[1]).getArea();
+        assertTrue(difference < 0.05 * polygons[1].getArea(), "difference: " + difference + ", area: " + polygons[1].getArea());
+    }
+
     @Test
     public void requestByDistanceLimit() {
         JsonFeatureCollection featureCollection = clientTarget(app, "/isochrone")
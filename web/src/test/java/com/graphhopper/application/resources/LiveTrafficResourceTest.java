@@ -0,0 +1,108 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.application.resources;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.graphhopper.application.GraphHopperApplication;
+import com.graphhopper.application.GraphHopperServerConfiguration;
+import com.graphhopper.application.util.GraphHopperServerTestConfiguration;
+import com.graphhopper.routing.TestProfiles;
+import com.graphhopper.util.Helper;
+import io.dropwizard.testing.junit5.DropwizardAppExtension;
+import io.dropwizard.testing.junit5.DropwizardExtensionsSupport;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import jakarta.ws.rs.client.Entity;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Response;
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.util.List;
+
+import static com.graphhopper.application.util.TestUtils.clientTarget;
+import static org.junit.jupiter.api.Assertions.*;
+
+@ExtendWith(DropwizardExtensionsSupport.class)
+public class LiveTrafficResourceTest {
+    private static final String DIR = "./target/andorra-live-traffic-gh/";
+    private static final String ROUTE = "/route?profile=car&point=42.554851,1.536198&point=42.510071,1.548128&details=edge_key";
+    private static final DropwizardAppExtension<GraphHopperServerConfiguration> app = new DropwizardAppExtension<>(GraphHopperApplication.class, createConfig());
+
+    private static GraphHopperServerConfiguration createConfig() {
+        GraphHopperServerConfiguration config = new GraphHopperServerTestConfiguration();
+        config.getGraphHopperConfiguration().
+                putObject("prepare.min_network_size", 0).
+                putObject("datareader.file", "../core/files/andorra.osm.pbf").
+                putObject("graph.encoded_values", "car_access, car_average_speed").
+                putObject("import.osm.ignored_highways", "").
+                putObject("routing.live_traffic.profiles", "car").
+                putObject("graph.location", DIR).
+                setProfiles(List.of(TestProfiles.accessAndSpeed("car")));
+        return config;
+    }
+
+    @BeforeAll
+    @AfterAll
+    public static void cleanUp() {
+        Helper.removeDir(new File(DIR));
+    }
+
+    @Test
+    public void testUpload() {
+        JsonNode path = clientTarget(app, ROUTE).request().get(JsonNode.class).get("paths").get(0);
+        long time = path.get("time").asLong();
+        JsonNode edgeKeys = path.at("/details/edge_key");
+        assertTrue(edgeKeys.size() > 10);
+
+        // slow down the first half of the route
+        StringBuilder csv = new StringBuilder("# edge_key,speed\n");
+        for (int i = 0; i < edgeKeys.size() / 2; i++)
+            csv.append(edgeKeys.get(i).get(2).asInt()).append(",5\n");
+        JsonNode json = clientTarget(app, "/traffic?replace=true").request().post(Entity.entity(csv.toString(), "text/csv"), JsonNode.class);
+        assertEquals(edgeKeys.size() / 2, json.get("live_speeds").asInt());
+        JsonNode slowPath = clientTarget(app, ROUTE).request().get(JsonNode.class).get("paths").get(0);
+        assertTrue(slowPath.get("time").asLong() > time, slowPath.get("time") + " vs. " + time);
+
+        // the live speeds can be disabled per request
+        JsonNode ignored = clientTarget(app, ROUTE + "&live_traffic=false").request().get(JsonNode.class).get("paths").get(0);
+        assertEquals(time, ignored.get("time").asLong());
+
+        // removing the live speeds restores the original route
+        ByteBuffer binary = ByteBuffer.allocate(8 * (edgeKeys.size() / 2));
+        for (int i = 0; i < edgeKeys.size() / 2; i++)
+            binary.putInt(edgeKeys.get(i).get(2).asInt()).putFloat(0);
+        json = clientTarget(app, "/traffic").request().post(Entity.entity(binary.array(), MediaType.APPLICATION_OCTET_STREAM), JsonNode.class);
+        assertEquals(0, json.get("live_speeds").asInt());
+        assertEquals(json.get("version").asLong(), clientTarget(app, "/traffic").request().get(JsonNode.class).get("version").asLong());
+        assertEquals(time, clientTarget(app, ROUTE).request().get(JsonNode.class).get("paths").get(0).get("time").asLong());
+    }
+
+    @Test
+    public void testInvalidInput() {
+        Response response = clientTarget(app, "/traffic").request().post(Entity.entity("12,abc\n", "text/csv"));
+        assertEquals(400, response.getStatus());
+        assertTrue(response.readEntity(JsonNode.class).get("message").asText().contains("Invalid line 1"));
+
+        response = clientTarget(app, "/traffic").request().post(Entity.entity("-1,10\n", "text/csv"));
+        assertEquals(400, response.getStatus());
+        assertTrue(response.readEntity(JsonNode.class).get("message").asText().contains("Invalid edge key -1"));
+    }
+}
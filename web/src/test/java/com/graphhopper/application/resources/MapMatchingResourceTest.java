@@ -20,6 +20,7 @@ package com.graphhopper.application.resources;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.graphhopper.application.GraphHopperApplication;
 import com.graphhopper.application.GraphHopperServerConfiguration;
+import com.graphhopper.jackson.Jackson;
 import com.graphhopper.jackson.ResponsePathDeserializerHelper;
 import com.graphhopper.routing.TestProfiles;
 import com.graphhopper.util.Helper;
@@ -36,7 +37,12 @@ import org.locationtech.jts.io.WKTReader;
 import jakarta.ws.rs.client.Entity;
 import jakarta.ws.rs.core.Response;
 import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
 
 import static com.graphhopper.application.util.TestUtils.clientTarget;
 import static org.junit.jupiter.api.Assertions.*;
@@ -122,6 +128,40 @@ public class MapMatchingResourceTest {
         }
     }
 
+    @Test
+    public void testBulk() throws IOException {
+        String gpx = new String(getClass().getResourceAsStream("/tour2-with-loop.gpx").readAllBytes(), StandardCharsets.UTF_8);
+        String trk = gpx.substring(gpx.indexOf("<trk>"), gpx.indexOf("</trk>") + "</trk>".length());
+        String unmatchable = "<trk><name>far away</name><trkseg><trkpt lat=\"-40.0\" lon=\"100.0\"></trkpt></trkseg></trk>";
+        String bulkGpx = gpx.replace(trk, trk + unmatchable + trk);
+        Response response = clientTarget(app, "/match/bulk?profile=fast_car&traversal_keys=true").request().post(Entity.xml(bulkGpx));
+        assertEquals(200, response.getStatus());
+        assertEquals("application/x-ndjson", response.getMediaType().toString());
+        String[] lines = response.readEntity(String.class).trim().split("\n");
+        assertEquals(3, lines.length);
+        Map<Integer, JsonNode> byIndex = new HashMap<>();
+        for (String line : lines) {
+            JsonNode json = Jackson.newObjectMapper().readTree(line);
+            byIndex.put(json.get("index").asInt(), json);
+        }
+        assertEquals(Set.of(0, 1, 2), byIndex.keySet());
+
+        JsonNode single = clientTarget(app, "/match?profile=fast_car&traversal_keys=true")
+                .request()
+                .post(Entity.xml(getClass().getResourceAsStream("/tour2-with-loop.gpx")), JsonNode.class);
+        for (int index : new int[]{0, 2}) {
+            JsonNode json = byIndex.get(index);
+            assertEquals(812, json.get("map_matching").get("distance").asDouble(), 1);
+            assertEquals(single.get("traversal_keys"), json.get("traversal_keys"));
+            LineString expectedGeometry = readWktLineString("LINESTRING (12.3607 51.34365, 12.36418 51.34443, 12.36379 51.34538, 12.36082 51.34471, 12.36188 51.34278)");
+            LineString actualGeometry = ResponsePathDeserializerHelper.decodePolyline(json.get("points").asText(), 10, false, 1e5).toLineString(false);
+            assertEquals(0.0, DiscreteHausdorffDistance.distance(expectedGeometry, actualGeometry), 1E-4);
+        }
+        assertEquals("far away", byIndex.get(1).get("name").asText());
+        assertTrue(byIndex.get(1).get("message").asText().startsWith("Sequence is broken"), byIndex.get(1).toString());
+        assertFalse(byIndex.get(1).has("points"));
+    }
+
     private LineString readWktLineString(String wkt) {
         WKTReader wktReader = new WKTReader();
         LineString expectedGeometry = null;
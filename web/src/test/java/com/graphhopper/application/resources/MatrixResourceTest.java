@@ -0,0 +1,112 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.application.resources;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.graphhopper.application.GraphHopperApplication;
+import com.graphhopper.application.GraphHopperServerConfiguration;
+import com.graphhopper.application.util.GraphHopperServerTestConfiguration;
+import com.graphhopper.config.CHProfile;
+import com.graphhopper.routing.TestProfiles;
+import com.graphhopper.util.Helper;
+import io.dropwizard.testing.junit5.DropwizardAppExtension;
+import io.dropwizard.testing.junit5.DropwizardExtensionsSupport;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import jakarta.ws.rs.client.Entity;
+import jakarta.ws.rs.core.Response;
+import java.io.File;
+import java.util.List;
+
+import static com.graphhopper.application.util.TestUtils.clientTarget;
+import static org.junit.jupiter.api.Assertions.*;
+
+@ExtendWith(DropwizardExtensionsSupport.class)
+public class MatrixResourceTest {
+    private static final String DIR = "./target/andorra-matrix-gh/";
+    private static final DropwizardAppExtension<GraphHopperServerConfiguration> app = new DropwizardAppExtension<>(GraphHopperApplication.class, createConfig());
+
+    private static GraphHopperServerConfiguration createConfig() {
+        GraphHopperServerConfiguration config = new GraphHopperServerTestConfiguration();
+        config.getGraphHopperConfiguration().
+                putObject("prepare.min_network_size", 0).
+                putObject("datareader.file", "../core/files/andorra.osm.pbf").
+                putObject("graph.encoded_values", "car_access, car_average_speed").
+                putObject("import.osm.ignored_highways", "").
+                putObject("graph.location", DIR).
+                setProfiles(List.of(TestProfiles.accessAndSpeed("car"))).
+                setCHProfiles(List.of(new CHProfile("car")));
+        return config;
+    }
+
+    @BeforeAll
+    @AfterAll
+    public static void cleanUp() {
+        Helper.removeDir(new File(DIR));
+    }
+
+    @Test
+    public void testGet() {
+        JsonNode json = clientTarget(app, "/matrix?profile=car&" +
+                "point=42.554851,1.536198&point=42.510071,1.548128&point=42.531739,1.518950").request().get(JsonNode.class);
+        assertEquals("GraphHopper", json.at("/info/copyrights/0").asText());
+        for (String arr : List.of("weights", "times", "distances")) {
+            assertEquals(3, json.get(arr).size());
+            for (int i = 0; i < 3; i++) {
+                assertEquals(3, json.get(arr).get(i).size());
+                assertEquals(0, json.get(arr).get(i).get(i).asDouble(), 1.e-6);
+            }
+        }
+        // the matrix entries must match a normal route request
+        JsonNode route = clientTarget(app, "/route?profile=car&" +
+                "point=42.554851,1.536198&point=42.510071,1.548128&calc_points=false").request().get(JsonNode.class);
+        JsonNode path = route.get("paths").get(0);
+        assertEquals(path.get("distance").asDouble(), json.at("/distances/0/1").asDouble(), 1);
+        assertEquals(path.get("time").asLong() / 1000.0, json.at("/times/0/1").asDouble(), 1);
+    }
+
+    @Test
+    public void testPost() {
+        String body = "{\"profile\": \"car\", \"from_points\": [[1.536198,42.554851],[1.548128,42.510071]], " +
+                "\"to_points\": [[1.518950,42.531739]], \"out_arrays\": [\"distances\"]}";
+        JsonNode json = clientTarget(app, "/matrix").request().post(Entity.json(body), JsonNode.class);
+        assertFalse(json.has("weights"));
+        assertFalse(json.has("times"));
+        assertEquals(2, json.get("distances").size());
+        assertEquals(1, json.get("distances").get(0).size());
+        assertTrue(json.at("/distances/0/0").asDouble() > 3000, json.toString());
+        assertTrue(json.at("/distances/1/0").asDouble() > 3000, json.toString());
+    }
+
+    @Test
+    public void testErrors() {
+        Response response = clientTarget(app, "/matrix?profile=car&point=42.554851,1.536198&point=40.0,1.5").request().get();
+        assertEquals(400, response.getStatus());
+        JsonNode json = response.readEntity(JsonNode.class);
+        assertTrue(json.get("message").asText().contains("Point 1 is out of bounds"), json.toString());
+
+        response = clientTarget(app, "/matrix?profile=car&point=42.554851,1.536198&from_point=42.510071,1.548128").request().get();
+        assertEquals(400, response.getStatus());
+
+        response = clientTarget(app, "/matrix?profile=truck&point=42.554851,1.536198").request().get();
+        assertEquals(400, response.getStatus());
+    }
+}
@@ -134,6 +134,43 @@ public class RouteResourceClientHCTest {
         assertEquals("[0, 1]", res.getPointsOrder().toString());
     }
 
+    @Test
+    public void testBinaryResponse() {
+        GHRequest req = new GHRequest().
+                addPoint(new GHPoint(42.5093, 1.5274)).
+                addPoint(new GHPoint(42.5126, 1.5410)).
+                setProfile("car").
+                setPathDetails(Arrays.asList("average_speed", "street_name", "edge_id")).
+                putHint("elevation", true);
+        GraphHopperWeb gh = new GraphHopperWeb(TestUtils.clientUrl(app, "/route"));
+        ResponsePath expected = gh.route(req).getBest();
+        GHResponse rsp = gh.setBinaryResponse(true).route(req);
+        assertFalse(rsp.hasErrors(), "errors:" + rsp.getErrors().toString());
+        ResponsePath res = rsp.getBest();
+        assertEquals(expected.getDistance(), res.getDistance(), 1.e-3);
+        assertEquals(expected.getTime(), res.getTime());
+        assertEquals(expected.getRouteWeight(), res.getRouteWeight(), 1.e-6);
+        assertEquals(expected.getAscend(), res.getAscend(), 1.e-6);
+        assertEquals(expected.getPoints(), res.getPoints());
+        assertTrue(res.getPoints().is3D());
+        assertEquals(expected.getWaypoints(), res.getWaypoints());
+        assertEquals(expected.getInstructions().size(), res.getInstructions().size());
+        for (int i = 0; i < expected.getInstructions().size(); i++) {
+            assertEquals(expected.getInstructions().get(i).getName(), res.getInstructions().get(i).getName());
+            assertEquals(expected.getInstructions().get(i).getSign(), res.getInstructions().get(i).getSign());
+            assertEquals(expected.getInstructions().get(i).getPoints(), res.getInstructions().get(i).getPoints());
+        }
+        assertEquals(expected.getPathDetails().keySet(), res.getPathDetails().keySet());
+        for (String detail : expected.getPathDetails().keySet())
+            assertEquals(expected.getPathDetails().get(detail).size(), res.getPathDetails().get(detail).size(), detail);
+        assertEquals(expected.getPathDetails().get("street_name").toString(), res.getPathDetails().get("street_name").toString());
+
+        // errors are returned as JSON
+        rsp = gh.route(new GHRequest(42.5093, 1.5274, 52.5126, 1.5410).setProfile("car"));
+        assertTrue(rsp.hasErrors());
+        assertTrue(rsp.getErrors().toString().contains("Point 1 is out of bounds"), rsp.getErrors().toString());
+    }
+
     @ParameterizedTest
     @EnumSource(value = TestParam.class)
     public void testAlternativeRoute(TestParam p) {
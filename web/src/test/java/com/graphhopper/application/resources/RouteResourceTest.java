@@ -26,6 +26,7 @@ import com.graphhopper.application.GraphHopperApplication;
 import com.graphhopper.application.GraphHopperServerConfiguration;
 import com.graphhopper.application.util.GraphHopperServerTestConfiguration;
 import com.graphhopper.config.CHProfile;
+import com.graphhopper.jackson.Jackson;
 import com.graphhopper.routing.TestProfiles;
 import com.graphhopper.routing.ev.RoadClass;
 import com.graphhopper.routing.ev.RoadClassLink;
@@ -148,6 +149,34 @@ public class RouteResourceTest {
         assertFalse(json.get("info").has("errors"));
     }
 
+    @Test
+    public void testBatchQuery() throws Exception {
+        String jsonStr = "[{ \"profile\": \"my_car\", \"points\": [[1.536198,42.554851], [1.548128, 42.510071]] }," +
+                "{ \"profile\": \"foot\", \"points\": [[1.536198,42.554851], [1.548128, 42.510071]], \"points_encoded\": false }," +
+                "{ \"profile\": \"my_car\", \"points\": [[1.536198,42.554851], [2.548128, 43.510071]] }," +
+                // an invalid request does not fail the whole batch
+                "{ \"points\": [[1.536198,42.554851], [1.548128, 42.510071]], \"custom_model\": {} }]";
+        Response response = clientTarget(app, "/route/batch").request().post(Entity.json(jsonStr));
+        assertEquals(200, response.getStatus());
+        assertEquals("application/x-ndjson", response.getMediaType().toString());
+        String[] lines = response.readEntity(String.class).trim().split("\n");
+        assertEquals(4, lines.length);
+        Map<Integer, JsonNode> byIndex = new HashMap<>();
+        for (String line : lines) {
+            JsonNode json = Jackson.newObjectMapper().readTree(line);
+            byIndex.put(json.get("index").asInt(), json);
+        }
+        assertEquals(Set.of(0, 1, 2, 3), byIndex.keySet());
+
+        JsonNode single = clientTarget(app, "/route").request().post(Entity.json("{ \"profile\": \"my_car\", \"points\": [[1.536198,42.554851], [1.548128, 42.510071]] }"), JsonNode.class);
+        assertEquals(single.at("/paths/0/distance").asDouble(), byIndex.get(0).at("/paths/0/distance").asDouble(), 1.e-3);
+        assertEquals(single.at("/paths/0/points").asText(), byIndex.get(0).at("/paths/0/points").asText());
+        assertTrue(byIndex.get(1).at("/paths/0/points/coordinates").isArray());
+        assertTrue(byIndex.get(2).get("message").asText().startsWith("Point 1 is out of bounds: 43.510071,2.548128"), byIndex.get(2).toString());
+        assertFalse(byIndex.get(2).has("paths"));
+        assertEquals("The 'profile' parameter is required when you use the `custom_model` parameter", byIndex.get(3).get("message").asText());
+    }
+
     @Test
     public void testBasicNavigationQuery() {
         JsonNode json = clientTarget(app, "/navigate/directions/v5/gh/driving/1.537174,42.507145;1.539116,42.511368?" +
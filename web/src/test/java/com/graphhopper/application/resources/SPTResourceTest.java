@@ -22,6 +22,7 @@ import com.fasterxml.jackson.databind.JsonNode;
 import com.graphhopper.application.GraphHopperApplication;
 import com.graphhopper.application.GraphHopperServerConfiguration;
 import com.graphhopper.application.util.GraphHopperServerTestConfiguration;
+import com.graphhopper.config.CHProfile;
 import com.graphhopper.routing.TestProfiles;
 import com.graphhopper.util.BodyAndStatus;
 import com.graphhopper.util.Helper;
@@ -32,10 +33,14 @@ import org.junit.jupiter.api.AfterAll;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
 
 import java.io.File;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import static com.graphhopper.application.resources.Util.getWithStatus;
 import static com.graphhopper.application.util.TestUtils.clientTarget;
@@ -56,8 +61,10 @@ public class SPTResourceTest {
                 putObject("graph.encoded_values", "car_access, car_average_speed").
                 setProfiles(List.of(
                         TestProfiles.accessAndSpeed("car_without_turncosts", "car"),
-                        TestProfiles.accessAndSpeed("car_with_turncosts", "car").setTurnCostsConfig(TurnCostsConfig.car())
-                ));
+                        TestProfiles.accessAndSpeed("car_with_turncosts", "car").setTurnCostsConfig(TurnCostsConfig.car()),
+                        TestProfiles.accessAndSpeed("car_ch", "car")
+                )).
+                setCHProfiles(List.of(new CHProfile("car_ch")));
         return config;
     }
 
@@ -101,6 +108,33 @@ public class SPTResourceTest {
         assertEquals("2385,2821,1234,13121,262", lines[3]);
     }
 
+    @ParameterizedTest
+    @ValueSource(booleans = {false, true})
+    public void requestSPTWithCH(boolean reverseFlow) {
+        // the tree is calculated with PHAST unless we disable CH, but the rows are not in the same order
+        Map<String, String[]> rowsByNode = new HashMap<>();
+        for (boolean disableCH : new boolean[]{true, false}) {
+            String rspCsvString = clientTarget(app, "/spt?profile=car_ch&point=42.531073,1.573792&time_limit=300&columns=node_id,prev_node_id,time,distance" +
+                    "&reverse_flow=" + reverseFlow + "&ch.disable=" + disableCH).request().get(String.class);
+            String[] lines = rspCsvString.split("\n");
+            assertTrue(lines.length > 300);
+            assertEquals("node_id,prev_node_id,time,distance", lines[0]);
+            if (disableCH) {
+                for (int i = 1; i < lines.length; i++)
+                    rowsByNode.put(lines[i].split(",")[0], lines[i].split(","));
+                continue;
+            }
+            assertEquals(rowsByNode.size(), lines.length - 1);
+            for (int i = 1; i < lines.length; i++) {
+                String[] row = lines[i].split(",");
+                String[] expected = rowsByNode.get(row[0]);
+                assertNotNull(expected, lines[i]);
+                assertEquals(Integer.parseInt(expected[2]), Integer.parseInt(row[2]), 50, lines[i]);
+                assertEquals(Integer.parseInt(expected[3]), Integer.parseInt(row[3]), 1, lines[i]);
+            }
+        }
+    }
+
     @Test
     public void requestDetails() {
         String rspCsvString = clientTarget(app, "/spt?profile=car_without_turncosts&point=42.531073,1.573792&time_limit=300&columns=street_name,road_class,max_speed").request().get(String.class);